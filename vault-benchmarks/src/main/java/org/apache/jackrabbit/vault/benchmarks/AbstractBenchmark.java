@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.fs.io.Importer;
+import org.apache.jackrabbit.vault.fs.io.ZipArchive;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code AbstractBenchmark} is the base of the benchmarks that run against a repository. It creates the repository
+ * and a package of the configured shape for each trial. As the benchmarked operations modify the repository, each
+ * invocation is measured as a single shot, and subclasses restore the repository after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class AbstractBenchmark {
+
+    @Param({BenchmarkRepository.OAK})
+    public String repositoryType;
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"10"})
+    public int fanOut;
+
+    @Param({"10"})
+    public int properties;
+
+    @Param({"1"})
+    public int files;
+
+    @Param({"1024"})
+    public int binarySize;
+
+    @Param({"0.0"})
+    public double aclDensity;
+
+    protected File workDir;
+
+    protected BenchmarkRepository repository;
+
+    protected Session admin;
+
+    protected PackageGenerator generator;
+
+    @Setup
+    public void setupTrial() throws Exception {
+        workDir = new File("target/benchmarks/" + getClass().getSimpleName());
+        workDir.mkdirs();
+        repository = BenchmarkRepository.create(repositoryType, new File(workDir, "repository"));
+        admin = repository.login();
+        generator = new PackageGenerator();
+        generator.setDepth(depth);
+        generator.setFanOut(fanOut);
+        generator.setProperties(properties);
+        generator.setFiles(files);
+        generator.setBinarySize(binarySize);
+        generator.setAclDensity(aclDensity);
+        setup();
+    }
+
+    /**
+     * Prepares the trial after the repository is created.
+     * @throws Exception if an error occurs
+     */
+    protected abstract void setup() throws Exception;
+
+    /**
+     * Generates the package into the work directory.
+     * @return the package file
+     * @throws IOException if an I/O error occurs
+     */
+    protected File generatePackage() throws IOException {
+        return generator.generate(new File(workDir, "package.zip"));
+    }
+
+    /**
+     * Generates the package and imports it into the repository.
+     * @throws Exception if an error occurs
+     */
+    protected void importPackage() throws Exception {
+        ZipArchive archive = new ZipArchive(generatePackage());
+        try {
+            archive.open(true);
+            ImportOptions opts = new ImportOptions();
+            opts.setAccessControlHandling(AccessControlHandling.OVERWRITE);
+            new Importer(opts).run(archive, admin.getRootNode());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @TearDown
+    public void tearDownTrial() throws Exception {
+        tearDown();
+        if (admin != null) {
+            admin.logout();
+            admin = null;
+        }
+        if (repository != null) {
+            repository.shutdown();
+            repository = null;
+        }
+    }
+
+    /**
+     * Releases the resources of the trial before the repository is shut down.
+     * @throws Exception if an error occurs
+     */
+    protected void tearDown() throws Exception {
+    }
+
+    /**
+     * Removes the generated content.
+     * @throws RepositoryException if an error occurs
+     */
+    protected void clean() throws RepositoryException {
+        BenchmarkRepository.clean(admin, generator.getRoot());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultMetaInf;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.packaging.ExportOptions;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.apache.jackrabbit.vault.packaging.impl.PackageManagerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * {@code AssembleBenchmark} measures {@link PackageManagerImpl#assemble} of the generated content.
+ */
+public class AssembleBenchmark extends AbstractBenchmark {
+
+    @Param({"0"})
+    public int aggregationThreads;
+
+    @Param({"0"})
+    public int compressionThreads;
+
+    private PackageManagerImpl packMgr;
+
+    private File file;
+
+    @Override
+    protected void setup() throws Exception {
+        importPackage();
+        packMgr = new PackageManagerImpl();
+        file = new File(workDir, "assembled.zip");
+    }
+
+    @Benchmark
+    public File assemble() throws Exception {
+        ExportOptions opts = new ExportOptions();
+        DefaultMetaInf inf = new DefaultMetaInf();
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet(generator.getRoot()));
+        inf.setFilter(filter);
+        Properties props = new Properties();
+        props.setProperty(PackageProperties.NAME_GROUP, "jackrabbit/benchmarks");
+        props.setProperty(PackageProperties.NAME_NAME, "assembled");
+        inf.setProperties(props);
+        opts.setMetaInf(inf);
+        opts.setAggregationThreads(aggregationThreads);
+        opts.setCompressionThreads(compressionThreads);
+        packMgr.assemble(admin, opts, file).close();
+        return file;
+    }
+}
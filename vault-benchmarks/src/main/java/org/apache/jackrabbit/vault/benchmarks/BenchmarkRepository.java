@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.apache.jackrabbit.core.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.security.SecurityProviderImpl;
+import org.apache.jackrabbit.oak.security.user.RandomAuthorizableNodeName;
+import org.apache.jackrabbit.oak.spi.security.ConfigurationParameters;
+import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.jackrabbit.oak.spi.security.user.UserConfiguration;
+import org.apache.jackrabbit.oak.spi.security.user.UserConstants;
+import org.apache.jackrabbit.oak.spi.security.user.action.AccessControlAction;
+import org.apache.jackrabbit.oak.spi.xml.ImportBehavior;
+import org.apache.jackrabbit.oak.spi.xml.ProtectedItemImporter;
+
+/**
+ * {@code BenchmarkRepository} provides the repository the benchmarks run against. It is set up the same way as the
+ * repository of the integration tests: either an in-memory oak repository or a jackrabbit 2 repository below the
+ * given home directory.
+ */
+public class BenchmarkRepository {
+
+    /**
+     * Name of the oak repository type.
+     */
+    public static final String OAK = "oak";
+
+    /**
+     * Name of the jackrabbit 2 repository type.
+     */
+    public static final String JACKRABBIT = "jackrabbit";
+
+    private final Repository repository;
+
+    private final File home;
+
+    private BenchmarkRepository(Repository repository, File home) {
+        this.repository = repository;
+        this.home = home;
+    }
+
+    /**
+     * Creates a new repository.
+     * @param type the repository type, either {@link #OAK} or {@link #JACKRABBIT}
+     * @param home the home directory of the repository. it is deleted when the repository is shut down.
+     * @return the repository
+     * @throws RepositoryException if an error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    public static BenchmarkRepository create(String type, File home) throws RepositoryException, IOException {
+        FileUtils.deleteDirectory(home);
+        if (OAK.equals(type)) {
+            return new BenchmarkRepository(createOak(), home);
+        } else if (JACKRABBIT.equals(type)) {
+            InputStream in = BenchmarkRepository.class.getResourceAsStream("repository.xml");
+            try {
+                RepositoryConfig cfg = RepositoryConfig.create(in, home.getPath());
+                return new BenchmarkRepository(RepositoryImpl.create(cfg), home);
+            } finally {
+                in.close();
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown repository type: " + type);
+        }
+    }
+
+    private static Repository createOak() throws RepositoryException {
+        Properties userProps = new Properties();
+        userProps.put(UserConstants.PARAM_USER_PATH, "/home/users");
+        userProps.put(UserConstants.PARAM_GROUP_PATH, "/home/groups");
+        userProps.put(AccessControlAction.USER_PRIVILEGE_NAMES, new String[] {PrivilegeConstants.JCR_ALL});
+        userProps.put(AccessControlAction.GROUP_PRIVILEGE_NAMES, new String[] {PrivilegeConstants.JCR_READ});
+        userProps.put(ProtectedItemImporter.PARAM_IMPORT_BEHAVIOR, ImportBehavior.NAME_BESTEFFORT);
+        userProps.put(UserConstants.PARAM_AUTHORIZABLE_NODE_NAME, new RandomAuthorizableNodeName());
+        Properties authzProps = new Properties();
+        authzProps.put(ProtectedItemImporter.PARAM_IMPORT_BEHAVIOR, ImportBehavior.NAME_BESTEFFORT);
+        Properties securityProps = new Properties();
+        securityProps.put(UserConfiguration.NAME, ConfigurationParameters.of(userProps));
+        securityProps.put(AuthorizationConfiguration.NAME, ConfigurationParameters.of(authzProps));
+
+        Repository repository = new Jcr()
+                .with(new SecurityProviderImpl(ConfigurationParameters.of(securityProps)))
+                .createRepository();
+
+        // setup default read ACL for everyone
+        Session admin = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        try {
+            AccessControlUtils.addAccessControlEntry(admin, "/", EveryonePrincipal.getInstance(), new String[]{"jcr:read"}, true);
+            admin.save();
+        } finally {
+            admin.logout();
+        }
+        return repository;
+    }
+
+    /**
+     * Logs in as admin.
+     * @return the session
+     * @throws RepositoryException if an error occurs
+     */
+    public Session login() throws RepositoryException {
+        return repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+    }
+
+    /**
+     * Removes the node at the given path, if it exists.
+     * @param session the session
+     * @param path the path
+     * @throws RepositoryException if an error occurs
+     */
+    public static void clean(Session session, String path) throws RepositoryException {
+        session.refresh(false);
+        if (session.nodeExists(path)) {
+            session.getNode(path).remove();
+            session.save();
+        }
+    }
+
+    /**
+     * Returns the node at the given path and creates the missing nodes as {@code nt:unstructured}.
+     * @param session the session
+     * @param path the path
+     * @return the node
+     * @throws RepositoryException if an error occurs
+     */
+    public static Node getOrCreate(Session session, String path) throws RepositoryException {
+        Node node = session.getRootNode();
+        for (String name: path.substring(1).split("/")) {
+            if (name.length() == 0) {
+                continue;
+            }
+            node = node.hasNode(name) ? node.getNode(name) : node.addNode(name, "nt:unstructured");
+        }
+        session.save();
+        return node;
+    }
+
+    /**
+     * Shuts down the repository and deletes its home directory.
+     * @throws IOException if an I/O error occurs
+     */
+    public void shutdown() throws IOException {
+        ((JackrabbitRepository) repository).shutdown();
+        FileUtils.deleteDirectory(home);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.jackrabbit.util.Text;
+import org.apache.jackrabbit.vault.fs.api.ImportInfo;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.impl.ArtifactSetImpl;
+import org.apache.jackrabbit.vault.fs.impl.io.DocViewSAXImporter;
+import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@code DocViewImportBenchmark} measures the {@link DocViewSAXImporter} with the generated tree serialized as a
+ * single docview document, which isolates the parsing and the node creation from the package handling.
+ */
+public class DocViewImportBenchmark extends AbstractBenchmark {
+
+    private byte[] docView;
+
+    private Node parent;
+
+    private String rootName;
+
+    private DefaultWorkspaceFilter filter;
+
+    private SAXParserFactory factory;
+
+    @Override
+    protected void setup() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.writeDocView(out);
+        docView = out.toByteArray();
+        parent = BenchmarkRepository.getOrCreate(admin, Text.getRelativeParent(generator.getRoot(), 1));
+        rootName = Text.getName(generator.getRoot());
+        filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet(generator.getRoot()));
+        factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+    }
+
+    @Benchmark
+    public ImportInfo importDocView() throws Exception {
+        DocViewSAXImporter handler = new DocViewSAXImporter(parent, rootName, new ArtifactSetImpl(), filter);
+        handler.setAclHandling(AccessControlHandling.OVERWRITE);
+        SAXParser parser = factory.newSAXParser();
+        parser.parse(new ByteArrayInputStream(docView), handler);
+        admin.save();
+        return handler.getInfo();
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanIteration() throws RepositoryException {
+        clean();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.filter.DefaultPathFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code FilterBenchmark} measures the evaluation of a workspace filter with a number of filter sets, each with a
+ * number of include and exclude rules, against the paths of a generated tree. It does not need a repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"10"})
+    public int filterSets;
+
+    @Param({"10"})
+    public int rules;
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"10"})
+    public int fanOut;
+
+    private DefaultWorkspaceFilter filter;
+
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        filter = new DefaultWorkspaceFilter();
+        for (int i = 0; i < filterSets; i++) {
+            String root = "/content/site" + i;
+            PathFilterSet set = new PathFilterSet(root);
+            for (int j = 0; j < rules; j++) {
+                DefaultPathFilter rule = new DefaultPathFilter(root + "/node\\d+/node" + j + "(/.*)?");
+                if (j % 2 == 0) {
+                    set.addExclude(rule);
+                } else {
+                    set.addInclude(rule);
+                }
+            }
+            filter.add(set);
+        }
+        // the paths of a tree below every other filter root, so that half of the paths are not covered
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < filterSets * 2; i += 2) {
+            addPaths(list, "/content/site" + i, 0);
+        }
+        paths = list.toArray(new String[list.size()]);
+    }
+
+    private void addPaths(List<String> list, String path, int level) {
+        list.add(path);
+        if (level < depth) {
+            for (int i = 0; i < fanOut; i++) {
+                addPaths(list, path + "/node" + i, level + 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public int contains() {
+        int count = 0;
+        for (String path: paths) {
+            if (filter.contains(path)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int covers() {
+        int count = 0;
+        for (String path: paths) {
+            if (filter.covers(path)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int isAncestor() {
+        int count = 0;
+        for (String path: paths) {
+            if (filter.isAncestor(path)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.io.File;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.fs.io.Importer;
+import org.apache.jackrabbit.vault.fs.io.ZipArchive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@code ImporterBenchmark} measures {@link Importer#run} of a generated package into an empty repository.
+ */
+public class ImporterBenchmark extends AbstractBenchmark {
+
+    private ZipArchive archive;
+
+    @Override
+    protected void setup() throws Exception {
+        File file = generatePackage();
+        archive = new ZipArchive(file);
+        archive.open(true);
+    }
+
+    @Benchmark
+    public Importer run() throws Exception {
+        ImportOptions opts = new ImportOptions();
+        opts.setAccessControlHandling(AccessControlHandling.OVERWRITE);
+        Importer importer = new Importer(opts);
+        importer.run(archive, admin.getRootNode());
+        return importer;
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanIteration() throws RepositoryException {
+        clean();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (archive != null) {
+            archive.close();
+            archive = null;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+
+/**
+ * {@code PackageGenerator} generates synthetic content packages of a configurable shape.
+ *
+ * The generated content is a tree of {@code nt:unstructured} nodes below the {@link #setRoot(String) root} with
+ * the given {@link #setDepth(int) depth} and {@link #setFanOut(int) fan-out}. Each node has a number of string
+ * properties, the leaf nodes have a number of {@code nt:file} children with binaries of the given size, and a
+ * fraction of the nodes, see {@link #setAclDensity(double)}, have an access control list. The content of the
+ * generated packages only depends on the configuration, so that the results of different runs are comparable.
+ *
+ * Each node is serialized into a {@code .content.xml} of its own directory, which is the layout packages
+ * assembled by vault have. Alternatively the complete tree can be written as a single docview document, see
+ * {@link #writeDocView(OutputStream)}.
+ */
+public class PackageGenerator {
+
+    private static final String NAMESPACES = " xmlns:jcr=\"http://www.jcp.org/jcr/1.0\""
+            + " xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\""
+            + " xmlns:rep=\"internal\"";
+
+    private String root = "/content/bench";
+
+    private int depth = 3;
+
+    private int fanOut = 10;
+
+    private int properties = 10;
+
+    private int files = 1;
+
+    private int binarySize = 1024;
+
+    private double aclDensity = 0.0;
+
+    private long seed = 42;
+
+    /**
+     * the number of nodes written so far. used to distribute the ACLs.
+     */
+    private int nodeCount;
+
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * Sets the path of the root node of the generated content, which is also the root of the package filter.
+     * Defaults to {@code /content/bench}.
+     * @param root the absolute path
+     */
+    public void setRoot(String root) {
+        this.root = root;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets the number of node levels below the root node. Defaults to {@code 3}.
+     * @param depth the depth
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Sets the number of child nodes of each non-leaf node. Defaults to {@code 10}.
+     * @param fanOut the number of children
+     */
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    public int getProperties() {
+        return properties;
+    }
+
+    /**
+     * Sets the number of string properties of each node. Defaults to {@code 10}.
+     * @param properties the number of properties
+     */
+    public void setProperties(int properties) {
+        this.properties = properties;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Sets the number of files of each leaf node. Defaults to {@code 1}.
+     * @param files the number of files
+     */
+    public void setFiles(int files) {
+        this.files = files;
+    }
+
+    public int getBinarySize() {
+        return binarySize;
+    }
+
+    /**
+     * Sets the size of the binaries of the files. Defaults to {@code 1024}.
+     * @param binarySize the size in bytes
+     */
+    public void setBinarySize(int binarySize) {
+        this.binarySize = binarySize;
+    }
+
+    public double getAclDensity() {
+        return aclDensity;
+    }
+
+    /**
+     * Sets the fraction of nodes that have an access control list, between {@code 0} (none) and {@code 1} (all).
+     * Defaults to {@code 0}.
+     * @param aclDensity the fraction of nodes with an ACL
+     */
+    public void setAclDensity(double aclDensity) {
+        this.aclDensity = aclDensity;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the generated binaries.
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the number of nodes of the generated tree, not counting the files.
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        int count = 1;
+        int level = 1;
+        for (int i = 0; i < depth; i++) {
+            level *= fanOut;
+            count += level;
+        }
+        return count;
+    }
+
+    /**
+     * Generates a package into the given file.
+     * @param file the package file
+     * @return the file
+     * @throws IOException if an I/O error occurs
+     */
+    public File generate(File file) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            generate(zip);
+        } finally {
+            zip.close();
+        }
+        return file;
+    }
+
+    /**
+     * Generates a package into the given zip stream.
+     * @param zip the zip stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void generate(ZipOutputStream zip) throws IOException {
+        nodeCount = 0;
+        Random random = new Random(seed);
+
+        putEntry(zip, "META-INF/vault/filter.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<workspaceFilter version=\"1.0\">\n"
+                + "    <filter root=\"" + root + "\"/>\n"
+                + "</workspaceFilter>\n");
+        Properties props = new Properties();
+        props.setProperty(PackageProperties.NAME_GROUP, "jackrabbit/benchmarks");
+        props.setProperty(PackageProperties.NAME_NAME, "generated-" + depth + "-" + fanOut);
+        props.setProperty(PackageProperties.NAME_VERSION, "1.0");
+        props.setProperty(PackageProperties.NAME_DESCRIPTION, "depth=" + depth + ", fanOut=" + fanOut
+                + ", properties=" + properties + ", files=" + files + ", binarySize=" + binarySize
+                + ", aclDensity=" + aclDensity);
+        zip.putNextEntry(new ZipEntry("META-INF/vault/properties.xml"));
+        props.storeToXML(zip, "generated package");
+        zip.closeEntry();
+
+        // ancestors of the root
+        String path = "";
+        String[] segments = root.substring(1).split("/");
+        for (int i = 0; i < segments.length - 1; i++) {
+            path += "/" + segments[i];
+            putEntry(zip, "jcr_root" + path + "/.content.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<jcr:root" + NAMESPACES + " jcr:primaryType=\"nt:unstructured\"/>\n");
+        }
+        generate(zip, random, "jcr_root" + root, 0);
+    }
+
+    private void generate(ZipOutputStream zip, Random random, String dir, int level) throws IOException {
+        boolean acl = nextHasAcl();
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<jcr:root");
+        xml.append(NAMESPACES);
+        appendProperties(xml, dir.substring(dir.lastIndexOf('/') + 1), acl);
+        xml.append("/>\n");
+        putEntry(zip, dir + "/.content.xml", xml.toString());
+        if (acl) {
+            putEntry(zip, dir + "/_rep_policy.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<jcr:root" + NAMESPACES + " jcr:primaryType=\"rep:ACL\">\n"
+                    + "    <allow jcr:primaryType=\"rep:GrantACE\" rep:principalName=\"everyone\""
+                    + " rep:privileges=\"{Name}[jcr:read]\"/>\n"
+                    + "</jcr:root>\n");
+        }
+        if (level < depth) {
+            for (int i = 0; i < fanOut; i++) {
+                generate(zip, random, dir + "/node" + i, level + 1);
+            }
+        } else {
+            byte[] data = new byte[binarySize];
+            for (int i = 0; i < files; i++) {
+                random.nextBytes(data);
+                zip.putNextEntry(new ZipEntry(dir + "/file" + i + ".bin"));
+                zip.write(data);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Writes the generated tree as a single docview document. The files are omitted.
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeDocView(OutputStream out) throws IOException {
+        nodeCount = 0;
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        appendNode(xml, "jcr:root", 0);
+        out.write(xml.toString().getBytes("utf-8"));
+    }
+
+    private void appendNode(StringBuilder xml, String name, int level) {
+        boolean acl = nextHasAcl();
+        indent(xml, level).append('<').append(name);
+        if (level == 0) {
+            xml.append(NAMESPACES);
+        }
+        appendProperties(xml, name, acl);
+        xml.append(">\n");
+        if (acl) {
+            indent(xml, level + 1).append("<rep:policy jcr:primaryType=\"rep:ACL\">\n");
+            indent(xml, level + 2).append("<allow jcr:primaryType=\"rep:GrantACE\" rep:principalName=\"everyone\"")
+                    .append(" rep:privileges=\"{Name}[jcr:read]\"/>\n");
+            indent(xml, level + 1).append("</rep:policy>\n");
+        }
+        if (level < depth) {
+            for (int i = 0; i < fanOut; i++) {
+                appendNode(xml, "node" + i, level + 1);
+            }
+        }
+        indent(xml, level).append("</").append(name).append(">\n");
+    }
+
+    private void appendProperties(StringBuilder xml, String name, boolean acl) {
+        xml.append(" jcr:primaryType=\"nt:unstructured\"");
+        if (acl) {
+            xml.append(" jcr:mixinTypes=\"[rep:AccessControllable]\"");
+        }
+        for (int i = 0; i < properties; i++) {
+            xml.append(" prop").append(i).append("=\"").append(name).append(" value ").append(i).append('"');
+        }
+    }
+
+    /**
+     * Decides if the next node has an ACL, so that the ACLs are evenly spread over the tree.
+     */
+    private boolean nextHasAcl() {
+        int n = nodeCount++;
+        return (int) ((n + 1) * aclDensity) > (int) (n * aclDensity);
+    }
+
+    private static StringBuilder indent(StringBuilder xml, int level) {
+        for (int i = 0; i < level; i++) {
+            xml.append("    ");
+        }
+        return xml;
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes("utf-8"));
+        zip.closeEntry();
+    }
+}
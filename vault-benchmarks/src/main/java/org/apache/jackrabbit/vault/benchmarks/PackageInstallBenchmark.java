@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.impl.JcrPackageManagerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@code PackageInstallBenchmark} measures the installation of an uploaded package, which in addition to the
+ * import covers the extraction of the package from the repository, its sub packages and the install hooks.
+ */
+public class PackageInstallBenchmark extends AbstractBenchmark {
+
+    private JcrPackage pack;
+
+    @Override
+    protected void setup() throws Exception {
+        JcrPackageManagerImpl packMgr = new JcrPackageManagerImpl(admin);
+        pack = packMgr.upload(generatePackage(), false, true, null);
+    }
+
+    @Benchmark
+    public JcrPackage install() throws Exception {
+        ImportOptions opts = new ImportOptions();
+        opts.setAccessControlHandling(AccessControlHandling.OVERWRITE);
+        pack.install(opts);
+        return pack;
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanIteration() throws RepositoryException {
+        clean();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (pack != null) {
+            pack.close();
+            pack = null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.benchmarks;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.jackrabbit.vault.util.RepositoryCopier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@code RepositoryCopierBenchmark} measures {@link RepositoryCopier#copy} of the generated content to a sibling
+ * of its root.
+ */
+public class RepositoryCopierBenchmark extends AbstractBenchmark {
+
+    @Param({"1024"})
+    public int batchSize;
+
+    @Param({"1"})
+    public int threads;
+
+    private String dstPath;
+
+    @Override
+    protected void setup() throws Exception {
+        importPackage();
+        dstPath = generator.getRoot() + "-copy";
+    }
+
+    @Benchmark
+    public RepositoryCopier copy() {
+        RepositoryCopier copier = new RepositoryCopier();
+        copier.setBatchSize(batchSize);
+        copier.setThreads(threads);
+        copier.copy(admin, generator.getRoot(), admin, dstPath, true);
+        if (copier.getTotalNodes() < generator.getNodeCount()) {
+            throw new IllegalStateException("Copy of " + generator.getRoot() + " is incomplete.");
+        }
+        return copier;
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanIteration() throws RepositoryException {
+        BenchmarkRepository.clean(admin, dstPath);
+    }
+}
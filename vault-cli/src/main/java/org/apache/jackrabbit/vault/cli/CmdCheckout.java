@@ -46,6 +46,7 @@ import org.apache.jackrabbit.vault.vlt.actions.Checkout;
 public class CmdCheckout extends AbstractJcrFsCommand {
 
     private Option optForce;
+    private Option optIndex;
     //private Option optExclude;
     private Argument argLocalPath;
     private Argument argJcrPath;
@@ -77,6 +78,7 @@ public class CmdCheckout extends AbstractJcrFsCommand {
         VltContext vCtx = ctx.getVaultFsApp().createVaultContext(localFile);
         vCtx.setVerbose(cl.hasOption(OPT_VERBOSE));
         vCtx.setQuiet(cl.hasOption(OPT_QUIET));
+        vCtx.setUseIndex(cl.hasOption(optIndex));
         Checkout c = new Checkout(addr, jcrPath, localFile);
         c.setForce(cl.hasOption(optForce));
         vCtx.execute(c);
@@ -117,6 +119,10 @@ public class CmdCheckout extends AbstractJcrFsCommand {
                                 .withLongName("force")
                                 .withDescription("force checkout to overwrite local files if they already exist.")
                                 .create())
+                        .withOption(optIndex = new DefaultOptionBuilder()
+                                .withLongName("index")
+                                .withDescription("keep the entries of all directories in a single index file.")
+                                .create())
                         .withOption(OPT_VERBOSE)
                         .withOption(OPT_QUIET)
                         .withOption(argJcrPath)
@@ -45,6 +45,7 @@ import org.apache.jackrabbit.vault.vlt.actions.Checkout;
 public class CmdCheckoutCli extends AbstractVaultCommand {
 
     private Option optForce;
+    private Option optIndex;
     private Option optFilter;
     private Argument argLocalPath;
     private Argument argJcrPath;
@@ -90,6 +91,7 @@ public class CmdCheckoutCli extends AbstractVaultCommand {
         VltContext vCtx = app.createVaultContext(localFile);
         vCtx.setVerbose(cl.hasOption(OPT_VERBOSE));
         vCtx.setQuiet(cl.hasOption(OPT_QUIET));
+        vCtx.setUseIndex(cl.hasOption(optIndex));
         vCtx.setDefaultFilter((String) cl.getValue(optFilter));
         Checkout c = new Checkout(addr, jcrPath, localFile);
         c.setForce(cl.hasOption(optForce));
@@ -151,6 +153,10 @@ public class CmdCheckoutCli extends AbstractVaultCommand {
                                 .withLongName("force")
                                 .withDescription("force checkout to overwrite local files if they already exist.")
                                 .create())
+                        .withOption(optIndex = new DefaultOptionBuilder()
+                                .withLongName("index")
+                                .withDescription("keep the entries of all directories in a single index file.")
+                                .create())
                         .withOption(OPT_VERBOSE)
                         .withOption(OPT_QUIET)
                         .withOption(optFilter = new DefaultOptionBuilder()
@@ -56,6 +56,12 @@ public class CmdRcp extends AbstractVaultCommand {
         if (cl.hasOption(optResumeFrom)) {
             rcp.setResumeFrom(cl.getValue(optResumeFrom).toString());
         }
+        if (cl.hasOption(optThreads)) {
+            rcp.setThreads(Integer.parseInt(cl.getValue(optThreads).toString()));
+        }
+        if (cl.hasOption(optSplitDepth)) {
+            rcp.setSplitDepth(Integer.parseInt(cl.getValue(optSplitDepth).toString()));
+        }
         rcp.setUpdate(cl.hasOption(optUpdate));
         rcp.setOnlyNewer(cl.hasOption(optNewer));
         rcp.setNoOrdering(cl.hasOption(optNoOrdering));
@@ -100,6 +106,8 @@ public class CmdRcp extends AbstractVaultCommand {
     private Option optUpdate;
     private Option optNewer;
     private Option optNoOrdering;
+    private Option optThreads;
+    private Option optSplitDepth;
 
     protected Command createCommand() {
         return new CommandBuilder()
@@ -165,6 +173,24 @@ public class CmdRcp extends AbstractVaultCommand {
                                 .withLongName("no-ordering")
                                 .withDescription("disable node ordering for updated content")
                                 .create())
+                        .withOption(optThreads = new DefaultOptionBuilder()
+                                .withLongName("threads")
+                                .withDescription("number of threads that copy subtrees concurrently")
+                                .withArgument(new ArgumentBuilder()
+                                        .withName("threads")
+                                        .withMinimum(0)
+                                        .withMaximum(1)
+                                        .create())
+                                .create())
+                        .withOption(optSplitDepth = new DefaultOptionBuilder()
+                                .withLongName("split-depth")
+                                .withDescription("depth below the source node at which the tree is split into concurrently copied subtrees")
+                                .withArgument(new ArgumentBuilder()
+                                        .withName("depth")
+                                        .withMinimum(0)
+                                        .withMaximum(1)
+                                        .create())
+                                .create())
                         .withOption(srcAddr = new ArgumentBuilder()
                                 .withName("src")
                                 .withDescription("the repository address of the source tree")
@@ -0,0 +1,485 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.config;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.api.DumpContext;
+import org.apache.jackrabbit.vault.fs.api.ImportMode;
+import org.apache.jackrabbit.vault.fs.api.PathFilter;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.PathMapping;
+import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.filter.DefaultPathFilter;
+
+/**
+ * Compiled, read-only form of a {@link WorkspaceFilter} that evaluates the same decisions as the filter it was
+ * created from, but faster:
+ * <ul>
+ * <li>the roots of the filter sets are indexed in a path trie, so only the sets that cover a path are evaluated</li>
+ * <li>{@link DefaultPathFilter} patterns that are a literal path, a literal prefix followed by {@code .*} or
+ * a literal path followed by {@code (/.*)?} are evaluated with string comparisons instead of a regex</li>
+ * <li>the trie lookup of the parent of the last evaluated path is remembered per thread, so that siblings
+ * reuse the result of their ancestors</li>
+ * </ul>
+ * The compiled filter is a snapshot; changes to the filter sets of the base filter after compilation are not
+ * reflected. All non evaluating methods delegate to the base filter.
+ */
+public class CompiledWorkspaceFilter implements WorkspaceFilter {
+
+    private final WorkspaceFilter base;
+
+    private final ImportMode importModeOverride;
+
+    private final TrieNode trie = new TrieNode();
+
+    private final boolean hasSets;
+
+    /**
+     * lookup of the parent path of the last evaluated path of the current thread. kept per thread, so that
+     * concurrent tree walks don't evict each other's entry.
+     */
+    private final ThreadLocal<Lookup> lastParent = new ThreadLocal<Lookup>();
+
+    private CompiledWorkspaceFilter(WorkspaceFilter base) {
+        this.base = base;
+        this.importModeOverride = base instanceof DefaultWorkspaceFilter
+                ? ((DefaultWorkspaceFilter) base).getImportModeOverride()
+                : null;
+        List<PathFilterSet> sets = base.getFilterSets();
+        int index = 0;
+        for (PathFilterSet set: sets) {
+            CompiledSet cs = new CompiledSet(set, index++);
+            TrieNode node = trie;
+            node.hasSets = true;
+            String root = set.getRoot();
+            // filter sets store the "/" root as empty string
+            String key = "/".equals(root) ? "" : root;
+            int start = 0;
+            while (true) {
+                int idx = key.indexOf('/', start);
+                String segment = idx < 0 ? key.substring(start) : key.substring(start, idx);
+                node = node.addChild(segment);
+                node.hasSets = true;
+                if (idx < 0) {
+                    break;
+                }
+                start = idx + 1;
+            }
+            node.sets.add(cs);
+        }
+        hasSets = !sets.isEmpty();
+    }
+
+    /**
+     * Compiles the given workspace filter. If the filter is already compiled, it is returned as is.
+     * @param filter the filter
+     * @return the compiled filter or {@code null} if {@code filter} is {@code null}.
+     */
+    public static CompiledWorkspaceFilter compile(WorkspaceFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        if (filter instanceof CompiledWorkspaceFilter) {
+            return (CompiledWorkspaceFilter) filter;
+        }
+        return new CompiledWorkspaceFilter(filter);
+    }
+
+    /**
+     * Returns the filter this filter was compiled from.
+     * @return the base filter
+     */
+    public WorkspaceFilter getBase() {
+        return base;
+    }
+
+    /**
+     * Looks up the trie node and covering filter sets of the given path. The lookup of the parent path is
+     * remembered for the current thread, so that subsequent lookups of siblings only need to evaluate a single
+     * trie step.
+     */
+    private Lookup lookup(String path) {
+        int idx = path.lastIndexOf('/');
+        if (idx < 0) {
+            return Lookup.ROOT.step(trie, path);
+        }
+        String parentPath = path.substring(0, idx);
+        Lookup parent = lastParent.get();
+        if (parent == null || !parent.path.equals(parentPath)) {
+            parent = Lookup.ROOT;
+            int start = 0;
+            while (true) {
+                int next = parentPath.indexOf('/', start);
+                String segment = next < 0 ? parentPath.substring(start) : parentPath.substring(start, next);
+                parent = parent.step(parent == Lookup.ROOT ? trie : parent.node, segment);
+                if (next < 0) {
+                    break;
+                }
+                start = next + 1;
+            }
+            parent = parent.withPath(parentPath);
+            lastParent.set(parent);
+        }
+        return parent.step(parent.node, path.substring(idx + 1));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<PathFilterSet> getFilterSets() {
+        return base.getFilterSets();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<PathFilterSet> getPropertyFilterSets() {
+        return base.getPropertyFilterSets();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PathFilterSet getCoveringFilterSet(String path) {
+        if (isGloballyIgnored(path)) {
+            return null;
+        }
+        CompiledSet first = null;
+        for (CompiledSet cs: lookup(path).covering) {
+            if (first == null || cs.index < first.index) {
+                first = cs;
+            }
+        }
+        return first == null ? null : first.set;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ImportMode getImportMode(String path) {
+        if (importModeOverride != null) {
+            return importModeOverride;
+        }
+        if (!(base instanceof DefaultWorkspaceFilter)) {
+            return base.getImportMode(path);
+        }
+        PathFilterSet set = getCoveringFilterSet(path);
+        return set == null ? ImportMode.REPLACE : set.getImportMode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(String path) {
+        if (isGloballyIgnored(path)) {
+            return false;
+        }
+        for (CompiledSet cs: lookup(path).covering) {
+            if (cs.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean covers(String path) {
+        return !isGloballyIgnored(path) && !lookup(path).covering.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isAncestor(String path) {
+        if ("/".equals(path)) {
+            return hasSets;
+        }
+        TrieNode node = lookup(path).node;
+        return node != null && node.hasSets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isGloballyIgnored(String path) {
+        return base.isGloballyIgnored(path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getSource() {
+        return base.getSource();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getSourceAsString() {
+        return base.getSourceAsString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public WorkspaceFilter translate(PathMapping mapping) {
+        if (mapping == null) {
+            return this;
+        }
+        return compile(base.translate(mapping));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void dumpCoverage(Node rootNode, ProgressTrackerListener listener) throws RepositoryException {
+        base.dumpCoverage(rootNode, listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void dumpCoverage(Session session, ProgressTrackerListener listener, boolean skipJcrContent)
+            throws RepositoryException {
+        base.dumpCoverage(session, listener, skipJcrContent);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void dump(DumpContext ctx, boolean isLast) {
+        base.dump(ctx, isLast);
+    }
+
+    /**
+     * Node of the filter root trie.
+     */
+    private static class TrieNode {
+
+        private Map<String, TrieNode> children;
+
+        private final List<CompiledSet> sets = new ArrayList<CompiledSet>(1);
+
+        /**
+         * indicates if this node or any of its descendants is the root of a filter set.
+         */
+        private boolean hasSets;
+
+        private TrieNode addChild(String name) {
+            if (children == null) {
+                children = new HashMap<String, TrieNode>();
+            }
+            TrieNode child = children.get(name);
+            if (child == null) {
+                child = new TrieNode();
+                children.put(name, child);
+            }
+            return child;
+        }
+
+        private TrieNode getChild(String name) {
+            return children == null ? null : children.get(name);
+        }
+    }
+
+    /**
+     * Immutable result of a trie lookup.
+     */
+    private static class Lookup {
+
+        private static final Lookup ROOT = new Lookup(null, null, Collections.<CompiledSet>emptyList());
+
+        private final String path;
+
+        /**
+         * the trie node of the path or {@code null} if the path is not in the trie.
+         */
+        private final TrieNode node;
+
+        /**
+         * the filter sets covering the path.
+         */
+        private final List<CompiledSet> covering;
+
+        private Lookup(String path, TrieNode node, List<CompiledSet> covering) {
+            this.path = path;
+            this.node = node;
+            this.covering = covering;
+        }
+
+        private Lookup step(TrieNode parent, String segment) {
+            TrieNode child = parent == null ? null : parent.getChild(segment);
+            if (child == null) {
+                return new Lookup(null, null, covering);
+            }
+            if (child.sets.isEmpty()) {
+                return new Lookup(null, child, covering);
+            }
+            List<CompiledSet> list = new ArrayList<CompiledSet>(covering.size() + child.sets.size());
+            list.addAll(covering);
+            list.addAll(child.sets);
+            return new Lookup(null, child, list);
+        }
+
+        private Lookup withPath(String path) {
+            return new Lookup(path, node, covering);
+        }
+    }
+
+    /**
+     * Compiled form of a path filter set.
+     */
+    private static class CompiledSet {
+
+        private final PathFilterSet set;
+
+        private final int index;
+
+        private final Matcher[] matchers;
+
+        private final boolean[] includes;
+
+        private CompiledSet(PathFilterSet set, int index) {
+            this.set = set;
+            this.index = index;
+            List<PathFilterSet.Entry<PathFilter>> entries = set.getEntries();
+            matchers = new Matcher[entries.size()];
+            includes = new boolean[entries.size()];
+            int i = 0;
+            for (PathFilterSet.Entry<PathFilter> e: entries) {
+                matchers[i] = Matcher.create(e.getFilter());
+                includes[i] = e.isInclude();
+                i++;
+            }
+        }
+
+        /**
+         * Same as {@link PathFilterSet#contains(String)} for a path that is covered by the set. The entries are
+         * evaluated in reverse order, since the last matching entry decides.
+         */
+        private boolean contains(String path) {
+            if (matchers.length == 0) {
+                return true;
+            }
+            for (int i = matchers.length - 1; i >= 0; i--) {
+                if (matchers[i].matches(path)) {
+                    return includes[i];
+                }
+            }
+            return !includes[0];
+        }
+    }
+
+    /**
+     * Evaluates a path filter.
+     */
+    private abstract static class Matcher {
+
+        private static final String ANY_SUFFIX = ".*";
+
+        private static final String SELF_OR_DESCENDANTS_SUFFIX = "(/.*)?";
+
+        abstract boolean matches(String path);
+
+        /**
+         * Creates a matcher for the given filter. Literal patterns of {@link DefaultPathFilter}s are evaluated
+         * with string comparisons, all other filters are delegated.
+         */
+        private static Matcher create(final PathFilter filter) {
+            if (filter.getClass() == DefaultPathFilter.class) {
+                String pattern = ((DefaultPathFilter) filter).getPattern();
+                if (pattern.startsWith("^")) {
+                    pattern = pattern.substring(1);
+                }
+                StringBuilder literal = new StringBuilder();
+                int end = parseLiteral(pattern, literal);
+                String rest = pattern.substring(end);
+                if (rest.endsWith("$") && !rest.endsWith("\\$")) {
+                    rest = rest.substring(0, rest.length() - 1);
+                }
+                final String prefix = literal.toString();
+                if (rest.isEmpty()) {
+                    return new Matcher() {
+                        boolean matches(String path) {
+                            return path.equals(prefix);
+                        }
+                    };
+                } else if (rest.equals(ANY_SUFFIX)) {
+                    return new Matcher() {
+                        boolean matches(String path) {
+                            return path.startsWith(prefix);
+                        }
+                    };
+                } else if (rest.equals(SELF_OR_DESCENDANTS_SUFFIX)) {
+                    final String descendantPrefix = prefix + "/";
+                    return new Matcher() {
+                        boolean matches(String path) {
+                            return path.equals(prefix) || path.startsWith(descendantPrefix);
+                        }
+                    };
+                }
+            }
+            return new Matcher() {
+                boolean matches(String path) {
+                    return filter.matches(path);
+                }
+            };
+        }
+
+        /**
+         * Parses the literal prefix of the given regular expression.
+         * @param pattern the pattern
+         * @param literal receives the unescaped literal
+         * @return the index of the first character that is not part of the literal
+         */
+        private static int parseLiteral(String pattern, StringBuilder literal) {
+            int i = 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i);
+                if (c == '\\') {
+                    // only escaped non alphanumeric characters are literals. eg \. but not \d or \Q
+                    if (i + 1 < pattern.length() && !Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+                        literal.append(pattern.charAt(i + 1));
+                        i += 2;
+                        continue;
+                    }
+                    return i;
+                }
+                if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+                    return i;
+                }
+                literal.append(c);
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -155,6 +155,14 @@ public class DefaultWorkspaceFilter implements Dumpable, WorkspaceFilter {
         this.importMode = importMode;
     }
 
+    /**
+     * Returns the global import mode override.
+     * @return the import mode override or {@code null} if not set.
+     */
+    ImportMode getImportModeOverride() {
+        return importMode;
+    }
+
     /**
      * {@inheritDoc}
      */
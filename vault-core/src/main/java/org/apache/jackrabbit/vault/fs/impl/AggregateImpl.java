@@ -573,7 +573,7 @@ public class AggregateImpl implements Aggregate {
     }
 
     private boolean includesProperty(String propertyPath) {
-        for (PathFilterSet filterSet: mgr.getWorkspaceFilter().getPropertyFilterSets()) {
+        for (PathFilterSet filterSet: mgr.getCompiledWorkspaceFilter().getPropertyFilterSets()) {
             if (!filterSet.contains(propertyPath)) {
                 return false;
             }
@@ -695,9 +695,9 @@ public class AggregateImpl implements Aggregate {
         while (nIter.hasNext()) {
             Node n = nIter.nextNode();
             String path = n.getPath();
-            PathFilterSet coverSet = mgr.getWorkspaceFilter().getCoveringFilterSet(path);
-            boolean isAncestor = mgr.getWorkspaceFilter().isAncestor(path);
-            boolean isIncluded = mgr.getWorkspaceFilter().contains(path);
+            PathFilterSet coverSet = mgr.getCompiledWorkspaceFilter().getCoveringFilterSet(path);
+            boolean isAncestor = mgr.getCompiledWorkspaceFilter().isAncestor(path);
+            boolean isIncluded = mgr.getCompiledWorkspaceFilter().contains(path);
             if (coverSet == null && !isAncestor) {
                 continue;
             }
@@ -51,6 +51,7 @@ import org.apache.jackrabbit.vault.fs.api.RepositoryAddress;
 import org.apache.jackrabbit.vault.fs.api.VaultFsConfig;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.AbstractVaultFsConfig;
+import org.apache.jackrabbit.vault.fs.config.CompiledWorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.ConfigurationException;
 import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.impl.aggregator.RootAggregator;
@@ -121,6 +122,11 @@ public class AggregateManagerImpl implements AggregateManager {
      */
     private final WorkspaceFilter workspaceFilter;
 
+    /**
+     * compiled form of {@link #workspaceFilter} that is used for the filter decisions
+     */
+    private final CompiledWorkspaceFilter compiledFilter;
+
     private AggregatorTracker tracker;
 
     /**
@@ -304,6 +310,7 @@ public class AggregateManagerImpl implements AggregateManager {
         this.ownSession = ownSession;
         this.config = config;
         workspaceFilter = wspFilter;
+        compiledFilter = CompiledWorkspaceFilter.compile(wspFilter);
         aggregatorProvider = new AggregatorProvider(config.getAggregators());
         artifactHandlers = Collections.unmodifiableList(config.getHandlers());
 
@@ -460,6 +467,26 @@ public class AggregateManagerImpl implements AggregateManager {
         return workspaceFilter;
     }
 
+    /**
+     * Returns the compiled workspace filter of this manager. It makes the same decisions as the filter returned
+     * by {@link #getWorkspaceFilter()}, but is only meant for the filter checks of the aggregates and handlers.
+     * @return the compiled workspace filter
+     */
+    public WorkspaceFilter getCompiledWorkspaceFilter() {
+        return compiledFilter;
+    }
+
+    /**
+     * Returns the compiled workspace filter of the given manager if available.
+     * @param mgr the aggregate manager
+     * @return the workspace filter
+     */
+    public static WorkspaceFilter getCompiledWorkspaceFilter(AggregateManager mgr) {
+        return mgr instanceof AggregateManagerImpl
+                ? ((AggregateManagerImpl) mgr).getCompiledWorkspaceFilter()
+                : mgr.getWorkspaceFilter();
+    }
+
     /**
      * Writes the artifact set back to the repository.
      *
@@ -30,6 +30,7 @@ import org.apache.jackrabbit.vault.fs.api.DumpContext;
 import org.apache.jackrabbit.vault.fs.api.Dumpable;
 import org.apache.jackrabbit.vault.fs.api.ImportInfo;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.impl.AggregateManagerImpl;
 import org.apache.jackrabbit.vault.fs.impl.ArtifactSetImpl;
 import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
 import org.apache.jackrabbit.vault.fs.spi.ACLManagement;
@@ -87,7 +88,7 @@ public abstract class AbstractArtifactHandler implements ArtifactHandler, Dumpab
             throws RepositoryException, IOException {
         Node node = file.getNode();
         String name = node.getName();
-        return accept(file.getManager().getWorkspaceFilter(),
+        return accept(AggregateManagerImpl.getCompiledWorkspaceFilter(file.getManager()),
                 name.length() == 0 ? node : node.getParent(),
                 name, (ArtifactSetImpl) artifacts);
     }
@@ -99,7 +100,7 @@ public abstract class AbstractArtifactHandler implements ArtifactHandler, Dumpab
                              ArtifactSet artifacts)
             throws RepositoryException, IOException {
         Node node = parent.getNode();
-        return accept(parent.getManager().getWorkspaceFilter(),
+        return accept(AggregateManagerImpl.getCompiledWorkspaceFilter(parent.getManager()),
                 node, name, (ArtifactSetImpl) artifacts);
     }
 
@@ -215,6 +215,12 @@ public class DocViewSAXImporter extends RejectingEntityDefaultHandler implements
      */
     private final boolean snsSupported;
 
+    /**
+     * snapshot of the session namespace prefixes and uris passed to the sysview import. the snapshot is
+     * cleared whenever this importer changes the namespace mappings of the session.
+     */
+    private String[][] sessionNamespaces;
+
     /**
      * Creates a new importer that will receive SAX events and imports the
      * items below the given root.
@@ -501,6 +507,7 @@ public class DocViewSAXImporter extends RejectingEntityDefaultHandler implements
             } catch (RepositoryException e1) {
                 throw new SAXException(e);
             }
+            sessionNamespaces = null;
             oldPrefix = prefix;
         } catch (RepositoryException e) {
             throw new SAXException(e);
@@ -512,6 +519,7 @@ public class DocViewSAXImporter extends RejectingEntityDefaultHandler implements
             } catch (RepositoryException e) {
                 throw new SAXException(e);
             }
+            sessionNamespaces = null;
         }
     }
 
@@ -551,6 +559,7 @@ public class DocViewSAXImporter extends RejectingEntityDefaultHandler implements
             } catch (RepositoryException e) {
                 throw new SAXException(e);
             }
+            sessionNamespaces = null;
             log.trace("   remapped: {}:{}", prefix, ns.uri);
         }
     }
@@ -967,18 +976,123 @@ public class DocViewSAXImporter extends RejectingEntityDefaultHandler implements
         return new StackElement(node, isNew);
     }
 
+    /**
+     * Returns the current namespace mappings of the session as array of prefix and uri pairs.
+     * @return the namespace mappings
+     * @throws RepositoryException if an error occurs
+     */
+    private String[][] getSessionNamespaces() throws RepositoryException {
+        if (sessionNamespaces == null) {
+            String[] prefixes = session.getNamespacePrefixes();
+            String[][] mappings = new String[prefixes.length][];
+            for (int i = 0; i < prefixes.length; i++) {
+                mappings[i] = new String[]{prefixes[i], session.getNamespaceURI(prefixes[i])};
+            }
+            sessionNamespaces = mappings;
+        }
+        return sessionNamespaces;
+    }
+
+    /**
+     * Checks if the node can be created using {@link Node#addNode(String, String)} instead of a sysview import.
+     * This is the case if the only protected properties are the primary type and the mixins, the node is not a
+     * same name sibling and the node type of the parent node allows the child node.
+     *
+     * @param currentNode the parent node
+     * @param ni the doc view node
+     * @return {@code true} if the node can be added directly.
+     * @throws RepositoryException if an error occurs
+     */
+    private boolean canAddNode(Node currentNode, DocViewNode ni) throws RepositoryException {
+        if (ni.primary == null || !ni.label.equals(ni.name)) {
+            return false;
+        }
+        for (DocViewProperty p : ni.props.values()) {
+            if (p != null && p.values != null && PROTECTED_PROPERTIES.contains(p.name)
+                    && !JcrConstants.JCR_PRIMARYTYPE.equals(p.name)
+                    && !JcrConstants.JCR_MIXINTYPES.equals(p.name)) {
+                return false;
+            }
+        }
+        if (currentNode.getPrimaryNodeType().canAddChildNode(ni.name, ni.primary)) {
+            return true;
+        }
+        for (NodeType mix : currentNode.getMixinNodeTypes()) {
+            if (mix.canAddChildNode(ni.name, ni.primary)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the node using {@link Node#addNode(String, String)} and adds the mixins.
+     *
+     * @param currentNode the parent node
+     * @param ni the doc view node
+     * @return the new node or {@code null} if the node could not be created this way.
+     */
+    private Node addNodeDirectly(Node currentNode, DocViewNode ni) {
+        Node node = null;
+        try {
+            node = currentNode.addNode(ni.name, ni.primary);
+            DocViewProperty mix = ni.props.get(JcrConstants.JCR_MIXINTYPES);
+            if (mix != null && mix.values != null) {
+                for (String v : mix.values) {
+                    node.addMixin(v);
+                }
+            }
+            return node;
+        } catch (RepositoryException e) {
+            log.debug("Unable to add node {} directly, using sysview import: {}", ni.name, e.toString());
+            if (node != null) {
+                try {
+                    node.remove();
+                } catch (RepositoryException e1) {
+                    log.warn("Unable to remove partially created node {}: {}", ni.name, e1.toString());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Sets the non protected properties of the doc view node on the given node.
+     * @param node the node
+     * @param ni the doc view node
+     */
+    private void applyProperties(Node node, DocViewNode ni) {
+        for (DocViewProperty p : ni.props.values()) {
+            if (p != null && p.values != null) {
+                if (!PROTECTED_PROPERTIES.contains(p.name)) {
+                    try {
+                        p.apply(node);
+                    } catch (RepositoryException e) {
+                        log.warn("Error while setting property (ignore): " + e);
+                    }
+                }
+            }
+        }
+    }
+
     private Node createNode(Node currentNode, DocViewNode ni)
             throws RepositoryException {
+        if (canAddNode(currentNode, ni)) {
+            Node node = addNodeDirectly(currentNode, ni);
+            if (node != null) {
+                applyProperties(node, ni);
+                return node;
+            }
+        }
         try {
             String parentPath = currentNode.getPath();
             final ContentHandler handler = session.getImportContentHandler(
                     parentPath,
                     ImportUUIDBehavior.IMPORT_UUID_COLLISION_REMOVE_EXISTING);
             // first define the current namespaces
-            String[] prefixes = session.getNamespacePrefixes();
             handler.startDocument();
-            for (String prefix : prefixes) {
-                handler.startPrefixMapping(prefix, session.getNamespaceURI(prefix));
+            for (String[] mapping : getSessionNamespaces()) {
+                handler.startPrefixMapping(mapping[0], mapping[1]);
             }
             AttributesImpl attrs = new AttributesImpl();
             attrs.addAttribute(Name.NS_SV_URI, "name", "sv:name", "CDATA", ni.name);
@@ -1058,17 +1172,7 @@ public class DocViewSAXImporter extends RejectingEntityDefaultHandler implements
                 }
             }
             // handle non protected properties
-            for (DocViewProperty p : ni.props.values()) {
-                if (p != null && p.values != null) {
-                    if (!PROTECTED_PROPERTIES.contains(p.name)) {
-                        try {
-                            p.apply(node);
-                        } catch (RepositoryException e) {
-                            log.warn("Error while setting property (ignore): " + e);
-                        }
-                    }
-                }
-            }
+            applyProperties(node, ni);
             // remove mix referenceable if it was temporarily added
             if (addMixRef) {
                 node.removeMixin(JcrConstants.MIX_REFERENCEABLE);
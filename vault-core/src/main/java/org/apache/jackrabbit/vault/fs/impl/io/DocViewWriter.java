@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.impl.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * {@code DocViewWriter} is a content handler that serializes the events of the {@link DocViewSAXFormatter} as
+ * UTF-8 encoded XML. The output is the same as the one of the {@code XMLSerializer} configured with an indent of
+ * 4, a line width of 0 and breaking each attribute, but the characters are escaped using a lookup table and are
+ * encoded directly into a byte buffer.
+ *
+ * Since the docview only consists of elements and attributes, character data and processing instructions are
+ * not supported.
+ */
+public class DocViewWriter implements ContentHandler {
+
+    private static final int INDENT = 4;
+
+    private static final byte[] XML_DECLARATION = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+
+    private static final byte[] XMLNS = ascii("xmlns");
+
+    /**
+     * escape sequences of the ascii characters in attribute values. {@code null} for characters that are printed
+     * as they are, and an empty array for the invalid xml characters.
+     */
+    private static final byte[][] ESCAPES = new byte[128][];
+    static {
+        for (int c = 0; c < ' '; c++) {
+            ESCAPES[c] = new byte[0];
+        }
+        ESCAPES['\t'] = ascii("&#x9;");
+        ESCAPES['\n'] = ascii("&#xa;");
+        ESCAPES['\r'] = ascii("&#xd;");
+        ESCAPES['<'] = ascii("&lt;");
+        ESCAPES['&'] = ascii("&amp;");
+        ESCAPES['"'] = ascii("&quot;");
+    }
+
+    private final OutputStream out;
+
+    private final byte[] buffer;
+
+    private int pos;
+
+    /**
+     * namespace declarations for the next element, sorted by uri
+     */
+    private Map<String, String> prefixes;
+
+    private String[] names = new String[16];
+
+    /**
+     * flags if the element at the respective depth has no children, yet
+     */
+    private boolean[] empty = new boolean[16];
+
+    private int depth = -1;
+
+    /**
+     * Creates a new writer.
+     * @param out the output stream
+     */
+    public DocViewWriter(OutputStream out) {
+        this(out, 8192);
+    }
+
+    /**
+     * Creates a new writer with the given buffer size.
+     * @param out the output stream
+     * @param bufferSize size of the buffer in bytes
+     */
+    public DocViewWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        // leave room for the longest sequence written at once (surrogate escape)
+        this.buffer = new byte[Math.max(bufferSize, 64)];
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startDocument() throws SAXException {
+        prefixes = null;
+        depth = -1;
+        pos = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endDocument() throws SAXException {
+        try {
+            flushBuffer();
+            out.flush();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        if (prefixes == null) {
+            prefixes = new TreeMap<String, String>();
+        }
+        prefixes.put(uri, prefix == null ? "" : prefix);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endPrefixMapping(String prefix) throws SAXException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        try {
+            if (depth < 0) {
+                write(XML_DECLARATION);
+            } else {
+                if (empty[depth]) {
+                    write('>');
+                }
+                write('\n');
+            }
+            push(qName == null || qName.length() == 0 ? localName : qName);
+            indent(depth);
+            write('<');
+            writeName(names[depth]);
+
+            // namespace declarations in the attributes are handled like the prefix mappings
+            int numAttrs = atts == null ? 0 : atts.getLength();
+            boolean[] skip = null;
+            for (int i = 0; atts != null && i < atts.getLength(); i++) {
+                String name = atts.getQName(i);
+                if (name.startsWith("xmlns") && (name.length() == 5 || name.charAt(5) == ':')) {
+                    startPrefixMapping(name.length() == 5 ? "" : name.substring(6), atts.getValue(i));
+                    if (skip == null) {
+                        skip = new boolean[numAttrs];
+                    }
+                    skip[i] = true;
+                    numAttrs--;
+                }
+            }
+            int numPrefixes = 0;
+            if (prefixes != null) {
+                numPrefixes = prefixes.size();
+                for (Map.Entry<String, String> e: prefixes.entrySet()) {
+                    write(' ');
+                    write(XMLNS);
+                    if (e.getValue().length() > 0) {
+                        write(':');
+                        writeName(e.getValue());
+                    }
+                    write('=');
+                    write('"');
+                    writeEscaped(e.getKey());
+                    write('"');
+                }
+                prefixes = null;
+            }
+
+            if (atts != null) {
+                boolean breakEachAttr = numAttrs + numPrefixes != 1;
+                for (int i = 0; i < atts.getLength(); i++) {
+                    if (skip != null && skip[i]) {
+                        continue;
+                    }
+                    if (breakEachAttr) {
+                        write('\n');
+                        indent(depth + 1);
+                    } else {
+                        write(' ');
+                    }
+                    String value = atts.getValue(i);
+                    writeName(atts.getQName(i));
+                    write('=');
+                    write('"');
+                    writeEscaped(value == null ? "" : value);
+                    write('"');
+                }
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (depth < 0) {
+            throw new SAXException("Unbalanced end element: " + qName);
+        }
+        try {
+            if (empty[depth]) {
+                write('/');
+                write('>');
+            } else {
+                write('\n');
+                indent(depth);
+                write('<');
+                write('/');
+                writeName(names[depth]);
+                write('>');
+            }
+            names[depth--] = null;
+            if (depth >= 0) {
+                empty[depth] = false;
+            } else {
+                write('\n');
+                flushBuffer();
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Not supported.
+     * @throws SAXException always
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        throw new SAXException("Character data is not supported by the docview writer.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    }
+
+    /**
+     * Not supported.
+     * @throws SAXException always
+     */
+    public void processingInstruction(String target, String data) throws SAXException {
+        throw new SAXException("Processing instructions are not supported by the docview writer.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void skippedEntity(String name) throws SAXException {
+    }
+
+    private void push(String name) {
+        depth++;
+        if (depth == names.length) {
+            String[] newNames = new String[depth * 2];
+            System.arraycopy(names, 0, newNames, 0, depth);
+            names = newNames;
+            boolean[] newEmpty = new boolean[depth * 2];
+            System.arraycopy(empty, 0, newEmpty, 0, depth);
+            empty = newEmpty;
+        }
+        names[depth] = name;
+        empty[depth] = true;
+    }
+
+    private void indent(int level) throws IOException {
+        for (int i = level * INDENT; i > 0; i--) {
+            write(' ');
+        }
+    }
+
+    /**
+     * Writes a name without escaping. Unpaired surrogates are replaced by '?' like the charset encoder does.
+     */
+    private void writeName(String name) throws IOException {
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                write(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1))) {
+                writeUTF8(Character.toCodePoint(c, name.charAt(++i)));
+            } else if (Character.isSurrogate(c)) {
+                write('?');
+            } else {
+                writeUTF8(c);
+            }
+        }
+    }
+
+    /**
+     * Writes an attribute value. Line breaks, tabs, {@code <}, {@code &} and {@code "} are replaced by references,
+     * supplementary characters are written as character references.
+     */
+    private void writeEscaped(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte[] escape = ESCAPES[c];
+                if (escape == null) {
+                    write(c);
+                } else if (escape.length > 0) {
+                    write(escape);
+                } else {
+                    invalid(value, i);
+                }
+            } else if (c < 0xd800 || (c >= 0xe000 && c < 0xfffe)) {
+                writeUTF8(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                write('&');
+                write('#');
+                write('x');
+                writeHex(Character.toCodePoint(c, value.charAt(++i)));
+                write(';');
+            } else {
+                invalid(value, i);
+            }
+        }
+    }
+
+    private static void invalid(String value, int i) throws IOException {
+        // report the character that makes the sequence invalid
+        char c = value.charAt(i);
+        if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+            c = value.charAt(i + 1);
+        }
+        throw new IOException("The character '" + c + "' is an invalid XML character");
+    }
+
+    private void writeHex(int cp) throws IOException {
+        String hex = Integer.toHexString(cp);
+        for (int i = 0; i < hex.length(); i++) {
+            write(hex.charAt(i));
+        }
+    }
+
+    private void writeUTF8(int cp) throws IOException {
+        if (pos + 4 > buffer.length) {
+            flushBuffer();
+        }
+        if (cp < 0x800) {
+            buffer[pos++] = (byte) (0xc0 | (cp >> 6));
+            buffer[pos++] = (byte) (0x80 | (cp & 0x3f));
+        } else if (cp < 0x10000) {
+            buffer[pos++] = (byte) (0xe0 | (cp >> 12));
+            buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            buffer[pos++] = (byte) (0x80 | (cp & 0x3f));
+        } else {
+            buffer[pos++] = (byte) (0xf0 | (cp >> 18));
+            buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            buffer[pos++] = (byte) (0x80 | (cp & 0x3f));
+        }
+    }
+
+    private void write(int b) throws IOException {
+        if (pos == buffer.length) {
+            flushBuffer();
+        }
+        buffer[pos++] = (byte) b;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (pos + bytes.length > buffer.length) {
+            flushBuffer();
+        }
+        System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+}
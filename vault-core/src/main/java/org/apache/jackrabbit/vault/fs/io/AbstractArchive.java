@@ -50,4 +50,12 @@ abstract class AbstractArchive implements Archive {
         Entry root = getEntry(rootPath);
         return root == null ? null : new SubArchive(this, root, asJcrRoot);
     }
+
+    /**
+     * Checks if the entries and input sources of this archive can be accessed by several threads concurrently.
+     * @return {@code true} if concurrent reads are supported.
+     */
+    boolean supportsConcurrentReads() {
+        return false;
+    }
 }
\ No newline at end of file
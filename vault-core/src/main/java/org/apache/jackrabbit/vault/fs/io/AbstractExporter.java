@@ -25,8 +25,12 @@ import java.io.StringWriter;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -69,6 +73,15 @@ public abstract class AbstractExporter {
 
     private boolean noMetaInf;
 
+    private int aggregationThreads;
+
+    private ExportMetrics metrics;
+
+    /**
+     * the prefetcher of the current export or {@code null} if the aggregates are collected serially.
+     */
+    private AggregatePrefetcher prefetcher;
+
     protected ExportInfo exportInfo = new ExportInfo();
 
     public boolean isVerbose() {
@@ -120,6 +133,46 @@ public abstract class AbstractExporter {
         this.noMetaInf = noMetaInf;
     }
 
+    /**
+     * Returns the number of threads used to collect the aggregates.
+     * @return the number of threads
+     * @since 3.1.35
+     */
+    public int getAggregationThreads() {
+        return aggregationThreads;
+    }
+
+    /**
+     * Sets the number of threads used to collect the aggregates. If greater than 1, the children of the exported
+     * directories are collected concurrently, each thread using its own clone of the session, and are written
+     * in the same order as with the serial export. Unsaved changes of the session are not visible to the clones,
+     * so the aggregates are collected serially if the session has pending changes or if it can't be cloned.
+     *
+     * @param aggregationThreads the number of threads
+     * @since 3.1.35
+     */
+    public void setAggregationThreads(int aggregationThreads) {
+        this.aggregationThreads = aggregationThreads;
+    }
+
+    /**
+     * Returns the export metrics.
+     * @return the metrics or {@code null}
+     * @since 3.1.35
+     */
+    public ExportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that record the duration of the export phases and the number of exported files.
+     * @param metrics the metrics or {@code null}
+     * @since 3.1.35
+     */
+    public void setMetrics(ExportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public ExportInfo getExportInfo() {
         return exportInfo;
     }
@@ -158,6 +211,8 @@ public abstract class AbstractExporter {
         open();
         AggregateManager mgr = parent.getFileSystem().getAggregateManager();
         mgr.startTracking(tracker == null ? null : tracker.getListener());
+        long start = System.nanoTime();
+        long metaInfTime = 0;
         if (!noMetaInf) {
             createDirectory(Constants.META_INF);
             createDirectory(Constants.META_DIR);
@@ -180,9 +235,25 @@ public abstract class AbstractExporter {
                 filter = filter.translate(new SimplePathMapping(mountPath, rootPath));
             }
             writeFile(filter.getSource(), Constants.META_DIR + "/" + Constants.FILTER_XML);
+            metaInfTime = System.nanoTime() - start;
+        }
+        start = System.nanoTime();
+        if (aggregationThreads > 1) {
+            prefetcher = AggregatePrefetcher.create(parent, aggregationThreads);
+        }
+        try {
+            export(parent, "");
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.close(mgr.getNodeTypes());
+                prefetcher = null;
+            }
+        }
+        if (metrics != null) {
+            metrics.recordSince(ExportMetrics.Phase.CONTENT, start);
         }
-        export(parent, "");
         if (!noMetaInf) {
+            start = System.nanoTime();
             writeFile(getNodeTypes(mgr.getSession(), mgr.getNodeTypes()), Constants.META_DIR + "/" + Constants.NODETYPES_CND);
             // update properties
             setProperty(MetaInf.CREATED, Calendar.getInstance());
@@ -191,9 +262,16 @@ public abstract class AbstractExporter {
             ByteArrayOutputStream tmpOut = new ByteArrayOutputStream();
             properties.storeToXML(tmpOut, "FileVault Package Properties", "utf-8");
             writeFile(new ByteArrayInputStream(tmpOut.toByteArray()), Constants.META_DIR + "/" + Constants.PROPERTIES_XML);
+            if (metrics != null) {
+                metrics.record(ExportMetrics.Phase.META_INF, metaInfTime + System.nanoTime() - start);
+            }
         }
         if (!noClose) {
+            start = System.nanoTime();
             close();
+            if (metrics != null) {
+                metrics.recordSince(ExportMetrics.Phase.CLOSE, start);
+            }
         }
         mgr.stopTracking();
     }
@@ -207,14 +285,64 @@ public abstract class AbstractExporter {
      */
     public void export(VaultFile parent, String relPath)
             throws RepositoryException, IOException {
+        if (prefetcher != null) {
+            export(prefetcher.prefetch(parent), relPath);
+            return;
+        }
         for (VaultFile vaultFile : parent.getChildren()) {
             String path = relPath + "/" + vaultFile.getName();
             if (vaultFile.isDirectory()) {
                 createDirectory(vaultFile, path);
+                directoryExported();
                 export(vaultFile, path);
             } else {
                 writeFile(vaultFile, path);
+                fileExported(vaultFile);
+            }
+        }
+    }
+
+    /**
+     * Exports the children collected by the prefetcher. The sub directories are prefetched ahead of the walk,
+     * at most 2 per thread and level.
+     */
+    private void export(Future<List<VaultFile>> children, String relPath)
+            throws RepositoryException, IOException {
+        List<VaultFile> files = prefetcher.get(children);
+        Iterator<VaultFile> ahead = files.iterator();
+        LinkedList<Future<List<VaultFile>>> pending = new LinkedList<Future<List<VaultFile>>>();
+        for (VaultFile vaultFile : files) {
+            while (pending.size() < 2 * aggregationThreads && ahead.hasNext()) {
+                VaultFile next = ahead.next();
+                if (next.isDirectory()) {
+                    pending.add(prefetcher.prefetch(next));
+                }
             }
+            String path = relPath + "/" + vaultFile.getName();
+            if (vaultFile.isDirectory()) {
+                createDirectory(vaultFile, path);
+                directoryExported();
+                export(pending.removeFirst(), path);
+            } else {
+                try {
+                    writeFile(vaultFile, path);
+                    fileExported(vaultFile);
+                } finally {
+                    prefetcher.dispose(vaultFile);
+                }
+            }
+        }
+    }
+
+    private void directoryExported() {
+        if (metrics != null) {
+            metrics.directoryExported();
+        }
+    }
+
+    private void fileExported(VaultFile file) {
+        if (metrics != null) {
+            metrics.fileExported(file.length());
         }
     }
 
@@ -0,0 +1,566 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.LoginException;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.UnsupportedRepositoryOperationException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.jackrabbit.vault.fs.Mounter;
+import org.apache.jackrabbit.vault.fs.api.AccessType;
+import org.apache.jackrabbit.vault.fs.api.Aggregate;
+import org.apache.jackrabbit.vault.fs.api.AggregateManager;
+import org.apache.jackrabbit.vault.fs.api.Artifact;
+import org.apache.jackrabbit.vault.fs.api.DumpContext;
+import org.apache.jackrabbit.vault.fs.api.SerializationType;
+import org.apache.jackrabbit.vault.fs.api.VaultFile;
+import org.apache.jackrabbit.vault.fs.api.VaultFileSystem;
+import org.apache.jackrabbit.vault.fs.api.VaultInputSource;
+import org.apache.jackrabbit.vault.fs.impl.AbstractArtifact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists and collects the children of vault directories on a pool of worker threads. Every worker uses its own
+ * vault filesystem that is mounted with a clone of the exporting session, so that the repository reads of
+ * sibling sub-aggregates are done concurrently. The collected files are detached from the repository: their
+ * content is spooled to memory or to a temporary file and can be written by the exporter in the order of the
+ * serial walk.
+ */
+class AggregatePrefetcher {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(AggregatePrefetcher.class);
+
+    /**
+     * size of the content that is spooled in memory before using a temporary file
+     */
+    private static final int SPOOL_THRESHOLD = 256 * 1024;
+
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+
+    /**
+     * the filesystem of the export
+     */
+    private final VaultFileSystem fs;
+
+    /**
+     * the idle worker filesystems
+     */
+    private final BlockingQueue<VaultFileSystem> workers;
+
+    /**
+     * all worker filesystems
+     */
+    private final List<VaultFileSystem> mounted;
+
+    /**
+     * spool buffers that are not disposed yet
+     */
+    private final Collection<DeferredFileOutputStream> buffers = new ConcurrentLinkedQueue<DeferredFileOutputStream>();
+
+    private final ExecutorService executor;
+
+    private AggregatePrefetcher(VaultFileSystem fs, List<VaultFileSystem> mounted) {
+        this.fs = fs;
+        this.mounted = mounted;
+        this.workers = new LinkedBlockingQueue<VaultFileSystem>(mounted);
+        final int id = poolNumber.incrementAndGet();
+        this.executor = Executors.newFixedThreadPool(mounted.size(), new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "vault-export-" + id + "-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Creates a new prefetcher for the filesystem of the given file. The worker sessions are created by
+     * impersonating the user of the filesystem session. If this is not possible, {@code null} is returned and
+     * the aggregates are collected serially.
+     *
+     * @param root the root file of the export
+     * @param threads the number of worker threads
+     * @return the prefetcher or {@code null} if the workers could not be created.
+     */
+    static AggregatePrefetcher create(VaultFile root, int threads) {
+        VaultFileSystem fs = root.getFileSystem();
+        AggregateManager mgr = fs.getAggregateManager();
+        Session session = mgr.getSession();
+        List<VaultFileSystem> mounted = new ArrayList<VaultFileSystem>(threads);
+        try {
+            if (session.hasPendingChanges()) {
+                log.debug("Session has pending changes. Aggregates are collected serially.");
+                return null;
+            }
+            String rootPath = fs.getRoot().getPath();
+            for (int i = 0; i < threads; i++) {
+                Session clone = impersonate(session);
+                if (clone == null) {
+                    unmount(mounted);
+                    return null;
+                }
+                try {
+                    mounted.add(Mounter.mount(mgr.getConfig(), mgr.getWorkspaceFilter(), mgr.getMountpoint(),
+                            rootPath, clone));
+                } catch (RepositoryException e) {
+                    clone.logout();
+                    throw e;
+                } catch (IOException e) {
+                    clone.logout();
+                    throw e;
+                }
+            }
+        } catch (RepositoryException e) {
+            log.warn("Unable to create worker sessions. Aggregates are collected serially: {}", e.toString());
+            unmount(mounted);
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to mount worker filesystems. Aggregates are collected serially: {}", e.toString());
+            unmount(mounted);
+            return null;
+        }
+        return new AggregatePrefetcher(fs, mounted);
+    }
+
+    /**
+     * Creates a worker session by impersonating the user of the given session. The impersonation fails if the
+     * user is not allowed to impersonate itself, for anonymous sessions and for remote repositories that do not
+     * support it. In this case the export falls back to the serial walk.
+     *
+     * @param session the session of the export
+     * @return the worker session or {@code null} if impersonation is not possible.
+     * @throws RepositoryException if an error occurs
+     */
+    private static Session impersonate(Session session) throws RepositoryException {
+        String userId = session.getUserID();
+        if (userId == null) {
+            log.info("Session is not bound to a user. Aggregates are collected serially.");
+            return null;
+        }
+        try {
+            return session.impersonate(new SimpleCredentials(userId, new char[0]));
+        } catch (LoginException e) {
+            log.info("User {} is not allowed to impersonate itself. Aggregates are collected serially: {}",
+                    userId, e.toString());
+        } catch (UnsupportedRepositoryOperationException e) {
+            log.info("Repository does not support impersonation. Aggregates are collected serially: {}",
+                    e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Schedules the collection of the children of the given directory.
+     * @param dir the directory
+     * @return the future of the collected children
+     */
+    Future<List<VaultFile>> prefetch(VaultFile dir) {
+        final String path = dir.getPath();
+        return executor.submit(new Callable<List<VaultFile>>() {
+            public List<VaultFile> call() throws Exception {
+                VaultFileSystem worker = workers.take();
+                try {
+                    return collect(worker, path);
+                } finally {
+                    workers.add(worker);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for the collected children.
+     * @param future the future returned by {@link #prefetch(VaultFile)}
+     * @return the children
+     * @throws RepositoryException if an error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    List<VaultFile> get(Future<List<VaultFile>> future) throws RepositoryException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while collecting aggregates.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RepositoryException) {
+                throw (RepositoryException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RepositoryException(cause);
+        }
+    }
+
+    /**
+     * Releases the content of a file returned by {@link #get(Future)}.
+     * @param file the file
+     */
+    void dispose(VaultFile file) {
+        if (file instanceof CollectedFile) {
+            DeferredFileOutputStream buffer = ((CollectedFile) file).buffer;
+            if (buffer != null) {
+                buffers.remove(buffer);
+                dispose(buffer);
+            }
+        }
+    }
+
+    /**
+     * Stops the workers, adds the node types used by the collected aggregates to the given set and releases
+     * the worker sessions.
+     * @param nodeTypes the set of node types
+     */
+    void close(Set<String> nodeTypes) {
+        executor.shutdownNow();
+        try {
+            // wait until the workers returned their filesystems
+            for (int i = 0; i < mounted.size(); i++) {
+                workers.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (VaultFileSystem worker: mounted) {
+            nodeTypes.addAll(worker.getAggregateManager().getNodeTypes());
+        }
+        unmount(mounted);
+        for (DeferredFileOutputStream buffer: buffers) {
+            dispose(buffer);
+        }
+        buffers.clear();
+    }
+
+    private List<VaultFile> collect(VaultFileSystem worker, String path) throws RepositoryException, IOException {
+        VaultFile dir = worker.getFile(path);
+        if (dir == null) {
+            throw new RepositoryException("Unable to collect aggregates. Directory disappeared: " + path);
+        }
+        Collection<? extends VaultFile> children = dir.getChildren();
+        List<VaultFile> files = new ArrayList<VaultFile>(children.size());
+        for (VaultFile child: children) {
+            files.add(new CollectedFile(child, child.isDirectory() ? null : spool(child.getArtifact())));
+        }
+        return files;
+    }
+
+    private DeferredFileOutputStream spool(Artifact a) throws RepositoryException, IOException {
+        if (a == null || a.getPreferredAccess() == AccessType.NONE) {
+            return null;
+        }
+        DeferredFileOutputStream buffer = new DeferredFileOutputStream(SPOOL_THRESHOLD, "__vltexport", ".tmp", null);
+        buffers.add(buffer);
+        OutputStream out = buffer;
+        try {
+            if (a.getPreferredAccess() == AccessType.SPOOL) {
+                a.spool(out);
+            } else {
+                InputStream in = a.getInputStream();
+                try {
+                    IOUtils.copy(in, out);
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            out.close();
+        }
+        return buffer;
+    }
+
+    private static void dispose(DeferredFileOutputStream buffer) {
+        if (!buffer.isInMemory()) {
+            FileUtils.deleteQuietly(buffer.getFile());
+        }
+    }
+
+    private static void unmount(List<VaultFileSystem> mounted) {
+        for (VaultFileSystem worker: mounted) {
+            Session s = worker.getAggregateManager().getSession();
+            try {
+                worker.unmount();
+            } catch (RepositoryException e) {
+                log.warn("Error while unmounting worker filesystem: {}", e.toString());
+            }
+            s.logout();
+        }
+    }
+
+    private static InputStream openStream(DeferredFileOutputStream buffer) throws IOException {
+        return buffer.isInMemory()
+                ? new ByteArrayInputStream(buffer.getData())
+                : new FileInputStream(buffer.getFile());
+    }
+
+    /**
+     * Vault file that was collected by a worker. It provides the detached content of the file. All other
+     * requests are delegated to the respective file of the export filesystem.
+     */
+    private class CollectedFile implements VaultFile {
+
+        private final String path;
+
+        private final String repoRelPath;
+
+        private final String aggregatePath;
+
+        private final String name;
+
+        private final boolean directory;
+
+        private final Artifact artifact;
+
+        private final DeferredFileOutputStream buffer;
+
+        /**
+         * the file of the export filesystem. resolved lazily since the export session must not be used by
+         * the workers.
+         */
+        private VaultFile original;
+
+        private CollectedFile(VaultFile file, DeferredFileOutputStream buffer) {
+            this.path = file.getPath();
+            this.repoRelPath = file.getRepoRelPath();
+            this.aggregatePath = file.getAggregatePath();
+            this.name = file.getName();
+            this.directory = file.isDirectory();
+            this.artifact = file.getArtifact() == null ? null : new CollectedArtifact(file.getArtifact(), buffer);
+            this.buffer = buffer;
+        }
+
+        private VaultFile getOriginal() throws IOException, RepositoryException {
+            if (original == null) {
+                original = fs.getFile(path);
+                if (original == null) {
+                    throw new RepositoryException("Collected file no longer exists: " + path);
+                }
+            }
+            return original;
+        }
+
+        private VaultFile getOriginalQuietly() {
+            try {
+                return getOriginal();
+            } catch (IOException e) {
+                log.warn("Unable to resolve collected file {}: {}", path, e.toString());
+            } catch (RepositoryException e) {
+                log.warn("Unable to resolve collected file {}: {}", path, e.toString());
+            }
+            return null;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getRepoRelPath() {
+            return repoRelPath;
+        }
+
+        public String getAggregatePath() {
+            return aggregatePath;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Artifact getArtifact() {
+            return artifact;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public boolean isTransient() {
+            return false;
+        }
+
+        public VaultFile getParent() throws IOException, RepositoryException {
+            return getOriginal().getParent();
+        }
+
+        public Aggregate getAggregate() {
+            VaultFile file = getOriginalQuietly();
+            return file == null ? null : file.getAggregate();
+        }
+
+        public Aggregate getControllingAggregate() {
+            VaultFile file = getOriginalQuietly();
+            return file == null ? null : file.getControllingAggregate();
+        }
+
+        public VaultFile getChild(String name) throws RepositoryException {
+            try {
+                return getOriginal().getChild(name);
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
+        }
+
+        public Collection<? extends VaultFile> getChildren() throws RepositoryException {
+            try {
+                return getOriginal().getChildren();
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
+        }
+
+        public Collection<? extends VaultFile> getRelated() throws RepositoryException {
+            try {
+                return getOriginal().getRelated();
+            } catch (IOException e) {
+                throw new RepositoryException(e);
+            }
+        }
+
+        public boolean canRead() {
+            return artifact != null && artifact.getPreferredAccess() != AccessType.NONE;
+        }
+
+        public long lastModified() {
+            return artifact == null ? 0 : artifact.getLastModified();
+        }
+
+        public long length() {
+            return artifact == null ? -1 : artifact.getContentLength();
+        }
+
+        public String getContentType() {
+            return artifact == null ? null : artifact.getContentType();
+        }
+
+        public VaultFileSystem getFileSystem() {
+            return fs;
+        }
+
+        public void invalidate() throws RepositoryException {
+            // nothing to invalidate
+        }
+
+        public void dump(DumpContext ctx, boolean isLast) {
+            ctx.println(isLast, "Collected vault file");
+            ctx.indent(isLast);
+            ctx.printf(false, "name: %s", name);
+            ctx.printf(false, "path: %s", path);
+            if (artifact != null) {
+                artifact.dump(ctx, true);
+            } else {
+                ctx.println(true, "Artifact: (null)");
+            }
+            ctx.outdent();
+        }
+    }
+
+    /**
+     * Artifact with spooled content.
+     */
+    private static class CollectedArtifact extends AbstractArtifact {
+
+        private final SerializationType serializationType;
+
+        private final long lastModified;
+
+        private final DeferredFileOutputStream buffer;
+
+        private CollectedArtifact(Artifact base, DeferredFileOutputStream buffer) {
+            super(base, base.getType());
+            this.serializationType = base.getSerializationType();
+            this.lastModified = base.getLastModified();
+            this.buffer = buffer;
+        }
+
+        public SerializationType getSerializationType() {
+            return serializationType;
+        }
+
+        public AccessType getPreferredAccess() {
+            return buffer == null ? AccessType.NONE : AccessType.STREAM;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getContentLength() {
+            return buffer == null ? -1 : buffer.getByteCount();
+        }
+
+        public InputStream getInputStream() throws IOException, RepositoryException {
+            if (buffer == null) {
+                return null;
+            }
+            return openStream(buffer);
+        }
+
+        public VaultInputSource getInputSource() throws IOException, RepositoryException {
+            if (buffer == null) {
+                return null;
+            }
+            return new VaultInputSource(openStream(buffer)) {
+
+                @Override
+                public long getContentLength() {
+                    return CollectedArtifact.this.getContentLength();
+                }
+
+                @Override
+                public long getLastModified() {
+                    return lastModified;
+                }
+            };
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.vault.fs.io;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -31,6 +32,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@code AutoSave}...
+ *
+ * The auto save either saves after a fixed threshold of modified nodes, or adapts the threshold after each save if
+ * a maximum threshold is set (see {@link #setMaxThreshold(int)}). In the latter case the threshold is tuned so that
+ * a save takes approximately {@link #getTargetSaveTime()} milliseconds and the approximate size of the transient
+ * changes does not exceed {@link #getMaxTransientSize()}.
  */
 public class AutoSave {
 
@@ -54,6 +60,46 @@ public class AutoSave {
      */
     private int threshold = 1024;
 
+    /**
+     * lower bound of the threshold if adaptive
+     */
+    private int minThreshold = 1;
+
+    /**
+     * upper bound of the threshold if adaptive. 0 disables the adaptive threshold.
+     */
+    private int maxThreshold;
+
+    /**
+     * desired duration of a save in milliseconds if adaptive
+     */
+    private long targetSaveTime = 1000;
+
+    /**
+     * approximate size in bytes of the transient changes that trigger a save if adaptive
+     */
+    private long maxTransientSize = 64 * 1024 * 1024;
+
+    /**
+     * approximate size in bytes of the changes since the last save
+     */
+    private long transientSize;
+
+    /**
+     * number of saves
+     */
+    private int numSaves;
+
+    /**
+     * total time spent in saves in milliseconds
+     */
+    private long totalSaveTime;
+
+    /**
+     * metrics that record the duration of each save
+     */
+    private ImportMetrics metrics;
+
     /**
      * set that records the missing mandatory items. save has to be delay until they are resolved
      */
@@ -89,9 +135,17 @@ public class AutoSave {
     public AutoSave copy() {
         AutoSave ret = new AutoSave();
         ret.threshold = threshold;
+        ret.minThreshold = minThreshold;
+        ret.maxThreshold = maxThreshold;
+        ret.targetSaveTime = targetSaveTime;
+        ret.maxTransientSize = maxTransientSize;
         ret.numModified = numModified;
         ret.lastSave = lastSave;
+        ret.transientSize = transientSize;
+        ret.numSaves = numSaves;
+        ret.totalSaveTime = totalSaveTime;
         ret.tracker = tracker;
+        ret.metrics = metrics;
         ret.dryRun = dryRun;
         ret.missingMandatory.addAll(missingMandatory);
         ret.debugFailEach = debugFailEach;
@@ -104,6 +158,15 @@ public class AutoSave {
         this.tracker = tracker;
     }
 
+    /**
+     * Sets the metrics that record the duration of each save.
+     * @param metrics the metrics or {@code null}
+     * @since 3.1.35
+     */
+    public void setMetrics(@Nullable ImportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public boolean isDryRun() {
         return dryRun;
     }
@@ -122,11 +185,13 @@ public class AutoSave {
 
     /**
      * Returns {@code true} if more than {@link #getThreshold()} nodes are
-     * modified.
+     * modified, or if the threshold is adaptive and the approximate size of the transient changes exceeds
+     * {@link #getMaxTransientSize()}.
      * @return {@code true} if threshold reached.
      */
     public boolean needsSave() {
-        boolean res = (numModified - lastSave) >= threshold;
+        boolean res = (numModified - lastSave) >= threshold
+                || (isAdaptive() && maxTransientSize > 0 && transientSize >= maxTransientSize);
         if (res && !missingMandatory.isEmpty()) {
             log.debug("Threshold of {} reached but still unresolved mandatory items.", threshold);
             res = false;
@@ -145,10 +210,11 @@ public class AutoSave {
             return;
         }
         int diff = numModified - lastSave;
-        log.debug("Threshold of {} reached. {} approx {} transient changes. {} unresolved", new Object[]{
+        log.debug("Threshold of {} reached. {} approx {} transient changes ({} bytes). {} unresolved", new Object[]{
                 threshold,
                 dryRun ? "dry run, reverting" : "saving",
                 diff,
+                transientSize,
                 missingMandatory.size()
         });
         if (tracker != null) {
@@ -168,18 +234,61 @@ public class AutoSave {
             if (dryRun) {
                 session.refresh(false);
             } else {
+                long start = System.nanoTime();
+                boolean conflict = false;
                 try {
                     session.save();
                     debugSaveCount++;
                 } catch (RepositoryException e) {
                     log.error("error during auto save - retrying after refresh...");
+                    conflict = true;
                     session.refresh(true);
                     session.save();
                     debugSaveCount++;
                 }
+                long nanos = System.nanoTime() - start;
+                long time = TimeUnit.NANOSECONDS.toMillis(nanos);
+                if (metrics != null) {
+                    metrics.record(ImportMetrics.Phase.SAVE, nanos);
+                }
+                numSaves++;
+                totalSaveTime += time;
+                if (isAdaptive()) {
+                    adapt(diff, time, conflict);
+                }
+                log.debug("Saved approx {} transient changes in {}ms. Threshold is {}.", new Object[]{diff, time, threshold});
+                if (tracker != null) {
+                    tracker.track("saved approx " + diff + " nodes in " + time + "ms (threshold " + threshold + ")", "");
+                }
             }
         }
         lastSave = numModified;
+        transientSize = 0;
+    }
+
+    /**
+     * Adjusts the threshold after a save of {@code diff} changes that took {@code time} milliseconds. The new
+     * threshold is the number of changes that can be saved within the target save time, but changes at most by a
+     * factor of 2. It is further limited by the number of changes that fit into the maximum transient size and
+     * halved if the save failed with a conflict.
+     */
+    private void adapt(int diff, long time, boolean conflict) {
+        long next;
+        if (conflict) {
+            next = threshold / 2;
+        } else {
+            next = time > 0 ? diff * targetSaveTime / time : 2L * threshold;
+            next = Math.max(threshold / 2, Math.min(2L * threshold, next));
+        }
+        if (maxTransientSize > 0 && transientSize > 0 && diff > 0) {
+            long bytesPerChange = Math.max(1, transientSize / diff);
+            next = Math.min(next, maxTransientSize / bytesPerChange);
+        }
+        next = Math.max(minThreshold, Math.min(maxThreshold, next));
+        if (next != threshold) {
+            log.debug("Adjusting auto save threshold from {} to {}", threshold, next);
+            threshold = (int) next;
+        }
     }
 
     /**
@@ -198,6 +307,123 @@ public class AutoSave {
         this.threshold = threshold;
     }
 
+    /**
+     * Returns {@code true} if the threshold is adjusted after each save.
+     * @return {@code true} if adaptive.
+     * @since 3.1.35
+     */
+    public boolean isAdaptive() {
+        return maxThreshold > 0 && threshold != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the lower bound of the adaptive threshold
+     * @return the minimum threshold
+     * @since 3.1.35
+     */
+    public int getMinThreshold() {
+        return minThreshold;
+    }
+
+    /**
+     * Sets the lower bound of the adaptive threshold
+     * @param minThreshold the minimum threshold. at least 1.
+     * @since 3.1.35
+     */
+    public void setMinThreshold(int minThreshold) {
+        this.minThreshold = Math.max(1, minThreshold);
+    }
+
+    /**
+     * Returns the upper bound of the adaptive threshold
+     * @return the maximum threshold or {@code 0} if the threshold is not adaptive.
+     * @since 3.1.35
+     */
+    public int getMaxThreshold() {
+        return maxThreshold;
+    }
+
+    /**
+     * Sets the upper bound of the adaptive threshold. A value greater than {@code 0} enables the adaptive
+     * threshold.
+     * @param maxThreshold the maximum threshold
+     * @since 3.1.35
+     */
+    public void setMaxThreshold(int maxThreshold) {
+        this.maxThreshold = maxThreshold;
+    }
+
+    /**
+     * Returns the desired duration of a save if adaptive.
+     * @return the target save time in milliseconds.
+     * @since 3.1.35
+     */
+    public long getTargetSaveTime() {
+        return targetSaveTime;
+    }
+
+    /**
+     * Sets the desired duration of a save if adaptive.
+     * @param targetSaveTime the target save time in milliseconds.
+     * @since 3.1.35
+     */
+    public void setTargetSaveTime(long targetSaveTime) {
+        this.targetSaveTime = targetSaveTime;
+    }
+
+    /**
+     * Returns the approximate size of the transient changes that triggers a save if adaptive.
+     * @return the size in bytes or {@code 0} if not limited.
+     * @since 3.1.35
+     */
+    public long getMaxTransientSize() {
+        return maxTransientSize;
+    }
+
+    /**
+     * Sets the approximate size of the transient changes that triggers a save if adaptive.
+     * @param maxTransientSize the size in bytes or {@code 0} if not limited.
+     * @since 3.1.35
+     */
+    public void setMaxTransientSize(long maxTransientSize) {
+        this.maxTransientSize = maxTransientSize;
+    }
+
+    /**
+     * Returns the number of saves
+     * @return the number of saves
+     * @since 3.1.35
+     */
+    public int getNumSaves() {
+        return numSaves;
+    }
+
+    /**
+     * Returns the total time spent in saves
+     * @return the time in milliseconds
+     * @since 3.1.35
+     */
+    public long getTotalSaveTime() {
+        return totalSaveTime;
+    }
+
+    /**
+     * Returns the number of modified nodes.
+     * @return the number of modified nodes.
+     */
+    int getNumModified() {
+        return numModified;
+    }
+
+    /**
+     * Sets the number of modified nodes of an already saved import.
+     * @param numModified the number of modified nodes.
+     */
+    void setNumModified(int numModified) {
+        this.numModified = numModified;
+        this.lastSave = numModified;
+    }
+
     /**
      * Adds {@code num} modified
      * @param num number of modified
@@ -208,6 +434,18 @@ public class AutoSave {
         return needsSave();
     }
 
+    /**
+     * Adds {@code num} modified with an approximate size of {@code size} bytes.
+     * @param num number of modified
+     * @param size approximate size of the modifications in bytes
+     * @return {@code true} if threshold is reached
+     * @since 3.1.35
+     */
+    public boolean modified(int num, long size) {
+        transientSize += size;
+        return modified(num);
+    }
+
     public void markMissing(@Nonnull String path) {
         missingMandatory.add(path);
     }
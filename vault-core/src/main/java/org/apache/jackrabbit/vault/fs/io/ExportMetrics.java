@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@code ExportMetrics} records the duration of the phases of exports, as well as the number of exported
+ * directories, files and bytes.
+ *
+ * @see AbstractExporter#setMetrics(ExportMetrics)
+ * @since 3.1.35
+ */
+public class ExportMetrics extends PhaseMetrics<ExportMetrics.Phase> {
+
+    /**
+     * The phases of an export.
+     */
+    public enum Phase {
+
+        /**
+         * writing of the meta-inf files, including the node types
+         */
+        META_INF,
+
+        /**
+         * export of the content
+         */
+        CONTENT,
+
+        /**
+         * closing of the exporter, i.e. finishing the archive
+         */
+        CLOSE
+    }
+
+    private final AtomicLong numDirectories = new AtomicLong();
+
+    private final AtomicLong numFiles = new AtomicLong();
+
+    private final AtomicLong numBytes = new AtomicLong();
+
+    public ExportMetrics() {
+        super(Phase.class);
+    }
+
+    /**
+     * Records an exported directory.
+     */
+    public void directoryExported() {
+        numDirectories.incrementAndGet();
+    }
+
+    /**
+     * Records an exported file.
+     * @param size the size of the file in bytes or {@code -1} if not known.
+     */
+    public void fileExported(long size) {
+        numFiles.incrementAndGet();
+        if (size > 0) {
+            numBytes.addAndGet(size);
+        }
+    }
+
+    /**
+     * Returns the number of exported directories.
+     * @return the number of directories
+     */
+    public long getNumDirectories() {
+        return numDirectories.get();
+    }
+
+    /**
+     * Returns the number of exported files.
+     * @return the number of files
+     */
+    public long getNumFiles() {
+        return numFiles.get();
+    }
+
+    /**
+     * Returns the size of the exported files which size is known in advance. The size of generated files, like
+     * the docview serializations, is not included.
+     * @return the size in bytes
+     */
+    public long getNumBytes() {
+        return numBytes.get();
+    }
+
+    /**
+     * Adds the metrics recorded by {@code other} to this metrics.
+     * @param other the other metrics
+     */
+    public void add(@Nonnull ExportMetrics other) {
+        addPhases(other);
+        numDirectories.addAndGet(other.getNumDirectories());
+        numFiles.addAndGet(other.getNumFiles());
+        numBytes.addAndGet(other.getNumBytes());
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        numDirectories.set(0);
+        numFiles.set(0);
+        numBytes.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "directories=" + getNumDirectories() + ", files=" + getNumFiles() + ", bytes=" + getNumBytes()
+                + ", " + super.toString();
+    }
+}
@@ -172,4 +172,9 @@ public class FileArchive extends AbstractArchive {
         }
     }
     
-}
\ No newline at end of file
+
+    @Override
+    boolean supportsConcurrentReads() {
+        return true;
+    }
+}
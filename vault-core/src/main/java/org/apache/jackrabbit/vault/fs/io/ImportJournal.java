@@ -0,0 +1,462 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.packaging.PackageProperties;
+import org.apache.jackrabbit.vault.util.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the checkpoint state of the {@link Importer} so that an import that was interrupted, e.g. by a restart
+ * of the process, can be resumed at the last checkpoint. The journal is a properties file that is replaced
+ * atomically after each auto save. The nodes to check in and the group memberships grow with the import and are
+ * therefore appended to a separate log file. Only the changes since the last checkpoint are appended, and the
+ * properties file records the length of the log that belongs to the checkpoint.
+ */
+class ImportJournal {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(ImportJournal.class);
+
+    private static final String VERSION = "2";
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private static final String KEY_VERSION = "version";
+
+    private static final String KEY_ARCHIVE = "archive";
+
+    private static final String KEY_ROOT = "root";
+
+    private static final String KEY_CHECKPOINT = "checkpoint";
+
+    private static final String KEY_NUM_MODIFIED = "numModified";
+
+    private static final String KEY_THRESHOLD = "threshold";
+
+    private static final String KEY_HAS_ERRORS = "hasErrors";
+
+    private static final String KEY_LOG_LENGTH = "logLength";
+
+    private static final String LOG_CHECKIN = "c";
+
+    private static final String LOG_MEMBERSHIP = "m";
+
+    private static final String PREFIX_IMPORTED = "imported.";
+
+    private static final String PREFIX_ORDER = "order.";
+
+    private final File file;
+
+    /**
+     * log of the nodes to check in and the group memberships
+     */
+    private final File logFile;
+
+    /**
+     * length of the log as of the last checkpoint
+     */
+    private long logLength;
+
+    /**
+     * identifies the archive and the import root of the import
+     */
+    private String archiveId;
+
+    private String rootPath;
+
+    /**
+     * path of the last tx info that was committed and saved
+     */
+    private String checkpoint;
+
+    private int numModified;
+
+    private int threshold;
+
+    private boolean hasErrors;
+
+    /**
+     * the nodes to check in and the group memberships that were loaded from the log
+     */
+    private final Set<String> nodesToCheckin = new LinkedHashSet<String>();
+
+    private final Map<String, String[]> memberships = new LinkedHashMap<String, String[]>();
+
+    /**
+     * the log entries that are appended with the next checkpoint
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * paths of the intermediates that were imported by an ancestor but not committed yet
+     */
+    private final Set<String> imported = new LinkedHashSet<String>();
+
+    /**
+     * node name lists that need to be restored after the import
+     */
+    private final Map<String, List<String>> orders = new LinkedHashMap<String, List<String>>();
+
+    ImportJournal(File file) {
+        this.file = file;
+        this.logFile = new File(file.getPath() + ".log");
+    }
+
+    /**
+     * Returns the id of the given archive that is used to check if a journal belongs to an import. The id consists
+     * of the package id, if any, and a digest of the package properties, the names of the archive entries and, for
+     * zip files, the size and modification time of the file. So a rebuilt package with the same id does not match
+     * the journal of the previous one.
+     * @param archive the archive
+     * @return the id
+     * @throws IOException if an I/O error occurs
+     */
+    static String getArchiveId(Archive archive) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Properties props = archive.getMetaInf() == null ? null : archive.getMetaInf().getProperties();
+        StringBuilder id = new StringBuilder();
+        if (props != null) {
+            id.append(props.getProperty(PackageProperties.NAME_GROUP, "")).append(":")
+                    .append(props.getProperty(PackageProperties.NAME_NAME, "")).append(":")
+                    .append(props.getProperty(PackageProperties.NAME_VERSION, "")).append(":");
+            for (String key: new TreeSet<String>(props.stringPropertyNames())) {
+                update(md, key + "=" + props.getProperty(key) + "\n");
+            }
+        }
+        if (archive instanceof ZipArchive) {
+            File zip = ((ZipArchive) archive).getFile();
+            if (zip != null) {
+                update(md, zip.length() + ":" + zip.lastModified() + "\n");
+            }
+        }
+        update(md, archive.getRoot(), "");
+        for (byte b: md.digest()) {
+            id.append(Integer.toHexString((b >> 4) & 0x0f)).append(Integer.toHexString(b & 0x0f));
+        }
+        return id.toString();
+    }
+
+    private static void update(MessageDigest md, Archive.Entry entry, String path) {
+        for (Archive.Entry child: entry.getChildren()) {
+            String childPath = path + "/" + child.getName();
+            update(md, childPath + (child.isDirectory() ? "/\n" : "\n"));
+            if (child.isDirectory()) {
+                update(md, child, childPath);
+            }
+        }
+    }
+
+    private static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(UTF8));
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Loads the journal if it exists and belongs to the import of the given archive at the given root.
+     * @param archiveId the id of the archive
+     * @param rootPath the path of the import root
+     * @return {@code true} if the journal was loaded
+     * @throws IOException if an I/O error occurs
+     */
+    boolean load(String archiveId, String rootPath) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        if (!VERSION.equals(props.getProperty(KEY_VERSION))
+                || !archiveId.equals(props.getProperty(KEY_ARCHIVE))
+                || !rootPath.equals(props.getProperty(KEY_ROOT))) {
+            log.warn("Ignoring import journal {} of a different import.", file.getPath());
+            return false;
+        }
+        this.archiveId = archiveId;
+        this.rootPath = rootPath;
+        checkpoint = props.getProperty(KEY_CHECKPOINT);
+        numModified = Integer.parseInt(props.getProperty(KEY_NUM_MODIFIED, "0"));
+        threshold = Integer.parseInt(props.getProperty(KEY_THRESHOLD, "0"));
+        hasErrors = Boolean.parseBoolean(props.getProperty(KEY_HAS_ERRORS));
+        logLength = Long.parseLong(props.getProperty(KEY_LOG_LENGTH, "0"));
+        if (!loadLog()) {
+            log.warn("Ignoring import journal {} with incomplete log.", file.getPath());
+            return false;
+        }
+        imported.addAll(getList(props, PREFIX_IMPORTED));
+        for (int i = 0; props.containsKey(PREFIX_ORDER + i); i++) {
+            orders.put(props.getProperty(PREFIX_ORDER + i), getList(props, PREFIX_ORDER + i + "."));
+        }
+        return checkpoint != null;
+    }
+
+    /**
+     * Reads the log up to the length recorded in the journal. Entries that were appended after that belong to
+     * an update that was interrupted and are ignored.
+     */
+    private boolean loadLog() throws IOException {
+        if (logLength == 0) {
+            return true;
+        }
+        if (logFile.length() < logLength) {
+            return false;
+        }
+        byte[] bytes = new byte[(int) logLength];
+        RandomAccessFile raf = new RandomAccessFile(logFile, "r");
+        try {
+            raf.readFully(bytes);
+        } finally {
+            raf.close();
+        }
+        for (String line: new String(bytes, UTF8).split("\n")) {
+            String[] fields = line.split(" ");
+            if (LOG_CHECKIN.equals(fields[0]) && fields.length == 2) {
+                nodesToCheckin.add(Text.unescape(fields[1]));
+            } else if (LOG_MEMBERSHIP.equals(fields[0]) && fields.length >= 2) {
+                String[] members = new String[fields.length - 2];
+                for (int i = 0; i < members.length; i++) {
+                    members[i] = Text.unescape(fields[i + 2]);
+                }
+                // the last entry of a group wins
+                String id = Text.unescape(fields[1]);
+                memberships.remove(id);
+                memberships.put(id, members);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the given nodes to check in. They are appended to the log with the next {@link #store()}.
+     * @param paths the paths of the nodes
+     */
+    void addNodesToCheckin(Collection<String> paths) {
+        for (String path: paths) {
+            pending.append(LOG_CHECKIN).append(' ').append(Text.escape(path)).append('\n');
+        }
+    }
+
+    /**
+     * Records the given group memberships. They are appended to the log with the next {@link #store()}.
+     * @param memberships the members by group id
+     */
+    void addMemberships(Map<String, String[]> memberships) {
+        for (Map.Entry<String, String[]> e: memberships.entrySet()) {
+            pending.append(LOG_MEMBERSHIP).append(' ').append(Text.escape(e.getKey()));
+            for (String member: e.getValue()) {
+                pending.append(' ').append(Text.escape(member));
+            }
+            pending.append('\n');
+        }
+    }
+
+    /**
+     * Writes the journal. The pending log entries are appended to the log first. The file is then written to a
+     * temporary file which replaces the journal.
+     * @throws IOException if an I/O error occurs
+     */
+    void store() throws IOException {
+        long newLogLength = logLength;
+        if (pending.length() > 0) {
+            byte[] bytes = pending.toString().getBytes(UTF8);
+            RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+            try {
+                // overwrite the entries of an interrupted update, if any
+                raf.seek(logLength);
+                raf.write(bytes);
+                raf.setLength(logLength + bytes.length);
+            } finally {
+                raf.close();
+            }
+            newLogLength += bytes.length;
+        }
+
+        Properties props = new Properties();
+        props.setProperty(KEY_VERSION, VERSION);
+        props.setProperty(KEY_ARCHIVE, archiveId);
+        props.setProperty(KEY_ROOT, rootPath);
+        props.setProperty(KEY_CHECKPOINT, checkpoint);
+        props.setProperty(KEY_NUM_MODIFIED, String.valueOf(numModified));
+        props.setProperty(KEY_THRESHOLD, String.valueOf(threshold));
+        props.setProperty(KEY_HAS_ERRORS, String.valueOf(hasErrors));
+        props.setProperty(KEY_LOG_LENGTH, String.valueOf(newLogLength));
+        setList(props, PREFIX_IMPORTED, imported);
+        int i = 0;
+        for (Map.Entry<String, List<String>> e: orders.entrySet()) {
+            props.setProperty(PREFIX_ORDER + i, e.getKey());
+            setList(props, PREFIX_ORDER + i + ".", e.getValue());
+            i++;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = FileUtils.openOutputStream(tmp);
+        try {
+            props.store(out, "vault import journal");
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        if (!tmp.renameTo(file)) {
+            // some platforms don't replace existing files
+            FileUtils.deleteQuietly(file);
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to write import journal " + file.getPath());
+            }
+        }
+        logLength = newLogLength;
+        pending.setLength(0);
+    }
+
+    /**
+     * Deletes the journal.
+     */
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete import journal {}", file.getPath());
+        }
+        if (logFile.exists() && !logFile.delete()) {
+            log.warn("Unable to delete import journal log {}", logFile.getPath());
+        }
+    }
+
+    /**
+     * Clears the state and initializes the journal for the import of the given archive at the given root.
+     * @param archiveId the id of the archive
+     * @param rootPath the path of the import root
+     */
+    void reset(String archiveId, String rootPath) {
+        this.archiveId = archiveId;
+        this.rootPath = rootPath;
+        checkpoint = null;
+        numModified = 0;
+        threshold = 0;
+        hasErrors = false;
+        logLength = 0;
+        pending.setLength(0);
+        nodesToCheckin.clear();
+        memberships.clear();
+        imported.clear();
+        orders.clear();
+    }
+
+    private static List<String> getList(Properties props, String prefix) {
+        List<String> ret = new ArrayList<String>();
+        for (int i = 0; props.containsKey(prefix + i); i++) {
+            ret.add(props.getProperty(prefix + i));
+        }
+        return ret;
+    }
+
+    private static void setList(Properties props, String prefix, Iterable<String> values) {
+        int i = 0;
+        for (String value: values) {
+            props.setProperty(prefix + i++, value);
+        }
+    }
+
+    String getCheckpoint() {
+        return checkpoint;
+    }
+
+    void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    int getNumModified() {
+        return numModified;
+    }
+
+    void setNumModified(int numModified) {
+        this.numModified = numModified;
+    }
+
+    int getThreshold() {
+        return threshold;
+    }
+
+    void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    boolean hasErrors() {
+        return hasErrors;
+    }
+
+    void setHasErrors(boolean hasErrors) {
+        this.hasErrors = hasErrors;
+    }
+
+    /**
+     * Returns the nodes to check in that were loaded from the journal.
+     * @return the paths of the nodes
+     */
+    Set<String> getNodesToCheckin() {
+        return nodesToCheckin;
+    }
+
+    /**
+     * Returns the group memberships that were loaded from the journal.
+     * @return the members by group id
+     */
+    Map<String, String[]> getMemberships() {
+        return memberships;
+    }
+
+    Set<String> getImported() {
+        return imported;
+    }
+
+    Map<String, List<String>> getOrders() {
+        return orders;
+    }
+}
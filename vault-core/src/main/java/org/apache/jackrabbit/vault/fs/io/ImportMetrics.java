@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@code ImportMetrics} records the duration of the phases of package imports, as well as the number of imported
+ * nodes and bytes. It can be set on the {@link ImportOptions}, and is shared by the copies of the options, so that
+ * the metrics of the sub packages are included.
+ *
+ * @since 3.1.35
+ */
+public class ImportMetrics extends PhaseMetrics<ImportMetrics.Phase> {
+
+    /**
+     * The phases of an import.
+     */
+    public enum Phase {
+
+        /**
+         * analysis of the archive
+         */
+        PREPARE,
+
+        /**
+         * installation of the node types
+         */
+        NODE_TYPES,
+
+        /**
+         * registration of the privileges
+         */
+        PRIVILEGES,
+
+        /**
+         * import of the content, including the auto saves
+         */
+        COMMIT,
+
+        /**
+         * a single auto save
+         */
+        SAVE,
+
+        /**
+         * check-in of the versionable nodes
+         */
+        CHECKIN,
+
+        /**
+         * application of the group memberships
+         */
+        MEMBERSHIPS,
+
+        /**
+         * application of the patches
+         */
+        PATCHES,
+
+        /**
+         * extraction of the sub packages of a package
+         */
+        SUB_PACKAGES
+    }
+
+    private final AtomicLong numNodes = new AtomicLong();
+
+    private final AtomicLong numBytes = new AtomicLong();
+
+    public ImportMetrics() {
+        super(Phase.class);
+    }
+
+    /**
+     * Adds {@code num} modified nodes with an approximate size of {@code size} bytes.
+     * @param num number of modified nodes
+     * @param size approximate size in bytes
+     */
+    public void modified(int num, long size) {
+        numNodes.addAndGet(num);
+        numBytes.addAndGet(size);
+    }
+
+    /**
+     * Returns the number of modified nodes.
+     * @return the number of nodes
+     */
+    public long getNumNodes() {
+        return numNodes.get();
+    }
+
+    /**
+     * Returns the approximate size of the imported content.
+     * @return the size in bytes
+     */
+    public long getNumBytes() {
+        return numBytes.get();
+    }
+
+    /**
+     * Adds the metrics recorded by {@code other} to this metrics.
+     * @param other the other metrics
+     */
+    public void add(@Nonnull ImportMetrics other) {
+        addPhases(other);
+        numNodes.addAndGet(other.getNumNodes());
+        numBytes.addAndGet(other.getNumBytes());
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        numNodes.set(0);
+        numBytes.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + getNumNodes() + ", bytes=" + getNumBytes() + ", " + super.toString();
+    }
+}
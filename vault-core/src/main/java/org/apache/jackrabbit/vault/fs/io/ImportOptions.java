@@ -49,6 +49,10 @@ public class ImportOptions {
 
     private int autoSave = -1;
 
+    private int autoSaveMaxThreshold = 0;
+
+    private int autoSaveMinThreshold = 0;
+
     private AccessControlHandling acHandling = null;
 
     private ImportMode importMode;
@@ -63,6 +67,14 @@ public class ImportOptions {
 
     private DependencyHandling dependencyHandling = null;
 
+    private int prepareParallelism = 0;
+
+    private boolean streaming = false;
+
+    private File checkpointJournal = null;
+
+    private ImportMetrics metrics = null;
+
     /**
      * Default constructor.
      */
@@ -85,6 +97,8 @@ public class ImportOptions {
             nonRecursive = base.nonRecursive;
             dryRun = base.dryRun;
             autoSave = base.autoSave;
+            autoSaveMaxThreshold = base.autoSaveMaxThreshold;
+            autoSaveMinThreshold = base.autoSaveMinThreshold;
             acHandling = base.acHandling;
             importMode = base.importMode;
             cndPattern = base.cndPattern;
@@ -92,6 +106,10 @@ public class ImportOptions {
             hookClassLoader = base.hookClassLoader;
             pathMapping = base.pathMapping;
             dependencyHandling = base.dependencyHandling;
+            prepareParallelism = base.prepareParallelism;
+            streaming = base.streaming;
+            checkpointJournal = base.checkpointJournal;
+            metrics = base.metrics;
         }
     }
 
@@ -109,6 +127,8 @@ public class ImportOptions {
         ret.nonRecursive = nonRecursive;
         ret.dryRun = dryRun;
         ret.autoSave = autoSave;
+        ret.autoSaveMaxThreshold = autoSaveMaxThreshold;
+        ret.autoSaveMinThreshold = autoSaveMinThreshold;
         ret.acHandling = acHandling;
         ret.importMode = importMode;
         ret.cndPattern = cndPattern;
@@ -116,6 +136,10 @@ public class ImportOptions {
         ret.hookClassLoader = hookClassLoader;
         ret.pathMapping = pathMapping;
         ret.dependencyHandling = dependencyHandling;
+        ret.prepareParallelism = prepareParallelism;
+        ret.streaming = streaming;
+        ret.checkpointJournal = checkpointJournal;
+        ret.metrics = metrics;
         return ret;
     }
 
@@ -292,6 +316,44 @@ public class ImportOptions {
         return autoSave;
     }
 
+    /**
+     * Sets the upper bound of the auto-save threshold. If greater than {@code 0}, the threshold is adapted after
+     * each save according to the measured save time and the approximate size of the saved changes, starting at
+     * {@link #getAutoSaveThreshold()}. See {@link AutoSave#setMaxThreshold(int)}
+     * @param threshold the maximum threshold in number of nodes.
+     * @since 3.1.35
+     */
+    public void setAutoSaveMaxThreshold(int threshold) {
+        this.autoSaveMaxThreshold = threshold;
+    }
+
+    /**
+     * Returns the upper bound of the adaptive auto-save threshold.
+     * @return the maximum threshold or {@code 0} if the threshold is fixed.
+     * @since 3.1.35
+     */
+    public int getAutoSaveMaxThreshold() {
+        return autoSaveMaxThreshold;
+    }
+
+    /**
+     * Sets the lower bound of the adaptive auto-save threshold. See {@link AutoSave#setMinThreshold(int)}
+     * @param threshold the minimum threshold in number of nodes.
+     * @since 3.1.35
+     */
+    public void setAutoSaveMinThreshold(int threshold) {
+        this.autoSaveMinThreshold = threshold;
+    }
+
+    /**
+     * Returns the lower bound of the adaptive auto-save threshold.
+     * @return the minimum threshold.
+     * @since 3.1.35
+     */
+    public int getAutoSaveMinThreshold() {
+        return autoSaveMinThreshold;
+    }
+
     /**
      * Returns the import mode.
      * @return the import mode.
@@ -383,4 +445,92 @@ public class ImportOptions {
     public void setDependencyHandling(DependencyHandling dependencyHandling) {
         this.dependencyHandling = dependencyHandling;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the number of threads that are used to analyze the archive before the content is imported.
+     * A value of {@code 0} or less indicates that the number of available processors is used if the archive
+     * supports concurrent reads.
+     * @return the parallelism of the prepare phase.
+     * @since 3.1.35
+     */
+    public int getPrepareParallelism() {
+        return prepareParallelism;
+    }
+
+    /**
+     * Sets the number of threads that are used to analyze the archive before the content is imported.
+     * @param prepareParallelism the parallelism. {@code 1} disables the parallel walk.
+     * @see #getPrepareParallelism()
+     * @since 3.1.35
+     */
+    public void setPrepareParallelism(int prepareParallelism) {
+        this.prepareParallelism = prepareParallelism;
+    }
+
+    /**
+     * Returns the 'streaming' flag.
+     * @return {@code true} if the archive is imported in streaming mode.
+     * @see #setStreaming(boolean)
+     * @since 3.1.35
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets the 'streaming' flag. If {@code true} the importer does not analyze the entire archive before the
+     * content is imported, but reads each directory of the archive only when it is imported. It also releases the
+     * imported sub trees after each auto save. This keeps the memory used by the import independent of the size
+     * of the package and is recommended for very large packages.
+     *
+     * @param streaming the 'streaming' flag
+     * @since 3.1.35
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Returns the checkpoint journal.
+     * @return the journal file or {@code null}
+     * @see #setCheckpointJournal(File)
+     * @since 3.1.35
+     */
+    public File getCheckpointJournal() {
+        return checkpointJournal;
+    }
+
+    /**
+     * Sets the file of the checkpoint journal, usually next to the imported package. If set, the importer records
+     * its state in this file after each auto save. If the file exists when the import starts and belongs to the
+     * same package and import root, the import resumes at the recorded checkpoint and skips the content that was
+     * already saved. The journal is deleted after the import completed successfully. It is not used for dry runs.
+     *
+     * @param checkpointJournal the journal file or {@code null}
+     * @since 3.1.35
+     */
+    public void setCheckpointJournal(File checkpointJournal) {
+        this.checkpointJournal = checkpointJournal;
+    }
+
+    /**
+     * Returns the import metrics.
+     * @return the metrics or {@code null}
+     * @see #setMetrics(ImportMetrics)
+     * @since 3.1.35
+     */
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that record the duration of the import phases and the number of imported nodes and bytes.
+     * The metrics are shared with the copies of these options, so the imports of sub packages are recorded, too.
+     *
+     * @param metrics the metrics or {@code null}
+     * @since 3.1.35
+     */
+    public void setMetrics(ImportMetrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -30,10 +30,18 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -56,6 +64,7 @@ import org.apache.jackrabbit.vault.fs.api.PathMapping;
 import org.apache.jackrabbit.vault.fs.api.SerializationType;
 import org.apache.jackrabbit.vault.fs.api.VaultInputSource;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.CompiledWorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.ConfigurationException;
 import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
@@ -68,6 +77,7 @@ import org.apache.jackrabbit.vault.fs.impl.io.ImportInfoImpl;
 import org.apache.jackrabbit.vault.fs.impl.io.InputSourceArtifact;
 import org.apache.jackrabbit.vault.fs.impl.io.XmlAnalyzer;
 import org.apache.jackrabbit.vault.fs.spi.ACLManagement;
+import org.apache.jackrabbit.vault.fs.spi.BatchUserManagement;
 import org.apache.jackrabbit.vault.fs.spi.CNDReader;
 import org.apache.jackrabbit.vault.fs.spi.DefaultNodeTypeSet;
 import org.apache.jackrabbit.vault.fs.spi.NodeTypeInstaller;
@@ -224,6 +234,11 @@ public class Importer {
      */
     private final ImportOptions opts;
 
+    /**
+     * the metrics of the import. either the ones from the import options or private ones.
+     */
+    private ImportMetrics metrics = new ImportMetrics();
+
     /**
      * path mapping from the import options
      */
@@ -259,6 +274,33 @@ public class Importer {
      */
     private Map<String, TxInfo> removedIntermediates = new LinkedHashMap<String, TxInfo>();
 
+    /**
+     * flag indicating that the directories of the archive are only read when they are imported.
+     */
+    private boolean streaming;
+
+    /**
+     * paths of the nodes imported by the infos whose sub tree is not completely committed yet. in streaming mode
+     * this is used to detect intermediates that are read after their node was already imported.
+     */
+    private final SortedSet<String> importedPaths = new TreeSet<String>();
+
+    /**
+     * node name lists of the nodes whose tx info is not read yet. only used in streaming mode.
+     */
+    private final SortedMap<String, NodeNameList> pendingNameLists = new TreeMap<String, NodeNameList>();
+
+    /**
+     * journal that persists the checkpoints or {@code null}
+     */
+    private ImportJournal journal;
+
+    /**
+     * paths of the intermediates that were imported by an ancestor but are not committed yet. only tracked if
+     * the checkpoints are persisted.
+     */
+    private final Set<String> markedIntermediates = new LinkedHashSet<String>();
+
     public Importer() {
          opts = new ImportOptions();
     }
@@ -271,6 +313,15 @@ public class Importer {
         return opts;
     }
 
+    /**
+     * Returns the metrics of the import. These are the metrics of the import options if set.
+     * @return the metrics
+     * @since 3.1.35
+     */
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
     public List<String> getSubPackages() {
         return subPackages;
     }
@@ -340,9 +391,17 @@ public class Importer {
         if (opts.getAutoSaveThreshold() >= 0) {
             autoSave.setThreshold(opts.getAutoSaveThreshold());
         }
+        autoSave.setMinThreshold(opts.getAutoSaveMinThreshold());
+        autoSave.setMaxThreshold(opts.getAutoSaveMaxThreshold());
         autoSave.setDryRun(opts.isDryRun());
         autoSave.setTracker(tracker);
 
+        // init metrics
+        if (opts.getMetrics() != null) {
+            metrics = opts.getMetrics();
+        }
+        autoSave.setMetrics(metrics);
+
         // enable this to test auto-recovery of batch saves
         // autoSave.setDebugFailEach(1);
         // autoSave.setThreshold(4);
@@ -383,6 +442,11 @@ public class Importer {
         for (PathFilterSet set: filter.getFilterSets()) {
             filterTree.put(set.getRoot(), set);
         }
+        filter = CompiledWorkspaceFilter.compile(filter);
+
+        streaming = opts.isStreaming();
+        importedPaths.clear();
+        pendingNameLists.clear();
 
         String parentPath = importRoot.getPath();
         if (parentPath.equals("/")) {
@@ -391,10 +455,12 @@ public class Importer {
 
         track("Collecting import information...", "");
         Session session = importRoot.getSession();
+        long start = System.nanoTime();
         TxInfo root = prepare(archive.getJcrRoot(), parentPath, new SessionNamespaceResolver(session));
         if (filter!=null && filter.getFilterSets() != null && filter.getFilterSets().size() > 0 ) {
             root = postFilter(root);
         }
+        metrics.recordSince(ImportMetrics.Phase.PREPARE, start);
 
         log.debug("Access control handling set to {}", opts.getAccessControlHandling());
         if (opts.isDryRun()) {
@@ -402,14 +468,29 @@ public class Importer {
             track("Simulating content import...", "");
         } else {
             track("Installing node types...", "");
+            start = System.nanoTime();
             installNodeTypes(session);
+            metrics.recordSince(ImportMetrics.Phase.NODE_TYPES, start);
             track("Installing privileges...", "");
+            start = System.nanoTime();
             registerPrivileges(session);
+            metrics.recordSince(ImportMetrics.Phase.PRIVILEGES, start);
             log.debug("Starting content import. autosave is {}", autoSave);
             track("Importing content...", "");
         }
-        cpAutosave = autoSave.copy();
         LinkedList<TxInfo> skipList = new LinkedList<TxInfo>();
+        markedIntermediates.clear();
+        if (opts.getCheckpointJournal() != null && !opts.isDryRun()) {
+            journal = new ImportJournal(opts.getCheckpointJournal());
+            String archiveId = ImportJournal.getArchiveId(archive);
+            if (!journal.load(archiveId, importRoot.getPath()) || !resume(root, skipList)) {
+                journal.reset(archiveId, importRoot.getPath());
+            }
+        } else {
+            journal = null;
+        }
+        cpAutosave = autoSave.copy();
+        start = System.nanoTime();
         while (recoveryRetryCounter++ < 10) {
             try {
                 commit(session, root, skipList);
@@ -435,15 +516,26 @@ public class Importer {
                     for (TxInfo i: removedIntermediates.values()) {
                         i.isIntermediate = 1;
                     }
+                    markedIntermediates.removeAll(removedIntermediates.keySet());
                     removedIntermediates.clear();
                     processedInfos.clear();
                     session.refresh(false);
                 }
             }
         }
+        metrics.recordSince(ImportMetrics.Phase.COMMIT, start);
+        start = System.nanoTime();
         checkinNodes(session);
+        metrics.recordSince(ImportMetrics.Phase.CHECKIN, start);
+        start = System.nanoTime();
         applyMemberships(session);
+        metrics.recordSince(ImportMetrics.Phase.MEMBERSHIPS, start);
+        start = System.nanoTime();
         applyPatches();
+        metrics.recordSince(ImportMetrics.Phase.PATCHES, start);
+        if (journal != null) {
+            journal.delete();
+        }
         if (opts.isDryRun()) {
             if (hasErrors) {
                 track("Package import simulation finished. (with errors, check logs!)", "");
@@ -461,6 +553,104 @@ public class Importer {
         }
     }
 
+    /**
+     * Restores the state of an interrupted import from the journal and prepares the skip list so that the import
+     * continues after the recorded checkpoint.
+     * @param root the root info
+     * @param skipList the skip list
+     * @return {@code true} if the import can be resumed
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean resume(TxInfo root, LinkedList<TxInfo> skipList) throws IOException {
+        String path = journal.getCheckpoint();
+        TxInfo info = root.path.equals(path) ? root : null;
+        if (path.startsWith(root.path + "/")) {
+            info = root;
+            for (String name: Text.explode(path.substring(root.path.length()), '/')) {
+                if (info.entry != null) {
+                    expand(info);
+                }
+                info = info.children().get(name);
+                if (info == null) {
+                    break;
+                }
+            }
+        }
+        if (info == null) {
+            log.warn("Checkpoint {} of import journal {} not found in archive. Starting from beginning.",
+                    path, journal.getFile().getPath());
+            return false;
+        }
+        track("Resuming import after checkpoint at " + path, "");
+        cpTxInfo = info;
+        cpImportInfo = null;
+        while (info != null && info.parent != null) {
+            skipList.addFirst(info);
+            info = info.parent;
+        }
+        autoSave.setNumModified(journal.getNumModified());
+        if (autoSave.isAdaptive() && journal.getThreshold() > 0) {
+            autoSave.setThreshold(journal.getThreshold());
+        }
+        hasErrors = journal.hasErrors();
+        nodesToCheckin.addAll(journal.getNodesToCheckin());
+        memberships.putAll(journal.getMemberships());
+        for (String p: journal.getImported()) {
+            TxInfo im = intermediates.remove(p);
+            if (im != null) {
+                im.isIntermediate = 2;
+                markedIntermediates.add(p);
+            }
+            if (streaming) {
+                importedPaths.add(p);
+            }
+        }
+        for (Map.Entry<String, List<String>> e: journal.getOrders().entrySet()) {
+            NodeNameList nameList = new NodeNameList();
+            for (String name: e.getValue()) {
+                nameList.addName(name);
+            }
+            TxInfo subInfo = root.findChild(e.getKey());
+            if (subInfo != null) {
+                subInfo.nameList = nameList;
+            } else if (streaming) {
+                pendingNameLists.put(e.getKey(), nameList);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the state after the checkpoint at the given info in the journal.
+     * @param info the checkpoint info
+     */
+    private void writeJournal(TxInfo info) {
+        journal.setCheckpoint(info.path);
+        journal.setNumModified(autoSave.getNumModified());
+        journal.setThreshold(autoSave.getThreshold());
+        journal.setHasErrors(hasErrors);
+        journal.getImported().clear();
+        journal.getImported().addAll(markedIntermediates);
+        journal.getOrders().clear();
+        if (streaming) {
+            journal.getImported().addAll(importedPaths);
+            for (Map.Entry<String, NodeNameList> e: pendingNameLists.entrySet()) {
+                journal.getOrders().put(e.getKey(), new ArrayList<String>(e.getValue().getNames()));
+            }
+        }
+        // the child order of the ancestors is restored after their children are imported
+        for (TxInfo i = info; i != null; i = i.parent) {
+            if (i.nameList != null) {
+                journal.getOrders().put(i.path, new ArrayList<String>(i.nameList.getNames()));
+            }
+        }
+        try {
+            journal.store();
+        } catch (IOException e) {
+            log.warn("Unable to write import journal {}: {}", journal.getFile().getPath(), e.toString());
+        }
+    }
+
     private TxInfo postFilter(TxInfo root) {
         TxInfo modifierRoot = root;
         if (filter.contains(modifierRoot.path)){
@@ -562,7 +752,31 @@ public class Importer {
         }
         root.artifacts.add(new DirectoryArtifact(Text.getName(parentPath)));
 
-        prepare(jcrRoot, root, resolver);
+        PrepareResult result = new PrepareResult();
+        int parallelism = getPrepareParallelism();
+        if (streaming) {
+            // only collect what is needed before the import. the directories are read when they are committed.
+            log.debug("Preparing import in streaming mode");
+            scan(jcrRoot, parentPath, result);
+            root.entry = jcrRoot;
+        } else if (parallelism > 1) {
+            log.debug("Preparing import with parallelism of {}", parallelism);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new PrepareTask(jcrRoot, root, result));
+            } catch (PrepareException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+            result.attach(null);
+        } else {
+            prepare(jcrRoot, root, result, false);
+        }
+        intermediates.putAll(result.intermediates);
+        patches.addAll(result.patches);
+        subPackages.addAll(result.subPackages);
+        loadNodeTypes(result.cnds, resolver);
 
         // go over the filter roots and create intermediates for the parents if needed (bug #25370)
         for (PathFilterSet sets: filter.getFilterSets()) {
@@ -576,6 +790,9 @@ public class Importer {
             StringBuilder path = new StringBuilder();
             for (final String name : segments) {
                 path.append('/').append(name);
+                if (current.entry != null) {
+                    expand(current);
+                }
                 TxInfo child = current.children().get(name);
                 if (child == null) {
                     log.trace("Creating missing intermediate directory artifact for {}", name);
@@ -589,12 +806,65 @@ public class Importer {
         return root;
     }
 
-    private void prepare(Archive.Entry directory, TxInfo parentInfo, NamespaceResolver resolver)
-            throws IOException, RepositoryException {
+    /**
+     * Returns the number of threads used to walk the archive during {@link #prepare}. The archive is only
+     * walked concurrently if it supports reading entries from several threads.
+     * @return the parallelism
+     */
+    private int getPrepareParallelism() {
+        int parallelism = opts.getPrepareParallelism();
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (parallelism > 1 && !(archive instanceof AbstractArchive && ((AbstractArchive) archive).supportsConcurrentReads())) {
+            log.debug("Archive {} does not support concurrent reads. Preparing import serially.", archive);
+            parallelism = 1;
+        }
+        return parallelism;
+    }
+
+    /**
+     * Reads the node type definitions of the CND files found during {@link #prepare}.
+     * @param cnds the input sources of the CND files by repository path
+     * @param resolver the namespace resolver of the session
+     * @throws RepositoryException if an error occurs
+     */
+    private void loadNodeTypes(Map<String, VaultInputSource> cnds, NamespaceResolver resolver)
+            throws RepositoryException {
+        for (Map.Entry<String, VaultInputSource> e: cnds.entrySet()) {
+            VaultInputSource is = e.getValue();
+            InputStream in = is.getByteStream();
+            try {
+                Reader r = new InputStreamReader(in, "utf8");
+                CNDReader reader = ServiceProviderFactory.getProvider().getCNDReader();
+                // provide session namespaces
+                reader.read(r, is.getSystemId(), new NamespaceMapping(resolver));
+                nodeTypes.add(reader);
+                log.debug("Loaded nodetypes from {}.", e.getKey());
+            } catch (IOException e1) {
+                log.error("Error while reading CND.", e1);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * Walks the given directory of the archive and builds the tx info tree below the given parent info.
+     * @param directory the directory
+     * @param parentInfo the info of the directory
+     * @param result collects the information that is applied to the importer after the walk
+     * @param parallel if {@code true}, the sub directories are walked concurrently. This can only be used
+     *                 when invoked from a {@link PrepareTask}.
+     * @throws IOException if an I/O error occurs
+     */
+    private void prepare(Archive.Entry directory, TxInfo parentInfo, PrepareResult result, boolean parallel)
+            throws IOException {
         Collection<? extends Archive.Entry> files = directory.getChildren();
         if (files == null) {
             return;
         }
+        List<PrepareTask> tasks = parallel ? new ArrayList<PrepareTask>() : null;
         // first process the directories
         for (Archive.Entry file: files) {
             if (file.isDirectory()) {
@@ -611,17 +881,8 @@ public class Importer {
                 }
 
                 // remap if needed
-                String mappedPath = pathMapping.map(repoPath);
-                if (!mappedPath.equals(repoPath)) {
-                    String mappedParent = Text.getRelativeParent(mappedPath, 1);
-                    if (!mappedParent.equals(parentInfo.path)) {
-                        log.warn("remapping other than renames not supported yet ({} -> {}).", repoPath, mappedPath);
-                    } else {
-                        log.debug("remapping detected {} -> {}", repoPath, mappedPath);
-                        repoPath = mappedPath;
-                        repoName = Text.getName(repoPath);
-                    }
-                }
+                repoPath = mapPath(parentInfo.path, repoPath);
+                repoName = Text.getName(repoPath);
 
                 TxInfo info = parentInfo.addChild(new TxInfo(parentInfo, repoPath));
                 log.trace("Creating directory artifact for {}", repoName);
@@ -642,14 +903,33 @@ public class Importer {
                             archive.getInputSource(contentXml),
                             SerializationType.XML_DOCVIEW
                     ));
-                } else {
+                }
+                // keep the results of the sub tree in the same order as a serial walk would produce
+                PrepareResult subResult = parallel ? new PrepareResult() : result;
+                if (contentXml == null) {
                     // this is an empty directory and potential intermediate
                     info.isIntermediate = 1;
-                    intermediates.put(repoPath, info);
+                    subResult.intermediates.put(repoPath, info);
                     log.trace("Detecting intermediate directory {}", repoName);
                 }
-                prepare(file, info, resolver);
+                if (parallel) {
+                    tasks.add(new PrepareTask(file, info, subResult));
+                } else if (streaming && contentXml != null) {
+                    // read the directory when it is committed. intermediates are read right away, since their
+                    // binaries are attached to the next non intermediate parent.
+                    info.entry = file;
+                } else {
+                    prepare(file, info, result, false);
+                }
+            }
+        }
+        if (parallel && !tasks.isEmpty()) {
+            ForkJoinTask.invokeAll(tasks);
+            for (PrepareTask task: tasks) {
+                result.merge(task.result);
             }
+            // the sub tasks are done, so the binaries can be attached to this info in document order
+            result.attach(parentInfo);
         }
         // second the files
         for (Archive.Entry file: files) {
@@ -664,27 +944,18 @@ public class Importer {
                     continue;
                 }
                 if (opts.getPatchDirectory() != null && repoPath.startsWith(opts.getPatchParentPath())) {
-                    patches.add(file);
+                    result.patches.add(file);
                     if (!opts.isPatchKeepInRepo()) {
                         continue;
                     }
                 }
                 if (repoPath.startsWith("/etc/packages/") && (repoPath.endsWith(".jar") || repoPath.endsWith(".zip"))) {
-                    subPackages.add(repoPath);
+                    result.subPackages.add(repoPath);
                 }
 
                 // remap if needed
-                String mappedPath = pathMapping.map(repoPath);
-                if (!mappedPath.equals(repoPath)) {
-                    String mappedParent = Text.getRelativeParent(mappedPath, 1);
-                    if (!mappedParent.equals(parentInfo.path)) {
-                        log.warn("remapping other than renames not supported yet ({} -> {}).", repoPath, mappedPath);
-                    } else {
-                        log.debug("remapping detected {} -> {}", repoPath, mappedPath);
-                        repoPath = mappedPath;
-                        repoName = Text.getName(repoPath);
-                    }
-                }
+                repoPath = mapPath(parentInfo.path, repoPath);
+                repoName = Text.getName(repoPath);
 
                 String repoBase = repoName;
                 String ext = "";
@@ -711,19 +982,8 @@ public class Importer {
                     }
                 } else if (ext.equals(".cnd")) {
                     if (opts.getCndPattern().matcher(repoPath).matches()) {
-                        InputStream in = is.getByteStream();
-                        try {
-                            Reader r = new InputStreamReader(in, "utf8");
-                            CNDReader reader = ServiceProviderFactory.getProvider().getCNDReader();
-                            // provide session namespaces
-                            reader.read(r, is.getSystemId(), new NamespaceMapping(resolver));
-                            nodeTypes.add(reader);
-                            log.debug("Loaded nodetypes from {}.", repoPath);
-                        } catch (IOException e1) {
-                            log.error("Error while reading CND.", e1);
-                        } finally {
-                            IOUtils.closeQuietly(in);
-                        }
+                        // the node types are read after the walk, since they need the session namespaces
+                        result.cnds.put(repoPath, is);
                     }
                     ext = "";
                     type = ArtifactType.FILE;
@@ -766,9 +1026,13 @@ public class Importer {
                         String path = parentInfo.path + "/" + repoName;
                         String relPath = parent.name + path.substring(parent.path.length());
                         log.trace("Attaching {} artifact {}", type, path);
-                        parent.artifacts.add(new InputSourceArtifact(null,
-                                relPath, ext, type, is, serType
-                        ));
+                        Artifact artifact = new InputSourceArtifact(null, relPath, ext, type, is, serType);
+                        if (parallel && parent != parentInfo) {
+                            // the info of an ancestor is shared with the concurrent tasks of its other sub trees
+                            result.attachments.add(new Attachment(parent, artifact));
+                        } else {
+                            parent.artifacts.add(artifact);
+                        }
                     }
                 }
                 if (type == ArtifactType.PRIMARY) {
@@ -789,8 +1053,120 @@ public class Importer {
         }
     }
 
+    /**
+     * Maps the given repository path using the path mapping of the import options. Only renames are supported,
+     * i.e. the mapped path must have the same parent.
+     * @param parentPath the parent path
+     * @param repoPath the repository path
+     * @return the mapped path or {@code repoPath} if not mapped.
+     */
+    private String mapPath(String parentPath, String repoPath) {
+        String mappedPath = pathMapping.map(repoPath);
+        if (!mappedPath.equals(repoPath)) {
+            String mappedParent = Text.getRelativeParent(mappedPath, 1);
+            if (!mappedParent.equals(parentPath)) {
+                log.warn("remapping other than renames not supported yet ({} -> {}).", repoPath, mappedPath);
+            } else {
+                log.debug("remapping detected {} -> {}", repoPath, mappedPath);
+                return mappedPath;
+            }
+        }
+        return repoPath;
+    }
+
+    /**
+     * Walks the given directory of the archive and only collects the patches, sub packages and node type
+     * definitions. This is used instead of {@link #prepare} in streaming mode.
+     * @param directory the directory
+     * @param parentPath the repository path of the directory
+     * @param result collects the information
+     * @throws IOException if an I/O error occurs
+     */
+    private void scan(Archive.Entry directory, String parentPath, PrepareResult result) throws IOException {
+        Collection<? extends Archive.Entry> files = directory.getChildren();
+        if (files == null) {
+            return;
+        }
+        // first process the directories
+        for (Archive.Entry file: files) {
+            if (file.isDirectory() && !isExcluded(file.getName())) {
+                String repoName = PlatformNameFormat.getRepositoryName(file.getName());
+                if (repoName.endsWith(".dir")) {
+                    repoName = repoName.substring(0, repoName.length() - 4);
+                }
+                scan(file, mapPath(parentPath, parentPath + "/" + repoName), result);
+            }
+        }
+        // second the files
+        for (Archive.Entry file: files) {
+            String fileName = file.getName();
+            if (file.isDirectory() || isExcluded(fileName) || fileName.equals(Constants.DOT_CONTENT_XML)) {
+                continue;
+            }
+            String repoPath = parentPath + "/" + PlatformNameFormat.getRepositoryName(fileName);
+            if (opts.getPatchDirectory() != null && repoPath.startsWith(opts.getPatchParentPath())) {
+                result.patches.add(file);
+                if (!opts.isPatchKeepInRepo()) {
+                    continue;
+                }
+            }
+            if (repoPath.startsWith("/etc/packages/") && (repoPath.endsWith(".jar") || repoPath.endsWith(".zip"))) {
+                result.subPackages.add(repoPath);
+            }
+            repoPath = mapPath(parentPath, repoPath);
+            if (Text.getName(repoPath).lastIndexOf('.') > 0 && repoPath.endsWith(".cnd")
+                    && opts.getCndPattern().matcher(repoPath).matches()) {
+                result.cnds.put(repoPath, archive.getInputSource(file));
+            }
+        }
+    }
+
+    /**
+     * Reads the directory of the given info in streaming mode and adds the child infos. The infos of the
+     * intermediate directories are read as well.
+     * @param info the tx info
+     * @throws IOException if an I/O error occurs
+     */
+    private void expand(TxInfo info) throws IOException {
+        log.trace("expanding {}", info.path);
+        Archive.Entry directory = info.entry;
+        info.entry = null;
+        prepare(directory, info, new PrepareResult(), false);
+        // patches, sub packages and node types were already collected by the scan
+        register(info);
+        if (filter.getFilterSets() != null && filter.getFilterSets().size() > 0) {
+            postFilter(info);
+        }
+    }
+
+    /**
+     * Registers the intermediates and name lists of the children of the given info that were just read.
+     * @param info the tx info
+     */
+    private void register(TxInfo info) {
+        for (TxInfo child: info.children().values()) {
+            if (child.isIntermediate == 1) {
+                if (importedPaths.contains(child.path)) {
+                    // already imported by an ancestor
+                    log.debug("P {}", child.path);
+                    child.isIntermediate = 2;
+                } else {
+                    intermediates.put(child.path, child);
+                }
+            }
+            NodeNameList nameList = pendingNameLists.remove(child.path);
+            if (nameList != null) {
+                child.nameList = nameList;
+            }
+            register(child);
+        }
+    }
+
     private void commit(Session session, TxInfo info, LinkedList<TxInfo> skipList) throws RepositoryException, IOException {
         try {
+            if (info.entry != null) {
+                expand(info);
+            }
             ImportInfo imp = null;
             if (skipList.isEmpty()) {
                 if (info == cpTxInfo) {
@@ -802,7 +1178,12 @@ public class Importer {
                     if (imp != null) {
                         nodesToCheckin.addAll(imp.getToVersion());
                         memberships.putAll(imp.getMemberships());
-                        autoSave.modified(imp.numModified());
+                        if (journal != null) {
+                            journal.addNodesToCheckin(imp.getToVersion());
+                            journal.addMemberships(imp.getMemberships());
+                        }
+                        autoSave.modified(imp.numModified(), info.getContentLength());
+                        metrics.modified(imp.numModified(), info.getContentLength());
                     }
                 }
             } else if (log.isDebugEnabled()) {
@@ -820,15 +1201,21 @@ public class Importer {
                 cpAutosave = autoSave.copy();
                 cpImportInfo = imp;
                 recoveryRetryCounter = 0;
-                /*
-                todo: check retry logic if it's ok to discard all processed infos or if some ancestors should be excluded
-                // discard processed infos to free some memory
-                for (TxInfo i: processedInfos) {
-                    i.discard();
+                // in streaming mode, release the completely committed sub trees to free some memory. they are
+                // never visited again during a recovery, since the processed infos neither contain the checkpoint
+                // info nor one of its ancestors. the default mode keeps the complete tree until the end.
+                if (streaming) {
+                    for (TxInfo i: processedInfos) {
+                        intermediates.remove(i.path);
+                        markedIntermediates.remove(i.path);
+                        i.release();
+                    }
                 }
-                */
                 removedIntermediates.clear();
                 processedInfos.clear();
+                if (journal != null) {
+                    writeJournal(info);
+                }
             }
 
             // copy the children collection since children could be removed during remapping
@@ -856,6 +1243,11 @@ public class Importer {
                     info.nameList.restoreOrder(node);
                 }
             }
+            if (streaming) {
+                // the sub tree is completely read, so the imported paths below are not needed anymore
+                importedPaths.subSet(info.path + "/", info.path + "0").clear();
+                pendingNameLists.subMap(info.path + "/", info.path + "0").clear();
+            }
             processedInfos.add(info);
         } catch (RepositoryException e) {
             log.error("Error while committing {}: {}", info.path, e.toString());
@@ -960,6 +1352,12 @@ public class Importer {
                         log.debug("P {}", path);
                         removedIntermediates.put(path, im);
                         im.isIntermediate = 2;
+                        if (journal != null) {
+                            markedIntermediates.add(path);
+                        }
+                    }
+                    if (streaming) {
+                        importedPaths.add(path);
                     }
                 }
                 switch (type) {
@@ -1005,6 +1403,9 @@ public class Importer {
                     TxInfo subInfo = info.findChild(path);
                     if (subInfo != null) {
                         subInfo.nameList = nameList;
+                    } else if (streaming) {
+                        // remember the name list until the info is read
+                        pendingNameLists.put(path, nameList);
                     }
                 }
             }
@@ -1059,7 +1460,18 @@ public class Importer {
             String authPath = userManagement.getAuthorizablePath(session, id);
             if (authPath != null) {
                 if (!opts.isDryRun()) {
-                    userManagement.addMembers(session, id, members);
+                    if (userManagement instanceof BatchUserManagement) {
+                        // save in chunks of the auto save threshold, so that large groups do not exhaust the transient space
+                        try {
+                            ((BatchUserManagement) userManagement).addMembers(session, id, members, autoSave.getThreshold());
+                        } catch (RepositoryException e) {
+                            track(e, authPath);
+                            hasErrors = true;
+                            continue;
+                        }
+                    } else {
+                        userManagement.addMembers(session, id, members);
+                    }
                 }
                 track("U", String.format("%s", authPath));
             }
@@ -1102,6 +1514,103 @@ public class Importer {
         }
     }
 
+    /**
+     * Collects the information gathered while walking a sub tree of the archive in {@link #prepare}.
+     */
+    private static class PrepareResult {
+
+        private final Map<String, TxInfo> intermediates = new LinkedHashMap<String, TxInfo>();
+
+        private final List<Archive.Entry> patches = new LinkedList<Archive.Entry>();
+
+        private final List<String> subPackages = new LinkedList<String>();
+
+        private final Map<String, VaultInputSource> cnds = new LinkedHashMap<String, VaultInputSource>();
+
+        private final List<Attachment> attachments = new LinkedList<Attachment>();
+
+        private void merge(PrepareResult other) {
+            intermediates.putAll(other.intermediates);
+            patches.addAll(other.patches);
+            subPackages.addAll(other.subPackages);
+            cnds.putAll(other.cnds);
+            attachments.addAll(other.attachments);
+        }
+
+        /**
+         * Adds the collected artifacts of the given info to it, in the order they were collected. If {@code info}
+         * is {@code null}, all collected artifacts are added.
+         * @param info the info or {@code null}
+         */
+        private void attach(TxInfo info) {
+            Iterator<Attachment> iter = attachments.iterator();
+            while (iter.hasNext()) {
+                Attachment a = iter.next();
+                if (info == null || a.info == info) {
+                    a.info.artifacts.add(a.artifact);
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Binary artifact that is attached to the info of an ancestor directory.
+     */
+    private static class Attachment {
+
+        private final TxInfo info;
+
+        private final Artifact artifact;
+
+        private Attachment(TxInfo info, Artifact artifact) {
+            this.info = info;
+            this.artifact = artifact;
+        }
+    }
+
+    /**
+     * Fork/join task that prepares a sub tree of the archive.
+     */
+    private class PrepareTask extends RecursiveAction {
+
+        private final Archive.Entry directory;
+
+        private final TxInfo info;
+
+        private final PrepareResult result;
+
+        private PrepareTask(Archive.Entry directory, TxInfo info, PrepareResult result) {
+            this.directory = directory;
+            this.info = info;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                prepare(directory, info, result, true);
+            } catch (IOException e) {
+                throw new PrepareException(e);
+            }
+        }
+    }
+
+    /**
+     * Transports I/O errors out of a {@link PrepareTask}.
+     */
+    private static class PrepareException extends RuntimeException {
+
+        private PrepareException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
     private static class TxInfo {
 
         private TxInfo parent;
@@ -1114,6 +1623,11 @@ public class Importer {
 
         private Map<String, TxInfo> children;
 
+        /**
+         * the directory of this info that is not read yet (streaming mode only)
+         */
+        private Archive.Entry entry;
+
         private byte isIntermediate = 0;
 
         private NodeNameList nameList;
@@ -1158,6 +1672,20 @@ public class Importer {
             children = ret;
         }
 
+        /**
+         * Returns the approximate size of the artifacts of this info.
+         * @return the size in bytes
+         */
+        public long getContentLength() {
+            long size = 0;
+            if (artifacts != null) {
+                for (Artifact a: artifacts.values()) {
+                    size += Math.max(0, a.getContentLength());
+                }
+            }
+            return size;
+        }
+
         public Node getParentNode(Session s) throws RepositoryException {
             String parentPath = emptyPathToRoot(Text.getRelativeParent(path, 1));
             return s.nodeExists(parentPath)
@@ -1176,6 +1704,14 @@ public class Importer {
             log.trace("discarding {}", path);
             artifacts = null;
             children = null;
+            entry = null;
+        }
+
+        public void release() {
+            if (parent != null && parent.children != null && parent.children.get(name) == this) {
+                parent.children.remove(name);
+            }
+            discard();
         }
 
         public TxInfo findChild(String absPath) {
@@ -1212,6 +1748,8 @@ public class Importer {
 
             ret.isIntermediate = isIntermediate;
 
+            ret.entry = entry;
+
             if (children != null) {
                 for (TxInfo child: children.values()) {
                     child = child.remap(mapping);
@@ -14,40 +14,143 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.jackrabbit.vault.fs.io;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import javax.jcr.RepositoryException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.jackrabbit.vault.fs.api.Artifact;
 import org.apache.jackrabbit.vault.fs.api.VaultFile;
+import org.apache.jackrabbit.vault.util.Constants;
+import org.apache.jackrabbit.vault.util.MimeTypes;
 import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+import org.apache.jackrabbit.vault.util.SHA1;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implements a Vault filesystem exporter that exports Vault files to a jar file.
  * It uses the {@link PlatformNameFormat} for formatting the jcr file
  * names to local ones.
  *
+ * If {@link #setStoreCompressedEntries(boolean)} is enabled, entries with content that is already compressed
+ * (see {@link MimeTypes#isCompressed(String)}) are stored without compressing them again. If more than one
+ * compression thread is configured, the entries are compressed in parallel and written to the jar file in the
+ * order they were added.
+ *
+ * In incremental mode, the exporter records the last modified date, size and SHA-1 hash of each exported file
+ * in {@link #INDEX_PATH}. If the package of a previous build is set as base, the compressed data of the entries
+ * that did not change is copied from the base package as it is. An entry is considered unchanged if its
+ * artifact has the same last modified date and content length as recorded, in which case the artifact is not
+ * exported at all, or if the exported content has the same hash.
  */
 public class JarExporter extends AbstractExporter {
 
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(JarExporter.class);
+
+    /**
+     * path of the index of the exported files in incremental mode
+     * @since 3.1.35
+     */
+    public static final String INDEX_PATH = Constants.META_DIR + "/" + Constants.INCREMENTAL_INDEX;
+
+    /**
+     * entries up to this size are spooled to memory for the parallel compression
+     */
+    private static final int SPOOL_THRESHOLD = 1024 * 1024;
+
     private JarOutputStream jOut;
 
     private OutputStream out;
 
     private File jarFile;
 
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int compressionThreads;
+
+    private boolean storeCompressedEntries;
+
+    private boolean incremental;
+
+    private File incrementalBase;
+
+    /**
+     * central directory of the base package or {@code null}
+     */
+    private ZipCentralDirectory baseDirectory;
+
+    private FileChannel baseChannel;
+
+    /**
+     * the reusable entries of the base package by name
+     */
+    private Map<String, IndexEntry> baseEntries;
+
+    /**
+     * the index of the current export
+     */
+    private SpooledEntry index;
+
+    private Writer indexWriter;
+
+    private int numReused;
+
+    /**
+     * writer used for the parallel compression and the incremental export
+     */
+    private ZipWriter zipWriter;
+
+    private OutputStream zipOut;
+
+    private ExecutorService executor;
+
+    /**
+     * the entries to be written in order
+     */
+    private final LinkedList<Future<SpooledEntry>> pending = new LinkedList<Future<SpooledEntry>>();
+
     /**
      * Constructs a new jar exporter that writes to the given file.
      * @param jarFile the jar file
@@ -64,19 +167,149 @@ public class JarExporter extends AbstractExporter {
         this.out = out;
     }
 
+    /**
+     * Returns the compression level.
+     * @return the compression level
+     * @since 3.1.35
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level used for the entries. Needs to be set before the exporter is opened.
+     * @param compressionLevel the compression level (0-9) or {@link Deflater#DEFAULT_COMPRESSION}
+     * @since 3.1.35
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the number of threads used to compress the entries.
+     * @return the number of threads
+     * @since 3.1.35
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to compress the entries. If less than 2, the entries are compressed
+     * in the exporting thread. Needs to be set before the exporter is opened.
+     * @param compressionThreads the number of threads
+     * @since 3.1.35
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Checks if entries with already compressed content are stored without compression.
+     * @return {@code true} if already compressed content is stored
+     * @since 3.1.35
+     */
+    public boolean isStoreCompressedEntries() {
+        return storeCompressedEntries;
+    }
+
+    /**
+     * Sets if entries with content that is already compressed, like images or archives, are stored without
+     * compressing them again. The content is detected by the content type of the artifact or the name of the
+     * entry. Needs to be set before the exporter is opened.
+     * @param storeCompressedEntries {@code true} to store already compressed content
+     * @since 3.1.35
+     */
+    public void setStoreCompressedEntries(boolean storeCompressedEntries) {
+        this.storeCompressedEntries = storeCompressedEntries;
+    }
+
+    /**
+     * Checks if the exporter records the index of the exported files.
+     * @return {@code true} if incremental
+     * @since 3.1.35
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets if the exporter records the index of the exported files, which allows to use the created package as
+     * base of the next incremental export. Needs to be set before the exporter is opened.
+     * @param incremental {@code true} to enable the incremental mode
+     * @since 3.1.35
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns the package of the previous build.
+     * @return the base package or {@code null}
+     * @since 3.1.35
+     */
+    public File getIncrementalBase() {
+        return incrementalBase;
+    }
+
+    /**
+     * Sets the package of the previous build whose unchanged entries are reused. Implies the incremental mode.
+     * If the file is not a package that was created in incremental mode, all files are exported. Needs to be set
+     * before the exporter is opened.
+     * @param incrementalBase the base package or {@code null}
+     * @since 3.1.35
+     */
+    public void setIncrementalBase(File incrementalBase) {
+        this.incrementalBase = incrementalBase;
+        if (incrementalBase != null) {
+            incremental = true;
+        }
+    }
+
+    /**
+     * Returns the number of entries that were copied from the base package.
+     * @return the number of reused entries
+     * @since 3.1.35
+     */
+    public int getNumReusedEntries() {
+        return numReused;
+    }
+
     /**
      * Opens the exporter and initializes the undelying structures.
      * @throws IOException if an I/O error occurs
      */
     public void open() throws IOException {
-        if (jOut == null) {
+        if (jOut == null && zipWriter == null) {
+            OutputStream os;
             if (jarFile != null) {
-                jOut = new JarOutputStream(new FileOutputStream(jarFile));
+                os = new FileOutputStream(jarFile);
             } else if (out != null) {
-                jOut = new JarOutputStream(out);
+                os = out;
             } else {
                 throw new IllegalArgumentException("Either out or jarFile needs to be set.");
             }
+            if (compressionThreads > 1 || incremental || storeCompressedEntries) {
+                zipOut = new BufferedOutputStream(os);
+                zipWriter = new ZipWriter(zipOut);
+                if (compressionThreads > 1) {
+                    executor = Executors.newFixedThreadPool(compressionThreads);
+                }
+                if (incremental) {
+                    numReused = 0;
+                    index = new SpooledEntry(INDEX_PATH, -1);
+                    indexWriter = new OutputStreamWriter(index.openOutputStream(false), "utf-8");
+                    if (incrementalBase != null) {
+                        openBase();
+                    }
+                }
+            } else {
+                jOut = new JarOutputStream(os);
+                jOut.setLevel(compressionLevel);
+            }
         }
     }
 
@@ -85,66 +318,118 @@ public class JarExporter extends AbstractExporter {
             jOut.close();
             jOut = null;
         }
+        if (zipWriter != null) {
+            try {
+                if (index != null) {
+                    indexWriter.close();
+                    indexWriter = null;
+                    submit(index, false);
+                    index = null;
+                }
+                writePending(true);
+                zipWriter.finish();
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+                for (Future<SpooledEntry> f: pending) {
+                    f.cancel(true);
+                    if (f.isDone() && !f.isCancelled()) {
+                        try {
+                            f.get().dispose();
+                        } catch (Exception e) {
+                            // ignore
+                        }
+                    }
+                }
+                pending.clear();
+                if (index != null) {
+                    IOUtils.closeQuietly(indexWriter);
+                    index.dispose();
+                    index = null;
+                    indexWriter = null;
+                }
+                closeBase();
+                executor = null;
+                zipWriter = null;
+                zipOut.close();
+                zipOut = null;
+            }
+        }
     }
 
     public void createDirectory(VaultFile file, String relPath)
             throws RepositoryException, IOException {
-        ZipEntry e = new ZipEntry(getPlatformFilePath(file, relPath) + "/");
-        jOut.putNextEntry(e);
-        jOut.closeEntry();
+        String name = getPlatformFilePath(file, relPath) + "/";
+        putDirectory(name, -1);
         track("A", relPath);
-        exportInfo.update(ExportInfo.Type.MKDIR, e.getName());
+        exportInfo.update(ExportInfo.Type.MKDIR, name);
     }
 
     public void createDirectory(String relPath) throws IOException {
-        ZipEntry e = new ZipEntry(relPath + "/");
-        jOut.putNextEntry(e);
-        jOut.closeEntry();
-        exportInfo.update(ExportInfo.Type.MKDIR, e.getName());
+        String name = relPath + "/";
+        putDirectory(name, -1);
+        exportInfo.update(ExportInfo.Type.MKDIR, name);
     }
 
     public void writeFile(VaultFile file, String relPath)
             throws RepositoryException, IOException {
-        ZipEntry e = new ZipEntry(getPlatformFilePath(file, relPath));
+        String name = getPlatformFilePath(file, relPath);
         Artifact a = file.getArtifact();
-        if (a.getLastModified() > 0) {
-            e.setTime(a.getLastModified());
-        }
+        long time = a.getLastModified() > 0 ? a.getLastModified() : -1;
         track("A", relPath);
-        exportInfo.update(ExportInfo.Type.ADD, e.getName());
-        jOut.putNextEntry(e);
-        switch (a.getPreferredAccess()) {
-            case NONE:
-                throw new RepositoryException("Artifact has no content.");
-
-            case SPOOL:
-                OutputStream nout = new CloseShieldOutputStream(jOut);
-                a.spool(nout);
-                break;
-
-            case STREAM:
-                nout = new CloseShieldOutputStream(jOut);
-                InputStream in = a.getInputStream();
-                IOUtils.copy(in, nout);
-                in.close();
-                break;
+        exportInfo.update(ExportInfo.Type.ADD, name);
+        if (zipWriter != null) {
+            IndexEntry prev = baseEntries == null ? null : baseEntries.get(name);
+            if (prev != null && time > 0 && time == prev.lastModified && a.getContentLength() == prev.size) {
+                // not modified. the artifact doesn't need to be exported
+                reuse(name, time, prev);
+                return;
+            }
+            SpooledEntry e = new SpooledEntry(name, time);
+            OutputStream sout = e.openOutputStream(incremental);
+            try {
+                copy(a, sout);
+            } finally {
+                sout.close();
+            }
+            if (prev != null && e.size == prev.size && e.hash.equals(prev.hash)) {
+                // same content, the compression can be skipped
+                e.dispose();
+                reuse(name, time, prev);
+                return;
+            }
+            if (index != null) {
+                writeIndex(name, time, e.size, e.hash);
+            }
+            submit(e, isCompressed(name, a.getContentType()));
+        } else {
+            ZipEntry e = new ZipEntry(name);
+            if (time > 0) {
+                e.setTime(time);
+            }
+            jOut.putNextEntry(e);
+            copy(a, new CloseShieldOutputStream(jOut));
+            jOut.closeEntry();
         }
-        jOut.closeEntry();
     }
 
     public void writeFile(InputStream in, String relPath) throws IOException {
-        ZipEntry e = new ZipEntry(relPath);
-        exportInfo.update(ExportInfo.Type.ADD, e.getName());
-        jOut.putNextEntry(e);
-        OutputStream nout = new CloseShieldOutputStream(jOut);
-        IOUtils.copy(in, nout);
-        in.close();
-        jOut.closeEntry();
+        exportInfo.update(ExportInfo.Type.ADD, relPath);
+        putFile(in, relPath, -1);
     }
 
     public void write(ZipFile zip, ZipEntry entry) throws IOException {
         track("A", entry.getName());
         exportInfo.update(ExportInfo.Type.ADD, entry.getName());
+        if (zipWriter != null) {
+            if (entry.isDirectory()) {
+                putDirectory(entry.getName(), entry.getTime());
+            } else {
+                putFile(zip.getInputStream(entry), entry.getName(), entry.getTime());
+            }
+            return;
+        }
         ZipEntry copy = new ZipEntry(entry);
         jOut.putNextEntry(copy);
         if (!entry.isDirectory()) {
@@ -156,5 +441,386 @@ public class JarExporter extends AbstractExporter {
         jOut.closeEntry();
     }
 
+    private void putDirectory(String name, long time) throws IOException {
+        if (zipWriter != null) {
+            submit(new SpooledEntry(name, time), false);
+        } else {
+            ZipEntry e = new ZipEntry(name);
+            if (time > 0) {
+                e.setTime(time);
+            }
+            jOut.putNextEntry(e);
+            jOut.closeEntry();
+        }
+    }
 
-}
\ No newline at end of file
+    private void putFile(InputStream in, String name, long time) throws IOException {
+        try {
+            if (zipWriter != null) {
+                SpooledEntry e = new SpooledEntry(name, time);
+                OutputStream sout = e.openOutputStream(false);
+                try {
+                    IOUtils.copy(in, sout);
+                } finally {
+                    sout.close();
+                }
+                submit(e, isCompressed(name, null));
+            } else {
+                ZipEntry e = new ZipEntry(name);
+                if (time > 0) {
+                    e.setTime(time);
+                }
+                jOut.putNextEntry(e);
+                IOUtils.copy(in, new CloseShieldOutputStream(jOut));
+                jOut.closeEntry();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens the base package and reads its index. Only entries that are listed in the index and are stored or
+     * deflated can be reused.
+     */
+    private void openBase() throws IOException {
+        baseEntries = new HashMap<String, IndexEntry>();
+        try {
+            baseChannel = new RandomAccessFile(incrementalBase, "r").getChannel();
+            baseDirectory = ZipCentralDirectory.read(baseChannel);
+            Map<String, ZipCentralDirectory.Record> records = new HashMap<String, ZipCentralDirectory.Record>();
+            for (ZipCentralDirectory.Record r: baseDirectory.getRecords()) {
+                records.put(r.getName(), r);
+            }
+            ZipCentralDirectory.Record indexRecord = records.get(INDEX_PATH);
+            if (indexRecord == null) {
+                log.info("Base package {} has no index. Exporting all entries.", incrementalBase.getPath());
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    baseDirectory.openInputStream(indexRecord), "utf-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    IndexEntry e = IndexEntry.parse(line);
+                    ZipCentralDirectory.Record r = e == null ? null : records.get(e.name);
+                    if (r != null && !r.isEncrypted() && r.getSize() == e.size
+                            && (r.getMethod() == ZipEntry.STORED || r.getMethod() == ZipEntry.DEFLATED)) {
+                        e.record = r;
+                        baseEntries.put(e.name, e);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            log.debug("Base package {} has {} reusable entries.", incrementalBase.getPath(), baseEntries.size());
+        } catch (IOException e) {
+            log.warn("Unable to read base package {}. Exporting all entries: {}", incrementalBase.getPath(),
+                    e.toString());
+            closeBase();
+        }
+    }
+
+    private void closeBase() {
+        IOUtils.closeQuietly(baseChannel);
+        baseChannel = null;
+        baseDirectory = null;
+        baseEntries = null;
+    }
+
+    /**
+     * Copies the data of the entry of the base package.
+     */
+    private void reuse(String name, long time, IndexEntry prev) throws IOException {
+        log.debug("Reusing unchanged entry {}", name);
+        numReused++;
+        writeIndex(name, time, prev.size, prev.hash);
+        SpooledEntry e = new SpooledEntry(name, time);
+        e.setRaw(baseDirectory, prev.record);
+        submit(e, true);
+    }
+
+    private void writeIndex(String name, long time, long size, String hash) throws IOException {
+        indexWriter.write(time + " " + size + " " + hash + " " + name + "\n");
+    }
+
+    private static void copy(Artifact a, OutputStream out) throws RepositoryException, IOException {
+        switch (a.getPreferredAccess()) {
+            case NONE:
+                throw new RepositoryException("Artifact has no content.");
+
+            case SPOOL:
+                a.spool(out);
+                break;
+
+            case STREAM:
+                InputStream in = a.getInputStream();
+                IOUtils.copy(in, out);
+                in.close();
+                break;
+        }
+    }
+
+    /**
+     * Checks if the given entry is stored without compression, i.e. if compression is disabled or if the content
+     * is already compressed, based on its content type or name.
+     */
+    private boolean isCompressed(String name, String contentType) {
+        if (compressionLevel == Deflater.NO_COMPRESSION) {
+            return true;
+        }
+        if (!storeCompressedEntries) {
+            return false;
+        }
+        if (contentType != null && MimeTypes.isCompressed(contentType)) {
+            return true;
+        }
+        return MimeTypes.isCompressed(MimeTypes.getMimeType(name));
+    }
+
+    /**
+     * Adds the spooled entry to the list of pending entries and writes the completed ones. If {@code compressed}
+     * is {@code false}, the entry is deflated in the worker pool.
+     */
+    private void submit(final SpooledEntry entry, boolean compressed) throws IOException {
+        if (compressed || entry.size == 0) {
+            FutureTask<SpooledEntry> f = new FutureTask<SpooledEntry>(new Callable<SpooledEntry>() {
+                public SpooledEntry call() {
+                    return entry;
+                }
+            });
+            f.run();
+            pending.add(f);
+        } else {
+            final int level = compressionLevel;
+            Callable<SpooledEntry> task = new Callable<SpooledEntry>() {
+                public SpooledEntry call() throws IOException {
+                    entry.deflate(level);
+                    return entry;
+                }
+            };
+            if (executor == null) {
+                // incremental export without compression threads
+                FutureTask<SpooledEntry> f = new FutureTask<SpooledEntry>(task);
+                f.run();
+                pending.add(f);
+            } else {
+                pending.add(executor.submit(task));
+            }
+        }
+        writePending(false);
+    }
+
+    /**
+     * Writes the pending entries that are completed, in order. If {@code all} is {@code true} or if too many
+     * entries are pending, this waits for the entries to complete.
+     */
+    private void writePending(boolean all) throws IOException {
+        int maxPending = compressionThreads * 4;
+        while (!pending.isEmpty()) {
+            Future<SpooledEntry> f = pending.getFirst();
+            if (!all && !f.isDone() && pending.size() <= maxPending) {
+                break;
+            }
+            pending.removeFirst();
+            SpooledEntry e;
+            try {
+                e = f.get();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException("Interrupted while compressing jar entry.");
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException("Error while compressing jar entry.", ex.getCause());
+            }
+            try {
+                InputStream in = e.getInputStream();
+                try {
+                    zipWriter.writeEntry(e.name, e.time, e.method, e.crc, e.size, e.compressedSize, in);
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            } finally {
+                e.dispose();
+            }
+        }
+    }
+
+    /**
+     * Entry of the index of an incremental export.
+     */
+    private static class IndexEntry {
+
+        private final String name;
+
+        private final long lastModified;
+
+        private final long size;
+
+        private final String hash;
+
+        private ZipCentralDirectory.Record record;
+
+        private IndexEntry(String name, long lastModified, long size, String hash) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+        }
+
+        /**
+         * Parses a line of the index, in the format: {@code lastModified size hash name}
+         * @return the entry or {@code null} if the line is not valid
+         */
+        private static IndexEntry parse(String line) {
+            String[] segs = line.split(" ", 4);
+            if (segs.length != 4) {
+                return null;
+            }
+            try {
+                return new IndexEntry(segs[3], Long.parseLong(segs[0]), Long.parseLong(segs[1]), segs[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Entry whose content is spooled to memory or a temporary file before it is compressed and written.
+     */
+    private static class SpooledEntry {
+
+        private final String name;
+
+        private final long time;
+
+        private int method = ZipEntry.STORED;
+
+        private long crc;
+
+        private long size;
+
+        private long compressedSize;
+
+        /**
+         * SHA-1 of the uncompressed content, if requested
+         */
+        private String hash;
+
+        private DeferredFileOutputStream data;
+
+        /**
+         * the directory and record of the data in the base package, if the entry is reused
+         */
+        private ZipCentralDirectory rawDirectory;
+
+        private ZipCentralDirectory.Record raw;
+
+        private SpooledEntry(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+
+        /**
+         * Opens the stream to spool the uncompressed content. The CRC and size, and optionally the SHA-1 hash,
+         * are calculated when the stream is closed.
+         */
+        private OutputStream openOutputStream(boolean digest) throws IOException {
+            data = createBuffer();
+            final CRC32 checksum = new CRC32();
+            final MessageDigest md = digest ? createDigest() : null;
+            OutputStream out = md == null ? data : new DigestOutputStream(data, md);
+            return new CheckedOutputStream(out, checksum) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    crc = checksum.getValue();
+                    size = data.getByteCount();
+                    compressedSize = size;
+                    if (md != null) {
+                        hash = new SHA1(md.digest()).toString();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Uses the data of the given record as it is.
+         */
+        private void setRaw(ZipCentralDirectory directory, ZipCentralDirectory.Record record) {
+            rawDirectory = directory;
+            raw = record;
+            method = record.getMethod();
+            crc = record.getCrc();
+            size = record.getSize();
+            compressedSize = record.getCompressedSize();
+        }
+
+        private static MessageDigest createDigest() throws IOException {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * Deflates the spooled content. If the content does not get smaller it is kept uncompressed.
+         */
+        private void deflate(int level) throws IOException {
+            DeferredFileOutputStream compressed = createBuffer();
+            Deflater deflater = new Deflater(level, true);
+            try {
+                InputStream in = getInputStream();
+                try {
+                    DeflaterOutputStream dout = new DeflaterOutputStream(compressed, deflater, 8192);
+                    IOUtils.copy(in, dout);
+                    dout.close();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                dispose(compressed);
+                throw e;
+            } finally {
+                deflater.end();
+            }
+            if (compressed.getByteCount() < size) {
+                dispose(data);
+                data = compressed;
+                method = ZipEntry.DEFLATED;
+                compressedSize = compressed.getByteCount();
+            } else {
+                dispose(compressed);
+            }
+        }
+
+        private InputStream getInputStream() throws IOException {
+            if (raw != null) {
+                return rawDirectory.openRawInputStream(raw);
+            }
+            if (data == null) {
+                return null;
+            }
+            return data.isInMemory()
+                    ? new ByteArrayInputStream(data.getData())
+                    : new FileInputStream(data.getFile());
+        }
+
+        private void dispose() {
+            dispose(data);
+            data = null;
+        }
+
+        private static DeferredFileOutputStream createBuffer() {
+            return new DeferredFileOutputStream(SPOOL_THRESHOLD, "__vltjar", ".tmp", null);
+        }
+
+        private static void dispose(DeferredFileOutputStream buffer) {
+            if (buffer != null && !buffer.isInMemory()) {
+                FileUtils.deleteQuietly(buffer.getFile());
+            }
+        }
+    }
+}
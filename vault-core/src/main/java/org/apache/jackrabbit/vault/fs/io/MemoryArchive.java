@@ -289,4 +289,9 @@ public class MemoryArchive extends AbstractArchive implements InputStreamPump.Pu
             return ve;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    boolean supportsConcurrentReads() {
+        return true;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@code PhaseMetrics} records the number of executions and the duration of the phases of an import or export.
+ * The durations are measured by the caller, usually with {@link System#nanoTime()}, and reported in milliseconds.
+ * Instances are thread safe, so that the metrics of several operations can be aggregated in one instance.
+ *
+ * @param <P> the enum of the phases
+ * @since 3.1.35
+ */
+public abstract class PhaseMetrics<P extends Enum<P>> {
+
+    private final P[] phases;
+
+    /**
+     * number of executions per phase
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * total duration in nanoseconds per phase
+     */
+    private final AtomicLongArray totals;
+
+    /**
+     * longest duration in nanoseconds per phase
+     */
+    private final AtomicLongArray maxima;
+
+    protected PhaseMetrics(@Nonnull Class<P> type) {
+        phases = type.getEnumConstants();
+        counts = new AtomicLongArray(phases.length);
+        totals = new AtomicLongArray(phases.length);
+        maxima = new AtomicLongArray(phases.length);
+    }
+
+    /**
+     * Returns the phases.
+     * @return the phases in their natural order.
+     */
+    @Nonnull
+    public P[] getPhases() {
+        return phases.clone();
+    }
+
+    /**
+     * Records an execution of the given phase.
+     * @param phase the phase
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(@Nonnull P phase, long nanos) {
+        int idx = phase.ordinal();
+        counts.incrementAndGet(idx);
+        totals.addAndGet(idx, nanos);
+        long max = maxima.get(idx);
+        while (nanos > max && !maxima.compareAndSet(idx, max, nanos)) {
+            max = maxima.get(idx);
+        }
+    }
+
+    /**
+     * Records an execution of the given phase that started at {@code start}.
+     * @param phase the phase
+     * @param start the start time as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(@Nonnull P phase, long start) {
+        record(phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the number of executions of the given phase.
+     * @param phase the phase
+     * @return the number of executions
+     */
+    public long getCount(@Nonnull P phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    /**
+     * Returns the total duration of the given phase.
+     * @param phase the phase
+     * @return the duration in milliseconds
+     */
+    public long getTotalTime(@Nonnull P phase) {
+        return TimeUnit.NANOSECONDS.toMillis(totals.get(phase.ordinal()));
+    }
+
+    /**
+     * Returns the longest execution of the given phase.
+     * @param phase the phase
+     * @return the duration in milliseconds
+     */
+    public long getMaxTime(@Nonnull P phase) {
+        return TimeUnit.NANOSECONDS.toMillis(maxima.get(phase.ordinal()));
+    }
+
+    /**
+     * Adds the phases recorded by {@code other} to this metrics.
+     * @param other the other metrics
+     */
+    protected void addPhases(@Nonnull PhaseMetrics<P> other) {
+        for (int i = 0; i < phases.length; i++) {
+            counts.addAndGet(i, other.counts.get(i));
+            totals.addAndGet(i, other.totals.get(i));
+            long nanos = other.maxima.get(i);
+            long max = maxima.get(i);
+            while (nanos > max && !maxima.compareAndSet(i, max, nanos)) {
+                max = maxima.get(i);
+            }
+        }
+    }
+
+    /**
+     * Resets the recorded phases.
+     */
+    public void reset() {
+        for (int i = 0; i < phases.length; i++) {
+            counts.set(i, 0);
+            totals.set(i, 0);
+            maxima.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (P phase: phases) {
+            long count = getCount(phase);
+            if (count > 0) {
+                if (buf.length() > 0) {
+                    buf.append(", ");
+                }
+                buf.append(phase.name().toLowerCase()).append('=').append(getTotalTime(phase)).append("ms");
+                if (count > 1) {
+                    buf.append(" (").append(count).append("x, max ").append(getMaxTime(phase)).append("ms)");
+                }
+            }
+        }
+        return buf.toString();
+    }
+}
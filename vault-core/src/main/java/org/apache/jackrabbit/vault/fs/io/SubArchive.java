@@ -104,4 +104,9 @@ public class SubArchive extends AbstractArchive {
     public VaultInputSource getInputSource(Entry entry) throws IOException {
         return base.getInputSource(entry);
     }
-}
\ No newline at end of file
+
+    @Override
+    boolean supportsConcurrentReads() {
+        return base instanceof AbstractArchive && ((AbstractArchive) base).supportsConcurrentReads();
+    }
+}
@@ -39,9 +39,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The zip archive implements bridge between the ZipStreamArchive and the
- * ZipFileArchive. the former is needed due to a bug in ZipFile of jdk1.5 that
- * causes problems with zip files with a lot of entries.
+ * The zip archive reads the central directory of the zip file via the
+ * {@link ZipChannelArchive} and only loads the {@code META-INF} entries when
+ * opened. If the central directory cannot be read, it falls back to scanning
+ * the zip stream and bridges between the ZipStreamArchive and the ZipFileArchive.
  */
 public class ZipArchive extends AbstractArchive {
 
@@ -73,24 +74,30 @@ public class ZipArchive extends AbstractArchive {
         if (inf != null) {
             return;
         }
-        // first load the meta info and count the entries
-        ZipInputStream zin = new ZipInputStream(
-                new BufferedInputStream(
-                        new FileInputStream(zipFile)
-                )
-        );
-        numEntries = 0;
         inf = new DefaultMetaInf();
         try {
-            ZipEntry entry;
-            while ((entry = zin.getNextEntry()) != null) {
-                numEntries++;
-                String name = entry.getName();
-
-                // check for meta inf
-                if (name.startsWith(Constants.META_DIR + "/")) {
-                    inf.load(new CloseShieldInputStream(zin), zipFile.getPath() + ":" + name);
+            // try to read the central directory first, which avoids inflating all entries.
+            ZipChannelArchive zip = new ZipChannelArchive(zipFile);
+            try {
+                zip.open(strict);
+            } catch (IOException e) {
+                log.warn("Unable to read central directory of {}: {}. Fallback to streaming archive.",
+                        zipFile.getPath(), e.toString());
+                zip = null;
+            }
+            if (zip == null) {
+                loadMetaInfFromStream();
+            } else {
+                try {
+                    loadMetaInf(zip);
+                } catch (IOException e) {
+                    zip.close();
+                    throw e;
+                } catch (ConfigurationException e) {
+                    zip.close();
+                    throw e;
                 }
+                base = zip;
             }
             if (inf.getFilter() == null) {
                 log.debug("Zip {} does not contain filter definition.", zipFile.getPath());
@@ -113,14 +120,57 @@ public class ZipArchive extends AbstractArchive {
 
         } catch (IOException e) {
             log.error("Error while loading zip {}.", zipFile.getPath());
+            inf = null;
             throw e;
         } catch (ConfigurationException e) {
             log.error("Error while loading zip {}.", zipFile.getPath());
+            inf = null;
             throw new IOException(e);
+        }
+    }
+
+    /**
+     * Loads the meta inf by only reading the {@code META-INF} entries listed in the central directory.
+     */
+    private void loadMetaInf(ZipChannelArchive zip) throws IOException, ConfigurationException {
+        for (ZipCentralDirectory.Record record: zip.getRecords()) {
+            String name = record.getName();
+            if (name.startsWith(Constants.META_DIR + "/") && !record.isDirectory()) {
+                InputStream in = zip.openInputStream(record);
+                try {
+                    inf.load(in, zipFile.getPath() + ":" + name);
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the meta inf and counts the entries by scanning the entire zip stream. This is only used
+     * if the central directory of the zip file cannot be read.
+     */
+    private void loadMetaInfFromStream() throws IOException, ConfigurationException {
+        ZipInputStream zin = new ZipInputStream(
+                new BufferedInputStream(
+                        new FileInputStream(zipFile)
+                )
+        );
+        numEntries = 0;
+        try {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                numEntries++;
+                String name = entry.getName();
+
+                // check for meta inf
+                if (name.startsWith(Constants.META_DIR + "/")) {
+                    inf.load(new CloseShieldInputStream(zin), zipFile.getPath() + ":" + name);
+                }
+            }
         } finally {
             IOUtils.closeQuietly(zin);
         }
-
     }
 
     private Archive getBase() throws IOException {
@@ -128,12 +178,15 @@ public class ZipArchive extends AbstractArchive {
             throw new IOException("Archive not open.");
         }
         if (base == null) {
-            // zip file only supports sizes up to 2GB
-            if (zipFile.length() > (long) Integer.MAX_VALUE) {
-                log.warn("ZipFile is larger than 2GB. Fallback to streaming archive.");
-            } else {
+            // the central directory could not be read, so only check if zip file agrees with the stream
+            ZipFile zip = null;
+            try {
+                zip = new ZipFile(zipFile, ZipFile.OPEN_READ);
+            } catch (IOException e) {
+                log.warn("Unable to open ZipFile: {}. Fallback to streaming archive.", e.toString());
+            }
+            if (zip != null) {
                 // check if the zip file provides the correct size (# entries)
-                ZipFile zip = new ZipFile(zipFile, ZipFile.OPEN_READ);
                 if (zip.size() != numEntries) {
                     log.warn("ZipFile reports {} entries, but stream counts {} entries. " +
                             "Fallback to streaming archive.",
@@ -199,4 +252,9 @@ public class ZipArchive extends AbstractArchive {
     public String toString() {
         return zipFile.getPath();
     }
-}
\ No newline at end of file
+
+    @Override
+    boolean supportsConcurrentReads() {
+        return true;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip file, including the ZIP64 extensions,
+ * and provides random access to the entry data. Only the directory records are
+ * parsed when the directory is read; entry data is inflated on demand.
+ *
+ * All reads are positional reads on the given channel, so streams of several
+ * entries can be consumed concurrently.
+ */
+class ZipCentralDirectory {
+
+    private static final int EOCD_SIG = 0x06054b50;
+
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    private static final int CEN_SIG = 0x02014b50;
+
+    private static final int LOC_SIG = 0x04034b50;
+
+    private static final int EOCD_LEN = 22;
+
+    private static final int ZIP64_LOCATOR_LEN = 20;
+
+    private static final int ZIP64_EOCD_LEN = 56;
+
+    private static final int CEN_LEN = 46;
+
+    private static final int LOC_LEN = 30;
+
+    private static final int MAX_COMMENT_LEN = 0xffff;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int EXTENDED_TIMESTAMP_ID = 0x5455;
+
+    private static final int FLAG_ENCRYPTED = 0x01;
+
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+
+    private static final int ZIP64_MAGIC_COUNT = 0xffff;
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
+
+    private final FileChannel channel;
+
+    private final List<Record> records;
+
+    private ZipCentralDirectory(FileChannel channel, List<Record> records) {
+        this.channel = channel;
+        this.records = records;
+    }
+
+    /**
+     * Reads the central directory of the zip file accessible via the given channel.
+     * @param channel the channel
+     * @return the central directory
+     * @throws IOException if an I/O error occurs or if the file is not a valid zip file.
+     */
+    public static ZipCentralDirectory read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < EOCD_LEN) {
+            throw new ZipException("File too small to be a zip file.");
+        }
+
+        // locate the end of central directory record. it is followed by the optional archive comment.
+        int tailLen = (int) Math.min(size, EOCD_LEN + MAX_COMMENT_LEN);
+        ByteBuffer tail = readFully(channel, size - tailLen, tailLen);
+        int eocd = -1;
+        for (int i = tailLen - EOCD_LEN; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIG && i + EOCD_LEN + (tail.getShort(i + 20) & 0xffff) <= tailLen) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ZipException("End of central directory record not found.");
+        }
+        long eocdPos = size - tailLen + eocd;
+        long numEntries = tail.getShort(eocd + 10) & 0xffff;
+        long cenSize = tail.getInt(eocd + 12) & ZIP64_MAGIC;
+        long cenOffset = tail.getInt(eocd + 16) & ZIP64_MAGIC;
+
+        // check for zip64 end of central directory
+        if (eocdPos >= ZIP64_LOCATOR_LEN) {
+            ByteBuffer loc = readFully(channel, eocdPos - ZIP64_LOCATOR_LEN, ZIP64_LOCATOR_LEN);
+            if (loc.getInt(0) == ZIP64_LOCATOR_SIG) {
+                long zip64Pos = loc.getLong(8);
+                ByteBuffer z64 = readFully(channel, zip64Pos, ZIP64_EOCD_LEN);
+                if (z64.getInt(0) != ZIP64_EOCD_SIG) {
+                    throw new ZipException("Invalid zip64 end of central directory record.");
+                }
+                numEntries = z64.getLong(32);
+                cenSize = z64.getLong(40);
+                cenOffset = z64.getLong(48);
+            } else if (numEntries == ZIP64_MAGIC_COUNT || cenSize == ZIP64_MAGIC || cenOffset == ZIP64_MAGIC) {
+                throw new ZipException("Zip64 end of central directory locator not found.");
+            }
+        }
+        if (cenOffset + cenSize > eocdPos || cenSize > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid central directory size or offset.");
+        }
+
+        ByteBuffer cen = readFully(channel, cenOffset, (int) cenSize);
+        List<Record> records = new ArrayList<Record>((int) Math.min(numEntries, Integer.MAX_VALUE));
+        int pos = 0;
+        while (pos + CEN_LEN <= cenSize) {
+            if (cen.getInt(pos) != CEN_SIG) {
+                throw new ZipException("Invalid central directory header at " + (cenOffset + pos));
+            }
+            int flags = cen.getShort(pos + 8) & 0xffff;
+            int method = cen.getShort(pos + 10) & 0xffff;
+            long dosTime = cen.getInt(pos + 12) & ZIP64_MAGIC;
+            long crc = cen.getInt(pos + 16) & ZIP64_MAGIC;
+            long compressedSize = cen.getInt(pos + 20) & ZIP64_MAGIC;
+            long size1 = cen.getInt(pos + 24) & ZIP64_MAGIC;
+            int nameLen = cen.getShort(pos + 28) & 0xffff;
+            int extraLen = cen.getShort(pos + 30) & 0xffff;
+            int commentLen = cen.getShort(pos + 32) & 0xffff;
+            long offset = cen.getInt(pos + 42) & ZIP64_MAGIC;
+            if (pos + CEN_LEN + nameLen + extraLen + commentLen > cenSize) {
+                throw new ZipException("Truncated central directory header at " + (cenOffset + pos));
+            }
+            byte[] nameBytes = new byte[nameLen];
+            cen.position(pos + CEN_LEN);
+            cen.get(nameBytes);
+            String name = new String(nameBytes, UTF8);
+            long time = dosToJavaTime(dosTime);
+
+            // process extra fields
+            int extra = pos + CEN_LEN + nameLen;
+            int extraEnd = extra + extraLen;
+            while (extra + 4 <= extraEnd) {
+                int id = cen.getShort(extra) & 0xffff;
+                int len = cen.getShort(extra + 2) & 0xffff;
+                int data = extra + 4;
+                if (data + len > extraEnd) {
+                    break;
+                }
+                if (id == ZIP64_EXTRA_ID) {
+                    // only the values that overflowed are present, in this order
+                    int p = data;
+                    if (size1 == ZIP64_MAGIC && p + 8 <= data + len) {
+                        size1 = cen.getLong(p);
+                        p += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC && p + 8 <= data + len) {
+                        compressedSize = cen.getLong(p);
+                        p += 8;
+                    }
+                    if (offset == ZIP64_MAGIC && p + 8 <= data + len) {
+                        offset = cen.getLong(p);
+                    }
+                } else if (id == EXTENDED_TIMESTAMP_ID && len >= 5 && (cen.get(data) & 0x01) != 0) {
+                    time = (cen.getInt(data + 1) & ZIP64_MAGIC) * 1000L;
+                }
+                extra = data + len;
+            }
+
+            records.add(new Record(name, method, flags, time, crc, compressedSize, size1, offset));
+            pos += CEN_LEN + nameLen + extraLen + commentLen;
+        }
+        if (records.size() != numEntries) {
+            throw new ZipException("Central directory reports " + numEntries
+                    + " entries, but contains " + records.size() + " entries.");
+        }
+        return new ZipCentralDirectory(channel, records);
+    }
+
+    /**
+     * Returns the records of the central directory in the order they appear in the file.
+     * @return the records
+     */
+    public List<Record> getRecords() {
+        return records;
+    }
+
+    /**
+     * Opens an input stream that provides the uncompressed data of the given record.
+     * @param record the record
+     * @return the input stream
+     * @throws IOException if an error occurs or the compression method is not supported.
+     */
+    public InputStream openInputStream(Record record) throws IOException {
+        if ((record.flags & FLAG_ENCRYPTED) != 0) {
+            throw new ZipException("Encrypted zip entries are not supported: " + record.name);
+        }
+        InputStream in = openRawInputStream(record);
+        if (record.method == ZipEntry.STORED) {
+            return in;
+        } else if (record.method == ZipEntry.DEFLATED) {
+            return new EntryInflaterInputStream(in, record.size);
+        } else {
+            in.close();
+            throw new ZipException("Unsupported compression method " + record.method + ": " + record.name);
+        }
+    }
+
+    /**
+     * Opens an input stream that provides the data of the given record as stored in the file.
+     * @param record the record
+     * @return the input stream
+     * @throws IOException if an error occurs
+     */
+    public InputStream openRawInputStream(Record record) throws IOException {
+        return new ChannelInputStream(channel, getDataOffset(record), record.compressedSize);
+    }
+
+    private long getDataOffset(Record record) throws IOException {
+        if (record.dataOffset < 0) {
+            ByteBuffer loc = readFully(channel, record.offset, LOC_LEN);
+            if (loc.getInt(0) != LOC_SIG) {
+                throw new ZipException("Invalid local header for " + record.name);
+            }
+            int nameLen = loc.getShort(26) & 0xffff;
+            int extraLen = loc.getShort(28) & 0xffff;
+            record.dataOffset = record.offset + LOC_LEN + nameLen + extraLen;
+        }
+        return record.dataOffset;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException("Unexpected end of zip file.");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static long dosToJavaTime(long dtime) {
+        Calendar cal = new GregorianCalendar(
+                (int) (((dtime >> 25) & 0x7f) + 1980),
+                (int) (((dtime >> 21) & 0x0f) - 1),
+                (int) ((dtime >> 16) & 0x1f),
+                (int) ((dtime >> 11) & 0x1f),
+                (int) ((dtime >> 5) & 0x3f),
+                (int) ((dtime << 1) & 0x3e));
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * A central directory record.
+     */
+    static class Record {
+
+        private final String name;
+
+        private final int method;
+
+        private final int flags;
+
+        private final long time;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long offset;
+
+        private volatile long dataOffset = -1;
+
+        private Record(String name, int method, int flags, long time, long crc, long compressedSize, long size,
+                       long offset) {
+            this.name = name;
+            this.method = method;
+            this.flags = flags;
+            this.time = time;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public boolean isEncrypted() {
+            return (flags & FLAG_ENCRYPTED) != 0;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Input stream that reads a region of a file channel using positional reads.
+     */
+    private static class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        private long pos;
+
+        private final long end;
+
+        private long mark;
+
+        private ChannelInputStream(FileChannel channel, long pos, long len) {
+            this.channel = channel;
+            this.pos = pos;
+            this.end = pos + len;
+            this.mark = pos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= end) {
+                return -1;
+            }
+            len = (int) Math.min(len, end - pos);
+            int read = channel.read(ByteBuffer.wrap(b, off, len), pos);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip file.");
+            }
+            pos += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            n = Math.min(n, end - pos);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, end - pos);
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            mark = pos;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            pos = mark;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+    }
+
+    /**
+     * Inflater stream that supplies the dummy byte required by the 'nowrap' inflater
+     * and releases the inflater when closed.
+     */
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        private final long size;
+
+        private boolean eof;
+
+        private boolean closed;
+
+        private EntryInflaterInputStream(InputStream in, long size) {
+            super(in, new Inflater(true), (int) Math.max(64, Math.min(8192, size)));
+            this.size = size;
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (closed) {
+                return 0;
+            }
+            long avail = size - inf.getBytesWritten();
+            return avail > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, avail);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
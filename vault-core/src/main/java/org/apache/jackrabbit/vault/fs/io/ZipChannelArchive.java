@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.vault.fs.api.VaultInputSource;
+import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.util.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements an archive that reads the central directory of a zip file and
+ * accesses the entry data directly via positional reads on a file channel.
+ * Opening the archive only costs a read of the central directory, regardless of
+ * the size of the entries, and zip files larger than 2GB (ZIP64) are supported.
+ */
+class ZipChannelArchive extends AbstractArchive {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(ZipChannelArchive.class);
+
+    private final File zipFile;
+
+    private RandomAccessFile raf;
+
+    private ZipCentralDirectory directory;
+
+    private JarEntry root;
+
+    public ZipChannelArchive(File zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    public void open(boolean strict) throws IOException {
+        if (raf != null) {
+            throw new IllegalStateException("already open");
+        }
+        raf = new RandomAccessFile(zipFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            directory = ZipCentralDirectory.read(channel);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        root = new JarEntry("", true);
+        for (ZipCentralDirectory.Record record: directory.getRecords()) {
+            String[] names = Text.explode(record.getName(), '/');
+            if (names.length > 0) {
+                JarEntry je = root;
+                for (int i=0; i<names.length; i++) {
+                    if (i == names.length -1) {
+                        je = je.add(names[i], record.isDirectory());
+                    } else {
+                        je = je.add(names[i], true);
+                    }
+                }
+                if (!record.isDirectory()) {
+                    je.record = record;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("scanning jar: {}", record.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the central directory records of this archive in file order.
+     * @return the records
+     */
+    List<ZipCentralDirectory.Record> getRecords() {
+        if (directory == null) {
+            throw new IllegalStateException("Archive not open.");
+        }
+        return directory.getRecords();
+    }
+
+    /**
+     * Opens an input stream for the given record.
+     * @param record the record
+     * @return the input stream
+     * @throws IOException if an error occurs
+     */
+    InputStream openInputStream(ZipCentralDirectory.Record record) throws IOException {
+        if (directory == null) {
+            throw new IOException("Archive not open.");
+        }
+        return directory.openInputStream(record);
+    }
+
+    public InputStream openInputStream(Entry entry) throws IOException {
+        JarEntry e = (JarEntry) entry;
+        if (e == null || e.record == null) {
+            return null;
+        }
+        return openInputStream(e.record);
+    }
+
+    public VaultInputSource getInputSource(Entry entry) throws IOException {
+        JarEntry e = (JarEntry) entry;
+        if (e == null || e.record == null) {
+            return null;
+        }
+        final ZipCentralDirectory.Record record = e.record;
+        return new VaultInputSource() {
+
+            {
+                setSystemId(record.getName());
+            }
+
+            public InputStream getByteStream() {
+                try {
+                    return openInputStream(record);
+                } catch (IOException e1) {
+                    return null;
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            public long getContentLength() {
+                return record.getSize();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            public long getLastModified() {
+                return record.getTime();
+            }
+
+        };
+    }
+
+    public void close() {
+        directory = null;
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                log.warn("Error during close.", e);
+            }
+            raf = null;
+        }
+    }
+
+    public Entry getRoot() throws IOException {
+        return root;
+    }
+
+    public MetaInf getMetaInf() {
+        throw new IllegalStateException("getMetaInf() should not be called directly.");
+    }
+
+    private static class JarEntry implements Entry {
+
+        public final String name;
+
+        private ZipCentralDirectory.Record record;
+
+        public final boolean isDirectory;
+
+        public Map<String, JarEntry> children;
+
+        public JarEntry(String name, boolean directory) {
+            this.name = name;
+            isDirectory = directory;
+        }
+
+        public JarEntry add(String name, boolean isDirectory) {
+            if (children != null) {
+                JarEntry ret = children.get(name);
+                if (ret != null) {
+                    return ret;
+                }
+            }
+            return add(new JarEntry(name, isDirectory));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return isDirectory;
+        }
+
+        public JarEntry add(JarEntry e) {
+            if (children == null) {
+                children = new LinkedHashMap<String, JarEntry>();
+            }
+            children.put(e.getName(), e);
+            return e;
+        }
+
+        public Collection<? extends Entry> getChildren() {
+            return children == null
+                    ? Collections.<JarEntry>emptyList()
+                    : children.values();
+        }
+
+        public Entry getChild(String name) {
+            return children == null ? null : children.get(name);
+        }
+
+    }
+}
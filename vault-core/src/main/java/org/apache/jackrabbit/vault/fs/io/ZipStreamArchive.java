@@ -23,6 +23,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -42,6 +44,10 @@ import org.slf4j.LoggerFactory;
  * Implements an archive based on a zip file, but deflates the entries first
  * in a tmp file. this is only used to circumvent a bug in ZipFile of jdk1.5,
  * that has problems with large zip files.
+ *
+ * The entries are read from the tmp file using positional reads on its file
+ * channel, so each stream maintains its own position and several entries can
+ * be read concurrently.
  */
 class ZipStreamArchive extends AbstractArchive {
 
@@ -56,6 +62,8 @@ class ZipStreamArchive extends AbstractArchive {
 
     private RandomAccessFile raf;
 
+    private FileChannel channel;
+
     private JarEntry root;
 
     public ZipStreamArchive(File zipFile) {
@@ -69,6 +77,7 @@ class ZipStreamArchive extends AbstractArchive {
 
         tmpFile = File.createTempFile("__vlttmpbuffer", ".dat");
         raf = new RandomAccessFile(tmpFile, "rw");
+        channel = raf.getChannel();
 
         root = new JarEntry("");
 
@@ -109,7 +118,7 @@ class ZipStreamArchive extends AbstractArchive {
     private long copy(InputStream in) throws IOException {
         byte[] buffer = new byte[8192];
         int read;
-        int total = 0;
+        long total = 0;
         while ((read = in.read(buffer)) > 0) {
             raf.write(buffer, 0, read);
             total += read;
@@ -130,6 +139,7 @@ class ZipStreamArchive extends AbstractArchive {
     }
 
     public void close() {
+        channel = null;
         if (raf != null) {
             try {
                 raf.close();
@@ -172,21 +182,53 @@ class ZipStreamArchive extends AbstractArchive {
 
     private class RafInputStream extends InputStream {
 
+        private final FileChannel channel;
+
         private long pos;
 
         private long end;
 
         private long mark;
 
+        private ByteBuffer buffer;
+
         private RafInputStream(JarEntry entry) {
+            channel = ZipStreamArchive.this.channel;
             pos = entry.pos;
             end = pos + entry.len;
         }
 
+        /**
+         * Fills the buffer with the next bytes of the entry, starting at the current position.
+         * @return {@code false} if the end of the entry is reached.
+         */
+        private boolean fill() throws IOException {
+            if (buffer != null && buffer.hasRemaining()) {
+                return true;
+            }
+            if (pos >= end) {
+                return false;
+            }
+            if (channel == null) {
+                throw new IOException("Archive closed.");
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate((int) Math.min(8192, end - pos));
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+            int read = channel.read(buffer, pos);
+            buffer.flip();
+            if (read <= 0) {
+                return false;
+            }
+            pos += read;
+            return true;
+        }
+
         public int read() throws IOException {
-            if (pos < end) {
-                raf.seek(pos++);
-                return raf.read();
+            if (fill()) {
+                return buffer.get() & 0xff;
             } else {
                 return -1;
             }
@@ -194,12 +236,31 @@ class ZipStreamArchive extends AbstractArchive {
 
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (buffer != null && buffer.hasRemaining()) {
+                len = Math.min(len, buffer.remaining());
+                buffer.get(b, off, len);
+                return len;
+            }
             if (pos >= end) {
                 return -1;
             }
-            len = Math.min(len, (int) (end-pos));
-            raf.seek(pos);
-            int read = raf.read(b, off, len);
+            if (len < 8192) {
+                // small reads are served from the buffer
+                if (!fill()) {
+                    return -1;
+                }
+                len = Math.min(len, buffer.remaining());
+                buffer.get(b, off, len);
+                return len;
+            }
+            if (channel == null) {
+                throw new IOException("Archive closed.");
+            }
+            len = (int) Math.min(len, end - pos);
+            int read = channel.read(ByteBuffer.wrap(b, off, len), pos);
             if (read < 0) {
                 return -1;
             }
@@ -214,32 +275,43 @@ class ZipStreamArchive extends AbstractArchive {
 
         @Override
         public long skip(long n) throws IOException {
-            if (pos >= end) {
-                return -1;
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = 0;
+            if (buffer != null && buffer.hasRemaining()) {
+                skipped = Math.min(n, buffer.remaining());
+                buffer.position(buffer.position() + (int) skipped);
+                n -= skipped;
             }
             n = Math.min(n, end - pos);
-            pos+= n;
-            return n;
+            pos += n;
+            return skipped + n;
         }
 
         @Override
         public int available() throws IOException {
-            return (int) (end - pos);
+            long avail = end - pos + (buffer == null ? 0 : buffer.remaining());
+            return (int) Math.min(Integer.MAX_VALUE, avail);
         }
 
         @Override
         public void close() throws IOException {
-            // ignore
+            buffer = null;
         }
 
         @Override
         public void mark(int readlimit) {
-            mark = pos;
+            mark = pos - (buffer == null ? 0 : buffer.remaining());
         }
 
         @Override
         public void reset() throws IOException {
             pos = mark;
+            if (buffer != null) {
+                buffer.clear();
+                buffer.limit(0);
+            }
         }
 
         @Override
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes a zip file from entries whose data is already compressed (or stored), together with the CRC and sizes
+ * of the entry. In contrast to {@link java.util.zip.ZipOutputStream} this allows to compress the entries
+ * independently of writing them. ZIP64 records are written if needed.
+ */
+class ZipWriter {
+
+    private static final long LOCSIG = 0x04034b50L;
+
+    private static final long CENSIG = 0x02014b50L;
+
+    private static final long ENDSIG = 0x06054b50L;
+
+    private static final long ZIP64_ENDSIG = 0x06064b50L;
+
+    private static final long ZIP64_LOCSIG = 0x07064b50L;
+
+    private static final int ZIP64_EXTID = 0x0001;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    /**
+     * general purpose flag indicating UTF-8 encoded names
+     */
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int VERSION_DEFAULT = 20;
+
+    private static final int VERSION_ZIP64 = 45;
+
+    private final OutputStream out;
+
+    private final List<Record> records = new ArrayList<Record>();
+
+    private final Set<String> names = new HashSet<String>();
+
+    private final byte[] buffer = new byte[8];
+
+    private long written;
+
+    private boolean finished;
+
+    ZipWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes an entry.
+     * @param name the name of the entry
+     * @param time the modification time or {@code -1}
+     * @param method the compression method of the data. either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param crc the CRC-32 of the uncompressed data
+     * @param size the size of the uncompressed data
+     * @param compressedSize the size of the data
+     * @param data the (compressed) entry data or {@code null} if empty
+     * @throws IOException if an I/O error occurs
+     */
+    void writeEntry(String name, long time, int method, long crc, long size, long compressedSize, InputStream data)
+            throws IOException {
+        if (finished) {
+            throw new IOException("Zip writer already finished.");
+        }
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+        Record r = new Record();
+        r.name = name.getBytes("utf-8");
+        r.time = javaToDosTime(time == -1 ? System.currentTimeMillis() : time);
+        r.method = method;
+        r.crc = crc;
+        r.size = size;
+        r.compressedSize = compressedSize;
+        r.offset = written;
+        boolean zip64 = size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+
+        writeInt(LOCSIG);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8);
+        writeShort(method);
+        writeInt(r.time);
+        writeInt(crc);
+        writeInt(zip64 ? ZIP64_MAGIC : compressedSize);
+        writeInt(zip64 ? ZIP64_MAGIC : size);
+        writeShort(r.name.length);
+        writeShort(zip64 ? 20 : 0);
+        writeBytes(r.name);
+        if (zip64) {
+            writeShort(ZIP64_EXTID);
+            writeShort(16);
+            writeLong(size);
+            writeLong(compressedSize);
+        }
+        if (data != null) {
+            long copied = IOUtils.copyLarge(data, out);
+            if (copied != compressedSize) {
+                throw new ZipException("invalid entry compressed size (expected " + compressedSize
+                        + " but got " + copied + " bytes)");
+            }
+            written += copied;
+        }
+        records.add(r);
+    }
+
+    /**
+     * Writes the central directory. The underlying stream is not closed.
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long cenOffset = written;
+        for (Record r: records) {
+            boolean sizes64 = r.size >= ZIP64_MAGIC || r.compressedSize >= ZIP64_MAGIC;
+            boolean offset64 = r.offset >= ZIP64_MAGIC;
+            int extraLength = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+            writeInt(CENSIG);
+            writeShort(extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT);
+            writeShort(extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT);
+            writeShort(FLAG_UTF8);
+            writeShort(r.method);
+            writeInt(r.time);
+            writeInt(r.crc);
+            writeInt(sizes64 ? ZIP64_MAGIC : r.compressedSize);
+            writeInt(sizes64 ? ZIP64_MAGIC : r.size);
+            writeShort(r.name.length);
+            writeShort(extraLength > 0 ? extraLength + 4 : 0);
+            writeShort(0); // comment length
+            writeShort(0); // disk number start
+            writeShort(0); // internal attributes
+            writeInt(0);   // external attributes
+            writeInt(offset64 ? ZIP64_MAGIC : r.offset);
+            writeBytes(r.name);
+            if (extraLength > 0) {
+                writeShort(ZIP64_EXTID);
+                writeShort(extraLength);
+                if (sizes64) {
+                    writeLong(r.size);
+                    writeLong(r.compressedSize);
+                }
+                if (offset64) {
+                    writeLong(r.offset);
+                }
+            }
+        }
+        long cenLength = written - cenOffset;
+        int count = records.size();
+        if (count >= ZIP64_MAGIC_COUNT || cenOffset >= ZIP64_MAGIC || cenLength >= ZIP64_MAGIC) {
+            long zip64EndOffset = written;
+            writeInt(ZIP64_ENDSIG);
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(count);
+            writeLong(count);
+            writeLong(cenLength);
+            writeLong(cenOffset);
+
+            writeInt(ZIP64_LOCSIG);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+        writeInt(ENDSIG);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(cenLength, ZIP64_MAGIC));
+        writeInt(Math.min(cenOffset, ZIP64_MAGIC));
+        writeShort(0); // comment length
+        out.flush();
+    }
+
+    private void writeShort(int v) throws IOException {
+        buffer[0] = (byte) (v & 0xff);
+        buffer[1] = (byte) ((v >>> 8) & 0xff);
+        out.write(buffer, 0, 2);
+        written += 2;
+    }
+
+    private void writeInt(long v) throws IOException {
+        buffer[0] = (byte) (v & 0xff);
+        buffer[1] = (byte) ((v >>> 8) & 0xff);
+        buffer[2] = (byte) ((v >>> 16) & 0xff);
+        buffer[3] = (byte) ((v >>> 24) & 0xff);
+        out.write(buffer, 0, 4);
+        written += 4;
+    }
+
+    private void writeLong(long v) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            buffer[i] = (byte) ((v >>> (8 * i)) & 0xff);
+        }
+        out.write(buffer, 0, 8);
+        written += 8;
+    }
+
+    private void writeBytes(byte[] b) throws IOException {
+        out.write(b);
+        written += b.length;
+    }
+
+    /**
+     * Converts the java time to a DOS date and time.
+     */
+    private static long javaToDosTime(long time) {
+        Calendar cal = new GregorianCalendar();
+        cal.setTimeInMillis(time);
+        int year = cal.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25
+                | (cal.get(Calendar.MONTH) + 1) << 21
+                | cal.get(Calendar.DAY_OF_MONTH) << 16
+                | cal.get(Calendar.HOUR_OF_DAY) << 11
+                | cal.get(Calendar.MINUTE) << 5
+                | cal.get(Calendar.SECOND) >> 1;
+    }
+
+    private static class Record {
+
+        private byte[] name;
+
+        private long time;
+
+        private int method;
+
+        private long crc;
+
+        private long size;
+
+        private long compressedSize;
+
+        private long offset;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.spi;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * {@code BatchUserManagement} is an optional extension of a {@link UserManagement} that adds the memberships of
+ * large groups in batches. The importer uses it if the user management of the service provider implements it.
+ *
+ * @since 3.1.35
+ */
+public interface BatchUserManagement {
+
+    /**
+     * Adds the given memberships to the specified group. The members are added in batches of the given size and
+     * the session is saved after each batch, so that the transient space stays bounded for large groups.
+     * @param session session to operate on
+     * @param id id of group
+     * @param membersUUID uuids of members
+     * @param batchSize number of members to add before the session is saved, or {@code 0} to not save the session.
+     * @throws RepositoryException if the memberships could not be saved. The unsaved changes are not reverted.
+     */
+    void addMembers(Session session, String id, String[] membersUUID, int batchSize) throws RepositoryException;
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.spi.impl.jcr20;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.spi.Name;
+import org.apache.jackrabbit.spi.PrivilegeDefinition;
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceMapping;
+import org.apache.jackrabbit.spi.commons.nodetype.compact.CompactNodeTypeDefWriter;
+import org.apache.jackrabbit.vault.fs.spi.NodeTypeSet;
+import org.apache.jackrabbit.vault.fs.spi.PrivilegeDefinitions;
+import org.apache.jackrabbit.vault.util.MD5;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code DefinitionFingerprints} remembers the fingerprints of the node type sets and privilege definitions that
+ * were installed into a repository. The installers use them to skip the registry when a package ships the same
+ * definitions as a package installed before, which is the common case when many packages contain the same CNDs.
+ *
+ * The fingerprints are only kept in memory, so the first installation after a restart always goes through the
+ * registry.
+ */
+final class DefinitionFingerprints {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(DefinitionFingerprints.class);
+
+    private static final Map<Repository, Set<MD5>> installed = new WeakHashMap<Repository, Set<MD5>>();
+
+    private DefinitionFingerprints() {
+    }
+
+    /**
+     * Checks if the definitions with the given fingerprint were installed into the repository of the session.
+     * @param session the session
+     * @param fingerprint the fingerprint or {@code null}
+     * @return {@code true} if installed
+     */
+    static boolean isInstalled(Session session, MD5 fingerprint) {
+        if (fingerprint == null) {
+            return false;
+        }
+        synchronized (installed) {
+            Set<MD5> fingerprints = installed.get(session.getRepository());
+            return fingerprints != null && fingerprints.contains(fingerprint);
+        }
+    }
+
+    /**
+     * Remembers that the definitions with the given fingerprint are installed into the repository of the session.
+     * @param session the session
+     * @param fingerprint the fingerprint or {@code null}
+     */
+    static void setInstalled(Session session, MD5 fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        synchronized (installed) {
+            Set<MD5> fingerprints = installed.get(session.getRepository());
+            if (fingerprints == null) {
+                fingerprints = new HashSet<MD5>();
+                installed.put(session.getRepository(), fingerprints);
+            }
+            fingerprints.add(fingerprint);
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the given node types and their namespace mapping.
+     * @param types the node types
+     * @return the fingerprint or {@code null} if the node types can't be serialized.
+     */
+    static MD5 getFingerprint(NodeTypeSet types) {
+        StringWriter out = new StringWriter();
+        appendNamespaces(out, types.getNamespaceMapping());
+        try {
+            CompactNodeTypeDefWriter w = new CompactNodeTypeDefWriter(out, types.getNamespaceMapping(), false);
+            w.write(types.getNodeTypes().values());
+            w.close();
+        } catch (IOException e) {
+            log.debug("Unable to calculate fingerprint of node types: {}", e.toString());
+            return null;
+        } catch (RuntimeException e) {
+            log.debug("Unable to calculate fingerprint of node types: {}", e.toString());
+            return null;
+        }
+        return getFingerprint(out.toString());
+    }
+
+    /**
+     * Calculates the fingerprint of the given privilege definitions and their namespace mapping.
+     * @param defs the privilege definitions
+     * @return the fingerprint
+     */
+    static MD5 getFingerprint(PrivilegeDefinitions defs) {
+        StringWriter out = new StringWriter();
+        appendNamespaces(out, defs.getNamespaceMapping());
+        List<String> lines = new ArrayList<String>();
+        for (PrivilegeDefinition def: defs.getDefinitions()) {
+            List<String> aggregates = new ArrayList<String>();
+            for (Name name: def.getDeclaredAggregateNames()) {
+                aggregates.add(name.toString());
+            }
+            Collections.sort(aggregates);
+            lines.add(def.getName() + (def.isAbstract() ? " abstract " : " ") + aggregates);
+        }
+        Collections.sort(lines);
+        for (String line: lines) {
+            out.append(line).append('\n');
+        }
+        return getFingerprint(out.toString());
+    }
+
+    private static void appendNamespaces(StringWriter out, NamespaceMapping mapping) {
+        for (Map.Entry<String, String> e: new TreeMap<String, String>(mapping.getPrefixToURIMapping()).entrySet()) {
+            out.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+    }
+
+    private static MD5 getFingerprint(String str) {
+        try {
+            return MD5.digest(new ByteArrayInputStream(str.getBytes("utf-8")));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
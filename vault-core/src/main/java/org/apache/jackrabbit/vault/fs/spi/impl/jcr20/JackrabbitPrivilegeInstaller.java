@@ -19,6 +19,7 @@ package org.apache.jackrabbit.vault.fs.spi.impl.jcr20;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
 import org.apache.jackrabbit.vault.fs.spi.PrivilegeDefinitions;
 import org.apache.jackrabbit.vault.fs.spi.PrivilegeInstaller;
 import org.apache.jackrabbit.vault.fs.spi.ProgressTracker;
+import org.apache.jackrabbit.vault.util.MD5;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +75,22 @@ public class JackrabbitPrivilegeInstaller implements PrivilegeInstaller {
             mode = tracker.setMode(ProgressTrackerListener.Mode.TEXT);
         }
 
+        // skip the registry if the same privileges were installed before. privileges can't be unregistered.
+        MD5 fingerprint = DefinitionFingerprints.getFingerprint(defs);
+        if (DefinitionFingerprints.isInstalled(session, fingerprint)) {
+            log.debug("Privileges with fingerprint {} are already installed.", fingerprint);
+            for (Map.Entry<String, String> e: defs.getNamespaceMapping().getPrefixToURIMapping().entrySet()) {
+                track(tracker, "-", e.getKey() + " -> " + e.getValue());
+            }
+            for (PrivilegeDefinition def: defs.getDefinitions()) {
+                track(tracker, "-", getJCRName(def.getName()));
+            }
+            if (tracker != null) {
+                tracker.setMode(mode);
+            }
+            return Collections.emptyList();
+        }
+
         // register namespaces
         Map<String, String> pfxToURI = defs.getNamespaceMapping().getPrefixToURIMapping();
         if (!pfxToURI.isEmpty()) {
@@ -115,6 +133,7 @@ public class JackrabbitPrivilegeInstaller implements PrivilegeInstaller {
         if (tracker != null) {
             tracker.setMode(mode);
         }
+        DefinitionFingerprints.setInstalled(session, fingerprint);
         return registeredPrivs;
     }
 
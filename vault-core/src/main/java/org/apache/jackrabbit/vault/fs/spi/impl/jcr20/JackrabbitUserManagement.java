@@ -17,17 +17,26 @@
 
 package org.apache.jackrabbit.vault.fs.spi.impl.jcr20;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
 
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
 import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.jackrabbit.vault.fs.spi.BatchUserManagement;
 import org.apache.jackrabbit.vault.fs.spi.UserManagement;
 import org.apache.jackrabbit.vault.util.DocViewNode;
 import org.apache.jackrabbit.vault.util.DocViewProperty;
@@ -37,13 +46,17 @@ import org.slf4j.LoggerFactory;
 /**
  * {@code JackrabbitUserManagement}...
  */
-public class JackrabbitUserManagement implements UserManagement {
+public class JackrabbitUserManagement implements UserManagement, BatchUserManagement {
 
     /**
      * default logger
      */
     private static final Logger log = LoggerFactory.getLogger(JackrabbitUserManagement.class);
 
+    /**
+     * number of members added at once if the session is not saved in between
+     */
+    private static final int DEFAULT_BATCH_SIZE = 1024;
 
     /**
      * {@inheritDoc}
@@ -85,6 +98,24 @@ public class JackrabbitUserManagement implements UserManagement {
      * {@inheritDoc}
      */
     public void addMembers(Session session, String id, String[] membersUUID) {
+        try {
+            addMembers(session, id, membersUUID, 0);
+        } catch (RepositoryException e) {
+            // not reached, the session is not saved
+            log.error("Error while adding authorizables to group '{}': {}", id, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The declared members of the group are read once and the ids of the new members are resolved from their
+     * authorizable nodes. The members that are not declared yet are added with {@link Group#addMembers(String...)},
+     * which avoids checking the membership of each member in turn. If the group implementation does not support
+     * adding members by id, they are added one by one.
+     */
+    public void addMembers(Session session, String id, String[] membersUUID, int batchSize)
+            throws RepositoryException {
         if (!(session instanceof JackrabbitSession)) {
             log.warn("Unable to update membership. no jackrabbit session.");
             return;
@@ -112,31 +143,126 @@ public class JackrabbitUserManagement implements UserManagement {
             return;
         }
         Group grp = (Group) auth;
+        Set<String> declared = new HashSet<String>();
+        try {
+            Iterator<Authorizable> iter = grp.getDeclaredMembers();
+            while (iter.hasNext()) {
+                declared.add(iter.next().getID());
+            }
+        } catch (RepositoryException e) {
+            log.warn("Unable to update membership of {}. Error while retrieving declared members.", id, e);
+            return;
+        }
+
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        List<String> batch = new ArrayList<String>(Math.min(size, membersUUID.length));
+        boolean bulk = supportsAddMembersById(grp);
         for (String uuid: membersUUID) {
+            String memberId = getMemberId(session, id, uuid);
+            if (memberId == null) {
+                continue;
+            }
+            if (!declared.add(memberId)) {
+                log.debug("ignoring to add authorizable '{}' to group '{}'. Already member.", memberId, id);
+                continue;
+            }
+            batch.add(memberId);
+            if (batch.size() >= size) {
+                bulk = addMembers(uMgr, grp, id, batch, bulk);
+                if (batchSize > 0) {
+                    session.save();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            addMembers(uMgr, grp, id, batch, bulk);
+            if (batchSize > 0) {
+                session.save();
+            }
+        }
+    }
+
+    /**
+     * Resolves the id of the authorizable with the given uuid.
+     * @return the id or {@code null} if the node does not exist or is not an authorizable.
+     */
+    private static String getMemberId(Session session, String id, String uuid) {
+        try {
+            Node authNode = session.getNodeByIdentifier(uuid);
+            if (!authNode.isNodeType("rep:Authorizable")) {
+                log.warn("unable to add authorizable '{}' to group '{}'. Node at {} is not an authorizable.",
+                        new Object[]{uuid, id, authNode.getPath()});
+                return null;
+            }
+            if (authNode.hasProperty("rep:authorizableId")) {
+                // oak 1.x
+                return authNode.getProperty("rep:authorizableId").getString();
+            } else {
+                // jackrabbit 2.x or Oak with migrated Jackrabbit 2.x content
+                return org.apache.jackrabbit.util.Text.unescapeIllegalJcrChars(authNode.getName());
+            }
+        } catch (ItemNotFoundException e) {
+            log.warn("unable to add authorizable '{}' to group '{}'. No such node.", uuid, id);
+        } catch (RepositoryException e) {
+            log.warn("unable to add authorizable '{}' to group '{}'. Internal Error: {}", new Object[]{uuid, id, e});
+        }
+        return null;
+    }
+
+    /**
+     * Adds the members of the batch to the group and clears the batch.
+     * @param bulk {@code true} to add the members with {@link Group#addMembers(String...)}
+     * @return {@code false} if the members could not be added by id and the next batch must be added one by one.
+     */
+    private static boolean addMembers(UserManager uMgr, Group grp, String id, List<String> batch, boolean bulk) {
+        if (bulk) {
             try {
-                Node authNode = session.getNodeByIdentifier(uuid);
-                String authPath = authNode.getPath();
-                Authorizable member = uMgr.getAuthorizableByPath(authPath);
+                Set<String> failed = grp.addMembers(batch.toArray(new String[batch.size()]));
+                for (String memberId: failed) {
+                    log.warn("unable to add authorizable '{}' to group '{}'.", memberId, id);
+                }
+                log.debug("added {} authorizables to group '{}'.", batch.size() - failed.size(), id);
+                batch.clear();
+                return true;
+            } catch (UnsupportedRepositoryOperationException e) {
+                log.debug("Adding members by id is not supported. Adding them one by one.");
+            } catch (RepositoryException e) {
+                log.error("Error while adding authorizables to group '{}': {}", id, e);
+                batch.clear();
+                return true;
+            }
+        }
+        for (String memberId: batch) {
+            try {
+                Authorizable member = uMgr.getAuthorizable(memberId);
                 if (member == null) {
-                    log.warn("unable to add authorizable '{}' to group '{}'. Node at {} is not an authorizable.", uuid, authPath);
+                    log.warn("unable to add authorizable '{}' to group '{}'. No such authorizable.", memberId, id);
                 } else {
-                    String memberId = member.getID();
-                    try {
-                        if (grp.isDeclaredMember(member)) {
-                            log.debug("ignoring to add authorizable '{}' to group '{}'. Already member.", memberId, id);
-                        } else {
-                            grp.addMember(member);
-                            log.debug("added authorizable '{}' to group '{}'.", memberId, id);
-                        }
-                    } catch (RepositoryException e) {
-                        log.error("Error while adding authorizable '{}' to group '{}': {}", new Object[]{memberId, id, e});
-                    }
+                    grp.addMember(member);
+                    log.debug("added authorizable '{}' to group '{}'.", memberId, id);
                 }
-            } catch (ItemNotFoundException e) {
-                log.warn("unable to add authorizable '{}' to group '{}'. No such node.", uuid, id);
             } catch (RepositoryException e) {
-                log.warn("unable to add authorizable '{}' to group '{}'. Internal Error: {}", new Object[]{uuid, id, e});
+                log.error("Error while adding authorizable '{}' to group '{}': {}", new Object[]{memberId, id, e});
+            }
+        }
+        batch.clear();
+        return false;
+    }
+
+    /**
+     * Checks if the group implementation supports {@link Group#addMembers(String...)}. Implementations that were
+     * compiled against a jackrabbit api before 2.10 do not implement the method.
+     */
+    private static boolean supportsAddMembersById(Group grp) {
+        Class<?> c = grp.getClass();
+        while (c != null) {
+            try {
+                Method m = c.getDeclaredMethod("addMembers", String[].class);
+                return !Modifier.isAbstract(m.getModifiers());
+            } catch (NoSuchMethodException e) {
+                c = c.getSuperclass();
             }
         }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.vault.fs.spi.impl.jcr20;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,7 @@ import javax.jcr.nodetype.NodeTypeDefinition;
 import javax.jcr.nodetype.NodeTypeIterator;
 import javax.jcr.nodetype.NodeTypeManager;
 
+import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.QNodeTypeDefinition;
 import org.apache.jackrabbit.spi.commons.conversion.DefaultNamePathResolver;
 import org.apache.jackrabbit.spi.commons.nodetype.NodeTypeDefinitionFactory;
@@ -38,6 +40,7 @@ import org.apache.jackrabbit.vault.fs.spi.DefaultNodeTypeSet;
 import org.apache.jackrabbit.vault.fs.spi.NodeTypeInstaller;
 import org.apache.jackrabbit.vault.fs.spi.NodeTypeSet;
 import org.apache.jackrabbit.vault.fs.spi.ProgressTracker;
+import org.apache.jackrabbit.vault.util.MD5;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +69,27 @@ public class JcrNodeTypeInstaller implements NodeTypeInstaller {
 
         // register node types
         NodeTypeManager ntMgr = session.getWorkspace().getNodeTypeManager();
+        DefaultNamePathResolver npResolver = new DefaultNamePathResolver(session);
+
+        // skip the registry if the same node types were installed before and are still registered
+        MD5 fingerprint = DefinitionFingerprints.getFingerprint(types);
+        if (DefinitionFingerprints.isInstalled(session, fingerprint) && isRegistered(ntMgr, npResolver, types)) {
+            log.debug("Node types with fingerprint {} are already installed.", fingerprint);
+            ProgressTrackerListener.Mode mode = null;
+            if (tracker != null) {
+                mode = tracker.setMode(ProgressTrackerListener.Mode.TEXT);
+            }
+            for (Map.Entry<String, String> e: types.getNamespaceMapping().getPrefixToURIMapping().entrySet()) {
+                track(tracker, "-", e.getKey() + " -> " + e.getValue());
+            }
+            for (Name name: types.getNodeTypes().keySet()) {
+                track(tracker, "-", npResolver.getJCRName(name));
+            }
+            if (tracker != null) {
+                tracker.setMode(mode);
+            }
+            return Collections.emptyList();
+        }
 
         // filter out registered
         DefaultNodeTypeSet set;
@@ -75,7 +99,6 @@ public class JcrNodeTypeInstaller implements NodeTypeInstaller {
             set = new DefaultNodeTypeSet(types);
         }
         log.trace("Removing registered nodetypes");
-        DefaultNamePathResolver npResolver = new DefaultNamePathResolver(session);
         NodeTypeIterator iter = ntMgr.getAllNodeTypes();
         while (iter.hasNext()) {
             NodeType nt = iter.nextNodeType();
@@ -129,9 +152,26 @@ public class JcrNodeTypeInstaller implements NodeTypeInstaller {
         if (tracker != null) {
             tracker.setMode(mode);
         }
+        DefinitionFingerprints.setInstalled(session, fingerprint);
         return nts;
     }
 
+    /**
+     * Checks if all node types of the given set are registered.
+     */
+    private static boolean isRegistered(NodeTypeManager ntMgr, DefaultNamePathResolver npResolver, NodeTypeSet types) {
+        try {
+            for (Name name: types.getNodeTypes().keySet()) {
+                if (!ntMgr.hasNodeType(npResolver.getJCRName(name))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (RepositoryException e) {
+            return false;
+        }
+    }
+
     private void track(ProgressTracker tracker, String action, String path) {
         log.debug("{} {}", action, path);
         if (tracker != null) {
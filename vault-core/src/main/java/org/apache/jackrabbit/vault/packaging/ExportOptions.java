@@ -17,8 +17,12 @@
 
 package org.apache.jackrabbit.vault.packaging;
 
+import java.io.File;
+import java.util.zip.Deflater;
+
 import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
+import org.apache.jackrabbit.vault.fs.io.ExportMetrics;
 
 /**
  * Holds options used for exporting.
@@ -35,6 +39,20 @@ public class ExportOptions {
 
     private String mountPath;
 
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int compressionThreads;
+
+    private boolean storeCompressedEntries;
+
+    private int aggregationThreads;
+
+    private boolean incremental;
+
+    private File incrementalBase;
+
+    private ExportMetrics metrics;
+
     /**
      * Returns the progress tracker listener.
      * @return the progress tracker listener.
@@ -122,4 +140,149 @@ public class ExportOptions {
     public void setMountPath(String mountPath) {
         this.mountPath = mountPath;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the compression level.
+     * @return the compression level
+     * @since 3.1.35
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level used for the package entries. Defaults to {@link Deflater#DEFAULT_COMPRESSION}.
+     *
+     * @param compressionLevel the compression level (0-9) or {@link Deflater#DEFAULT_COMPRESSION}
+     * @since 3.1.35
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the number of threads used to compress the package entries.
+     * @return the number of threads
+     * @since 3.1.35
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to compress the package entries. If greater than 1, the entries are
+     * compressed in parallel and written in order. Defaults to {@code 0}, i.e. the entries are compressed in the
+     * exporting thread.
+     *
+     * @param compressionThreads the number of threads
+     * @since 3.1.35
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Returns the number of threads used to collect the aggregates of the package content.
+     * @return the number of threads
+     * @since 3.1.35
+     */
+    public int getAggregationThreads() {
+        return aggregationThreads;
+    }
+
+    /**
+     * Sets the number of threads used to collect the aggregates of the package content. If greater than 1, sibling
+     * aggregates are read concurrently using clones of the session, which reduces the export time if the
+     * repository reads are slow (eg. over remoting). The package entries are written in the same order.
+     * Defaults to {@code 0}, i.e. the aggregates are collected in the exporting thread.
+     *
+     * @param aggregationThreads the number of threads
+     * @since 3.1.35
+     */
+    public void setAggregationThreads(int aggregationThreads) {
+        this.aggregationThreads = aggregationThreads;
+    }
+
+    /**
+     * Checks if the package is assembled in incremental mode.
+     * @return {@code true} if incremental
+     * @since 3.1.35
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets if the package is assembled in incremental mode. In this mode the last modified date, size and hash
+     * of the exported files are recorded in the package, so that it can be used as base of a following
+     * incremental build. Defaults to {@code false}.
+     *
+     * @param incremental {@code true} to enable the incremental mode
+     * @since 3.1.35
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns the package of the previous build.
+     * @return the base package or {@code null}
+     * @since 3.1.35
+     */
+    public File getIncrementalBase() {
+        return incrementalBase;
+    }
+
+    /**
+     * Sets the package of the previous build. The compressed entries of the base package are copied for the files
+     * that did not change since, and only the modified aggregates are serialized. Setting a base package implies
+     * the incremental mode. Packages that were not assembled in incremental mode can't be used as base, and
+     * all files are exported.
+     *
+     * @param incrementalBase the base package or {@code null}
+     * @since 3.1.35
+     */
+    public void setIncrementalBase(File incrementalBase) {
+        this.incrementalBase = incrementalBase;
+    }
+
+    /**
+     * Returns the export metrics.
+     * @return the metrics or {@code null}
+     * @since 3.1.35
+     */
+    public ExportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics to which the duration of the export phases and the number of exported files are added
+     * when the package is assembled.
+     *
+     * @param metrics the metrics or {@code null}
+     * @since 3.1.35
+     */
+    public void setMetrics(ExportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Checks if package entries with already compressed content are stored without compression.
+     * @return {@code true} if already compressed content is stored
+     * @since 3.1.35
+     */
+    public boolean isStoreCompressedEntries() {
+        return storeCompressedEntries;
+    }
+
+    /**
+     * Sets if package entries with content that is already compressed, like images or archives, are stored
+     * without compressing them again. Defaults to {@code false}, i.e. all entries are compressed.
+     *
+     * @param storeCompressedEntries {@code true} to store already compressed content
+     * @since 3.1.35
+     */
+    public void setStoreCompressedEntries(boolean storeCompressedEntries) {
+        this.storeCompressedEntries = storeCompressedEntries;
+    }
+}
@@ -180,6 +180,13 @@ public interface JcrPackageDefinition {
      */
     String PN_DISABLE_INTERMEDIATE_SAVE = "noIntermediateSaves";
 
+    /**
+     * Property name of the incremental build flag. If {@code true}, the entries of the previous build that did not
+     * change are reused when the package is assembled.
+     * @since 3.1.35
+     */
+    String PN_INCREMENTAL_BUILD = "incrementalBuild";
+
     /**
      * Returns the underlying node
      * @return the node
@@ -17,13 +17,36 @@
 package org.apache.jackrabbit.vault.packaging.events.impl;
 
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 
+import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Properties;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
@@ -37,35 +60,167 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Packaging observation helper
+ *
+ * By default the events are dispatched synchronously on the thread that installs the package. If configured to be
+ * {@link #PROP_ASYNCHRONOUS asynchronous}, the events are queued to a single thread per listener, so that a slow
+ * listener does not delay the installation. Each listener receives the events in the order they were dispatched,
+ * also while the dispatch mode is changed. If the queue of a listener is full, the dispatching thread waits until
+ * the listener catches up. Removing a listener or changing the mode does not wait for the queued events, they are
+ * dispatched by the old thread before it stops.
  */
-@Component(immediate=true)
+@Component(immediate=true, metatype = true,
+        label = "Apache Jackrabbit FileVault Package Event Dispatcher",
+        description = "Dispatches the package events to the registered package event listeners.")
+@Properties({
+        @Property(name = "jmx.objectname", value = "org.apache.jackrabbit.vault.packaging:type=eventDispatcher",
+                propertyPrivate = true),
+        @Property(name = PackageEventDispatcherImpl.PROP_ASYNCHRONOUS, boolValue = false,
+                label = "Asynchronous",
+                description = "Dispatches the events to each listener in a separate thread."),
+        @Property(name = PackageEventDispatcherImpl.PROP_QUEUE_SIZE, intValue = PackageEventDispatcherImpl.DEFAULT_QUEUE_SIZE,
+                label = "Queue Size",
+                description = "Maximum number of queued events per listener if asynchronous.")
+})
 @References({
         @Reference(name="packageEventListener",
                 referenceInterface = PackageEventListener.class,
                 cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE,
                 policy = ReferencePolicy.DYNAMIC)
 })
-@Service
-public class PackageEventDispatcherImpl implements PackageEventDispatcher {
+@Service(value = {PackageEventDispatcher.class, DynamicMBean.class})
+public class PackageEventDispatcherImpl extends StandardMBean implements PackageEventDispatcher, PackageEventDispatcherMBean {
+
+    /**
+     * Name of the property that enables the asynchronous dispatch.
+     */
+    public static final String PROP_ASYNCHRONOUS = "asynchronous";
+
+    /**
+     * Name of the property that defines the maximum number of queued events per listener.
+     */
+    public static final String PROP_QUEUE_SIZE = "queueSize";
+
+    /**
+     * default number of queued events per listener
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
 
     /**
      * default logger
      */
     private static final Logger log = LoggerFactory.getLogger(PackageEventDispatcherImpl.class);
 
+    /**
+     * time in seconds to wait for the events queued before the dispatch mode changed
+     */
+    private static final int CLOSE_TIMEOUT = 30;
+
+    /**
+     * time in milliseconds between the checks if a full queue was closed
+     */
+    private static final long OFFER_TIMEOUT = 100;
+
+    private static final String[] listenerItemNames = {
+            "id",
+            "listener",
+            "queued",
+            "dispatched",
+            "failed",
+            "totalTime",
+            "maxTime"
+    };
+    private static final String[] listenerItemDescriptions = {
+            "Listener Id",
+            "Listener Class",
+            "Number of queued events",
+            "Number of dispatched events",
+            "Number of events that failed",
+            "Total duration of the event handling in milliseconds",
+            "Longest duration of the event handling in milliseconds"
+    };
+
+    private static final OpenType[] listenerItemTypes = {
+            SimpleType.STRING,
+            SimpleType.STRING,
+            SimpleType.INTEGER,
+            SimpleType.LONG,
+            SimpleType.LONG,
+            SimpleType.LONG,
+            SimpleType.LONG
+    };
+
+    private static final String[] listenerIndexNames = { "id" };
+
     /**
      * the registered listener
      */
-    private ConcurrentHashMap<Object, PackageEventListener> listeners = new ConcurrentHashMap<Object, PackageEventListener>();
+    private ConcurrentHashMap<Object, ListenerQueue> listeners = new ConcurrentHashMap<Object, ListenerQueue>();
+
+    private volatile boolean asynchronous;
+
+    private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+
+    public PackageEventDispatcherImpl() {
+        super(PackageEventDispatcherMBean.class, false);
+    }
+
+    @Activate
+    protected void activate(Map<String, Object> props) {
+        Object async = props.get(PROP_ASYNCHRONOUS);
+        Object size = props.get(PROP_QUEUE_SIZE);
+        configure(
+                async == null ? false : Boolean.valueOf(async.toString()),
+                size == null ? DEFAULT_QUEUE_SIZE : Integer.parseInt(size.toString())
+        );
+    }
+
+    @Modified
+    protected void modified(Map<String, Object> props) {
+        activate(props);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        for (Object key: listeners.keySet()) {
+            ListenerQueue queue = listeners.remove(key);
+            if (queue != null) {
+                queue.close();
+            }
+        }
+    }
+
+    /**
+     * Sets the dispatch mode. The events that are already queued are dispatched before the mode changes.
+     * @param asynchronous {@code true} to dispatch the events asynchronously
+     * @param queueSize maximum number of queued events per listener
+     */
+    public synchronized void configure(boolean asynchronous, int queueSize) {
+        // public for testing
+        if (this.asynchronous == asynchronous && this.queueSize == queueSize) {
+            return;
+        }
+        this.asynchronous = asynchronous;
+        this.queueSize = Math.max(1, queueSize);
+        log.info("Package events are dispatched {}.", asynchronous
+                ? "asynchronously (queue size " + this.queueSize + ")"
+                : "synchronously");
+        for (ListenerQueue queue: listeners.values()) {
+            queue.configure(asynchronous, this.queueSize);
+        }
+    }
 
     /**
      * Bind a new listener
      * @param listener the processor
      * @param props service properties
      */
-    public void bindPackageEventListener(PackageEventListener listener, Map<String, Object> props) {
+    public synchronized void bindPackageEventListener(PackageEventListener listener, Map<String, Object> props) {
         // public for testing
-        listeners.put(props.get("component.id"), listener);
+        Object key = props.get("component.id");
+        ListenerQueue old = listeners.put(key, new ListenerQueue(key, listener));
+        if (old != null) {
+            old.close();
+        }
         log.debug("Registering package event listener {}", listener.getClass().getName());
     }
 
@@ -75,7 +230,9 @@ public class PackageEventDispatcherImpl implements PackageEventDispatcher {
      * @param props service properties
      */
     protected void unbindPackageEventListener(PackageEventListener listener, Map<String, Object> props) {
-        if (listeners.remove(props.get("component.id")) != null) {
+        ListenerQueue queue = listeners.remove(props.get("component.id"));
+        if (queue != null) {
+            queue.close();
             log.debug("Unregistering package event listener {}", listener.getClass().getName());
         } else {
             log.warn("unable to unregister package event listener {}", listener.getClass().getName());
@@ -84,11 +241,241 @@ public class PackageEventDispatcherImpl implements PackageEventDispatcher {
 
     public void dispatch(@Nonnull PackageEvent.Type type, @Nonnull PackageId id, @Nullable PackageId[] related) {
         final EventImpl event = new EventImpl(type, id, related);
-        for (PackageEventListener l: listeners.values()) {
+        for (ListenerQueue queue: listeners.values()) {
+            queue.dispatch(event);
+        }
+    }
+
+    @Override
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @Override
+    public TabularData getListeners() {
+        try {
+            CompositeType listenerType = new CompositeType("listener", "Package Event Listener",
+                    listenerItemNames, listenerItemDescriptions, listenerItemTypes);
+            TabularDataSupport listenerData = new TabularDataSupport(new TabularType("listeners",
+                    "List of Package Event Listeners", listenerType, listenerIndexNames));
+            for (ListenerQueue queue: listeners.values()) {
+                Object[] values = {
+                        String.valueOf(queue.id),
+                        queue.listener.getClass().getName(),
+                        queue.getNumQueued(),
+                        queue.numDispatched.get(),
+                        queue.numFailed.get(),
+                        TimeUnit.NANOSECONDS.toMillis(queue.totalTime.get()),
+                        TimeUnit.NANOSECONDS.toMillis(queue.maxTime.get())
+                };
+                listenerData.put(new CompositeDataSupport(listenerType, listenerItemNames, values));
+            }
+            return listenerData;
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected String getDescription(MBeanInfo info) {
+        return "Package Event Dispatcher Information";
+    }
+
+    @Override
+    protected String getDescription(MBeanAttributeInfo info) {
+        if (info.getName().equals("Listeners")) {
+            return "Registered Package Event Listeners";
+        } else if (info.getName().equals("Asynchronous")) {
+            return "Asynchronous Dispatch";
+        } else if (info.getName().equals("QueueSize")) {
+            return "Maximum Number of Queued Events per Listener";
+        }
+        return super.getDescription(info);
+    }
+
+    /**
+     * Dispatches the events to a listener, either directly or through a single threaded executor if asynchronous.
+     */
+    private final class ListenerQueue implements RejectedExecutionHandler {
+
+        private final Object id;
+
+        private final PackageEventListener listener;
+
+        /**
+         * the executor of the asynchronous mode or {@code null} if synchronous
+         */
+        private volatile ThreadPoolExecutor executor;
+
+        /**
+         * the executor of the previous asynchronous mode, whose queued events are dispatched before new events
+         */
+        private volatile ThreadPoolExecutor previous;
+
+        private volatile boolean closed;
+
+        private final AtomicLong numDispatched = new AtomicLong();
+
+        private final AtomicLong numFailed = new AtomicLong();
+
+        private final AtomicLong totalTime = new AtomicLong();
+
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private ListenerQueue(Object id, PackageEventListener listener) {
+            this.id = id;
+            this.listener = listener;
+            configure(asynchronous, queueSize);
+        }
+
+        /**
+         * Changes the dispatch mode. The old executor is shut down without waiting for its queued events. The new
+         * executor, or the dispatching thread if synchronous, waits for them before it dispatches new events.
+         * Events that are rejected by the old executor are dispatched with the new mode.
+         */
+        private synchronized void configure(boolean asynchronous, int queueSize) {
+            ThreadPoolExecutor old = executor;
+            final ThreadPoolExecutor prev = old == null ? previous : old;
+            if (asynchronous) {
+                final String name = "PackageEventDispatcher-" + listener.getClass().getSimpleName();
+                ThreadPoolExecutor ex = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>(queueSize),
+                        new ThreadFactory() {
+                            @Override
+                            public Thread newThread(@Nonnull Runnable r) {
+                                Thread t = new Thread(r, name);
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        },
+                        this);
+                if (prev != null) {
+                    ex.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            awaitTermination(prev);
+                        }
+                    });
+                }
+                previous = null;
+                executor = ex;
+            } else {
+                previous = prev;
+                executor = null;
+            }
+            if (old != null) {
+                old.shutdown();
+            }
+        }
+
+        private void dispatch(final PackageEvent event) {
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    onPackageEvent(event);
+                }
+            });
+        }
+
+        private void dispatch(Runnable r) {
+            ThreadPoolExecutor ex = executor;
+            if (ex != null) {
+                ex.execute(r);
+                return;
+            }
+            ThreadPoolExecutor prev = previous;
+            if (prev != null) {
+                awaitTermination(prev);
+                previous = null;
+            }
+            r.run();
+        }
+
+        private void onPackageEvent(PackageEvent event) {
+            long start = System.nanoTime();
             try {
-                l.onPackageEvent(event);
+                listener.onPackageEvent(event);
             } catch (Throwable e) {
-                // ignore
+                numFailed.incrementAndGet();
+                log.warn("Package event listener {} failed to process {} of {}: {}", new Object[]{
+                        listener.getClass().getName(), event.getType(), event.getId(), e.toString()
+                });
+            } finally {
+                long time = System.nanoTime() - start;
+                numDispatched.incrementAndGet();
+                totalTime.addAndGet(time);
+                long max = maxTime.get();
+                while (time > max && !maxTime.compareAndSet(max, time)) {
+                    max = maxTime.get();
+                }
+            }
+        }
+
+        private int getNumQueued() {
+            ThreadPoolExecutor ex = executor;
+            return ex == null ? 0 : ex.getQueue().size();
+        }
+
+        /**
+         * Called if the queue is full or the executor was shut down. If the queue is full, waits until the
+         * listener processed the next event, so that the events are not reordered. If the executor was shut down
+         * because the dispatch mode changed, the event is dispatched with the new mode.
+         */
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            try {
+                if (!executor.isShutdown()) {
+                    log.debug("Event queue of package event listener {} is full.", listener.getClass().getName());
+                    while (!executor.isShutdown()) {
+                        if (executor.getQueue().offer(r, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                            if (!executor.isShutdown() || !executor.remove(r)) {
+                                return;
+                            }
+                            // the executor might already have stopped and would not process the event
+                            break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for package event listener {}. Event not dispatched.",
+                        listener.getClass().getName());
+                return;
+            }
+            if (closed || this.executor == executor) {
+                log.warn("Package event listener {} was removed. Event not dispatched.", listener.getClass().getName());
+                return;
+            }
+            dispatch(r);
+        }
+
+        /**
+         * Waits until the events queued by the given executor are dispatched.
+         */
+        private void awaitTermination(ThreadPoolExecutor ex) {
+            try {
+                if (!ex.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.warn("Package event listener {} did not process {} queued events within {} seconds.",
+                            new Object[]{listener.getClass().getName(), ex.getQueue().size(), CLOSE_TIMEOUT});
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Stops the thread once the queued events are dispatched. This does not wait for the events.
+         */
+        private void close() {
+            closed = true;
+            ThreadPoolExecutor ex = executor;
+            if (ex != null) {
+                ex.shutdown();
             }
         }
     }
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.events.impl;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * {@code PackageEventDispatcherMBean} exposes the state of the package event dispatcher.
+ */
+public interface PackageEventDispatcherMBean {
+
+    /**
+     * Checks if the events are dispatched asynchronously.
+     * @return {@code true} if asynchronous
+     */
+    boolean isAsynchronous();
+
+    /**
+     * Returns the maximum number of queued events per listener if the events are dispatched asynchronously.
+     * @return the queue size
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the number of queued events, the number of dispatched and failed events and the duration of the
+     * event handling for each listener.
+     * @return the listener statistics
+     */
+    TabularData getListeners();
+
+}
@@ -23,9 +23,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.CheckForNull;
@@ -50,6 +52,7 @@ import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
 import org.apache.jackrabbit.vault.fs.api.VaultInputSource;
 import org.apache.jackrabbit.vault.fs.io.AccessControlHandling;
 import org.apache.jackrabbit.vault.fs.io.Archive;
+import org.apache.jackrabbit.vault.fs.io.ImportMetrics;
 import org.apache.jackrabbit.vault.fs.io.ImportOptions;
 import org.apache.jackrabbit.vault.fs.io.MemoryArchive;
 import org.apache.jackrabbit.vault.fs.io.ZipArchive;
@@ -380,6 +383,9 @@ public class JcrPackageImpl implements JcrPackage {
             // MAX_VALUE disables saving completely, therefore we have to use a lower value!
             opts.setAutoSaveThreshold(Integer.MAX_VALUE - 1);
         }
+        // record the metrics of this package separately, the sub packages add their own
+        ImportMetrics metrics = new ImportMetrics();
+        opts.setMetrics(metrics);
         InstallContextImpl ctx = pack.prepareExtract(node.getSession(), opts);
         JcrPackage snap = null;
         if (!opts.isDryRun() && createSnapshot) {
@@ -395,8 +401,10 @@ public class JcrPackageImpl implements JcrPackage {
         }
 
         // process sub packages
+        long start = System.nanoTime();
         Session s = node.getSession();
         List<JcrPackageImpl> subPacks = new LinkedList<JcrPackageImpl>();
+        InstalledPackageIndex installedPackages = new InstalledPackageIndex(new JcrPackageManagerImpl(s));
         for (String path: subPackages) {
             if (s.nodeExists(path)) {
                 JcrPackageImpl p = new JcrPackageImpl(mgr, s.getNode(path));
@@ -421,31 +429,7 @@ public class JcrPackageImpl implements JcrPackage {
                     }
 
                     PackageId pId = def.getId();
-                    String pName = pId.getName();
-                    Version pVersion = pId.getVersion();
-
-                    // get the list of packages available in the same group
-                    JcrPackageManager pkgMgr = new JcrPackageManagerImpl(s);                    
-                    List<JcrPackage> listPackages = pkgMgr.listPackages(pId.getGroup(), true);
-
-                    // keep some status variable if a more recent is found in the next loop
-                    PackageId newerPackageId = null;
-
-                    // loop in the list of packages returned previously by package manager
-                    for (JcrPackage listedPackage: listPackages) {
-                        PackageId listedPackageId = listedPackage.getPackage().getId();
-                        if (listedPackageId.equals(pId)) {
-                            continue;
-                        }
-                        // check that the listed package is actually from same name (so normally only version would differ)
-                        // if that package is valid, installed, and the version is more recent than the one in our sub package
-                        // then we can stop the loop here
-                        if (pName.equals(listedPackageId.getName()) && listedPackage.isValid() && listedPackage.isInstalled()
-                                && listedPackageId.getVersion().compareTo(pVersion) > 0) {
-                            newerPackageId = listedPackageId;
-                            break;
-                        }
-                    }
+                    PackageId newerPackageId = installedPackages.findNewerInstalled(pId);
                     // if a more recent version of that subpackage was found we don't need to add it to the list of sub packages to eventually extract later on.
                     if (newerPackageId != null) {
                         log.debug("Skipping installation if subpackage '{}' due to newer installed version: '{}'", pId, newerPackageId);
@@ -504,6 +488,13 @@ public class JcrPackageImpl implements JcrPackage {
                 s.save();
             }
         }
+        if (!subPackages.isEmpty()) {
+            metrics.recordSince(ImportMetrics.Phase.SUB_PACKAGES, start);
+        }
+        PackageMetrics.getImportMetrics().add(metrics);
+        if (options.getMetrics() != null) {
+            options.getMetrics().add(metrics);
+        }
 
         if (createSnapshot) {
             mgr.dispatch(PackageEvent.Type.INSTALL, def.getId(), null);
@@ -1021,4 +1012,70 @@ public class JcrPackageImpl implements JcrPackage {
             throw new IllegalArgumentException("not a valid package.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Index of the packages by group and name, used to check if a newer version of a sub package is already
+     * installed. The packages of a group are listed once, on first access, and only the id and installation
+     * state of their definition nodes are read. The installation state is evaluated on each check, since
+     * processing the sub packages can change it.
+     */
+    private static class InstalledPackageIndex {
+
+        private final JcrPackageManager pkgMgr;
+
+        private final Map<String, Map<String, List<JcrPackageDefinition>>> groups
+                = new HashMap<String, Map<String, List<JcrPackageDefinition>>>();
+
+        private InstalledPackageIndex(JcrPackageManager pkgMgr) {
+            this.pkgMgr = pkgMgr;
+        }
+
+        /**
+         * Returns the id of an installed package with the same group and name as the given one, but with a newer
+         * version.
+         * @param id the package id
+         * @return the id of the newer package or {@code null}
+         * @throws RepositoryException if an error occurs
+         */
+        @CheckForNull
+        private PackageId findNewerInstalled(@Nonnull PackageId id) throws RepositoryException {
+            List<JcrPackageDefinition> defs = getGroup(id.getGroup()).get(id.getName());
+            if (defs == null) {
+                return null;
+            }
+            Version version = id.getVersion();
+            for (JcrPackageDefinition def: defs) {
+                PackageId listedId = def.getId();
+                if (listedId.equals(id)) {
+                    continue;
+                }
+                if (listedId.getVersion().compareTo(version) > 0 && def.getLastUnpacked() != null) {
+                    return listedId;
+                }
+            }
+            return null;
+        }
+
+        private Map<String, List<JcrPackageDefinition>> getGroup(String group) throws RepositoryException {
+            Map<String, List<JcrPackageDefinition>> names = groups.get(group);
+            if (names == null) {
+                names = new HashMap<String, List<JcrPackageDefinition>>();
+                for (JcrPackage listed: pkgMgr.listPackages(group, true)) {
+                    JcrPackageDefinition def = listed.getDefinition();
+                    if (def == null) {
+                        continue;
+                    }
+                    String name = def.getId().getName();
+                    List<JcrPackageDefinition> defs = names.get(name);
+                    if (defs == null) {
+                        defs = new ArrayList<JcrPackageDefinition>();
+                        names.put(name, defs);
+                    }
+                    defs.add(def);
+                }
+                groups.put(group, names);
+            }
+            return names;
+        }
+    }
+}
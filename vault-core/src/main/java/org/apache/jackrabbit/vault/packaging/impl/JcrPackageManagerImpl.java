@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -41,6 +42,7 @@ import javax.jcr.Session;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
 import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
@@ -87,7 +89,7 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
     /**
      * root path for packages
      */
-    private final static String PACKAGE_ROOT_PATH = "/etc/packages";
+    final static String PACKAGE_ROOT_PATH = "/etc/packages";
 
     /**
      * internal session
@@ -99,6 +101,11 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
      */
     private Node packRoot;
 
+    /**
+     * the package registry index
+     */
+    private PackageRegistryIndex index;
+
     /**
      * Creates a new package manager using the given session.
      *
@@ -152,14 +159,36 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
             return null;
         }
         Node groupNode = getPackageRoot().getNode(dependency.getGroup());
+        List<PackageRegistryIndex.Entry> entries = listIndexedEntries(groupNode.getPath(), null);
+        if (entries != null) {
+            PackageId bestId = null;
+            for (PackageRegistryIndex.Entry e: entries) {
+                PackageId id = e.getId();
+                if (id != null && dependency.matches(id)) {
+                    if (bestId == null || id.getVersion().compareTo(bestId.getVersion()) > 0) {
+                        if (onlyInstalled) {
+                            JcrPackage pack = open(e);
+                            if (pack == null || !pack.isInstalled()) {
+                                continue;
+                            }
+                        }
+                        bestId = id;
+                    }
+                }
+            }
+            return bestId;
+        }
+        List<JcrPackageImpl> packages = new LinkedList<JcrPackageImpl>();
         NodeIterator iter = groupNode.getNodes();
-        PackageId bestId = null;
         while (iter.hasNext()) {
             Node child = iter.nextNode();
             if (".snapshot".equals(child.getName())) {
                 continue;
             }
-            JcrPackageImpl pack = new JcrPackageImpl(this, child);
+            packages.add(new JcrPackageImpl(this, child));
+        }
+        PackageId bestId = null;
+        for (JcrPackageImpl pack: packages) {
             if (pack.isValid()) {
                 if (onlyInstalled && !pack.isInstalled()) {
                     continue;
@@ -171,7 +200,6 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
                     }
                 }
             }
-
         }
         return bestId;
     }
@@ -182,7 +210,11 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
     @Override
     public PackageId[] usage(PackageId id) throws RepositoryException {
         TreeSet<PackageId> usages = new TreeSet<PackageId>();
-        for (JcrPackage p: listPackages()) {
+        List<? extends JcrPackage> packages = listIndexed(null, id);
+        if (packages == null) {
+            packages = listPackages();
+        }
+        for (JcrPackage p: packages) {
             if (!p.isInstalled()) {
                 continue;
             }
@@ -588,11 +620,22 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
         opts.setListener(listener);
         opts.setPostProcessor(def.getInjectProcessor());
 
-        VaultPackage pack = assemble(packNode.getSession(), opts, (File) null);
+        Node contentNode = packNode.getNode(JcrConstants.JCR_CONTENT);
+        File base = null;
+        VaultPackage pack;
+        try {
+            if (def.getBoolean(JcrPackageDefinition.PN_INCREMENTAL_BUILD)) {
+                opts.setIncremental(true);
+                base = spoolPreviousBuild(contentNode);
+                opts.setIncrementalBase(base);
+            }
+            pack = assemble(packNode.getSession(), opts, (File) null);
+        } finally {
+            FileUtils.deleteQuietly(base);
+        }
         PackageId id = pack.getId();
 
         // update this content
-        Node contentNode = packNode.getNode(JcrConstants.JCR_CONTENT);
         InputStream in;
         try {
             in = FileUtils.openInputStream(pack.getFile());
@@ -609,6 +652,34 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
         dispatch(PackageEvent.Type.ASSEMBLE, id, null);
     }
 
+    /**
+     * Spools the package data of the previous build to a temporary file, so that it can be used as base of an
+     * incremental build.
+     * @param contentNode the content node of the package
+     * @return the temporary file or {@code null} if the package was not built before
+     */
+    @Nullable
+    private File spoolPreviousBuild(Node contentNode) throws RepositoryException, IOException {
+        if (!contentNode.hasProperty(JcrConstants.JCR_DATA)
+                || contentNode.getProperty(JcrConstants.JCR_DATA).getLength() == 0) {
+            return null;
+        }
+        File file = File.createTempFile("vaultbase", ".zip");
+        Binary bin = contentNode.getProperty(JcrConstants.JCR_DATA).getBinary();
+        InputStream in = null;
+        try {
+            in = bin.getStream();
+            FileUtils.copyInputStreamToFile(in, file);
+            return file;
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(file);
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(in);
+            bin.dispose();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -812,7 +883,12 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
             return Collections.emptyList();
         } else {
             List<JcrPackage> packages = new LinkedList<JcrPackage>();
-            listPackages(root, packages, filter, false, false);
+            List<JcrPackageImpl> indexed = listIndexed(null, null);
+            if (indexed == null) {
+                listPackages(root, packages, filter, false, false);
+            } else {
+                addPackages(indexed, packages, filter, false);
+            }
             Collections.sort(packages);
             return packages;
         }
@@ -829,7 +905,12 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
         }
         List<JcrPackage> packages = new LinkedList<JcrPackage>();
         if (group == null) {
-            listPackages(pRoot, packages, null, built, false);
+            List<JcrPackageImpl> indexed = listIndexed(null, null);
+            if (indexed == null) {
+                listPackages(pRoot, packages, null, built, false);
+            } else {
+                addPackages(indexed, packages, null, built);
+            }
         } else {
             Node root = pRoot;
             if (group.length() > 0) {
@@ -849,7 +930,12 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
                     }
                 }
             }
-            listPackages(root, packages, null, built, true);
+            List<JcrPackageImpl> indexed = listIndexed(root.getPath(), null);
+            if (indexed == null) {
+                listPackages(root, packages, null, built, true);
+            } else {
+                addPackages(indexed, packages, null, built);
+            }
         }
         Collections.sort(packages);
         return packages;
@@ -893,4 +979,205 @@ public class JcrPackageManagerImpl extends PackageManagerImpl implements JcrPack
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds the given packages to the list, if they match the filter.
+     *
+     * @param indexed the packages from the index
+     * @param packages list for the packages
+     * @param filter optional filter to filter out packages
+     * @param built if {@code true} only packages with size > 0 are added
+     * @throws RepositoryException if an error occurs
+     */
+    private void addPackages(List<JcrPackageImpl> indexed, List<JcrPackage> packages,
+                             WorkspaceFilter filter, boolean built)
+            throws RepositoryException {
+        for (JcrPackageImpl pack: indexed) {
+            if (filter == null || filter.contains(pack.getNode().getPath())) {
+                if (!built || pack.getSize() > 0) {
+                    packages.add(pack);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the package registry index of this manager.
+     * @return the index
+     */
+    private PackageRegistryIndex getIndex() {
+        if (index == null) {
+            index = PackageRegistryIndex.getInstance(session);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the session of this package manager.
+     * @return the session
+     */
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Returns the entries of the package registry index. If {@code parentPath} is not {@code null}, only the
+     * packages that are direct children of that folder are returned. If {@code usedId} is not {@code null}, only
+     * the packages that have a dependency on the group and name of that package are returned.
+     *
+     * If the session has pending changes, the index is not used, since it could miss the unsaved packages.
+     *
+     * @param parentPath optional path of the folder
+     * @param usedId optional id of the package that is used by the returned packages
+     * @return the entries or {@code null} if the index can't be used.
+     * @throws RepositoryException if an error occurs
+     */
+    @Nullable
+    private List<PackageRegistryIndex.Entry> listIndexedEntries(@Nullable String parentPath,
+                                                                @Nullable PackageId usedId)
+            throws RepositoryException {
+        if (session.hasPendingChanges()) {
+            return null;
+        }
+        PackageRegistryIndex index = getIndex();
+        if (parentPath != null) {
+            return index.getChildEntries(this, parentPath);
+        } else if (usedId != null) {
+            return index.getDependentEntries(this, usedId);
+        } else {
+            return index.getEntries(this);
+        }
+    }
+
+    /**
+     * Opens the packages from the package registry index. The package definitions are not read, the packages
+     * are opened from the indexed paths. Packages that were removed but whose observation events were not
+     * processed yet are skipped.
+     *
+     * @param parentPath optional path of the folder
+     * @param usedId optional id of the package that is used by the returned packages
+     * @return the packages or {@code null} if the index can't be used.
+     * @throws RepositoryException if an error occurs
+     * @see #listIndexedEntries(String, PackageId)
+     */
+    @Nullable
+    private List<JcrPackageImpl> listIndexed(@Nullable String parentPath, @Nullable PackageId usedId)
+            throws RepositoryException {
+        List<PackageRegistryIndex.Entry> entries = listIndexedEntries(parentPath, usedId);
+        if (entries == null) {
+            return null;
+        }
+        List<JcrPackageImpl> packages = new ArrayList<JcrPackageImpl>(entries.size());
+        for (PackageRegistryIndex.Entry e: entries) {
+            JcrPackageImpl pack = open(e);
+            if (pack != null) {
+                packages.add(pack);
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Opens the package of the given index entry.
+     * @param e the index entry
+     * @return the package or {@code null} if the node does not exist anymore
+     * @throws RepositoryException if an error occurs
+     */
+    @Nullable
+    private JcrPackageImpl open(@Nonnull PackageRegistryIndex.Entry e) throws RepositoryException {
+        if (!session.nodeExists(e.getPath())) {
+            getIndex().changed(e.getPath());
+            return null;
+        }
+        return new JcrPackageImpl(this, session.getNode(e.getPath()));
+    }
+
+    /**
+     * Updates the package registry index and dispatches the event.
+     */
+    @Override
+    void dispatch(@Nonnull PackageEvent.Type type, @Nonnull PackageId id, @Nullable PackageId[] related) {
+        PackageRegistryIndex index = getIndex();
+        List<String> paths = new ArrayList<String>();
+        try {
+            switch (type) {
+                case CREATE:
+                case UPLOAD:
+                case ASSEMBLE:
+                case REWRAPP:
+                    updateIndex(index, id, paths);
+                    break;
+                case RENAME:
+                    paths.addAll(index.remove(id));
+                    if (related != null) {
+                        for (PackageId relatedId: related) {
+                            updateIndex(index, relatedId, paths);
+                        }
+                    }
+                    break;
+                case REMOVE:
+                    paths.addAll(index.remove(id));
+                    break;
+                case EXTRACT_SUB_PACKAGES:
+                    if (related != null) {
+                        for (PackageId relatedId: related) {
+                            updateIndex(index, relatedId, paths);
+                        }
+                    }
+                    break;
+                case INSTALL:
+                case EXTRACT:
+                case UNINSTALL:
+                    changedFilterRoots(index, id, paths);
+                    break;
+                default:
+                    // other changes below the package root are reported by observation
+            }
+        } catch (RepositoryException e) {
+            log.warn("Unable to update package registry index: {}", e.toString());
+            index.invalidate();
+        }
+        if (!paths.isEmpty()) {
+            // the indexes of the other users might include the changed packages, too
+            PackageRegistryIndex.changedAll(session, paths, index);
+        }
+        super.dispatch(type, id, related);
+    }
+
+    private void updateIndex(PackageRegistryIndex index, PackageId id, List<String> paths)
+            throws RepositoryException {
+        JcrPackage pack = open(id);
+        if (pack == null) {
+            index.invalidate();
+        } else {
+            index.update((JcrPackageImpl) pack);
+            paths.add(pack.getNode().getPath());
+        }
+    }
+
+    /**
+     * Records the filter roots of the given package that are below the package root as changed, since installing
+     * the package can add or modify packages, eg. sub packages. If a filter root is an ancestor of the package root,
+     * the package root is recorded, which rebuilds the index.
+     */
+    private void changedFilterRoots(PackageRegistryIndex index, PackageId id, List<String> paths)
+            throws RepositoryException {
+        JcrPackage pack = open(id);
+        WorkspaceFilter filter = pack == null ? null : pack.getDefinition().getMetaInf().getFilter();
+        if (filter == null) {
+            index.invalidate();
+            return;
+        }
+        for (PathFilterSet set: filter.getFilterSets()) {
+            String root = set.getRoot();
+            if (Text.isDescendantOrEqual(PACKAGE_ROOT_PATH, root)) {
+                paths.add(root);
+            } else if (Text.isDescendant(root, PACKAGE_ROOT_PATH)) {
+                paths.add(PACKAGE_ROOT_PATH);
+            }
+        }
+        for (String path: paths) {
+            index.changed(path);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import org.apache.jackrabbit.vault.fs.api.VaultFsConfig;
 import org.apache.jackrabbit.vault.fs.config.DefaultMetaInf;
 import org.apache.jackrabbit.vault.fs.config.MetaInf;
 import org.apache.jackrabbit.vault.fs.impl.AggregateManagerImpl;
+import org.apache.jackrabbit.vault.fs.io.ExportMetrics;
 import org.apache.jackrabbit.vault.fs.io.JarExporter;
 import org.apache.jackrabbit.vault.fs.spi.ProgressTracker;
 import org.apache.jackrabbit.vault.packaging.ExportOptions;
@@ -135,6 +136,14 @@ public class PackageManagerImpl implements PackageManager {
         VaultFileSystem jcrfs = Mounter.mount(config, metaInf.getFilter(), addr, opts.getRootPath(), s);
         JarExporter exporter = new JarExporter(out);
         exporter.setProperties(metaInf.getProperties());
+        exporter.setCompressionLevel(opts.getCompressionLevel());
+        exporter.setCompressionThreads(opts.getCompressionThreads());
+        exporter.setStoreCompressedEntries(opts.isStoreCompressedEntries());
+        exporter.setAggregationThreads(opts.getAggregationThreads());
+        exporter.setIncremental(opts.isIncremental());
+        exporter.setIncrementalBase(opts.getIncrementalBase());
+        ExportMetrics metrics = new ExportMetrics();
+        exporter.setMetrics(metrics);
         if (opts.getListener() != null) {
             exporter.setVerbose(opts.getListener());
         }
@@ -146,6 +155,10 @@ public class PackageManagerImpl implements PackageManager {
             exporter.export(jcrfs.getRoot());
         }
         jcrfs.unmount();
+        PackageMetrics.getExportMetrics().add(metrics);
+        if (opts.getMetrics() != null) {
+            opts.getMetrics().add(metrics);
+        }
     }
 
     /**
@@ -186,6 +199,9 @@ public class PackageManagerImpl implements PackageManager {
             metaInf = new DefaultMetaInf();
         }
         JarExporter exporter = new JarExporter(out);
+        exporter.setCompressionLevel(opts.getCompressionLevel());
+        exporter.setCompressionThreads(opts.getCompressionThreads());
+        exporter.setStoreCompressedEntries(opts.isStoreCompressedEntries());
         exporter.open();
         exporter.setProperties(metaInf.getProperties());
         ProgressTracker tracker = null;
@@ -25,4 +25,45 @@ public interface PackageManagerMBean {
 
     TabularData getPackages();
 
+    /**
+     * Returns the count, total and maximum duration of the import phases of all package extractions.
+     * @return the import phases
+     * @since 3.1.35
+     */
+    TabularData getImportMetrics();
+
+    /**
+     * Returns the count, total and maximum duration of the export phases of all package assemblies.
+     * @return the export phases
+     * @since 3.1.35
+     */
+    TabularData getExportMetrics();
+
+    /**
+     * Returns the number of nodes modified by all package extractions.
+     * @return the number of nodes
+     * @since 3.1.35
+     */
+    long getImportedNodes();
+
+    /**
+     * Returns the approximate size of the content imported by all package extractions.
+     * @return the size in bytes
+     * @since 3.1.35
+     */
+    long getImportedBytes();
+
+    /**
+     * Returns the number of files exported by all package assemblies.
+     * @return the number of files
+     * @since 3.1.35
+     */
+    long getExportedFiles();
+
+    /**
+     * Resets the import and export metrics.
+     * @since 3.1.35
+     */
+    void resetMetrics();
+
 }
\ No newline at end of file
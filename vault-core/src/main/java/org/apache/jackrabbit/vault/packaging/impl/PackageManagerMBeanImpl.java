@@ -38,6 +38,7 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.apache.jackrabbit.vault.fs.io.PhaseMetrics;
 import org.apache.jackrabbit.vault.packaging.JcrPackage;
 import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
 import org.apache.sling.jcr.api.SlingRepository;
@@ -85,14 +86,42 @@ public class PackageManagerMBeanImpl extends StandardMBean implements PackageMan
 
     private static final String[] packageIndexNames = { "id" };
 
+    private static final String[] phaseItemNames = {
+            "phase",
+            "count",
+            "totalTime",
+            "maxTime"
+    };
+    private static final String[] phaseItemDescriptions = {
+            "Phase",
+            "Number of executions",
+            "Total duration in milliseconds",
+            "Longest duration in milliseconds"
+    };
+
+    private static final OpenType[] phaseItemTypes = {
+            SimpleType.STRING,
+            SimpleType.LONG,
+            SimpleType.LONG,
+            SimpleType.LONG
+    };
+
+    private static final String[] phaseIndexNames = { "phase" };
+
     private final CompositeType packageType;
 
     private final TabularType packageTabularType;
 
+    private final CompositeType phaseType;
+
+    private final TabularType phaseTabularType;
+
     public PackageManagerMBeanImpl() throws NotCompliantMBeanException, OpenDataException {
         super(PackageManagerMBean.class);
         packageType = new CompositeType("package", "Package Info", packageItemNames, packageItemDescriptions, packageItemTypes);
         packageTabularType = new TabularType("packages", "List of Packages", packageType, packageIndexNames);
+        phaseType = new CompositeType("phase", "Phase Metrics", phaseItemNames, phaseItemDescriptions, phaseItemTypes);
+        phaseTabularType = new TabularType("phases", "List of Phases", phaseType, phaseIndexNames);
     }
 
     @Override
@@ -104,6 +133,16 @@ public class PackageManagerMBeanImpl extends StandardMBean implements PackageMan
     protected String getDescription(MBeanAttributeInfo info) {
         if (info.getName().equals("Packages")) {
             return "Available Packages";
+        } else if (info.getName().equals("ImportMetrics")) {
+            return "Duration of the Package Import Phases";
+        } else if (info.getName().equals("ExportMetrics")) {
+            return "Duration of the Package Export Phases";
+        } else if (info.getName().equals("ImportedNodes")) {
+            return "Number of Imported Nodes";
+        } else if (info.getName().equals("ImportedBytes")) {
+            return "Approximate Size of the Imported Content";
+        } else if (info.getName().equals("ExportedFiles")) {
+            return "Number of Exported Files";
         }
         return super.getDescription(info);
     }
@@ -147,4 +186,46 @@ public class PackageManagerMBeanImpl extends StandardMBean implements PackageMan
         }
         return packageData;
 	}
-}
\ No newline at end of file
+
+    public TabularData getImportMetrics() {
+        return getPhaseData(PackageMetrics.getImportMetrics());
+    }
+
+    public TabularData getExportMetrics() {
+        return getPhaseData(PackageMetrics.getExportMetrics());
+    }
+
+    public long getImportedNodes() {
+        return PackageMetrics.getImportMetrics().getNumNodes();
+    }
+
+    public long getImportedBytes() {
+        return PackageMetrics.getImportMetrics().getNumBytes();
+    }
+
+    public long getExportedFiles() {
+        return PackageMetrics.getExportMetrics().getNumFiles();
+    }
+
+    public void resetMetrics() {
+        PackageMetrics.reset();
+    }
+
+    private <P extends Enum<P>> TabularData getPhaseData(PhaseMetrics<P> metrics) {
+        TabularDataSupport phaseData = new TabularDataSupport(phaseTabularType);
+        for (P phase: metrics.getPhases()) {
+            try {
+                Object[] values = {
+                        phase.name(),
+                        metrics.getCount(phase),
+                        metrics.getTotalTime(phase),
+                        metrics.getMaxTime(phase)
+                };
+                phaseData.put(new CompositeDataSupport(phaseType, phaseItemNames, values));
+            } catch (Exception e) {
+                log.warn("Can't add composite data", e);
+            }
+        }
+        return phaseData;
+    }
+}
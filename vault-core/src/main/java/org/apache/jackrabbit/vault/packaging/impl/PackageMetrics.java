@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.impl;
+
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.vault.fs.io.ExportMetrics;
+import org.apache.jackrabbit.vault.fs.io.ImportMetrics;
+
+/**
+ * {@code PackageMetrics} aggregates the metrics of all package installations and assemblies of this class loader.
+ * They are published by the {@link PackageManagerMBean}.
+ */
+public final class PackageMetrics {
+
+    private static final ImportMetrics importMetrics = new ImportMetrics();
+
+    private static final ExportMetrics exportMetrics = new ExportMetrics();
+
+    private PackageMetrics() {
+    }
+
+    /**
+     * Returns the aggregated metrics of the package extractions. The sub packages are included separately.
+     * @return the import metrics
+     */
+    @Nonnull
+    public static ImportMetrics getImportMetrics() {
+        return importMetrics;
+    }
+
+    /**
+     * Returns the aggregated metrics of the package assemblies.
+     * @return the export metrics
+     */
+    @Nonnull
+    public static ExportMetrics getExportMetrics() {
+        return exportMetrics;
+    }
+
+    /**
+     * Resets the aggregated metrics.
+     */
+    public static void reset() {
+        importMetrics.reset();
+        exportMetrics.reset();
+    }
+}
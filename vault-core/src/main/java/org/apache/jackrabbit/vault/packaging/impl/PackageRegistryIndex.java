@@ -0,0 +1,603 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.packaging.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.vault.packaging.Dependency;
+import org.apache.jackrabbit.vault.packaging.JcrPackageDefinition;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.util.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of the packages below the package root. It maps the package paths to the package ids and
+ * their dependencies, and allows to look up the packages of a group folder and the packages that depend on
+ * a given package without traversing the package root.
+ *
+ * The index is shared between the package managers of the same repository, workspace and user, and is kept
+ * up to date by the package manager operations. Since packages can also be added or removed by other means (eg.
+ * content imports, other cluster nodes or replication), the index registers an observation listener on the package
+ * root and records the paths of the changed nodes. Before the index is used, only the changed packages and folders
+ * are scanned again. The index is rebuilt from the tree if it is older than {@link #MAX_AGE}, if it was invalidated,
+ * if too many changes were recorded or if the observing session was closed, since events might have been missed.
+ * If the repository does not support observation, the index is not used.
+ *
+ * The index does not store state that changes often, like the installation state or the package size. This is
+ * read from the package nodes when the index is queried.
+ */
+class PackageRegistryIndex implements EventListener {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(PackageRegistryIndex.class);
+
+    /**
+     * maximum age of the index in milliseconds before it is rebuilt.
+     */
+    static final long MAX_AGE = Long.getLong("vault.packages.index.maxAge", 60000);
+
+    /**
+     * maximum number of recorded changes before the index is rebuilt instead of updated.
+     */
+    private static final int MAX_CHANGES = 1000;
+
+    /**
+     * indexes per repository. the key of the inner map is workspace name and user id.
+     */
+    private static final Map<Repository, Map<String, PackageRegistryIndex>> indexes
+            = new WeakHashMap<Repository, Map<String, PackageRegistryIndex>>();
+
+    /**
+     * the index entries by package path
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    /**
+     * the index entries by parent (group folder) path
+     */
+    private final Map<String, List<Entry>> byParent = new HashMap<String, List<Entry>>();
+
+    /**
+     * the index entries by the group and name of their dependencies
+     */
+    private final Map<String, List<Entry>> byDependency = new HashMap<String, List<Entry>>();
+
+    /**
+     * the paths of the folders that were scanned for packages
+     */
+    private final Set<String> folders = new HashSet<String>();
+
+    /**
+     * the paths of the nodes that changed since the index was last used. guarded by itself.
+     */
+    private final Set<String> changes = new HashSet<String>();
+
+    /**
+     * flag indicating that too many changes were recorded. guarded by {@link #changes}.
+     */
+    private boolean overflow;
+
+    /**
+     * the session the observation listener is registered with
+     */
+    private Session observer;
+
+    /**
+     * flag indicating that the repository does not support observation
+     */
+    private boolean unsupported;
+
+    /**
+     * time the index was built or -1 if it needs to be rebuilt
+     */
+    private long buildTime = -1;
+
+    /**
+     * number of nodes that were read from the repository to build and update the index
+     */
+    private long numScanned;
+
+    /**
+     * Returns the index for the given session.
+     * @param session the session
+     * @return the index
+     */
+    @Nonnull
+    static PackageRegistryIndex getInstance(@Nonnull Session session) {
+        String key = session.getWorkspace().getName() + "/" + session.getUserID();
+        synchronized (indexes) {
+            Map<String, PackageRegistryIndex> repoIndexes = indexes.get(session.getRepository());
+            if (repoIndexes == null) {
+                repoIndexes = new HashMap<String, PackageRegistryIndex>();
+                indexes.put(session.getRepository(), repoIndexes);
+            }
+            PackageRegistryIndex index = repoIndexes.get(key);
+            if (index == null) {
+                index = new PackageRegistryIndex();
+                repoIndexes.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Records the given paths as changed in all indexes of the repository of the given session, except the given
+     * one. This is used when a package manager changes packages, since the indexes of the other users might include
+     * them, too, and the observation events are delivered asynchronously.
+     * @param session the session
+     * @param paths the paths of the changed package nodes
+     * @param except the index that is kept up to date by the caller or {@code null}
+     */
+    static void changedAll(@Nonnull Session session, @Nonnull Collection<String> paths,
+                           @Nullable PackageRegistryIndex except) {
+        List<PackageRegistryIndex> list;
+        synchronized (indexes) {
+            Map<String, PackageRegistryIndex> repoIndexes = indexes.get(session.getRepository());
+            if (repoIndexes == null) {
+                return;
+            }
+            list = new ArrayList<PackageRegistryIndex>(repoIndexes.values());
+        }
+        for (PackageRegistryIndex index: list) {
+            if (index != except) {
+                for (String path: paths) {
+                    index.changed(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns all index entries. The index is updated if needed.
+     * @param mgr the package manager
+     * @return the entries or {@code null} if the index can't be used
+     * @throws RepositoryException if an error occurs
+     */
+    @CheckForNull
+    synchronized List<Entry> getEntries(@Nonnull JcrPackageManagerImpl mgr) throws RepositoryException {
+        if (!validate(mgr)) {
+            return null;
+        }
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /**
+     * Returns the entries of the packages that are direct children of the given folder.
+     * @param mgr the package manager
+     * @param parentPath the path of the folder
+     * @return the entries or {@code null} if the index can't be used
+     * @throws RepositoryException if an error occurs
+     */
+    @CheckForNull
+    synchronized List<Entry> getChildEntries(@Nonnull JcrPackageManagerImpl mgr, @Nonnull String parentPath)
+            throws RepositoryException {
+        if (!validate(mgr)) {
+            return null;
+        }
+        List<Entry> list = byParent.get(parentPath);
+        return list == null ? Collections.<Entry>emptyList() : new ArrayList<Entry>(list);
+    }
+
+    /**
+     * Returns the entries of the packages that have a dependency with the same group and name as the given id.
+     * @param mgr the package manager
+     * @param id the package id
+     * @return the entries or {@code null} if the index can't be used
+     * @throws RepositoryException if an error occurs
+     */
+    @CheckForNull
+    synchronized List<Entry> getDependentEntries(@Nonnull JcrPackageManagerImpl mgr, @Nonnull PackageId id)
+            throws RepositoryException {
+        if (!validate(mgr)) {
+            return null;
+        }
+        List<Entry> list = byDependency.get(getKey(id.getGroup(), id.getName()));
+        return list == null ? Collections.<Entry>emptyList() : new ArrayList<Entry>(list);
+    }
+
+    /**
+     * Marks the index to be rebuilt on next access.
+     */
+    synchronized void invalidate() {
+        buildTime = -1;
+    }
+
+    /**
+     * Records the given path as changed. The node is scanned again on next access.
+     * @param path the path of the changed node
+     */
+    void changed(@Nonnull String path) {
+        synchronized (changes) {
+            if (changes.size() < MAX_CHANGES) {
+                changes.add(path);
+            } else {
+                overflow = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes that were read to build and update the index.
+     * @return the number of nodes
+     */
+    synchronized long getNumScannedNodes() {
+        return numScanned;
+    }
+
+    /**
+     * Records the paths of the changed nodes.
+     * @param events the events
+     */
+    @Override
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            try {
+                switch (event.getType()) {
+                    case Event.PROPERTY_ADDED:
+                    case Event.PROPERTY_CHANGED:
+                    case Event.PROPERTY_REMOVED:
+                        changed(Text.getRelativeParent(event.getPath(), 1));
+                        break;
+                    case Event.NODE_ADDED:
+                    case Event.NODE_REMOVED:
+                    case Event.NODE_MOVED:
+                        changed(event.getPath());
+                        break;
+                    default:
+                        // ignore
+                }
+            } catch (RepositoryException e) {
+                log.warn("Unable to read observation event: {}", e.toString());
+                synchronized (changes) {
+                    overflow = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds or updates the entry of the given package node.
+     * @param pack the package
+     * @throws RepositoryException if an error occurs
+     */
+    synchronized void update(@Nonnull JcrPackageImpl pack) throws RepositoryException {
+        if (buildTime < 0) {
+            return;
+        }
+        Node node = pack.getNode();
+        if (node.isNew() || node.isModified()) {
+            // unsaved packages are not visible to the other sessions.
+            changed(node.getPath());
+            return;
+        }
+        removeEntry(node.getPath());
+        if (pack.isValid()) {
+            addEntry(node.getPath(), pack.getDefinition());
+        }
+    }
+
+    /**
+     * Removes the entries of the given package id.
+     * @param id the package id
+     * @return the paths of the removed entries
+     */
+    @Nonnull
+    synchronized List<String> remove(@Nonnull PackageId id) {
+        Iterator<Entry> iter = entries.values().iterator();
+        List<String> paths = new ArrayList<String>();
+        while (iter.hasNext()) {
+            Entry e = iter.next();
+            if (id.equals(e.id)) {
+                paths.add(e.path);
+            }
+        }
+        for (String path: paths) {
+            removeEntry(path);
+        }
+        return paths;
+    }
+
+    /**
+     * Registers the observation listener if needed and applies the recorded changes.
+     * @return {@code false} if the index can't be used
+     */
+    private boolean validate(JcrPackageManagerImpl mgr) throws RepositoryException {
+        if (unsupported) {
+            return false;
+        }
+        if (observer == null || !observer.isLive()) {
+            // events might have been missed while no listener was registered
+            buildTime = -1;
+            if (!observe(mgr.getSession())) {
+                return false;
+            }
+        }
+        boolean rebuild;
+        List<String> paths;
+        synchronized (changes) {
+            rebuild = overflow;
+            paths = new ArrayList<String>(changes);
+            changes.clear();
+            overflow = false;
+        }
+        if (rebuild || buildTime < 0 || System.currentTimeMillis() - buildTime > MAX_AGE) {
+            rebuild(mgr);
+            return true;
+        }
+        Set<String> nodePaths = new TreeSet<String>();
+        for (String path: paths) {
+            String nodePath = getChangedNode(path);
+            if (nodePath == null) {
+                rebuild(mgr);
+                return true;
+            }
+            nodePaths.add(nodePath);
+        }
+        String last = null;
+        for (String nodePath: nodePaths) {
+            // the descendants of a node are sorted after it and are scanned with it
+            if (last == null || !Text.isDescendant(last, nodePath)) {
+                apply(mgr, nodePath);
+                last = nodePath;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registers the observation listener on the package root. The listener uses a separate session for the same
+     * user, so that it does not depend on the lifetime of the session of the package manager. If that is not
+     * possible, the session of the package manager is used.
+     */
+    private boolean observe(Session session) throws RepositoryException {
+        Session s;
+        try {
+            s = session.impersonate(new SimpleCredentials(session.getUserID(), new char[0]));
+        } catch (RepositoryException e) {
+            log.debug("Unable to impersonate {}, observing packages with the session of the package manager: {}",
+                    session.getUserID(), e.toString());
+            s = session;
+        }
+        try {
+            s.getWorkspace().getObservationManager().addEventListener(this,
+                    Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+                            | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED,
+                    JcrPackageManagerImpl.PACKAGE_ROOT_PATH, true, null, null, false);
+        } catch (UnsupportedRepositoryOperationException e) {
+            log.info("Repository does not support observation, package registry index is disabled.");
+            unsupported = true;
+            if (s != session) {
+                s.logout();
+            }
+            return false;
+        }
+        observer = s;
+        return true;
+    }
+
+    private void rebuild(JcrPackageManagerImpl mgr) throws RepositoryException {
+        long t0 = System.currentTimeMillis();
+        entries.clear();
+        byParent.clear();
+        byDependency.clear();
+        folders.clear();
+        Node root = mgr.getPackageRoot(true);
+        if (root != null) {
+            scan(mgr, root);
+        }
+        buildTime = System.currentTimeMillis();
+        log.debug("Package registry index rebuilt with {} packages in {}ms.", entries.size(), buildTime - t0);
+    }
+
+    /**
+     * Returns the path of the node that needs to be scanned again for the given changed path. This is the topmost
+     * ancestor below the package root that is not an indexed folder, since a package or ignored node might have
+     * been replaced by a folder or vice versa.
+     * @return the path or {@code null} if the package root itself was added, removed or changed
+     */
+    private String getChangedNode(String path) {
+        String rootPath = JcrPackageManagerImpl.PACKAGE_ROOT_PATH;
+        if (!path.startsWith(rootPath + "/")) {
+            return null;
+        }
+        int idx = rootPath.length();
+        while (idx >= 0) {
+            idx = path.indexOf('/', idx + 1);
+            String p = idx < 0 ? path : path.substring(0, idx);
+            if (!folders.contains(p)) {
+                return p;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Removes the entries below the given node and scans it again.
+     */
+    private void apply(JcrPackageManagerImpl mgr, String nodePath) throws RepositoryException {
+        removeAll(nodePath);
+        Session session = mgr.getSession();
+        if (!".snapshot".equals(Text.getName(nodePath)) && session.nodeExists(nodePath)) {
+            scanNode(mgr, session.getNode(nodePath));
+        }
+    }
+
+    /**
+     * Removes the entries and folders at or below the given path.
+     */
+    private void removeAll(String path) {
+        String prefix = path + "/";
+        List<String> paths = new ArrayList<String>();
+        for (String p: entries.keySet()) {
+            if (p.equals(path) || p.startsWith(prefix)) {
+                paths.add(p);
+            }
+        }
+        for (String p: paths) {
+            removeEntry(p);
+        }
+        Iterator<String> iter = folders.iterator();
+        while (iter.hasNext()) {
+            String p = iter.next();
+            if (p.equals(path) || p.startsWith(prefix)) {
+                iter.remove();
+            }
+        }
+    }
+
+    private void scan(JcrPackageManagerImpl mgr, Node root) throws RepositoryException {
+        for (NodeIterator iter = root.getNodes(); iter.hasNext();) {
+            Node child = iter.nextNode();
+            if (!".snapshot".equals(child.getName())) {
+                scanNode(mgr, child);
+            }
+        }
+    }
+
+    private void scanNode(JcrPackageManagerImpl mgr, Node node) throws RepositoryException {
+        numScanned++;
+        JcrPackageImpl pack = new JcrPackageImpl(mgr, node);
+        if (pack.isValid()) {
+            addEntry(node.getPath(), pack.getDefinition());
+        } else if (node.hasNodes()) {
+            folders.add(node.getPath());
+            scan(mgr, node);
+        }
+    }
+
+    private void addEntry(String path, JcrPackageDefinition def) {
+        PackageId id = def == null ? null : def.getId();
+        // skip packages with illegal names
+        if (id != null && !id.isValid()) {
+            return;
+        }
+        folders.remove(path);
+        Dependency[] deps = def == null ? null : def.getDependencies();
+        Entry e = new Entry(path, id, deps);
+        entries.put(path, e);
+        add(byParent, Text.getRelativeParent(path, 1), e);
+        if (deps != null) {
+            for (Dependency dep: deps) {
+                add(byDependency, getKey(dep.getGroup(), dep.getName()), e);
+            }
+        }
+    }
+
+    private void removeEntry(String path) {
+        Entry e = entries.remove(path);
+        if (e == null) {
+            return;
+        }
+        remove(byParent, Text.getRelativeParent(path, 1), e);
+        if (e.dependencies != null) {
+            for (Dependency dep: e.dependencies) {
+                remove(byDependency, getKey(dep.getGroup(), dep.getName()), e);
+            }
+        }
+    }
+
+    private static void add(Map<String, List<Entry>> map, String key, Entry e) {
+        List<Entry> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<Entry>(1);
+            map.put(key, list);
+        }
+        if (!list.contains(e)) {
+            list.add(e);
+        }
+    }
+
+    private static void remove(Map<String, List<Entry>> map, String key, Entry e) {
+        List<Entry> list = map.get(key);
+        if (list != null) {
+            list.remove(e);
+            if (list.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static String getKey(String group, String name) {
+        return group + ":" + name;
+    }
+
+    /**
+     * Index entry of a package.
+     */
+    static class Entry {
+
+        private final String path;
+
+        private final PackageId id;
+
+        private final Dependency[] dependencies;
+
+        private Entry(String path, PackageId id, Dependency[] dependencies) {
+            this.path = path;
+            this.id = id;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Returns the path of the package node
+         * @return the path
+         */
+        @Nonnull
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the package id or {@code null} if the package has no definition.
+         * @return the package id
+         */
+        @CheckForNull
+        PackageId getId() {
+            return id;
+        }
+    }
+}
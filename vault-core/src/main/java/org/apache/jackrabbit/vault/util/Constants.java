@@ -104,6 +104,12 @@ public interface Constants {
      */
     String PRIVILEGES_XML = "privileges.xml";
 
+    /**
+     * name of the index of the exported files of an incremental export
+     * @since 3.1.35
+     */
+    String INCREMENTAL_INDEX = "incremental.idx";
+
     /**
      * name of the file for generic serializations
      */
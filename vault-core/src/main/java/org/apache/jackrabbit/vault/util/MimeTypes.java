@@ -42,6 +42,11 @@ public class MimeTypes {
      */
     private static final HashMap<String, MimeType> byExtension = new HashMap<String, MimeType>();
 
+    /**
+     * mime types of content that is already compressed.
+     */
+    private static final HashSet<String> compressed = new HashSet<String>();
+
     static {
         // add some default mappings
         addMapping(false, "text/plain", "txt", "jsp", "jspx", "jspf", "ecma", "esp", "xsl", "xslt", "dtd", "properties", "tld" ,"php", "rb", "bnd");
@@ -54,21 +59,36 @@ public class MimeTypes {
         addMapping(false, "text/calendar", "ics");
         addMapping(false, "image/svg+xml", "svg");
         addMapping(false, "application/xliff+xml"  , "xliff");
-        addMapping(true,  "image/gif" , "gif");
-        addMapping(true,  "image/png" , "png");
-        addMapping(true,  "image/jpeg", "jpg", "jpeg");
-        addMapping(true,  "image/jpg" , "jpg", "jpeg"); // this is for compatibility reasons
+        addCompressedMapping("image/gif" , "gif");
+        addCompressedMapping("image/png" , "png");
+        addCompressedMapping("image/jpeg", "jpg", "jpeg");
+        addCompressedMapping("image/jpg" , "jpg", "jpeg"); // this is for compatibility reasons
         addMapping(false, "application/json", "json");
-        addMapping(true,  "application/java-archive", "jar");
+        addCompressedMapping("application/java-archive", "jar");
         addMapping(false, "application/javascript", "js");
         addMapping(false, "application/ecmascript", "ecma");
         addMapping(false, "application/x-javascript", "js"); // discouraged per RFC-4329
         addMapping(true,  "application/pdf", "pdf");
         addMapping(true,  "application/x-shockwave-flash", "swf");
-        addMapping(true,  "application/zip", "zip");
+        addCompressedMapping("application/zip", "zip");
         addMapping(true,  "image/vnd.microsoft.icon", "ico");
-        addMapping(true,  "application/x-font-woff", "woff");
+        addCompressedMapping("application/x-font-woff", "woff");
         addMapping(true,  "application/vnd.ms-fontobject", "eot");
+        addCompressedMapping("application/x-gzip", "gz", "tgz");
+        addCompressedMapping("video/mp4", "mp4", "m4v");
+        addCompressedMapping("video/quicktime", "mov");
+        addCompressedMapping("video/webm", "webm");
+        addCompressedMapping("audio/mpeg", "mp3");
+    }
+
+    /**
+     * internally add a mapping for a binary type with already compressed content
+     * @param mimeType the content type
+     * @param ext extensions
+     */
+    private static void addCompressedMapping(String mimeType, String ... ext) {
+        addMapping(true, mimeType, ext);
+        compressed.add(mimeType);
     }
 
     /**
@@ -146,6 +166,20 @@ public class MimeTypes {
         return mt == null || mt.isBinary();
     }
 
+    /**
+     * Checks if the given mime type denotes content that is already compressed, like images, archives or videos.
+     * Compressing such content again does not reduce its size.
+     * @param mimeType the mime type
+     * @return {@code true} if compressed
+     * @since 3.1.35
+     */
+    public static boolean isCompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        return mimeType.startsWith("video/") || mimeType.startsWith("audio/") || compressed.contains(mimeType);
+    }
+
     /**
      * Checks if the given mime type is mapped to the extension
      * @param mimeType the mime type
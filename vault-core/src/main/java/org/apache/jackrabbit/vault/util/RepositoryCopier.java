@@ -17,11 +17,21 @@
 
 package org.apache.jackrabbit.vault.util;
 
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.Credentials;
 import javax.jcr.ImportUUIDBehavior;
@@ -34,6 +44,7 @@ import javax.jcr.PropertyIterator;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
 import javax.jcr.Value;
 import javax.jcr.nodetype.NodeType;
 
@@ -47,6 +58,12 @@ import org.xml.sax.SAXException;
 
 /**
  * Repository Copier that copies content from a source to a destination repository.
+ *
+ * If more than one thread is configured, the source tree is split at the configured depth below the source root.
+ * The nodes above the split depth are copied first, then the subtrees are copied concurrently, each worker thread
+ * using its own pair of source and destination sessions. Each worker saves after {@link #getBatchSize()} nodes and
+ * waits for {@link #getThrottle()} seconds after each save. Since the subtrees are added concurrently, the child
+ * nodes of the nodes above the split depth are ordered in a final pass.
  */
 public class RepositoryCopier {
 
@@ -57,13 +74,13 @@ public class RepositoryCopier {
 
     protected ProgressTrackerListener tracker;
 
-    private int numNodes = 0;
+    private volatile int numNodes = 0;
 
-    private int totalNodes = 0;
+    private AtomicInteger totalNodes = new AtomicInteger();
 
-    private long totalSize = 0;
+    private AtomicLong totalSize = new AtomicLong();
 
-    private long currentSize = 0;
+    private volatile long currentSize = 0;
 
     private int batchSize = 1024;
 
@@ -71,15 +88,15 @@ public class RepositoryCopier {
 
     private long start = 0;
 
-    private String lastKnownGood;
+    private volatile String lastKnownGood;
 
-    private String currentPath;
+    private volatile String currentPath;
 
     private String resumeFrom;
 
     private WorkspaceFilter srcFilter;
 
-    private Map<String, String> prefixMapping = new HashMap<String, String>();
+    private Map<String, String> prefixMapping = new ConcurrentHashMap<String, String>();
 
     private boolean onlyNewer;
 
@@ -97,6 +114,43 @@ public class RepositoryCopier {
 
     private volatile boolean abort;
 
+    private int threads = 1;
+
+    private int splitDepth = 1;
+
+    /**
+     * the source repository and credentials if the copier logged in itself. used to login the worker sessions.
+     */
+    private Repository srcRepository;
+
+    private Credentials srcCredentials;
+
+    private Repository dstRepository;
+
+    private Credentials dstCredentials;
+
+    /**
+     * depth of the source root
+     */
+    private int rootDepth;
+
+    /**
+     * the subtrees collected while copying the nodes above the split depth
+     */
+    private List<Subtree> splitTrees;
+
+    /**
+     * the source and destination paths of the nodes that need to be ordered after the subtrees are copied
+     */
+    private List<String[]> orderings;
+
+    /**
+     * the subtrees of the current copy or {@code null} if copied by a single thread
+     */
+    private volatile List<Subtree> subtrees;
+
+    private volatile boolean failed;
+
     public void setTracker(ProgressTrackerListener tracker) {
         this.tracker = tracker;
     }
@@ -117,6 +171,47 @@ public class RepositoryCopier {
         this.throttle = throttle;
     }
 
+    /**
+     * Returns the number of threads used to copy the subtrees.
+     * @return the number of threads
+     * @since 3.1.35
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to copy the subtrees. Each thread uses its own source and destination
+     * session. The sessions are logged in with the credentials of the repository addresses or, if the copier
+     * is given the sessions, by impersonating the users of the given sessions. Defaults to {@code 1}.
+     *
+     * @param threads the number of threads
+     * @since 3.1.35
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the depth below the source root at which the tree is split into subtrees.
+     * @return the split depth
+     * @since 3.1.35
+     */
+    public int getSplitDepth() {
+        return splitDepth;
+    }
+
+    /**
+     * Sets the depth below the source root at which the tree is split into subtrees that are copied concurrently.
+     * Defaults to {@code 1}, i.e. the children of the source root are copied concurrently.
+     *
+     * @param splitDepth the split depth
+     * @since 3.1.35
+     */
+    public void setSplitDepth(int splitDepth) {
+        this.splitDepth = Math.max(1, splitDepth);
+    }
+
     public void setSourceFilter(WorkspaceFilter srcFilter) {
         this.srcFilter = srcFilter;
     }
@@ -158,31 +253,76 @@ public class RepositoryCopier {
     }
 
     public String getLastKnownGood() {
-        return lastKnownGood;
+        List<Subtree> trees = subtrees;
+        if (trees == null || trees.isEmpty()) {
+            return lastKnownGood;
+        }
+        // all subtrees before the first unfinished one are copied
+        for (Subtree tree: trees) {
+            if (!tree.done || tree.copier == null || tree.copier.failed) {
+                String good = tree.copier == null ? null : tree.copier.lastKnownGood;
+                return good == null ? tree.srcPath : good;
+            }
+        }
+        return trees.get(trees.size() - 1).srcPath;
     }
 
     public String getCurrentPath() {
+        List<Subtree> trees = subtrees;
+        if (trees != null) {
+            for (Subtree tree: trees) {
+                if (!tree.done && tree.copier != null) {
+                    return tree.copier.currentPath;
+                }
+            }
+        }
         return currentPath;
     }
 
     public int getCurrentNumNodes() {
-        return numNodes;
+        int num = numNodes;
+        List<Subtree> trees = subtrees;
+        if (trees != null) {
+            for (Subtree tree: trees) {
+                if (!tree.done && tree.copier != null) {
+                    num += tree.copier.numNodes;
+                }
+            }
+        }
+        return num;
     }
 
     public int getTotalNodes() {
-        return totalNodes;
+        return totalNodes.get();
     }
 
     public long getTotalSize() {
-        return totalSize;
+        return totalSize.get();
     }
 
     public long getCurrentSize() {
-        return currentSize;
+        long size = currentSize;
+        List<Subtree> trees = subtrees;
+        if (trees != null) {
+            for (Subtree tree: trees) {
+                if (!tree.done && tree.copier != null) {
+                    size += tree.copier.currentSize;
+                }
+            }
+        }
+        return size;
     }
 
     public void abort() {
         abort = true;
+        List<Subtree> trees = subtrees;
+        if (trees != null) {
+            for (Subtree tree: trees) {
+                if (tree.copier != null) {
+                    tree.copier.abort();
+                }
+            }
+        }
     }
 
     public void copy(RepositoryAddress src, RepositoryAddress dst, boolean recursive) {
@@ -207,29 +347,37 @@ public class RepositoryCopier {
                 return;
             }
 
+            Credentials srcCreds = src.getCredentials();
+            if (srcCreds == null && credentialsProvider != null) {
+                srcCreds = credentialsProvider.getCredentials(src);
+            }
             try {
-                Credentials srcCreds = src.getCredentials();
-                if (srcCreds == null && credentialsProvider != null) {
-                    srcCreds = credentialsProvider.getCredentials(src);
-                }
                 srcSession = login(srcRepo, srcCreds, src.getWorkspace());
             } catch (RepositoryException e) {
                 log.error("Error while logging in src repository {}: {}", src, e.toString());
                 return;
             }
 
+            Credentials dstCreds = dst.getCredentials();
+            if (dstCreds == null && credentialsProvider != null) {
+                dstCreds = credentialsProvider.getCredentials(dst);
+            }
             try {
-                Credentials dstCreds = dst.getCredentials();
-                if (dstCreds == null && credentialsProvider != null) {
-                    dstCreds = credentialsProvider.getCredentials(dst);
-                }
                 dstSession = login(dstRepo, dstCreds, dst.getWorkspace());
             } catch (RepositoryException e) {
                 log.error("Error while logging in dst repository {}: {}", dst, e.toString());
                 return;
             }
+            srcRepository = srcRepo;
+            srcCredentials = srcCreds;
+            dstRepository = dstRepo;
+            dstCredentials = dstCreds;
             copy(srcSession, src.getPath(), dstSession, dst.getPath(), recursive);
         } finally {
+            srcRepository = null;
+            srcCredentials = null;
+            dstRepository = null;
+            dstCredentials = null;
             if (srcSession != null) {
                 srcSession.logout();
             }
@@ -243,6 +391,52 @@ public class RepositoryCopier {
         if (srcSession == null || dstSession == null) {
             throw new IllegalArgumentException("no src or dst session provided");
         }
+        numNodes = 0;
+        totalNodes.set(0);
+        currentSize = 0;
+        totalSize.set(0);
+        start = System.currentTimeMillis();
+        subtrees = null;
+        BlockingQueue<Session[]> workerSessions = null;
+        if (threads > 1 && recursive) {
+            workerSessions = openWorkerSessions(srcSession, dstSession);
+        }
+        try {
+            if (workerSessions != null) {
+                rootDepth = getDepth(srcPath);
+                splitTrees = new ArrayList<Subtree>();
+                orderings = new ArrayList<String[]>();
+            }
+            if (!copyTree(srcSession, srcPath, dstSession, dstPath, recursive)) {
+                return;
+            }
+            if (workerSessions != null) {
+                subtrees = splitTrees;
+                copySubtrees(workerSessions);
+                orderSubtrees();
+            }
+            long end = System.currentTimeMillis();
+            track("", "Copy completed. %d nodes in %dms. %d bytes", totalNodes.get(), end-start, totalSize.get());
+        } catch (RepositoryException e) {
+            log.error("Error during copy: {}", e.toString());
+        } finally {
+            splitTrees = null;
+            orderings = null;
+            if (workerSessions != null) {
+                for (Session[] pair: workerSessions) {
+                    pair[0].logout();
+                    pair[1].logout();
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the source tree to the destination path and saves the remaining changes.
+     * @return {@code false} if the root nodes could not be retrieved.
+     */
+    private boolean copyTree(Session srcSession, String srcPath, Session dstSession, String dstPath, boolean recursive)
+            throws RepositoryException {
         this.srcSession = srcSession;
         this.dstSession = dstSession;
 
@@ -254,14 +448,16 @@ public class RepositoryCopier {
             srcRoot = srcSession.getNode(srcPath);
         } catch (RepositoryException e) {
             log.error("Error while retrieving src node {}: {}", srcPath, e.toString());
-            return;
+            failed = true;
+            return false;
         }
         Node dstRoot;
         try {
             dstRoot = dstSession.getNode(dstParent);
         } catch (RepositoryException e) {
             log.error("Error while retrieving dst parent node {}: {}", dstParent, e.toString());
-            return;
+            failed = true;
+            return false;
         }
         // check if the cq namespace exists
         try {
@@ -269,23 +465,176 @@ public class RepositoryCopier {
         } catch (RepositoryException e) {
             // ignore
         }
+        copy(srcRoot, dstRoot, dstName, recursive);
+        if (numNodes > 0) {
+            track("", "Saving %d nodes...", numNodes);
+            dstSession.save();
+            track("", "Done.");
+        }
+        return true;
+    }
+
+    /**
+     * Creates the sessions of the worker threads.
+     * @return the session pairs or {@code null} if the sessions could not be created.
+     */
+    private BlockingQueue<Session[]> openWorkerSessions(Session srcSession, Session dstSession) {
+        BlockingQueue<Session[]> sessions = new LinkedBlockingQueue<Session[]>();
         try {
-            numNodes = 0;
-            totalNodes = 0;
-            currentSize = 0;
-            totalSize = 0;
-            start = System.currentTimeMillis();
-            copy(srcRoot, dstRoot, dstName, recursive);
-            if (numNodes > 0) {
-                track("", "Saving %d nodes...", numNodes);
-                dstSession.save();
-                track("", "Done.");
+            for (int i = 0; i < threads; i++) {
+                Session src = cloneSession(srcSession, srcRepository, srcCredentials);
+                Session dst;
+                try {
+                    dst = cloneSession(dstSession, dstRepository, dstCredentials);
+                } catch (RepositoryException e) {
+                    src.logout();
+                    throw e;
+                }
+                sessions.add(new Session[]{src, dst});
             }
-            long end = System.currentTimeMillis();
-            track("", "Copy completed. %d nodes in %dms. %d bytes", totalNodes, end-start, totalSize);
+            return sessions;
         } catch (RepositoryException e) {
-            log.error("Error during copy: {}", e.toString());
+            log.warn("Unable to create worker sessions for {} and {}. Copying with a single thread: {}",
+                    new Object[]{srcSession.getUserID(), dstSession.getUserID(), e.toString()});
+            track("", "Unable to create worker sessions. Copying with a single thread: %s", e.toString());
+            for (Session[] pair: sessions) {
+                pair[0].logout();
+                pair[1].logout();
+            }
+            return null;
+        }
+    }
+
+    private Session cloneSession(Session session, Repository repository, Credentials credentials)
+            throws RepositoryException {
+        if (repository != null) {
+            return repository.login(credentials, session.getWorkspace().getName());
         }
+        return session.impersonate(new SimpleCredentials(session.getUserID(), new char[0]));
+    }
+
+    /**
+     * Copies the subtrees collected while copying the nodes above the split depth.
+     */
+    private void copySubtrees(final BlockingQueue<Session[]> sessions) throws RepositoryException {
+        if (subtrees.isEmpty()) {
+            return;
+        }
+        track("", "Copying %d subtrees with %d threads...", subtrees.size(), threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(subtrees.size());
+            for (final Subtree tree: subtrees) {
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        Session[] pair;
+                        try {
+                            pair = sessions.take();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        try {
+                            copySubtree(tree, pair[0], pair[1]);
+                        } finally {
+                            sessions.add(pair);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future: futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    abort();
+                    throw new RepositoryException("Interrupted while copying subtrees.");
+                } catch (ExecutionException e) {
+                    log.error("Error while copying subtree: {}", e.getCause().toString());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void copySubtree(Subtree tree, Session src, Session dst) {
+        if (abort) {
+            return;
+        }
+        RepositoryCopier copier = new RepositoryCopier();
+        copier.tracker = tracker == null ? null : new SynchronizedTracker(tracker);
+        copier.batchSize = batchSize;
+        copier.throttle = throttle;
+        copier.srcFilter = srcFilter;
+        copier.onlyNewer = onlyNewer;
+        copier.update = update;
+        copier.noOrdering = noOrdering;
+        copier.prefixMapping = prefixMapping;
+        copier.totalNodes = totalNodes;
+        copier.totalSize = totalSize;
+        copier.start = start;
+        copier.resumeFrom = tree.resumeFrom;
+        tree.copier = copier;
+        try {
+            // discard the changes of a previous failed subtree
+            dst.refresh(false);
+            copier.copyTree(src, tree.srcPath, dst, tree.dstPath, true);
+        } catch (RepositoryException e) {
+            log.error("Error during copy of {}: {}", tree.srcPath, e.toString());
+            copier.failed = true;
+        } finally {
+            tree.done = true;
+        }
+    }
+
+    /**
+     * Orders the child nodes of the nodes above the split depth like the source nodes.
+     */
+    private void orderSubtrees() throws RepositoryException {
+        if (abort || orderings.isEmpty()) {
+            return;
+        }
+        dstSession.refresh(false);
+        for (String[] paths: orderings) {
+            try {
+                Node src = srcSession.getNode(paths[0]);
+                Node dst = dstSession.getNode(paths[1]);
+                if (!dst.getPrimaryNodeType().hasOrderableChildNodes()) {
+                    continue;
+                }
+                List<String> order = new ArrayList<String>();
+                NodeIterator niter = src.getNodes();
+                while (niter.hasNext()) {
+                    String name = checkNameSpace(niter.nextNode().getName());
+                    if (dst.hasNode(name)) {
+                        order.add(name);
+                    }
+                }
+                List<String> current = new ArrayList<String>(order.size());
+                niter = dst.getNodes();
+                while (niter.hasNext()) {
+                    String name = niter.nextNode().getName();
+                    if (order.contains(name)) {
+                        current.add(name);
+                    }
+                }
+                if (!current.equals(order)) {
+                    for (String name: order) {
+                        dst.orderBefore(name, null);
+                    }
+                }
+            } catch (RepositoryException e) {
+                log.warn("Error while ordering child nodes of {} (ignored): {}", paths[1], e.toString());
+            }
+        }
+        if (dstSession.hasPendingChanges()) {
+            track("", "Saving order of child nodes...");
+            dstSession.save();
+            track("", "Done.");
+        }
+    }
+
+    private static int getDepth(String path) {
+        return Text.explode(path, '/').length;
     }
 
     private void copy(Node src, Node dstParent, String dstName, boolean recursive)
@@ -323,20 +672,20 @@ public class RepositoryCopier {
             } else if (overwrite) {
                 if (onlyNewer && dstName.equals("jcr:content")) {
                     if (isNewer(src, dst)) {
-                        track(dstPath, "%06d U", ++totalNodes);
+                        track(dstPath, "%06d U", totalNodes.incrementAndGet());
                     } else {
                         overwrite = false;
                         recursive = false;
-                        track(dstPath, "%06d -", ++totalNodes);
+                        track(dstPath, "%06d -", totalNodes.incrementAndGet());
                     }
                 } else {
-                    track(dstPath, "%06d U", ++totalNodes);
+                    track(dstPath, "%06d U", totalNodes.incrementAndGet());
                 }
                 if (useSysView) {
                     dst = sysCopy(src, dstParent, dstName);
                 }
             } else {
-                track(dstPath, "%06d -", ++totalNodes);
+                track(dstPath, "%06d -", totalNodes.incrementAndGet());
             }
         } else {
             try {
@@ -348,7 +697,7 @@ public class RepositoryCopier {
                 } else {
                     dst = dstParent.addNode(dstName, src.getPrimaryNodeType().getName());
                 }
-                track(dstPath, "%06d A", ++totalNodes);
+                track(dstPath, "%06d A", totalNodes.incrementAndGet());
                 isNew = true;
             } catch (RepositoryException e) {
                 log.warn("Error while adding node {} (ignored): {}", dstPath, e.toString());
@@ -410,14 +759,14 @@ public class RepositoryCopier {
                         Value[] vs = p.getValues();
                         dst.setProperty(pName, vs);
                         for (long s: p.getLengths()) {
-                            totalSize+=s;
+                            totalSize.addAndGet(s);
                             currentSize+=s;
                         }
                     } else {
                         Value v = p.getValue();
                         dst.setProperty(pName, v);
                         long s= p.getLength();
-                        totalSize+=s;
+                        totalSize.addAndGet(s);
                         currentSize+=s;
                     }
                 }
@@ -445,12 +794,20 @@ public class RepositoryCopier {
                         names.add(checkNameSpace(niter.nextNode().getName()));
                     }
                 }
+                boolean split = false;
                 NodeIterator niter = src.getNodes();
                 while (niter.hasNext()) {
                     Node child = niter.nextNode();
                     String cName = checkNameSpace(child.getName());
                     names.remove(cName);
-                    copy(child, dst, cName, true);
+                    if (splitTrees != null && getDepth(child.getPath()) - rootDepth >= splitDepth) {
+                        split |= addSubtree(child, dstPath + "/" + cName);
+                    } else {
+                        copy(child, dst, cName, true);
+                    }
+                }
+                if (split && (isNew || !noOrdering) && src.getPrimaryNodeType().hasOrderableChildNodes()) {
+                    orderings.add(new String[]{path, dstPath});
                 }
                 if (resumeFrom == null) {
                     // check if we need to order
@@ -469,7 +826,7 @@ public class RepositoryCopier {
                     for (String name: names) {
                         try {
                             Node cNode = dst.getNode(name);
-                            track(cNode.getPath(), "%06d D", ++totalNodes);
+                            track(cNode.getPath(), "%06d D", totalNodes.incrementAndGet());
                             cNode.remove();
                         } catch (RepositoryException e) {
                             // ignore
@@ -490,7 +847,7 @@ public class RepositoryCopier {
                 long now = System.currentTimeMillis();
                 dstSession.save();
                 long end = System.currentTimeMillis();
-                track("", "Done in %d ms. Total time: %d, total nodes %d, %d kB", end-now, end-start, totalNodes, totalSize/1000);
+                track("", "Done in %d ms. Total time: %d, total nodes %d, %d kB", end-now, end-start, totalNodes.get(), totalSize.get()/1000);
                 lastKnownGood = currentPath;
                 numNodes = 0;
                 currentSize = 0;
@@ -508,6 +865,34 @@ public class RepositoryCopier {
         }
     }
 
+    /**
+     * Adds the subtree of the given node to the subtrees that are copied concurrently.
+     * @return {@code true} if the subtree was added or {@code false} if it was skipped.
+     */
+    private boolean addSubtree(Node src, String dstPath) throws RepositoryException {
+        if (abort) {
+            return false;
+        }
+        String path = src.getPath();
+        if (srcFilter != null && !srcFilter.contains(path)) {
+            track(path, "------ I");
+            return false;
+        }
+        String subtreeResumeFrom = null;
+        if (resumeFrom != null) {
+            if (Text.isDescendantOrEqual(path, resumeFrom)) {
+                // the subtree resumes the copy
+                subtreeResumeFrom = resumeFrom;
+                resumeFrom = null;
+            } else {
+                track(path, "------ S");
+                return false;
+            }
+        }
+        splitTrees.add(new Subtree(path, dstPath, subtreeResumeFrom));
+        return true;
+    }
+
     private Node sysCopy(Node src, Node dstParent, String dstName) throws RepositoryException {
         try {
             ContentHandler handler = dstParent.getSession().getImportContentHandler(dstParent.getPath(), ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW);
@@ -523,9 +908,9 @@ public class RepositoryCopier {
         while (iter.hasNext()) {
             Node child = iter.nextNode();
             if (isNew) {
-                track(child.getPath(), "%06d A", ++totalNodes);
+                track(child.getPath(), "%06d A", totalNodes.incrementAndGet());
             } else {
-                track(child.getPath(), "%06d U", ++totalNodes);
+                track(child.getPath(), "%06d U", totalNodes.incrementAndGet());
             }
             trackTree(child, isNew);
         }
@@ -565,22 +950,7 @@ public class RepositoryCopier {
                 String prefix = name.substring(0, idx);
                 String mapped = prefixMapping.get(prefix);
                 if (mapped == null) {
-                    String uri = srcSession.getNamespaceURI(prefix);
-                    try {
-                        mapped = dstSession.getNamespacePrefix(uri);
-                    } catch (NamespaceException e) {
-                        mapped = prefix;
-                        int i=0;
-                        while (i>=0) {
-                            try {
-                                dstSession.getWorkspace().getNamespaceRegistry().registerNamespace(mapped, uri);
-                                i=-1;
-                            } catch (NamespaceException e1) {
-                                mapped = prefix + i++;
-                            }
-                        }
-                    }
-                    prefixMapping.put(prefix, mapped);
+                    mapped = mapPrefix(prefix);
                 }
                 if (mapped.equals(prefix)) {
                     return name;
@@ -594,6 +964,35 @@ public class RepositoryCopier {
         return name;
     }
 
+    /**
+     * Maps the source prefix to the destination prefix and registers the namespace if needed. The mapping is
+     * synchronized, since it is shared with the copiers of the subtrees.
+     */
+    private String mapPrefix(String prefix) throws RepositoryException {
+        synchronized (prefixMapping) {
+            String mapped = prefixMapping.get(prefix);
+            if (mapped == null) {
+                String uri = srcSession.getNamespaceURI(prefix);
+                try {
+                    mapped = dstSession.getNamespacePrefix(uri);
+                } catch (NamespaceException e) {
+                    mapped = prefix;
+                    int i=0;
+                    while (i>=0) {
+                        try {
+                            dstSession.getWorkspace().getNamespaceRegistry().registerNamespace(mapped, uri);
+                            i=-1;
+                        } catch (NamespaceException e1) {
+                            mapped = prefix + i++;
+                        }
+                    }
+                }
+                prefixMapping.put(prefix, mapped);
+            }
+            return mapped;
+        }
+    }
+
     private void track(String path, String fmt, Object ... args) {
         if (tracker != null) {
             tracker.onMessage(ProgressTrackerListener.Mode.TEXT, String.format(fmt, args), path);
@@ -622,4 +1021,50 @@ public class RepositoryCopier {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Subtree that is copied by a worker thread.
+     */
+    private static class Subtree {
+
+        private final String srcPath;
+
+        private final String dstPath;
+
+        private final String resumeFrom;
+
+        private volatile RepositoryCopier copier;
+
+        private volatile boolean done;
+
+        private Subtree(String srcPath, String dstPath, String resumeFrom) {
+            this.srcPath = srcPath;
+            this.dstPath = dstPath;
+            this.resumeFrom = resumeFrom;
+        }
+    }
+
+    /**
+     * Tracker that serializes the messages of the worker threads.
+     */
+    private static class SynchronizedTracker implements ProgressTrackerListener {
+
+        private final ProgressTrackerListener delegate;
+
+        private SynchronizedTracker(ProgressTrackerListener delegate) {
+            this.delegate = delegate;
+        }
+
+        public void onMessage(Mode mode, String action, String path) {
+            synchronized (delegate) {
+                delegate.onMessage(mode, action, path);
+            }
+        }
+
+        public void onError(Mode mode, String path, Exception e) {
+            synchronized (delegate) {
+                delegate.onError(mode, path, e);
+            }
+        }
+    }
+}
@@ -1435,7 +1435,9 @@ public abstract class BaseMarkupSerializer
                     //Invalid XML
                     fatalError("The character '" + (char) supplemental + "' is an invalid XML character");
                 } else {
-                    if (content().inCData) {
+                    // don't use content() as this would close the start tag of the parent element when
+                    // escaping an attribute value
+                    if (getElementState().inCData) {
                         _printer.printText("]]>&#x");
                         _printer.printText(Integer.toHexString(supplemental));
                         _printer.printText(";<![CDATA[");
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jackrabbit.vault.fs.api.ImportMode;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.SimplePathMapping;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.CompiledWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code CompiledWorkspaceFilterTest}...
+ */
+public class CompiledWorkspaceFilterTest {
+
+    private static final String[] PATHS = {
+            "/",
+            "/foo",
+            "/foo/bar",
+            "/foobar",
+            "/tmp",
+            "/tmp/bar",
+            "/tmp/foo",
+            "/tmp/foo/bar",
+            "/tmp/foobar",
+            "/tmp/foo.txt",
+            "/tmp/a/b/c",
+            "/tmpx",
+            "/content",
+            "/content/site",
+            "/content/site/en",
+            "/content/site/en/jcr:content",
+            "/content/site/de",
+            "/content/site/de/page",
+            "/content/other",
+            "/libs",
+            "/libs/system/config",
+            "/libs/system/config/foo.xml",
+            "/bar",
+            "/a",
+            "/a/b",
+    };
+
+    private static DefaultWorkspaceFilter createFilter() {
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet("/foo"));
+        PathFilterSet set = new PathFilterSet("/tmp");
+        set.addInclude(new DefaultPathFilter("/tmp(/.*)?"));
+        set.addExclude(new DefaultPathFilter("/tmp/foo(/.*)?"));
+        set.addInclude(new DefaultPathFilter("/tmp/foo\\.txt"));
+        set.addExclude(new DefaultPathFilter(".*/b/.*"));
+        filter.add(set);
+        set = new PathFilterSet("/content/site");
+        set.addExclude(new DefaultPathFilter("/content/site/de.*"));
+        set.addExclude(new DefaultPathFilter(".*/jcr:content"));
+        filter.add(set);
+        set = new PathFilterSet("/content/site/de");
+        set.setImportMode(ImportMode.MERGE);
+        set.addInclude(new DefaultPathFilter("^/content/site/de/[^/]*$"));
+        filter.add(set);
+        set = new PathFilterSet("/libs/system");
+        set.setImportMode(ImportMode.UPDATE);
+        set.addInclude(new DefaultPathFilter("/libs/system/config/.*"));
+        filter.add(set);
+        return filter;
+    }
+
+    private static void assertSameResults(WorkspaceFilter expected, WorkspaceFilter actual) {
+        for (String path: PATHS) {
+            assertEquals("contains " + path, expected.contains(path), actual.contains(path));
+            assertEquals("covers " + path, expected.covers(path), actual.covers(path));
+            assertEquals("isAncestor " + path, expected.isAncestor(path), actual.isAncestor(path));
+            assertEquals("covering set " + path,
+                    expected.getFilterSets().indexOf(expected.getCoveringFilterSet(path)),
+                    actual.getFilterSets().indexOf(actual.getCoveringFilterSet(path)));
+            assertEquals("import mode " + path, expected.getImportMode(path), actual.getImportMode(path));
+        }
+    }
+
+    @Test
+    public void testSameResults() {
+        DefaultWorkspaceFilter filter = createFilter();
+        assertSameResults(filter, CompiledWorkspaceFilter.compile(filter));
+    }
+
+    @Test
+    public void testRootFilter() {
+        DefaultWorkspaceFilter filter = createFilter();
+        PathFilterSet set = new PathFilterSet("/");
+        set.addInclude(new DefaultPathFilter("/a(/.*)?"));
+        filter.add(set);
+        assertSameResults(filter, CompiledWorkspaceFilter.compile(filter));
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        CompiledWorkspaceFilter compiled = CompiledWorkspaceFilter.compile(filter);
+        assertSameResults(filter, compiled);
+        assertFalse(compiled.isAncestor("/"));
+    }
+
+    @Test
+    public void testGlobalIgnored() {
+        DefaultWorkspaceFilter filter = createFilter();
+        filter.setGlobalIgnored(new DefaultPathFilter("/tmp/bar"));
+        CompiledWorkspaceFilter compiled = CompiledWorkspaceFilter.compile(filter);
+        assertSameResults(filter, compiled);
+        assertFalse(compiled.contains("/tmp/bar"));
+        assertTrue(compiled.contains("/tmp"));
+    }
+
+    @Test
+    public void testImportModeOverride() {
+        DefaultWorkspaceFilter filter = createFilter();
+        filter.setImportMode(ImportMode.MERGE);
+        CompiledWorkspaceFilter compiled = CompiledWorkspaceFilter.compile(filter);
+        assertSameResults(filter, compiled);
+        assertEquals(ImportMode.MERGE, compiled.getImportMode("/foo"));
+    }
+
+    @Test
+    public void testTranslate() {
+        DefaultWorkspaceFilter filter = createFilter();
+        SimplePathMapping mapping = new SimplePathMapping("/content/site", "/content/other");
+        WorkspaceFilter mapped = CompiledWorkspaceFilter.compile(filter).translate(mapping);
+        assertTrue(mapped instanceof CompiledWorkspaceFilter);
+        assertSameResults(filter.translate(mapping), mapped);
+    }
+
+    @Test
+    public void testCompileTwice() {
+        CompiledWorkspaceFilter compiled = CompiledWorkspaceFilter.compile(createFilter());
+        assertSame(compiled, CompiledWorkspaceFilter.compile(compiled));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final DefaultWorkspaceFilter filter = createFilter();
+        final CompiledWorkspaceFilter compiled = CompiledWorkspaceFilter.compile(filter);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        for (int j = 0; j < 500; j++) {
+                            assertSameResults(filter, compiled);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f: futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.impl;
+
+import org.apache.jackrabbit.vault.fs.api.AggregateManager;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.RepositoryAddress;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.CompiledWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.packaging.integration.IntegrationTestBase;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code AggregateManagerImplTest}...
+ */
+public class AggregateManagerImplTest extends IntegrationTestBase {
+
+    @Test
+    public void testWorkspaceFilter() throws Exception {
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet("/tmp"));
+        String wsp = admin.getWorkspace().getName();
+        RepositoryAddress mountpoint = new RepositoryAddress("url://localhost/" + wsp + "/jcr:root/");
+        AggregateManager mgr = AggregateManagerImpl.mount(null, filter, mountpoint, admin);
+        try {
+            // the filter is returned as provided, eg. for writing the meta-inf of a checkout
+            assertSame(filter, mgr.getWorkspaceFilter());
+            WorkspaceFilter compiled = AggregateManagerImpl.getCompiledWorkspaceFilter(mgr);
+            assertTrue(compiled instanceof CompiledWorkspaceFilter);
+            assertTrue(compiled.contains("/tmp/foo"));
+            assertFalse(compiled.contains("/etc"));
+        } finally {
+            mgr.unmount();
+        }
+    }
+}
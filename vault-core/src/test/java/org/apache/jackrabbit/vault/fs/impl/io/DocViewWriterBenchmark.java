@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.impl.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Assume;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Compares the throughput of the {@link DocViewWriter} with the generic {@code XMLSerializer} for a text heavy
+ * docview.
+ *
+ * The benchmark is only executed if the number of nodes is specified, eg:
+ * {@code mvn test -Dtest=DocViewWriterBenchmark -Dvault.benchmark.docview.nodes=100000}
+ */
+public class DocViewWriterBenchmark {
+
+    private static final int WARMUP = 3;
+
+    private static final int RUNS = 10;
+
+    @Test
+    public void benchmark() throws Exception {
+        int numNodes = Integer.getInteger("vault.benchmark.docview.nodes", 0);
+        Assume.assumeTrue(numNodes > 0);
+
+        AttributesImpl[] nodes = createNodes(numNodes);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        generate(DocViewWriterTest.createSerializer(expected), nodes);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        generate(new DocViewWriter(actual), nodes);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        System.out.printf("Serializing %d nodes (%d bytes).%n", numNodes, expected.size());
+
+        for (int i = 0; i < WARMUP; i++) {
+            run(false, nodes);
+            run(true, nodes);
+        }
+        long serializer = 0;
+        long writer = 0;
+        for (int i = 0; i < RUNS; i++) {
+            serializer += run(false, nodes);
+            writer += run(true, nodes);
+        }
+        System.out.printf("XMLSerializer: %dms/op, %.1f MB/s%n", serializer / RUNS,
+                expected.size() * RUNS / 1024.0 / 1024.0 / (serializer / 1000.0));
+        System.out.printf("DocViewWriter: %dms/op, %.1f MB/s%n", writer / RUNS,
+                expected.size() * RUNS / 1024.0 / 1024.0 / (writer / 1000.0));
+    }
+
+    private static long run(boolean writer, AttributesImpl[] nodes) throws Exception {
+        OutputStream out = new NullOutputStream();
+        long t0 = System.currentTimeMillis();
+        generate(writer ? new DocViewWriter(out) : DocViewWriterTest.createSerializer(out), nodes);
+        return System.currentTimeMillis() - t0;
+    }
+
+    private static AttributesImpl[] createNodes(int numNodes) {
+        Random random = new Random(42);
+        String words = "Lorem ipsum dolor sit amet, consectetur adipiscing elit <b>sed</b> do \"eiusmod\" tempor & "
+                + "incididunt ut labore et dolore magna aliqua. Gr\u00fc\u00dfe aus K\u00f6ln \u2013 \u65e5\u672c\u8a9e\n";
+        AttributesImpl[] nodes = new AttributesImpl[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            AttributesImpl attrs = new AttributesImpl();
+            attrs.addAttribute("http://www.jcp.org/jcr/1.0", "primaryType", "jcr:primaryType", "CDATA",
+                    "nt:unstructured");
+            attrs.addAttribute("http://www.jcp.org/jcr/1.0", "title", "jcr:title", "CDATA", "Title of node " + i);
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(20); j >= 0; j--) {
+                text.append(words);
+            }
+            attrs.addAttribute("", "text", "text", "CDATA", text.toString());
+            attrs.addAttribute("", "count", "count", "CDATA", "{Long}" + random.nextInt());
+            nodes[i] = attrs;
+        }
+        return nodes;
+    }
+
+    private static void generate(ContentHandler h, AttributesImpl[] nodes) throws SAXException {
+        h.startDocument();
+        h.startPrefixMapping("jcr", "http://www.jcp.org/jcr/1.0");
+        h.startPrefixMapping("nt", "http://www.jcp.org/jcr/nt/1.0");
+        h.startElement("http://www.jcp.org/jcr/1.0", "root", "jcr:root", nodes[0]);
+        for (int i = 1; i < nodes.length; i++) {
+            String name = "node" + i;
+            h.startElement("", name, name, nodes[i]);
+            h.endElement("", name, name);
+        }
+        h.endElement("http://www.jcp.org/jcr/1.0", "root", "jcr:root");
+        h.endDocument();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.impl.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.jackrabbit.vault.util.xml.serialize.OutputFormat;
+import org.apache.jackrabbit.vault.util.xml.serialize.XMLSerializer;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the {@link DocViewWriter} produces the same output as the {@link XMLSerializer}.
+ */
+public class DocViewWriterTest {
+
+    /**
+     * Receives the same events as the content handlers that are compared.
+     */
+    interface Events {
+        void generate(ContentHandler handler) throws SAXException;
+    }
+
+    static XMLSerializer createSerializer(OutputStream out) throws IOException {
+        OutputFormat oFmt = new OutputFormat("xml", "UTF-8", true);
+        oFmt.setIndent(4);
+        oFmt.setLineWidth(0);
+        oFmt.setBreakEachAttribute(true);
+        return new XMLSerializer(out, oFmt);
+    }
+
+    private static String assertSameOutput(Events events) throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        events.generate(createSerializer(expected));
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        // small buffer to exercise the flushing
+        events.generate(new DocViewWriter(actual, 64));
+        String xml = expected.toString("utf-8");
+        assertEquals(xml, actual.toString("utf-8"));
+        assertEquals(expected.size(), actual.size());
+        return xml;
+    }
+
+    private static AttributesImpl attrs(String ... namesAndValues) {
+        AttributesImpl attrs = new AttributesImpl();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            attrs.addAttribute("", namesAndValues[i], namesAndValues[i], "CDATA", namesAndValues[i + 1]);
+        }
+        return attrs;
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        String xml = assertSameOutput(new Events() {
+            public void generate(ContentHandler h) throws SAXException {
+                h.startDocument();
+                h.startPrefixMapping("jcr", "http://www.jcp.org/jcr/1.0");
+                h.startPrefixMapping("nt", "http://www.jcp.org/jcr/nt/1.0");
+                h.startElement("http://www.jcp.org/jcr/1.0", "root", "jcr:root",
+                        attrs("jcr:primaryType", "nt:unstructured", "title", "Hello"));
+                h.startElement("", "a", "a", attrs("jcr:primaryType", "nt:unstructured"));
+                h.startElement("", "b", "b", attrs("x", "1", "y", "2"));
+                h.endElement("", "b", "b");
+                h.endElement("", "a", "a");
+                h.startElement("", "c", "c", null);
+                h.endElement("", "c", "c");
+                h.startElement("", "d", "d", attrs());
+                h.startElement("", "e", "e", null);
+                h.endElement("", "e", "e");
+                h.endElement("", "d", "d");
+                h.endElement("http://www.jcp.org/jcr/1.0", "root", "jcr:root");
+                h.endPrefixMapping("jcr");
+                h.endPrefixMapping("nt");
+                h.endDocument();
+            }
+        });
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\"\n" +
+                "    jcr:primaryType=\"nt:unstructured\"\n" +
+                "    title=\"Hello\">\n" +
+                "    <a jcr:primaryType=\"nt:unstructured\">\n" +
+                "        <b\n" +
+                "            x=\"1\"\n" +
+                "            y=\"2\"/>\n" +
+                "    </a>\n" +
+                "    <c/>\n" +
+                "    <d>\n" +
+                "        <e/>\n" +
+                "    </d>\n" +
+                "</jcr:root>\n", xml);
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        assertSameOutput(new Events() {
+            public void generate(ContentHandler h) throws SAXException {
+                h.startDocument();
+                h.startPrefixMapping("", "urn:a&b<\"c\">");
+                h.startElement("", "root", "root", attrs(
+                        "markup", "<a href=\"x\">&amp;</a>",
+                        "whitespace", "line1\nline2\r\n\tindented ",
+                        "quotes", "'single' \"double\"",
+                        "latin", "\u00e4\u00f6\u00fc \u00df \u00ff",
+                        "cjk", "\u65e5\u672c\u8a9e",
+                        "supplementary", "smile \ud83d\ude00!",
+                        "edge", "\u007f\u0080\u07ff\u0800\ud7ff\ue000\ufffd",
+                        "empty", ""));
+                h.startElement("", "\u00e4\u65e5", "\u00e4\u65e5", attrs("\u00fc", "\ud83d\ude00 in child"));
+                h.endElement("", "\u00e4\u65e5", "\u00e4\u65e5");
+                h.endElement("", "root", "root");
+                h.endDocument();
+            }
+        });
+    }
+
+    @Test
+    public void testNamespaceAttributes() throws Exception {
+        assertSameOutput(new Events() {
+            public void generate(ContentHandler h) throws SAXException {
+                h.startDocument();
+                h.startElement("", "root", "root", attrs("xmlns:foo", "urn:foo", "xmlnsBar", "value"));
+                h.startElement("", "a", "a", attrs("xmlns", "urn:default"));
+                h.endElement("", "a", "a");
+                h.endElement("", "root", "root");
+                h.endDocument();
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidCharacter() throws Exception {
+        for (final String value: new String[]{"a\u0001b", "a\ud83d", "\ude00a", "a\ufffe"}) {
+            try {
+                new DocViewWriter(new ByteArrayOutputStream()).startElement("", "a", "a", attrs("v", value));
+                fail("invalid character must be rejected: " + value);
+            } catch (SAXException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        final Random random = new Random(42);
+        final String[] chars = {"a", "b", "X", "0", " ", "_", "-", ":", "<", ">", "&", "\"", "'", "\n", "\r", "\t",
+                "\u00e4", "\u00df", "\u20ac", "\u65e5", "\ud83d\ude00"};
+        for (int n = 0; n < 50; n++) {
+            final long seed = random.nextLong();
+            assertSameOutput(new Events() {
+                public void generate(ContentHandler h) throws SAXException {
+                    Random r = new Random(seed);
+                    h.startDocument();
+                    for (int i = r.nextInt(4); i > 0; i--) {
+                        h.startPrefixMapping("ns" + i, "urn:ns:" + r.nextInt(100));
+                    }
+                    generateElement(h, r, chars, 0);
+                    h.endDocument();
+                }
+            });
+        }
+    }
+
+    private static void generateElement(ContentHandler h, Random r, String[] chars, int level) throws SAXException {
+        String name = "n" + r.nextInt(10);
+        AttributesImpl attrs = null;
+        if (r.nextInt(5) > 0) {
+            attrs = new AttributesImpl();
+            for (int i = r.nextInt(4); i > 0; i--) {
+                StringBuilder value = new StringBuilder();
+                for (int j = r.nextInt(40); j > 0; j--) {
+                    value.append(chars[r.nextInt(chars.length)]);
+                }
+                attrs.addAttribute("", "p" + i, "p" + i, "CDATA", value.toString());
+            }
+        }
+        h.startElement("", name, name, attrs);
+        if (level < 4) {
+            for (int i = r.nextInt(4); i > 0; i--) {
+                generateElement(h, r, chars, level + 1);
+            }
+        }
+        h.endElement("", name, name);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
+import org.apache.jackrabbit.vault.fs.spi.ProgressTracker;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code AutoSaveTest}...
+ */
+public class AutoSaveTest {
+
+    /**
+     * Creates a session whose save takes the given time.
+     */
+    private static Session createSession(final long saveTime) {
+        return (Session) Proxy.newProxyInstance(AutoSaveTest.class.getClassLoader(), new Class[]{Session.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("save".equals(method.getName()) && saveTime > 0) {
+                            Thread.sleep(saveTime);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testFixedThreshold() throws RepositoryException {
+        AutoSave autoSave = new AutoSave(10);
+        assertFalse(autoSave.isAdaptive());
+        assertFalse(autoSave.modified(9, 1024 * 1024 * 1024));
+        assertTrue(autoSave.modified(1));
+        autoSave.save(createSession(0));
+        assertEquals(10, autoSave.getThreshold());
+        assertEquals(1, autoSave.getNumSaves());
+        assertFalse(autoSave.needsSave());
+    }
+
+    @Test
+    public void testIncrease() throws RepositoryException {
+        AutoSave autoSave = new AutoSave(10);
+        autoSave.setMaxThreshold(30);
+        assertTrue(autoSave.isAdaptive());
+        Session session = createSession(0);
+        autoSave.modified(10);
+        autoSave.save(session);
+        assertEquals(20, autoSave.getThreshold());
+        autoSave.modified(20);
+        autoSave.save(session);
+        assertEquals(30, autoSave.getThreshold());
+    }
+
+    @Test
+    public void testDecrease() throws RepositoryException {
+        AutoSave autoSave = new AutoSave(100);
+        autoSave.setMaxThreshold(1000);
+        autoSave.setMinThreshold(30);
+        autoSave.setTargetSaveTime(1);
+        Session session = createSession(50);
+        autoSave.modified(100);
+        autoSave.save(session);
+        assertEquals(50, autoSave.getThreshold());
+        autoSave.modified(50);
+        autoSave.save(session);
+        assertEquals(30, autoSave.getThreshold());
+        assertTrue(autoSave.getTotalSaveTime() >= 100);
+    }
+
+    @Test
+    public void testTransientSize() throws RepositoryException {
+        AutoSave autoSave = new AutoSave(100);
+        autoSave.setMaxThreshold(1000);
+        autoSave.setMaxTransientSize(1000);
+        assertFalse(autoSave.modified(1, 400));
+        assertTrue(autoSave.modified(1, 600));
+        autoSave.save(createSession(0));
+        assertFalse(autoSave.needsSave());
+        // 500 bytes per change allow 2 changes per save
+        assertEquals(2, autoSave.getThreshold());
+    }
+
+    @Test
+    public void testTracker() throws RepositoryException {
+        final List<String> messages = new ArrayList<String>();
+        AutoSave autoSave = new AutoSave(10);
+        autoSave.setTracker(new ProgressTracker(new ProgressTrackerListener() {
+            @Override
+            public void onMessage(Mode mode, String action, String path) {
+                messages.add(action);
+            }
+
+            @Override
+            public void onError(Mode mode, String path, Exception e) {
+            }
+        }));
+        autoSave.modified(10);
+        autoSave.save(createSession(0));
+        assertEquals(2, messages.size());
+        assertEquals("saving approx 10 nodes...", messages.get(0));
+        assertTrue(messages.get(1), messages.get(1).startsWith("saved approx 10 nodes in "));
+    }
+
+    @Test
+    public void testMetrics() throws RepositoryException {
+        ImportMetrics metrics = new ImportMetrics();
+        AutoSave autoSave = new AutoSave(10);
+        autoSave.setMetrics(metrics);
+        Session session = createSession(20);
+        for (int i = 0; i < 3; i++) {
+            autoSave.modified(10);
+            autoSave.save(session);
+        }
+        assertEquals(3, metrics.getCount(ImportMetrics.Phase.SAVE));
+        assertTrue(metrics.getTotalTime(ImportMetrics.Phase.SAVE) >= 60);
+        assertTrue(metrics.getMaxTime(ImportMetrics.Phase.SAVE) >= 20);
+
+        // the copy records into the same metrics, dry runs are not recorded
+        AutoSave copy = autoSave.copy();
+        copy.save(session);
+        copy.setDryRun(true);
+        copy.save(session);
+        assertEquals(4, metrics.getCount(ImportMetrics.Phase.SAVE));
+
+        ImportMetrics total = new ImportMetrics();
+        total.modified(5, 100);
+        total.add(metrics);
+        assertEquals(4, total.getCount(ImportMetrics.Phase.SAVE));
+        assertEquals(metrics.getMaxTime(ImportMetrics.Phase.SAVE), total.getMaxTime(ImportMetrics.Phase.SAVE));
+        assertEquals(5, total.getNumNodes());
+        assertEquals(100, total.getNumBytes());
+        total.reset();
+        assertEquals(0, total.getCount(ImportMetrics.Phase.SAVE));
+        assertEquals(0, total.getNumNodes());
+    }
+}
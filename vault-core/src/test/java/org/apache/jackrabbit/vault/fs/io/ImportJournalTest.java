@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code ImportJournalTest}...
+ */
+public class ImportJournalTest {
+
+    private File file;
+
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("vault-import", ".journal");
+        file.delete();
+        logFile = new File(file.getPath() + ".log");
+    }
+
+    @After
+    public void tearDown() {
+        new ImportJournal(file).delete();
+    }
+
+    private static ZipArchive open(String name) throws IOException {
+        File zip = new File(ImportJournalTest.class.getResource(
+                "/org/apache/jackrabbit/vault/packaging/integration/testpackages/" + name).getFile());
+        ZipArchive archive = new ZipArchive(zip);
+        archive.open(true);
+        return archive;
+    }
+
+    @Test
+    public void testArchiveId() throws IOException {
+        ZipArchive a = open("tmp.zip");
+        ZipArchive b = open("tmp_less.zip");
+        try {
+            // both packages are my_packages:tmp without version
+            assertEquals(ImportJournal.getArchiveId(a), ImportJournal.getArchiveId(a));
+            assertTrue(ImportJournal.getArchiveId(a).startsWith("my_packages:tmp::"));
+            assertNotEquals(ImportJournal.getArchiveId(a), ImportJournal.getArchiveId(b));
+        } finally {
+            a.close();
+            b.close();
+        }
+    }
+
+    /**
+     * Tests that only the changes since the last checkpoint are appended to the log.
+     */
+    @Test
+    public void testAppendLog() throws IOException {
+        ImportJournal journal = new ImportJournal(file);
+        journal.reset("a", "/");
+        for (int i = 0; i < 100; i++) {
+            long length = logFile.length();
+            journal.setCheckpoint("/content/node" + i);
+            journal.addNodesToCheckin(Collections.singletonList("/content/node" + i));
+            journal.addMemberships(Collections.singletonMap("group" + (i % 10), new String[]{"user " + i}));
+            journal.store();
+            assertTrue("log grows by the delta only", logFile.length() - length < 100);
+        }
+
+        journal = new ImportJournal(file);
+        assertTrue(journal.load("a", "/"));
+        assertEquals("/content/node99", journal.getCheckpoint());
+        assertEquals(100, journal.getNodesToCheckin().size());
+        assertTrue(journal.getNodesToCheckin().contains("/content/node42"));
+        assertEquals(10, journal.getMemberships().size());
+        assertEquals(Arrays.asList("user 93"), Arrays.asList(journal.getMemberships().get("group3")));
+    }
+
+    /**
+     * Tests that log entries of an interrupted checkpoint are ignored and overwritten.
+     */
+    @Test
+    public void testIncompleteLog() throws IOException {
+        ImportJournal journal = new ImportJournal(file);
+        journal.reset("a", "/");
+        journal.setCheckpoint("/content/a");
+        journal.addNodesToCheckin(Collections.singletonList("/content/a"));
+        journal.store();
+        RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+        try {
+            raf.seek(raf.length());
+            raf.write("c /content/b\nc /cont".getBytes("utf-8"));
+        } finally {
+            raf.close();
+        }
+
+        journal = new ImportJournal(file);
+        assertTrue(journal.load("a", "/"));
+        assertEquals(Collections.singleton("/content/a"), journal.getNodesToCheckin());
+        journal.addNodesToCheckin(Collections.singletonList("/content/c"));
+        journal.store();
+
+        journal = new ImportJournal(file);
+        assertTrue(journal.load("a", "/"));
+        assertEquals(Arrays.asList("/content/a", "/content/c"),
+                Arrays.asList(journal.getNodesToCheckin().toArray()));
+        assertFalse(journal.load("b", "/"));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@code JarExporterTest}...
+ */
+public class JarExporterTest {
+
+    private static final int NUM_FILES = 50;
+
+    private File jarFile;
+
+    private byte[] binary;
+
+    @Before
+    public void setup() throws IOException {
+        jarFile = File.createTempFile("vaultexport", ".zip");
+        binary = new byte[3 * 1024 * 1024];
+        new Random(1).nextBytes(binary);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(jarFile);
+    }
+
+    private static byte[] getText(int i) throws IOException {
+        StringBuilder b = new StringBuilder();
+        for (int j = 0; j < 100 * i; j++) {
+            b.append("line ").append(j).append(" of file ").append(i).append('\n');
+        }
+        return b.toString().getBytes("utf-8");
+    }
+
+    private void export(int threads) throws IOException {
+        export(threads, false);
+    }
+
+    private void export(int threads, boolean storeCompressed) throws IOException {
+        JarExporter exporter = new JarExporter(jarFile);
+        exporter.setCompressionThreads(threads);
+        exporter.setStoreCompressedEntries(storeCompressed);
+        exporter.open();
+        exporter.createDirectory("jcr_root");
+        for (int i = 0; i < NUM_FILES; i++) {
+            exporter.writeFile(new ByteArrayInputStream(getText(i)), "jcr_root/file" + i + ".txt");
+        }
+        exporter.writeFile(new ByteArrayInputStream(binary), "jcr_root/image.jpg");
+        exporter.writeFile(new ByteArrayInputStream(binary), "jcr_root/image.bin");
+        exporter.close();
+    }
+
+    private void assertEntries() throws IOException {
+        List<String> names = new ArrayList<String>();
+        ZipFile zip = new ZipFile(jarFile);
+        try {
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                names.add(e.nextElement().getName());
+            }
+            assertEquals(NUM_FILES + 3, names.size());
+            assertEquals("jcr_root/", names.get(0));
+            for (int i = 0; i < NUM_FILES; i++) {
+                assertEquals("jcr_root/file" + i + ".txt", names.get(i + 1));
+                assertArrayEquals(getText(i), read(zip, "jcr_root/file" + i + ".txt"));
+            }
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("jcr_root/file10.txt").getMethod());
+            assertArrayEquals(binary, read(zip, "jcr_root/image.jpg"));
+            assertArrayEquals(binary, read(zip, "jcr_root/image.bin"));
+        } finally {
+            zip.close();
+        }
+
+        // the local headers must be readable too
+        ZipInputStream zin = new ZipInputStream(new FileInputStream(jarFile));
+        try {
+            int count = 0;
+            while (zin.getNextEntry() != null) {
+                IOUtils.toByteArray(zin);
+                count++;
+            }
+            assertEquals(NUM_FILES + 3, count);
+        } finally {
+            zin.close();
+        }
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        InputStream in = zip.getInputStream(zip.getEntry(name));
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private int getMethod(String name) throws IOException {
+        ZipFile zip = new ZipFile(jarFile);
+        try {
+            return zip.getEntry(name).getMethod();
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testSerial() throws IOException {
+        export(0);
+        assertEntries();
+        // already compressed content is compressed again by default
+        assertEquals(ZipEntry.DEFLATED, getMethod("jcr_root/image.jpg"));
+    }
+
+    @Test
+    public void testSerialStoreCompressed() throws IOException {
+        export(0, true);
+        assertEntries();
+        assertEquals(ZipEntry.STORED, getMethod("jcr_root/image.jpg"));
+    }
+
+    @Test
+    public void testParallelStoreCompressed() throws IOException {
+        export(4, true);
+        assertEntries();
+        assertEquals(ZipEntry.STORED, getMethod("jcr_root/image.jpg"));
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        export(4);
+        assertEntries();
+        ZipFile zip = new ZipFile(jarFile);
+        try {
+            // incompressible content is stored
+            assertEquals(ZipEntry.STORED, zip.getEntry("jcr_root/image.bin").getMethod());
+            assertEquals(ZipEntry.STORED, zip.getEntry("jcr_root/").getMethod());
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testParallelArchive() throws IOException {
+        export(4);
+        ZipArchive archive = new ZipArchive(jarFile);
+        archive.open(false);
+        try {
+            InputStream in = archive.openInputStream(archive.getEntry("jcr_root/file7.txt"));
+            try {
+                assertArrayEquals(getText(7), IOUtils.toByteArray(in));
+            } finally {
+                in.close();
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testParallelZip64() throws IOException {
+        // more than 65535 entries forces the zip64 end of central directory
+        JarExporter exporter = new JarExporter(jarFile);
+        exporter.setCompressionThreads(2);
+        exporter.open();
+        for (int i = 0; i < 70000; i++) {
+            exporter.writeFile(new ByteArrayInputStream(new byte[0]), "jcr_root/f" + i + ".txt");
+        }
+        exporter.close();
+
+        ZipArchive archive = new ZipArchive(jarFile);
+        archive.open(false);
+        try {
+            assertEquals(70000, archive.getEntry("jcr_root").getChildren().size());
+        } finally {
+            archive.close();
+        }
+    }
+}
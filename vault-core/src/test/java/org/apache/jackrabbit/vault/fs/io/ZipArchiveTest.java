@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code ZipArchiveTest}...
+ */
+public class ZipArchiveTest {
+
+    private static final String FILTER_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<workspaceFilter version=\"1.0\">\n" +
+            "    <filter root=\"/tmp\"/>\n" +
+            "</workspaceFilter>\n";
+
+    private File zipFile;
+
+    @Before
+    public void setup() throws IOException {
+        zipFile = File.createTempFile("vaultpack", ".zip");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(zipFile);
+    }
+
+    private void createZip(int numEntries) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            out.putNextEntry(new ZipEntry("META-INF/vault/filter.xml"));
+            out.write(FILTER_XML.getBytes("utf-8"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("jcr_root/"));
+            out.closeEntry();
+            for (int i = 0; i < numEntries; i++) {
+                out.putNextEntry(new ZipEntry("jcr_root/tmp/f" + (i % 10) + "/file" + i + ".txt"));
+                out.write(("Hello, world " + i).getBytes("utf-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private String read(Archive archive, String path) throws IOException {
+        Archive.Entry entry = archive.getEntry(path);
+        assertNotNull("entry " + path, entry);
+        InputStream in = archive.openInputStream(entry);
+        try {
+            return IOUtils.toString(in, "utf-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testOpen() throws IOException {
+        createZip(20);
+        ZipArchive archive = new ZipArchive(zipFile);
+        archive.open(true);
+        try {
+            assertNotNull(archive.getMetaInf().getFilter());
+            assertEquals("/tmp", archive.getMetaInf().getFilter().getFilterSets().get(0).getRoot());
+            assertNotNull(archive.getJcrRoot());
+            assertEquals(10, archive.getEntry("jcr_root/tmp").getChildren().size());
+            assertEquals("Hello, world 13", read(archive, "jcr_root/tmp/f3/file13.txt"));
+            assertEquals(15, archive.getInputSource(archive.getEntry("jcr_root/tmp/f3/file13.txt")).getContentLength());
+            assertNull(archive.getEntry("jcr_root/tmp/f3/file14.txt"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        // more than 65535 entries forces the zip64 end of central directory
+        createZip(70000);
+        ZipArchive archive = new ZipArchive(zipFile);
+        archive.open(true);
+        try {
+            assertNotNull(archive.getMetaInf().getFilter());
+            assertEquals(7000, archive.getEntry("jcr_root/tmp/f9").getChildren().size());
+            assertEquals("Hello, world 69999", read(archive, "jcr_root/tmp/f9/file69999.txt"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentStreams() throws IOException {
+        createZip(20);
+        ZipArchive archive = new ZipArchive(zipFile);
+        archive.open(true);
+        try {
+            InputStream in1 = archive.openInputStream(archive.getEntry("jcr_root/tmp/f1/file1.txt"));
+            InputStream in2 = archive.openInputStream(archive.getEntry("jcr_root/tmp/f2/file12.txt"));
+            assertEquals('H', in1.read());
+            assertEquals('H', in2.read());
+            assertEquals("ello, world 1", IOUtils.toString(in1, "utf-8"));
+            assertEquals("ello, world 12", IOUtils.toString(in2, "utf-8"));
+            in1.close();
+            in2.close();
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testStreamArchive() throws IOException {
+        createZip(20);
+        ZipStreamArchive archive = new ZipStreamArchive(zipFile);
+        archive.open(true);
+        try {
+            InputStream in1 = archive.openInputStream(archive.getEntry("jcr_root/tmp/f1/file1.txt"));
+            InputStream in2 = archive.openInputStream(archive.getEntry("jcr_root/tmp/f2/file12.txt"));
+            assertEquals('H', in1.read());
+            assertEquals('H', in2.read());
+            in1.mark(100);
+            assertEquals(4, in1.skip(4));
+            assertEquals(',', in1.read());
+            in1.reset();
+            assertEquals("ello, world 1", IOUtils.toString(in1, "utf-8"));
+            assertEquals("ello, world 12", IOUtils.toString(in2, "utf-8"));
+            assertEquals(-1, in1.read());
+            in1.close();
+            in2.close();
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testInvalidZip() throws IOException {
+        FileUtils.writeStringToFile(zipFile, "this is not a zip file", "utf-8");
+        ZipArchive archive = new ZipArchive(zipFile);
+        archive.open(true);
+        try {
+            // the fallback stream archive treats the file as empty
+            assertTrue(archive.getRoot().getChildren().isEmpty());
+        } finally {
+            archive.close();
+        }
+    }
+}
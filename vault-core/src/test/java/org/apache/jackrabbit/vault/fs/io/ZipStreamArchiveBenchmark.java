@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.fs.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares reading the entries of a large package through the {@link ZipStreamArchive} spool file with the
+ * previous implementation that shared one {@link RandomAccessFile} pointer between all streams.
+ *
+ * The benchmark is only executed if the package size in MB is specified, eg:
+ * {@code mvn test -Dtest=ZipStreamArchiveBenchmark -Dvault.benchmark.zip.size=2048}
+ */
+public class ZipStreamArchiveBenchmark {
+
+    private static final int ENTRY_SIZE = 1024 * 1024;
+
+    private static final int NUM_THREADS = 8;
+
+    @Test
+    public void benchmark() throws Exception {
+        long sizeMB = Long.getLong("vault.benchmark.zip.size", 0);
+        Assume.assumeTrue(sizeMB > 0);
+
+        int numEntries = (int) (sizeMB * 1024 * 1024 / ENTRY_SIZE);
+        File zipFile = File.createTempFile("vaultbenchmark", ".zip");
+        try {
+            createZip(zipFile, numEntries);
+            System.out.printf("Created package with %d entries of %d bytes (%d bytes).%n",
+                    numEntries, ENTRY_SIZE, zipFile.length());
+
+            // legacy spool with shared file pointer. concurrent reads need to be serialized
+            LegacySpool legacy = new LegacySpool(zipFile);
+            try {
+                long t0 = System.currentTimeMillis();
+                assertEquals(numEntries * (long) ENTRY_SIZE, legacy.readAll(1));
+                long t1 = System.currentTimeMillis();
+                assertEquals(numEntries * (long) ENTRY_SIZE, legacy.readAll(NUM_THREADS));
+                long t2 = System.currentTimeMillis();
+                System.out.printf("shared file pointer: 1 thread: %dms, %d threads: %dms%n",
+                        t1 - t0, NUM_THREADS, t2 - t1);
+            } finally {
+                legacy.close();
+            }
+
+            ZipStreamArchive archive = new ZipStreamArchive(zipFile);
+            archive.open(false);
+            try {
+                List<Archive.Entry> entries = new ArrayList<Archive.Entry>(archive.getEntry("jcr_root/data").getChildren());
+                long t0 = System.currentTimeMillis();
+                assertEquals(numEntries * (long) ENTRY_SIZE, readAll(archive, entries, 1));
+                long t1 = System.currentTimeMillis();
+                assertEquals(numEntries * (long) ENTRY_SIZE, readAll(archive, entries, NUM_THREADS));
+                long t2 = System.currentTimeMillis();
+                System.out.printf("positional reads:    1 thread: %dms, %d threads: %dms%n",
+                        t1 - t0, NUM_THREADS, t2 - t1);
+            } finally {
+                archive.close();
+            }
+        } finally {
+            FileUtils.deleteQuietly(zipFile);
+        }
+    }
+
+    private static void createZip(File file, int numEntries) throws IOException {
+        byte[] data = new byte[ENTRY_SIZE];
+        new Random(42).nextBytes(data);
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.setLevel(Deflater.NO_COMPRESSION);
+            for (int i = 0; i < numEntries; i++) {
+                out.putNextEntry(new ZipEntry("jcr_root/data/entry" + i + ".bin"));
+                out.write(data);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long readAll(final ZipStreamArchive archive, List<Archive.Entry> entries, int numThreads)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (final Archive.Entry entry: entries) {
+                results.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        InputStream in = archive.openInputStream(entry);
+                        try {
+                            return consume(in);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }));
+            }
+            long total = 0;
+            for (Future<Long> f: results) {
+                total += f.get();
+            }
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long consume(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Replica of the former spool implementation, where all readers seek and read on the same file.
+     */
+    private static class LegacySpool {
+
+        private final File tmpFile;
+
+        private final RandomAccessFile raf;
+
+        private final List<long[]> entries = new ArrayList<long[]>();
+
+        private LegacySpool(File zipFile) throws IOException {
+            tmpFile = File.createTempFile("__vlttmpbuffer", ".dat");
+            raf = new RandomAccessFile(tmpFile, "rw");
+            ZipInputStream zin = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)));
+            try {
+                byte[] buffer = new byte[8192];
+                while (zin.getNextEntry() != null) {
+                    long pos = raf.getFilePointer();
+                    long len = 0;
+                    int read;
+                    while ((read = zin.read(buffer)) > 0) {
+                        raf.write(buffer, 0, read);
+                        len += read;
+                    }
+                    entries.add(new long[]{pos, len});
+                }
+            } finally {
+                IOUtils.closeQuietly(zin);
+            }
+        }
+
+        private long readAll(int numThreads) throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<Long>> results = new ArrayList<Future<Long>>();
+                for (final long[] entry: entries) {
+                    results.add(executor.submit(new Callable<Long>() {
+                        public Long call() throws Exception {
+                            return read(entry[0], entry[0] + entry[1]);
+                        }
+                    }));
+                }
+                long total = 0;
+                for (Future<Long> f: results) {
+                    total += f.get();
+                }
+                return total;
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        private long read(long pos, long end) throws IOException {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            while (pos < end) {
+                int read;
+                synchronized (raf) {
+                    raf.seek(pos);
+                    read = raf.read(buffer, 0, (int) Math.min(buffer.length, end - pos));
+                }
+                if (read < 0) {
+                    break;
+                }
+                pos += read;
+                total += read;
+            }
+            return total;
+        }
+
+        private void close() throws IOException {
+            raf.close();
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.fs.spi.impl.jcr20;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.spi.commons.namespace.NamespaceMapping;
+import org.apache.jackrabbit.vault.fs.spi.NodeTypeSet;
+import org.apache.jackrabbit.vault.util.MD5;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code DefinitionFingerprintsTest}...
+ */
+public class DefinitionFingerprintsTest {
+
+    private static final String CND = "<'vlt'='http://www.day.com/jcr/vault/1.0'>\n"
+            + "<'nt'='http://www.jcp.org/jcr/nt/1.0'>\n"
+            + "[vlt:FullCoverage]\n"
+            + "  mixin\n"
+            + "[vlt:Package] > nt:base\n"
+            + "  - vlt:name (string)\n";
+
+    private static final ClassLoader LOADER = DefinitionFingerprintsTest.class.getClassLoader();
+
+    private static NodeTypeSet read(String cnd) throws IOException {
+        DefaultCNDReader reader = new DefaultCNDReader();
+        reader.read(new StringReader(cnd), "test.cnd", new NamespaceMapping());
+        return reader;
+    }
+
+    /**
+     * Creates a session of the given repository.
+     */
+    private static Session createSession(final Repository repository) {
+        return (Session) Proxy.newProxyInstance(LOADER, new Class[]{Session.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getRepository".equals(method.getName())) {
+                            return repository;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static Repository createRepository() {
+        return (Repository) Proxy.newProxyInstance(LOADER, new Class[]{Repository.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testSameDefinitions() throws IOException {
+        MD5 fp = DefinitionFingerprints.getFingerprint(read(CND));
+        assertNotNull(fp);
+        assertEquals(fp, DefinitionFingerprints.getFingerprint(read(CND)));
+    }
+
+    @Test
+    public void testChangedDefinitions() throws IOException {
+        MD5 fp = DefinitionFingerprints.getFingerprint(read(CND));
+        assertNotEquals(fp, DefinitionFingerprints.getFingerprint(read(CND + "  - vlt:version (string)\n")));
+        assertNotEquals(fp, DefinitionFingerprints.getFingerprint(read(CND.replace("1.0", "1.1"))));
+    }
+
+    @Test
+    public void testInstalledPerRepository() throws IOException {
+        MD5 fp = DefinitionFingerprints.getFingerprint(read(CND));
+        Session s1 = createSession(createRepository());
+        Session s2 = createSession(createRepository());
+        assertFalse(DefinitionFingerprints.isInstalled(s1, fp));
+        DefinitionFingerprints.setInstalled(s1, fp);
+        assertTrue(DefinitionFingerprints.isInstalled(s1, fp));
+        assertTrue(DefinitionFingerprints.isInstalled(createSession(s1.getRepository()), fp));
+        assertFalse(DefinitionFingerprints.isInstalled(s2, fp));
+        assertFalse(DefinitionFingerprints.isInstalled(s1, null));
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.events.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.events.PackageEvent;
+import org.apache.jackrabbit.vault.packaging.events.PackageEventListener;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@code PackageEventDispatcherImplTest}...
+ */
+public class PackageEventDispatcherImplTest {
+
+    private static final PackageId PID_A = PackageId.fromString("my_packages:a:1.0");
+
+    private static final PackageId PID_B = PackageId.fromString("my_packages:b:1.0");
+
+    /**
+     * the events in the order they are dispatched
+     */
+    private static final List<String> EXPECTED = Arrays.asList(
+            "a:EXTRACT", "b:EXTRACT", "b:INSTALL", "a:INSTALL");
+
+    private final PackageEventDispatcherImpl dispatcher = new PackageEventDispatcherImpl();
+
+    @After
+    public void tearDown() {
+        dispatcher.deactivate();
+    }
+
+    /**
+     * Listener that records the events and optionally waits for a latch before it handles them.
+     */
+    private static class RecordingListener implements PackageEventListener {
+
+        private final List<String> events = new CopyOnWriteArrayList<String>();
+
+        private final CountDownLatch latch;
+
+        private RecordingListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onPackageEvent(@Nonnull PackageEvent event) {
+            try {
+                if (latch != null) {
+                    latch.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event.getId().getName() + ":" + event.getType());
+        }
+    }
+
+    private void bind(PackageEventListener listener) {
+        dispatcher.bindPackageEventListener(listener, Collections.singletonMap("component.id", (Object) "1"));
+    }
+
+    private void dispatchEvents() {
+        dispatcher.dispatch(PackageEvent.Type.EXTRACT, PID_A, null);
+        dispatcher.dispatch(PackageEvent.Type.EXTRACT, PID_B, null);
+        dispatcher.dispatch(PackageEvent.Type.INSTALL, PID_B, null);
+        dispatcher.dispatch(PackageEvent.Type.INSTALL, PID_A, null);
+    }
+
+    /**
+     * Waits until the listener received the expected number of events, since closing the queues does not wait.
+     */
+    private static void awaitEvents(RecordingListener listener, int num) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (listener.events.size() < num && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+
+    private CompositeData getListenerData() {
+        TabularData data = dispatcher.getListeners();
+        assertEquals(1, data.size());
+        return (CompositeData) data.values().iterator().next();
+    }
+
+    @Test
+    public void testSynchronous() {
+        RecordingListener listener = new RecordingListener(null);
+        bind(listener);
+        assertFalse(dispatcher.isAsynchronous());
+        dispatchEvents();
+        assertEquals(EXPECTED, listener.events);
+        assertEquals(4L, getListenerData().get("dispatched"));
+    }
+
+    @Test
+    public void testAsynchronous() throws InterruptedException {
+        dispatcher.configure(true, 10);
+        CountDownLatch latch = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(latch);
+        bind(listener);
+
+        // returns although the listener is blocked
+        dispatchEvents();
+        assertTrue(listener.events.isEmpty());
+        assertEquals(0L, getListenerData().get("dispatched"));
+
+        latch.countDown();
+        dispatcher.deactivate();
+        awaitEvents(listener, 4);
+        assertEquals(EXPECTED, listener.events);
+    }
+
+    @Test
+    public void testQueueFull() throws InterruptedException {
+        dispatcher.configure(true, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(latch);
+        bind(listener);
+
+        Thread installer = new Thread() {
+            @Override
+            public void run() {
+                dispatchEvents();
+            }
+        };
+        installer.start();
+        installer.join(500);
+        // 1 event is processed, 1 is queued and the installer waits with the 3rd
+        assertTrue(installer.isAlive());
+        assertEquals(1, getListenerData().get("queued"));
+
+        latch.countDown();
+        installer.join(10000);
+        assertFalse(installer.isAlive());
+        dispatcher.deactivate();
+        awaitEvents(listener, 4);
+        assertEquals(EXPECTED, listener.events);
+    }
+
+    /**
+     * Tests that no events are lost or reordered while the dispatch mode changes, and that the change does not
+     * wait for the queued events.
+     */
+    @Test
+    public void testConfigure() throws InterruptedException {
+        dispatcher.configure(true, 10);
+        CountDownLatch latch = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(latch);
+        bind(listener);
+
+        dispatcher.dispatch(PackageEvent.Type.EXTRACT, PID_A, null);
+        dispatcher.dispatch(PackageEvent.Type.EXTRACT, PID_B, null);
+        long start = System.currentTimeMillis();
+        dispatcher.configure(true, 5);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        dispatcher.dispatch(PackageEvent.Type.INSTALL, PID_B, null);
+        assertTrue(listener.events.isEmpty());
+
+        latch.countDown();
+        dispatcher.configure(false, 5);
+        // waits for the queued events before it dispatches synchronously
+        dispatcher.dispatch(PackageEvent.Type.INSTALL, PID_A, null);
+        assertEquals(EXPECTED, listener.events);
+        assertEquals(4L, getListenerData().get("dispatched"));
+    }
+
+    /**
+     * Tests that removing a listener does not wait for its queued events.
+     */
+    @Test
+    public void testUnbind() throws InterruptedException {
+        dispatcher.configure(true, 10);
+        CountDownLatch latch = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(latch);
+        bind(listener);
+        dispatchEvents();
+
+        long start = System.currentTimeMillis();
+        dispatcher.unbindPackageEventListener(listener, Collections.singletonMap("component.id", (Object) "1"));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(0, dispatcher.getListeners().size());
+
+        latch.countDown();
+        awaitEvents(listener, 4);
+        assertEquals(EXPECTED, listener.events);
+    }
+
+    @Test
+    public void testFailingListener() {
+        bind(new PackageEventListener() {
+            @Override
+            public void onPackageEvent(@Nonnull PackageEvent event) {
+                throw new IllegalStateException("test");
+            }
+        });
+        dispatchEvents();
+        CompositeData data = getListenerData();
+        assertEquals(4L, data.get("dispatched"));
+        assertEquals(4L, data.get("failed"));
+    }
+}
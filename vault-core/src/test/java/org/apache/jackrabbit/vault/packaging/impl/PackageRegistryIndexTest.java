@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.packaging.impl;
+
+import java.io.InputStream;
+
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.vault.packaging.integration.IntegrationTestBase;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link PackageRegistryIndex}
+ */
+public class PackageRegistryIndexTest extends IntegrationTestBase {
+
+    private static InputStream getTestPackage(String name) {
+        return IntegrationTestBase.class.getResourceAsStream("testpackages/" + name);
+    }
+
+    /**
+     * Tests that listing the packages does not traverse the package root once the index is built, and that
+     * external changes only scan the changed nodes.
+     */
+    @Test
+    public void testListingDoesNotTraverse() throws Exception {
+        JcrPackageManagerImpl mgr = (JcrPackageManagerImpl) packMgr;
+        mgr.upload(getTestPackage("test_a-1.0.zip"), false);
+        String path = mgr.upload(getTestPackage("test_b-1.0.zip"), false).getNode().getPath();
+        mgr.upload(getTestPackage("test_c-1.0.zip"), false);
+        assertEquals(3, mgr.listPackages().size());
+
+        PackageRegistryIndex index = PackageRegistryIndex.getInstance(admin);
+        long numScanned = index.getNumScannedNodes();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(3, mgr.listPackages().size());
+            assertEquals(3, mgr.listPackages("my_packages", false).size());
+        }
+        assertEquals("listing must not scan the package root", numScanned, index.getNumScannedNodes());
+
+        Session other = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        try {
+            other.getWorkspace().copy(path, "/etc/packages/my_packages/copy_of_test_b.zip");
+        } finally {
+            other.logout();
+        }
+        admin.refresh(false);
+        long timeout = System.currentTimeMillis() + 10000;
+        while (mgr.listPackages().size() < 4 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, mgr.listPackages().size());
+        long delta = index.getNumScannedNodes() - numScanned;
+        assertTrue("only the added package must be scanned, but scanned " + delta + " nodes", delta <= 1);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultMetaInf;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.packaging.ExportOptions;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that exporting with concurrent aggregation produces the same package as the serial export.
+ */
+public class TestConcurrentExport extends IntegrationTestBase {
+
+    private File serial;
+
+    private File concurrent;
+
+    private void createContent() throws RepositoryException {
+        Node root = JcrUtils.getOrCreateByPath("/tmp/concurrent", "nt:unstructured", admin);
+        for (int i = 0; i < 10; i++) {
+            Node folder = root.addNode("folder" + i, "nt:folder");
+            for (int j = 0; j < 5; j++) {
+                JcrUtils.putFile(folder, "file" + j + ".txt", "text/plain",
+                        new ByteArrayInputStream(("content of file " + i + "/" + j).getBytes()));
+            }
+            Node node = root.addNode("node" + i, "nt:unstructured");
+            node.addMixin("mix:title");
+            node.setProperty("jcr:title", "Node " + i);
+            for (int j = 0; j < 5; j++) {
+                node.addNode("child" + j, "nt:unstructured").addNode("grandchild").setProperty("index", j);
+            }
+        }
+        admin.save();
+    }
+
+    private File assemble(int threads) throws IOException, RepositoryException {
+        return assemble(admin, threads);
+    }
+
+    private File assemble(Session session, int threads) throws IOException, RepositoryException {
+        ExportOptions opts = new ExportOptions();
+        DefaultMetaInf inf = new DefaultMetaInf();
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet("/tmp/concurrent"));
+        inf.setFilter(filter);
+        Properties props = new Properties();
+        props.setProperty(VaultPackage.NAME_GROUP, "jackrabbit/test");
+        props.setProperty(VaultPackage.NAME_NAME, "test-package");
+        inf.setProperties(props);
+        opts.setMetaInf(inf);
+        opts.setAggregationThreads(threads);
+        File tmpFile = File.createTempFile("vaulttest", ".zip");
+        packMgr.assemble(session, opts, tmpFile).close();
+        return tmpFile;
+    }
+
+    private static List<String> getNames(ZipFile zip) {
+        List<String> names = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> e = zip.entries();
+        while (e.hasMoreElements()) {
+            names.add(e.nextElement().getName());
+        }
+        return names;
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        InputStream in = zip.getInputStream(zip.getEntry(name));
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void assertSamePackage() throws IOException {
+        ZipFile serialZip = new ZipFile(serial);
+        ZipFile concurrentZip = new ZipFile(concurrent);
+        try {
+            List<String> names = getNames(serialZip);
+            assertTrue(names.contains("jcr_root/tmp/concurrent/folder9/file4.txt"));
+            assertEquals(names, getNames(concurrentZip));
+            for (String name: names) {
+                if (name.endsWith("/") || name.equals("META-INF/vault/properties.xml")) {
+                    continue;
+                }
+                assertArrayEquals(name, read(serialZip, name), read(concurrentZip, name));
+            }
+        } finally {
+            serialZip.close();
+            concurrentZip.close();
+        }
+    }
+
+    @Test
+    public void testSameAsSerial() throws IOException, RepositoryException, PackageException {
+        createContent();
+        try {
+            serial = assemble(0);
+            concurrent = assemble(4);
+            assertSamePackage();
+
+            // the concurrent package can be installed
+            clean("/tmp/concurrent");
+            packMgr.upload(concurrent, false, true, null).install(getDefaultOptions());
+            assertNodeExists("/tmp/concurrent/folder3/file2.txt");
+            assertProperty("/tmp/concurrent/node7/jcr:title", "Node 7");
+        } finally {
+            FileUtils.deleteQuietly(serial);
+            FileUtils.deleteQuietly(concurrent);
+        }
+    }
+
+    /**
+     * Tests that the export falls back to the serial walk if the user is not allowed to impersonate itself.
+     */
+    @Test
+    public void testNoImpersonation() throws IOException, RepositoryException {
+        createContent();
+        User user = ((JackrabbitSession) admin).getUserManager().createUser("test-export-user", "test");
+        admin.save();
+        Session session = repository.login(new SimpleCredentials("test-export-user", "test".toCharArray()));
+        try {
+            serial = assemble(session, 0);
+            concurrent = assemble(session, 4);
+            assertSamePackage();
+        } finally {
+            session.logout();
+            user.remove();
+            admin.save();
+            FileUtils.deleteQuietly(serial);
+            FileUtils.deleteQuietly(concurrent);
+        }
+    }
+}
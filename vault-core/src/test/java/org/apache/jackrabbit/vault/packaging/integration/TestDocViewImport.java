@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.nodetype.ConstraintViolationException;
+import javax.jcr.nodetype.NodeType;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.jackrabbit.vault.fs.api.ImportInfo;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.impl.ArtifactSetImpl;
+import org.apache.jackrabbit.vault.fs.impl.io.DocViewSAXImporter;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the node creation of the {@link DocViewSAXImporter}, both for nodes that are added directly and for
+ * nodes that fall back to the system view import.
+ */
+public class TestDocViewImport extends IntegrationTestBase {
+
+    private static final String TEST_ROOT = "/testroot";
+
+    private static final String UUID = "4c2b8ea2-9c47-4b7f-9b8d-5c1e3f3b2a10";
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\" "
+            + "xmlns:mix=\"http://www.jcp.org/jcr/mix/1.0\" jcr:primaryType=\"nt:unstructured\">\n";
+
+    private static final String FOOTER = "</jcr:root>\n";
+
+    @Before
+    public void init() {
+        clean(TEST_ROOT);
+    }
+
+    private ImportInfo importDocView(String content)
+            throws RepositoryException, IOException, SAXException, ParserConfigurationException {
+        ImportInfo info = parseDocView(content);
+        admin.save();
+        return info;
+    }
+
+    private ImportInfo parseDocView(String content)
+            throws RepositoryException, IOException, SAXException, ParserConfigurationException {
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet(TEST_ROOT));
+        DocViewSAXImporter handler = new DocViewSAXImporter(admin.getRootNode(), "testroot",
+                new ArtifactSetImpl(), filter);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+        SAXParser parser = factory.newSAXParser();
+        parser.parse(new ByteArrayInputStream((HEADER + content + FOOTER).getBytes("utf-8")), handler);
+        return handler.getInfo();
+    }
+
+    private static Set<String> getMixins(Node node) throws RepositoryException {
+        Set<String> names = new HashSet<String>();
+        for (NodeType mix: node.getMixinNodeTypes()) {
+            names.add(mix.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testNewNodes() throws Exception {
+        ImportInfo info = importDocView(
+                "<a jcr:primaryType=\"nt:unstructured\" jcr:mixinTypes=\"[mix:title]\" jcr:title=\"Title\" "
+                        + "count=\"{Long}42\" tags=\"[one,two]\">\n"
+                        + "  <b jcr:primaryType=\"nt:unstructured\" prop=\"value\"/>\n"
+                        + "</a>\n"
+                        + "<folder jcr:primaryType=\"nt:folder\">\n"
+                        + "  <sub jcr:primaryType=\"nt:folder\"/>\n"
+                        + "</folder>\n");
+        assertEquals(ImportInfo.Type.CRE, info.getModifications().get(TEST_ROOT + "/a/b"));
+
+        Node a = admin.getNode(TEST_ROOT + "/a");
+        assertEquals("nt:unstructured", a.getPrimaryNodeType().getName());
+        assertTrue(a.isNodeType("mix:title"));
+        assertProperty(TEST_ROOT + "/a/jcr:title", "Title");
+        assertEquals(42L, a.getProperty("count").getLong());
+        assertProperty(TEST_ROOT + "/a/tags", new String[]{"one", "two"});
+        assertProperty(TEST_ROOT + "/a/b/prop", "value");
+        assertEquals("nt:folder", admin.getNode(TEST_ROOT + "/folder/sub").getPrimaryNodeType().getName());
+    }
+
+    @Test
+    public void testExistingNodeSameType() throws Exception {
+        Node a = admin.getRootNode().addNode("testroot", "nt:unstructured").addNode("a", "nt:unstructured");
+        a.addMixin("mix:title");
+        a.setProperty("jcr:title", "Old Title");
+        a.setProperty("old", "value");
+        admin.save();
+
+        ImportInfo info = importDocView(
+                "<a jcr:primaryType=\"nt:unstructured\" jcr:mixinTypes=\"[mix:language]\" jcr:language=\"en\" "
+                        + "prop=\"new\"/>\n");
+        assertEquals(ImportInfo.Type.MOD, info.getModifications().get(TEST_ROOT + "/a"));
+
+        a = admin.getNode(TEST_ROOT + "/a");
+        assertEquals("nt:unstructured", a.getPrimaryNodeType().getName());
+        Set<String> mixins = new HashSet<String>();
+        mixins.add("mix:language");
+        assertEquals(mixins, getMixins(a));
+        assertProperty(TEST_ROOT + "/a/jcr:language", "en");
+        assertProperty(TEST_ROOT + "/a/prop", "new");
+        assertPropertyMissing(TEST_ROOT + "/a/jcr:title");
+        assertPropertyMissing(TEST_ROOT + "/a/old");
+    }
+
+    @Test
+    public void testExistingNodeOtherType() throws Exception {
+        admin.getRootNode().addNode("testroot", "nt:unstructured").addNode("a", "nt:folder");
+        admin.save();
+
+        importDocView("<a jcr:primaryType=\"nt:unstructured\" prop=\"value\">\n"
+                + "  <b jcr:primaryType=\"nt:unstructured\"/>\n"
+                + "</a>\n");
+
+        Node a = admin.getNode(TEST_ROOT + "/a");
+        assertEquals("nt:unstructured", a.getPrimaryNodeType().getName());
+        assertProperty(TEST_ROOT + "/a/prop", "value");
+        assertNodeExists(TEST_ROOT + "/a/b");
+    }
+
+    @Test
+    public void testNewReferenceableNode() throws Exception {
+        importDocView(
+                "<a jcr:primaryType=\"nt:unstructured\" jcr:mixinTypes=\"[mix:referenceable,mix:title]\" "
+                        + "jcr:uuid=\"" + UUID + "\" jcr:title=\"Title\"/>\n");
+
+        // the uuid is protected, so the node is created by the system view import
+        Node a = admin.getNode(TEST_ROOT + "/a");
+        assertEquals(UUID, a.getIdentifier());
+        assertTrue(a.isNodeType("mix:referenceable"));
+        assertTrue(a.isNodeType("mix:title"));
+        assertProperty(TEST_ROOT + "/a/jcr:title", "Title");
+    }
+
+    @Test
+    public void testUUIDCollision() throws Exception {
+        importDocView("<a jcr:primaryType=\"nt:unstructured\" jcr:mixinTypes=\"[mix:referenceable]\" "
+                + "jcr:uuid=\"" + UUID + "\"/>\n");
+        assertEquals(UUID, admin.getNode(TEST_ROOT + "/a").getIdentifier());
+
+        // a referenceable node with the same uuid below another parent is created with a new uuid
+        importDocView("<a jcr:primaryType=\"nt:unstructured\" jcr:mixinTypes=\"[mix:referenceable]\" "
+                + "jcr:uuid=\"" + UUID + "\"/>\n"
+                + "<other jcr:primaryType=\"nt:unstructured\">\n"
+                + "  <b jcr:primaryType=\"nt:unstructured\" jcr:mixinTypes=\"[mix:referenceable]\" "
+                + "jcr:uuid=\"" + UUID + "\" prop=\"value\"/>\n"
+                + "</other>\n");
+        assertEquals(UUID, admin.getNode(TEST_ROOT + "/a").getIdentifier());
+        Node b = admin.getNode(TEST_ROOT + "/other/b");
+        assertTrue(b.isNodeType("mix:referenceable"));
+        assertNotEquals(UUID, b.getIdentifier());
+        assertProperty(TEST_ROOT + "/other/b/prop", "value");
+    }
+
+    @Test
+    public void testSameNameSiblings() throws Exception {
+        importDocView("<a jcr:primaryType=\"nt:unstructured\" prop=\"first\"/>\n"
+                + "<a_x005b_2_x005d_ jcr:primaryType=\"nt:unstructured\" prop=\"second\"/>\n");
+
+        assertProperty(TEST_ROOT + "/a/prop", "first");
+        Repository repo = admin.getRepository();
+        if (repo.getDescriptorValue(Repository.NODE_TYPE_MANAGEMENT_SAME_NAME_SIBLINGS_SUPPORTED).getBoolean()) {
+            // the second sibling is created by the system view import
+            assertProperty(TEST_ROOT + "/a[2]/prop", "second");
+        } else {
+            assertNodeMissing(TEST_ROOT + "/a[2]");
+        }
+    }
+
+    @Test
+    public void testMixinProperties() throws Exception {
+        // nt:folder doesn't allow the property, but the mixin does
+        importDocView("<folder jcr:primaryType=\"nt:folder\" jcr:mixinTypes=\"[mix:title]\" jcr:title=\"Title\"/>\n");
+
+        Node folder = admin.getNode(TEST_ROOT + "/folder");
+        assertEquals("nt:folder", folder.getPrimaryNodeType().getName());
+        assertTrue(folder.isNodeType("mix:title"));
+        assertProperty(TEST_ROOT + "/folder/jcr:title", "Title");
+        assertFalse(folder.hasNodes());
+    }
+
+    @Test
+    public void testNodeTypeMismatch() throws Exception {
+        // nt:folder doesn't allow nt:unstructured children, so the node is passed to the system view import
+        ImportInfo info = parseDocView("<folder jcr:primaryType=\"nt:folder\">\n"
+                + "  <child jcr:primaryType=\"nt:unstructured\" prop=\"value\"/>\n"
+                + "</folder>\n");
+        assertEquals(ImportInfo.Type.ERR, info.getModifications().get(TEST_ROOT + "/folder/child"));
+        try {
+            admin.save();
+            assertNodeExists(TEST_ROOT + "/folder");
+            assertNodeMissing(TEST_ROOT + "/folder/child");
+        } catch (ConstraintViolationException e) {
+            // oak keeps the rejected node and validates the node type constraints on save
+        }
+    }
+}
@@ -199,4 +199,49 @@ public class TestGroupMergePackage extends IntegrationTestBase {
         assertTrue("test-user-101 is member of test-group", grp.isMember(lastUser));
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Installs a package with a group of 50 members in merge mode over the group that lost half of its members.
+     * The memberships are added in several batches.
+     */
+    @Test
+    public void installGroupMergeBatches() throws RepositoryException, IOException, PackageException {
+        UserManager mgr = ((JackrabbitSession) admin).getUserManager();
+        assertNull("test-group must not exist", mgr.getAuthorizable("test-group"));
+
+        Group grp = mgr.createGroup("test-group");
+        User[] users = new User[50];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = mgr.createUser("test-user-" + i, "123");
+            grp.addMember(users[i]);
+        }
+        admin.save();
+
+        JcrPackage pack = packMgr.create("foo", "test-50-users");
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        PathFilterSet set = new PathFilterSet(grp.getPath());
+        set.setImportMode(ImportMode.MERGE);
+        filter.add(set);
+        pack.getDefinition().setFilter(filter, true);
+        packMgr.assemble(pack, null);
+
+        for (int i = 0; i < users.length; i += 2) {
+            grp.removeMember(users[i]);
+        }
+        admin.save();
+        assertFalse("test-user-0 is not member of test-group", grp.isDeclaredMember(users[0]));
+
+        ImportOptions options = new ImportOptions();
+        options.setAutoSaveThreshold(7);
+        pack.install(options);
+
+        grp = (Group) mgr.getAuthorizable("test-group");
+        for (User user: users) {
+            assertTrue(user.getID() + " is member of test-group", grp.isDeclaredMember(user));
+        }
+        for (User user: users) {
+            user.remove();
+        }
+        admin.save();
+    }
+}
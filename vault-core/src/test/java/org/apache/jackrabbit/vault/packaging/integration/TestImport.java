@@ -17,13 +17,19 @@
 
 package org.apache.jackrabbit.vault.packaging.integration;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.ProgressTrackerListener;
 import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
 import org.apache.jackrabbit.vault.fs.config.ConfigurationException;
 import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
@@ -38,11 +44,13 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
- * {@code ImportTests}...
+ * {@code TestImport}...
  */
-public class ImportTests extends IntegrationTestBase {
+public class TestImport extends IntegrationTestBase {
 
     public static final String TEST_ROOT = "/testroot";
 
@@ -66,6 +74,19 @@ public class ImportTests extends IntegrationTestBase {
         assertNodeExists("/tmp/foo/bar/tobi");
     }
 
+    @Test
+    public void testImportParallelPrepare() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tmp.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setPrepareParallelism(4);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        assertNodeExists("/tmp/foo/bar/tobi");
+    }
+
     @Test
     public void testReimportLess() throws IOException, RepositoryException, ConfigurationException {
         ZipArchive archive = new ZipArchive(getTempFile("testpackages/tmp.zip"));
@@ -209,6 +230,215 @@ public class ImportTests extends IntegrationTestBase {
 
     }
 
+    @Test
+    public void testConcurrentModificationHandlingStreaming() throws IOException, RepositoryException, PackageException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tags.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setAutoSaveThreshold(7);
+        opts.setStreaming(true);
+        Importer importer = new Importer(opts);
+        importer.setDebugFailAfterSave(2);
+        importer.run(archive, rootNode);
+        admin.save();
+
+        assertNodeExists("/etc/tags");
+        assertEquals("Number of tags installed", 487, countNodes(admin.getNode("/etc/tags")));
+    }
+
+    @Test
+    public void testConcurrentModificationHandlingAdaptive() throws IOException, RepositoryException, PackageException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tags.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setAutoSaveThreshold(7);
+        opts.setAutoSaveMinThreshold(5);
+        opts.setAutoSaveMaxThreshold(50);
+        Importer importer = new Importer(opts);
+        importer.setDebugFailAfterSave(2);
+        importer.run(archive, rootNode);
+        admin.save();
+
+        assertNodeExists("/etc/tags");
+        assertEquals("Number of tags installed", 487, countNodes(admin.getNode("/etc/tags")));
+    }
+
+    /**
+     * Interrupts an import after some saves and resumes it with a new importer from the checkpoint journal.
+     */
+    private void assertResume(boolean streaming) throws IOException, RepositoryException, ConfigurationException {
+        File journal = File.createTempFile("vaulttest", ".journal");
+        FileUtils.deleteQuietly(journal);
+        try {
+            ZipArchive archive = new ZipArchive(getTempFile("testpackages/tags.zip"));
+            archive.open(true);
+            Node rootNode = admin.getRootNode();
+            ImportOptions opts = getDefaultOptions();
+            opts.setAutoSaveThreshold(7);
+            opts.setStreaming(streaming);
+            opts.setCheckpointJournal(journal);
+            opts.setListener(new ProgressTrackerListener() {
+                private int saves;
+
+                public void onMessage(Mode mode, String action, String path) {
+                    if (action.startsWith("saved approx") && ++saves == 10) {
+                        throw new IllegalStateException("interrupted");
+                    }
+                }
+
+                public void onError(Mode mode, String path, Exception e) {
+                }
+            });
+            try {
+                new Importer(opts).run(archive, rootNode);
+                fail("import should be interrupted");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            admin.refresh(false);
+            assertTrue("journal exists", journal.exists());
+
+            final List<String> paths = new ArrayList<String>();
+            final List<String> messages = new ArrayList<String>();
+            opts.setListener(new ProgressTrackerListener() {
+                public void onMessage(Mode mode, String action, String path) {
+                    if (action.startsWith("Resuming import after checkpoint at ")) {
+                        messages.add(action);
+                    }
+                    paths.add(path);
+                }
+
+                public void onError(Mode mode, String path, Exception e) {
+                }
+            });
+            new Importer(opts).run(archive, rootNode);
+            admin.save();
+
+            assertFalse("journal deleted", journal.exists());
+            assertEquals("resumed", 1, messages.size());
+            assertFalse("skipped committed nodes", paths.contains("/etc/tags"));
+            assertEquals("Number of tags installed", 487, countNodes(admin.getNode("/etc/tags")));
+        } finally {
+            FileUtils.deleteQuietly(journal);
+        }
+    }
+
+    @Test
+    public void testResume() throws IOException, RepositoryException, ConfigurationException {
+        assertResume(false);
+    }
+
+    @Test
+    public void testResumeStreaming() throws IOException, RepositoryException, ConfigurationException {
+        assertResume(true);
+    }
+
+    @Test
+    public void testImportStreaming() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tmp.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setStreaming(true);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        assertNodeExists("/tmp/foo/bar/tobi");
+    }
+
+    @Test
+    public void testFilteredImportStreaming() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/filtered_package.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setStreaming(true);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        assertNodeExists("/tmp/foo/bar/tobi");
+        assertNodeMissing("/tmp/foo/bar/tom");
+    }
+
+    /**
+     * Tests that binaries and files in intermediate directories are attached to their parent in streaming mode.
+     */
+    @Test
+    public void testDeepImportStreaming() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tmp_test_deep.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setStreaming(true);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/b/foo.jsp/jcr:content");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/c/resource");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/d");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/folder/file.txt/jcr:content");
+    }
+
+    /**
+     * Tests that the sub trees released at the auto save checkpoints in streaming mode are imported completely.
+     */
+    @Test
+    public void testDeepImportStreamingAutoSave() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tmp_test_deep.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setStreaming(true);
+        opts.setAutoSaveThreshold(1);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/b/foo.jsp/jcr:content");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/c/resource");
+        assertProperty("/tmp/test/content/foo/jcr:content/a/d/data", "hello\n");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/folder/file.txt/jcr:content");
+    }
+
+    /**
+     * Tests that binaries in intermediate directories are attached to their parent when the import is prepared
+     * concurrently.
+     */
+    @Test
+    public void testDeepImportParallelPrepare() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/tmp_test_deep.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setPrepareParallelism(4);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/b/foo.jsp/jcr:content");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/c/resource");
+        assertProperty("/tmp/test/content/foo/jcr:content/a/d/data", "hello\n");
+        assertNodeExists("/tmp/test/content/foo/jcr:content/a/folder/file.txt/jcr:content");
+    }
+
+    @Test
+    public void testChildNodeOrderStreaming() throws IOException, RepositoryException, ConfigurationException {
+        ZipArchive archive = new ZipArchive(getTempFile("testpackages/test_childnodeorder.zip"));
+        archive.open(true);
+        Node rootNode = admin.getRootNode();
+        ImportOptions opts = getDefaultOptions();
+        opts.setStreaming(true);
+        Importer importer = new Importer(opts);
+        importer.run(archive, rootNode);
+
+        NodeIterator iter = admin.getNode("/tmp/ordertest/test/rail/items/modes/items").getNodes();
+        StringBuilder names = new StringBuilder();
+        while (iter.hasNext()) {
+            names.append(iter.nextNode().getName()).append(",");
+        }
+        assertEquals("child order", "a,d,b,c,", names.toString());
+    }
+
     @Test
     public void testSNSImport() throws IOException, RepositoryException, ConfigurationException {
         ZipArchive archive = new ZipArchive(getTempFile("testpackages/test_sns.zip"));
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultMetaInf;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.io.JarExporter;
+import org.apache.jackrabbit.vault.packaging.ExportOptions;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.JcrPackageDefinition;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that the incremental assembly reuses the unchanged entries of the previous build.
+ */
+public class TestIncrementalAssembly extends IntegrationTestBase {
+
+    private static final String PROPERTIES_XML = "META-INF/vault/properties.xml";
+
+    private static Calendar getDate(int offset) {
+        Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(1400000000000L + offset * 1000L);
+        return date;
+    }
+
+    private static String getText(int i, int j) {
+        StringBuilder b = new StringBuilder();
+        for (int k = 0; k < 50; k++) {
+            b.append("line ").append(k).append(" of file ").append(i).append("/").append(j).append('\n');
+        }
+        return b.toString();
+    }
+
+    private void createContent() throws RepositoryException {
+        Node root = JcrUtils.getOrCreateByPath("/tmp/incremental", "nt:unstructured", admin);
+        for (int i = 0; i < 5; i++) {
+            Node folder = root.addNode("folder" + i, "nt:folder");
+            for (int j = 0; j < 5; j++) {
+                JcrUtils.putFile(folder, "file" + j + ".txt", "text/plain",
+                        new ByteArrayInputStream(getText(i, j).getBytes()), getDate(i * 10 + j));
+            }
+            Node node = root.addNode("node" + i, "nt:folder");
+            node.addMixin("mix:title");
+            node.setProperty("jcr:title", getText(i, 0));
+        }
+        admin.save();
+    }
+
+    private File assemble(int level, File base) throws IOException, RepositoryException {
+        ExportOptions opts = new ExportOptions();
+        DefaultMetaInf inf = new DefaultMetaInf();
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet("/tmp/incremental"));
+        inf.setFilter(filter);
+        Properties props = new Properties();
+        props.setProperty(VaultPackage.NAME_GROUP, "jackrabbit/test");
+        props.setProperty(VaultPackage.NAME_NAME, "test-package");
+        inf.setProperties(props);
+        opts.setMetaInf(inf);
+        opts.setCompressionLevel(level);
+        opts.setIncremental(true);
+        opts.setIncrementalBase(base);
+        File tmpFile = File.createTempFile("vaulttest", ".zip");
+        packMgr.assemble(admin, opts, tmpFile).close();
+        return tmpFile;
+    }
+
+    private static List<String> getNames(ZipFile zip) {
+        List<String> names = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> e = zip.entries();
+        while (e.hasMoreElements()) {
+            names.add(e.nextElement().getName());
+        }
+        return names;
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        InputStream in = zip.getInputStream(zip.getEntry(name));
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testReuseUnchanged() throws IOException, RepositoryException, PackageException {
+        createContent();
+        File base = null;
+        File incremental = null;
+        File full = null;
+        try {
+            base = assemble(Deflater.BEST_COMPRESSION, null);
+            ZipFile baseZip = new ZipFile(base);
+            try {
+                assertNotNull(baseZip.getEntry(JarExporter.INDEX_PATH));
+            } finally {
+                baseZip.close();
+            }
+
+            // modify a file and an aggregate
+            JcrUtils.putFile(admin.getNode("/tmp/incremental/folder1"), "file2.txt", "text/plain",
+                    new ByteArrayInputStream("modified".getBytes()), getDate(100));
+            admin.getNode("/tmp/incremental/node3").setProperty("jcr:title", "modified");
+            admin.save();
+
+            // changed entries are stored without compression, reused ones keep their compression
+            incremental = assemble(Deflater.NO_COMPRESSION, base);
+            full = assemble(Deflater.NO_COMPRESSION, null);
+            ZipFile incrementalZip = new ZipFile(incremental);
+            ZipFile fullZip = new ZipFile(full);
+            try {
+                List<String> names = getNames(fullZip);
+                assertEquals(names, getNames(incrementalZip));
+                for (String name: names) {
+                    if (!name.endsWith("/") && !name.equals(PROPERTIES_XML)) {
+                        assertArrayEquals(name, read(fullZip, name), read(incrementalZip, name));
+                    }
+                }
+                assertEquals(ZipEntry.DEFLATED,
+                        incrementalZip.getEntry("jcr_root/tmp/incremental/folder1/file1.txt").getMethod());
+                assertEquals(ZipEntry.STORED,
+                        incrementalZip.getEntry("jcr_root/tmp/incremental/folder1/file2.txt").getMethod());
+                assertEquals(ZipEntry.DEFLATED,
+                        incrementalZip.getEntry("jcr_root/tmp/incremental/node2/.content.xml").getMethod());
+                assertEquals(ZipEntry.STORED,
+                        incrementalZip.getEntry("jcr_root/tmp/incremental/node3/.content.xml").getMethod());
+            } finally {
+                incrementalZip.close();
+                fullZip.close();
+            }
+
+            // the incremental package can be installed
+            clean("/tmp/incremental");
+            packMgr.upload(incremental, false, true, null).install(getDefaultOptions());
+            assertProperty("/tmp/incremental/node3/jcr:title", "modified");
+            assertProperty("/tmp/incremental/node2/jcr:title", getText(2, 0));
+            assertEquals("modified", IOUtils.toString(JcrUtils.readFile(
+                    admin.getNode("/tmp/incremental/folder1/file2.txt"))));
+            assertEquals(getText(1, 1), IOUtils.toString(JcrUtils.readFile(
+                    admin.getNode("/tmp/incremental/folder1/file1.txt"))));
+        } finally {
+            FileUtils.deleteQuietly(base);
+            FileUtils.deleteQuietly(incremental);
+            FileUtils.deleteQuietly(full);
+        }
+    }
+
+    @Test
+    public void testBaseWithoutIndex() throws IOException, RepositoryException {
+        createContent();
+        File base = null;
+        File incremental = null;
+        try {
+            ExportOptions opts = new ExportOptions();
+            DefaultMetaInf inf = new DefaultMetaInf();
+            DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+            filter.add(new PathFilterSet("/tmp/incremental"));
+            inf.setFilter(filter);
+            opts.setMetaInf(inf);
+            base = File.createTempFile("vaulttest", ".zip");
+            packMgr.assemble(admin, opts, base).close();
+
+            incremental = assemble(Deflater.NO_COMPRESSION, base);
+            ZipFile zip = new ZipFile(incremental);
+            try {
+                // nothing is reused
+                assertEquals(ZipEntry.STORED,
+                        zip.getEntry("jcr_root/tmp/incremental/folder1/file1.txt").getMethod());
+                assertNotNull(zip.getEntry(JarExporter.INDEX_PATH));
+            } finally {
+                zip.close();
+            }
+        } finally {
+            FileUtils.deleteQuietly(base);
+            FileUtils.deleteQuietly(incremental);
+        }
+    }
+
+    @Test
+    public void testJcrPackage() throws IOException, RepositoryException, PackageException {
+        createContent();
+        JcrPackage pack = packMgr.create("jackrabbit/test", "test-incremental");
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet("/tmp/incremental"));
+        pack.getDefinition().setFilter(filter, true);
+        packMgr.assemble(pack, null);
+        assertNull(packMgr.open(pack.getNode()).getPackage().getArchive().getEntry(JarExporter.INDEX_PATH));
+
+        pack.getDefinition().set(JcrPackageDefinition.PN_INCREMENTAL_BUILD, true, true);
+        packMgr.assemble(pack, null);
+        assertNotNull(packMgr.open(pack.getNode()).getPackage().getArchive().getEntry(JarExporter.INDEX_PATH));
+
+        admin.getNode("/tmp/incremental/node3").setProperty("jcr:title", "modified");
+        admin.save();
+        packMgr.assemble(pack, null);
+
+        clean("/tmp/incremental");
+        pack.install(getDefaultOptions());
+        assertProperty("/tmp/incremental/node3/jcr:title", "modified");
+        assertNodeExists("/tmp/incremental/folder4/file4.txt");
+    }
+}
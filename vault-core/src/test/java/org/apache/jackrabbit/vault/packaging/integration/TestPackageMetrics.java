@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.commons.JcrUtils;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.config.DefaultMetaInf;
+import org.apache.jackrabbit.vault.fs.config.DefaultWorkspaceFilter;
+import org.apache.jackrabbit.vault.fs.io.ExportMetrics;
+import org.apache.jackrabbit.vault.fs.io.ImportMetrics;
+import org.apache.jackrabbit.vault.fs.io.ImportOptions;
+import org.apache.jackrabbit.vault.packaging.ExportOptions;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.VaultPackage;
+import org.apache.jackrabbit.vault.packaging.impl.PackageMetrics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the metrics recorded during the package installation and assembly.
+ */
+public class TestPackageMetrics extends IntegrationTestBase {
+
+    /**
+     * Installs a package with 2 sub packages and checks that the phases of all 3 packages are recorded.
+     */
+    @Test
+    public void testImportMetrics() throws RepositoryException, IOException, PackageException {
+        JcrPackage pack = packMgr.upload(getStream("testpackages/subtest.zip"), false);
+        long globalNodes = PackageMetrics.getImportMetrics().getNumNodes();
+        long globalPrepares = PackageMetrics.getImportMetrics().getCount(ImportMetrics.Phase.PREPARE);
+
+        ImportMetrics metrics = new ImportMetrics();
+        ImportOptions opts = getDefaultOptions();
+        opts.setMetrics(metrics);
+        pack.install(opts);
+        assertNodeExists("/tmp/a");
+        assertNodeExists("/tmp/b");
+
+        assertEquals(3, metrics.getCount(ImportMetrics.Phase.PREPARE));
+        assertEquals(3, metrics.getCount(ImportMetrics.Phase.COMMIT));
+        assertEquals(3, metrics.getCount(ImportMetrics.Phase.NODE_TYPES));
+        assertEquals(1, metrics.getCount(ImportMetrics.Phase.SUB_PACKAGES));
+        assertTrue(metrics.getCount(ImportMetrics.Phase.SAVE) >= 3);
+        assertTrue(metrics.getNumNodes() > 0);
+
+        // the metrics are aggregated for the package manager
+        assertEquals(globalNodes + metrics.getNumNodes(), PackageMetrics.getImportMetrics().getNumNodes());
+        assertEquals(globalPrepares + 3, PackageMetrics.getImportMetrics().getCount(ImportMetrics.Phase.PREPARE));
+    }
+
+    /**
+     * Assembles a package and checks the number of exported files and bytes.
+     */
+    @Test
+    public void testExportMetrics() throws RepositoryException, IOException {
+        Node root = JcrUtils.getOrCreateByPath("/tmp/metrics", "nt:folder", admin);
+        for (int i = 0; i < 5; i++) {
+            JcrUtils.putFile(root, "file" + i + ".txt", "text/plain", new ByteArrayInputStream("0123456789".getBytes()));
+        }
+        admin.save();
+
+        ExportOptions opts = new ExportOptions();
+        DefaultMetaInf inf = new DefaultMetaInf();
+        DefaultWorkspaceFilter filter = new DefaultWorkspaceFilter();
+        filter.add(new PathFilterSet("/tmp/metrics"));
+        inf.setFilter(filter);
+        Properties props = new Properties();
+        props.setProperty(VaultPackage.NAME_GROUP, "jackrabbit/test");
+        props.setProperty(VaultPackage.NAME_NAME, "test-package");
+        inf.setProperties(props);
+        opts.setMetaInf(inf);
+        ExportMetrics metrics = new ExportMetrics();
+        opts.setMetrics(metrics);
+        long globalFiles = PackageMetrics.getExportMetrics().getNumFiles();
+
+        File tmpFile = File.createTempFile("vaulttest", ".zip");
+        try {
+            packMgr.assemble(admin, opts, tmpFile).close();
+        } finally {
+            FileUtils.deleteQuietly(tmpFile);
+        }
+
+        assertEquals(1, metrics.getCount(ExportMetrics.Phase.META_INF));
+        assertEquals(1, metrics.getCount(ExportMetrics.Phase.CONTENT));
+        assertEquals(1, metrics.getCount(ExportMetrics.Phase.CLOSE));
+        assertTrue(metrics.getNumFiles() >= 5);
+        assertTrue(metrics.getNumBytes() >= 50);
+        assertEquals(globalFiles + metrics.getNumFiles(), PackageMetrics.getExportMetrics().getNumFiles());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.packaging.integration;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.vault.packaging.Dependency;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.PackageException;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+import org.apache.jackrabbit.vault.packaging.impl.JcrPackageManagerImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the package listing, resolution and usage queries reflect the packages in the repository.
+ */
+public class TestPackageRegistryIndex extends IntegrationTestBase {
+
+    private static final PackageId ID_B = PackageId.fromString("my_packages:test_b:1.0");
+
+    private static final PackageId ID_C = PackageId.fromString("my_packages:test_c:1.0");
+
+    private static String toString(List<JcrPackage> packages) throws RepositoryException {
+        StringBuilder b = new StringBuilder();
+        for (JcrPackage pack: packages) {
+            if (b.length() > 0) {
+                b.append(",");
+            }
+            b.append(pack.getDefinition().getId());
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testListPackages() throws RepositoryException, IOException, PackageException {
+        packMgr.upload(getStream("testpackages/test_c-1.0.zip"), false);
+        packMgr.upload(getStream("testpackages/test_b-1.0.zip"), false);
+        assertEquals("my_packages:test_b:1.0,my_packages:test_c:1.0", toString(packMgr.listPackages()));
+        assertEquals("my_packages:test_b:1.0,my_packages:test_c:1.0", toString(packMgr.listPackages("my_packages", true)));
+
+        packMgr.remove(packMgr.open(ID_B));
+        assertEquals("my_packages:test_c:1.0", toString(packMgr.listPackages()));
+    }
+
+    /**
+     * Tests that packages removed without the package manager are detected
+     */
+    @Test
+    public void testExternalRemove() throws RepositoryException, IOException, PackageException {
+        packMgr.upload(getStream("testpackages/test_c-1.0.zip"), false);
+        packMgr.upload(getStream("testpackages/test_b-1.0.zip"), false);
+        assertEquals(2, packMgr.listPackages().size());
+
+        packMgr.open(ID_C).getNode().remove();
+        admin.save();
+        assertEquals("my_packages:test_b:1.0", toString(packMgr.listPackages()));
+    }
+
+    /**
+     * Tests that packages uploaded with a different package manager are visible
+     */
+    @Test
+    public void testOtherManager() throws RepositoryException, IOException, PackageException {
+        packMgr.upload(getStream("testpackages/test_c-1.0.zip"), false);
+        assertEquals(1, packMgr.listPackages().size());
+
+        JcrPackageManagerImpl other = new JcrPackageManagerImpl(admin);
+        other.upload(getStream("testpackages/test_b-1.0.zip"), false);
+        assertEquals("my_packages:test_b:1.0,my_packages:test_c:1.0", toString(packMgr.listPackages()));
+    }
+
+    /**
+     * Tests that packages added with plain JCR by another session become visible. The changes are reported to
+     * the index by observation, which is asynchronous.
+     */
+    @Test
+    public void testExternalAdd() throws RepositoryException, IOException, PackageException, InterruptedException {
+        String path = packMgr.upload(getStream("testpackages/test_c-1.0.zip"), false).getNode().getPath();
+        assertEquals(1, packMgr.listPackages().size());
+        assertEquals(0, packMgr.listPackages("other_packages", false).size());
+
+        Session other = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+        try {
+            other.getWorkspace().copy(path, "/etc/packages/my_packages/copy_of_test_c.zip");
+            other.getNode("/etc/packages").addNode("other_packages", "nt:folder");
+            other.save();
+            other.getWorkspace().copy(path, "/etc/packages/other_packages/test_c.zip");
+        } finally {
+            other.logout();
+        }
+        admin.refresh(false);
+        long timeout = System.currentTimeMillis() + 10000;
+        while (packMgr.listPackages().size() < 3 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, packMgr.listPackages().size());
+        assertEquals(1, packMgr.listPackages("other_packages", false).size());
+    }
+
+    @Test
+    public void testResolveAndUsage() throws RepositoryException, IOException, PackageException {
+        installPackage("testpackages/test_c-1.0.zip");
+        installPackage("testpackages/test_b-1.0.zip");
+        assertEquals(ID_C, packMgr.resolve(Dependency.fromString("my_packages:test_c"), true));
+        assertEquals(Arrays.asList(ID_B), Arrays.asList(packMgr.usage(ID_C)));
+
+        packMgr.open(ID_B).uninstall(getDefaultOptions());
+        assertEquals(0, packMgr.usage(ID_C).length);
+    }
+}
@@ -17,9 +17,12 @@
 package org.apache.jackrabbit.vault.util;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
@@ -30,6 +33,8 @@ import org.apache.jackrabbit.vault.fs.config.ConfigurationException;
 import org.apache.jackrabbit.vault.packaging.integration.IntegrationTestBase;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * {@code RCPTest}...
  */
@@ -224,5 +229,98 @@ public class RCPTest extends IntegrationTestBase {
         assertProperty(DST_TEST_NODE_PATH + "/jcr:content/p0", "1");
     }
 
+    private void createTree() throws RepositoryException {
+        Node src = JcrUtils.getOrCreateByPath(SRC_PATH, NodeType.NT_UNSTRUCTURED, NodeType.NT_UNSTRUCTURED, admin, false);
+        for (int i = 9; i >= 0; i--) {
+            Node child = src.addNode("n" + i, NodeType.NT_UNSTRUCTURED);
+            child.setProperty("p", i);
+            for (int j = 0; j < 10; j++) {
+                child.addNode("c" + j, NodeType.NT_UNSTRUCTURED).setProperty("p", j);
+            }
+        }
+        admin.save();
+    }
+
+    private List<String> getChildNames(String path) throws RepositoryException {
+        List<String> names = new ArrayList<String>();
+        NodeIterator iter = admin.getNode(path).getNodes();
+        while (iter.hasNext()) {
+            names.add(iter.nextNode().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testParallel() throws RepositoryException {
+        createTree();
+        RepositoryCopier rcp = new RepositoryCopier();
+        rcp.setThreads(4);
+        rcp.setBatchSize(7);
+        rcp.copy(admin, SRC_PATH, admin, DST_PATH, true);
+
+        assertEquals(110, rcp.getTotalNodes() - 1);
+        assertEquals(getChildNames(SRC_PATH), getChildNames(DST_PATH));
+        assertEquals(getChildNames(SRC_PATH + "/n3"), getChildNames(DST_PATH + "/n3"));
+        assertProperty(DST_PATH + "/n3/p", "3");
+        assertProperty(DST_PATH + "/n3/c7/p", "7");
+    }
+
+    @Test
+    public void testParallelSplitDepth() throws RepositoryException {
+        createTree();
+        RepositoryCopier rcp = new RepositoryCopier();
+        rcp.setThreads(3);
+        rcp.setSplitDepth(2);
+        rcp.copy(admin, SRC_PATH, admin, DST_PATH, true);
+
+        assertEquals(getChildNames(SRC_PATH), getChildNames(DST_PATH));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(getChildNames(SRC_PATH + "/n" + i), getChildNames(DST_PATH + "/n" + i));
+        }
+        assertProperty(DST_PATH + "/n9/c0/p", "0");
+    }
+
+    @Test
+    public void testParallelUpdateOrdering() throws RepositoryException {
+        createTree();
+        RepositoryCopier rcp = new RepositoryCopier();
+        rcp.setThreads(4);
+        rcp.copy(admin, SRC_PATH, admin, DST_PATH, true);
+
+        Node src = admin.getNode(SRC_PATH);
+        src.orderBefore("n0", "n9");
+        src.getNode("n5").remove();
+        src.addNode("n10", NodeType.NT_UNSTRUCTURED).setProperty("p", 10);
+        admin.save();
+
+        rcp = new RepositoryCopier();
+        rcp.setThreads(4);
+        rcp.setUpdate(true);
+        rcp.copy(admin, SRC_PATH, admin, DST_PATH, true);
+        assertEquals(getChildNames(SRC_PATH), getChildNames(DST_PATH));
+        assertNodeMissing(DST_PATH + "/n5");
+        assertProperty(DST_PATH + "/n10/p", "10");
+    }
+
+    @Test
+    public void testParallelResume() throws RepositoryException {
+        createTree();
+        RepositoryCopier rcp = new RepositoryCopier();
+        rcp.copy(admin, SRC_PATH, admin, DST_PATH, true);
+
+        // modify a node before and after the resume path
+        admin.getNode(SRC_PATH + "/n8/c1").setProperty("p", "before");
+        admin.getNode(SRC_PATH + "/n3/c5").setProperty("p", "after");
+        admin.getNode(SRC_PATH + "/n4/c5").setProperty("p", "within");
+        admin.save();
 
-}
\ No newline at end of file
+        rcp = new RepositoryCopier();
+        rcp.setThreads(4);
+        rcp.setUpdate(true);
+        rcp.setResumeFrom(SRC_PATH + "/n4/c3");
+        rcp.copy(admin, SRC_PATH, admin, DST_PATH, true);
+        assertProperty(DST_PATH + "/n8/c1/p", "1");
+        assertProperty(DST_PATH + "/n4/c5/p", "within");
+        assertProperty(DST_PATH + "/n3/c5/p", "after");
+    }
+}
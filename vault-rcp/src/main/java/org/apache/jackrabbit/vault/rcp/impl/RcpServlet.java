@@ -58,6 +58,8 @@ public class RcpServlet extends SlingAllMethodsServlet {
     public static final String PARAM_THROTTLE = "throttle";
     public static final String PARAM_EXCLUDES = "excludes";
     public static final String PARAM_RESUME_FROM = "resumeFrom";
+    public static final String PARAM_THREADS = "threads";
+    public static final String PARAM_SPLIT_DEPTH = "splitDepth";
 
     /**
      * default logger
@@ -147,6 +149,12 @@ public class RcpServlet extends SlingAllMethodsServlet {
                 if (data.has(PARAM_RESUME_FROM)) {
                     task.getRcp().setResumeFrom(data.getString(PARAM_RESUME_FROM));
                 }
+                if (data.has(PARAM_THREADS)) {
+                    task.getRcp().setThreads((int) data.getLong(PARAM_THREADS));
+                }
+                if (data.has(PARAM_SPLIT_DEPTH)) {
+                    task.getRcp().setSplitDepth((int) data.getLong(PARAM_SPLIT_DEPTH));
+                }
                 response.setStatus(HttpServletResponse.SC_CREATED);
                 String path = "/libs/granite/packaging/rcp.tasks/" + task.getId();
                 response.setHeader("Location", path);
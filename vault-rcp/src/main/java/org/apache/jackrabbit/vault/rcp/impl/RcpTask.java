@@ -248,6 +248,8 @@ public class RcpTask implements Runnable {
         w.key(RcpServlet.PARAM_NO_ORDERING).value(rcp.isNoOrdering());
         w.key(RcpServlet.PARAM_THROTTLE).value(rcp.getThrottle());
         w.key(RcpServlet.PARAM_RESUME_FROM).value(rcp.getResumeFrom());
+        w.key(RcpServlet.PARAM_THREADS).value(rcp.getThreads());
+        w.key(RcpServlet.PARAM_SPLIT_DEPTH).value(rcp.getSplitDepth());
         if (excludes.size() > 0) {
             w.key(RcpServlet.PARAM_EXCLUDES).array();
             for (String exclude: excludes) {
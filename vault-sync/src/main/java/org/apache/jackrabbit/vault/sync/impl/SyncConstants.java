@@ -27,4 +27,9 @@ public class SyncConstants {
 
     public static final String CONFIG_FILE_NAME = ".vlt-sync-config.properties";
 
+    /**
+     * user data of the observation events caused by the sync sessions
+     */
+    public static final String OBSERVATION_USER_DATA = "vault.sync";
+
 }
\ No newline at end of file
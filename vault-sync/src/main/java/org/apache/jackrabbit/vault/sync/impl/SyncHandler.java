@@ -60,7 +60,7 @@ public class SyncHandler implements FilesystemAlterationListener {
 
     private final File fileRoot;
 
-    private final FilesystemAlterationObserverImpl observer;
+    private final FilesystemAlterationObserver observer;
 
     private final Set<String> pendingJcrChanges = new HashSet<String>();
 
@@ -74,7 +74,7 @@ public class SyncHandler implements FilesystemAlterationListener {
 
     private ExportRoot vltExportRoot;
 
-    private WorkspaceFilter filter;
+    private volatile WorkspaceFilter filter;
 
     private FStat filterStat;
 
@@ -103,6 +103,18 @@ public class SyncHandler implements FilesystemAlterationListener {
 
 
     public SyncHandler(File fileRoot) {
+        this(fileRoot, null);
+    }
+
+    /**
+     * Creates a new sync handler. If a change listener is given, the filesystem is observed using native file
+     * events and the listener is run when changes are available. Otherwise, or if the file events are not
+     * supported, the filesystem is scanned on every sync.
+     *
+     * @param fileRoot the sync root
+     * @param fsChangeListener listener for filesystem changes or {@code null}
+     */
+    public SyncHandler(File fileRoot, Runnable fsChangeListener) {
         this.fileRoot = fileRoot;
         vltExportRoot = ExportRoot.findRoot(fileRoot);
         syncLog = new SyncLog(new File(fileRoot, SyncConstants.SYNCLOG_FILE_NAME));
@@ -118,11 +130,44 @@ public class SyncHandler implements FilesystemAlterationListener {
         updateFilter();
         syncLog.log("Syncing in %s is %s by " + SyncConstants.CONFIG_FILE_NAME, fileRoot.getAbsolutePath(), cfg.isDisabled() ? "disabled" : "enabled");
 
-        observer = new FilesystemAlterationObserverImpl(fileRoot);
+        observer = createObserver(fsChangeListener);
+        observer.addListener(this);
+    }
+
+    private FilesystemAlterationObserver createObserver(Runnable fsChangeListener) {
+        if (fsChangeListener != null) {
+            try {
+                return new WatchServiceObserver(fileRoot, fileFilter, fsChangeListener);
+            } catch (IOException e) {
+                log.warn("File events not available for {}. Falling back to scanning: {}", fileRoot.getAbsolutePath(), e.toString());
+            }
+        }
+        FilesystemAlterationObserverImpl observer = new FilesystemAlterationObserverImpl(fileRoot);
         // "initialize" internal structure of observer (need dummy listener, otherwise events are not processed)
         observer.addListener(new DummyListener());
         observer.checkAndNotify();
-        observer.addListener(this);
+        return observer;
+    }
+
+    /**
+     * Checks if the filesystem is observed using native file events.
+     * @return {@code true} if the changes are reported by file events
+     */
+    public boolean isWatching() {
+        return observer instanceof WatchServiceObserver && !((WatchServiceObserver) observer).isPolling();
+    }
+
+    /**
+     * Stops observing the filesystem.
+     */
+    public void close() {
+        if (observer instanceof WatchServiceObserver) {
+            try {
+                ((WatchServiceObserver) observer).close();
+            } catch (IOException e) {
+                log.warn("Error while closing file observer: {}", e.toString());
+            }
+        }
     }
 
     private void updateFilter() {
@@ -174,6 +219,18 @@ public class SyncHandler implements FilesystemAlterationListener {
         return null;
     }
 
+    public File getFileRoot() {
+        return fileRoot;
+    }
+
+    /**
+     * Returns the current workspace filter of this sync root.
+     * @return the filter or {@code null} if not configured
+     */
+    public WorkspaceFilter getFilter() {
+        return filter;
+    }
+
     public boolean covers(String path) {
         return filter != null && filter.covers(path);
     }
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.sync.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code SyncWorker} runs the sync cycles of one sync root in its own thread and with its own session, so that
+ * the sync roots do not wait for each other.
+ *
+ * A cycle is started when JCR changes are registered, when file events were received and no further events
+ * followed for the event delay, or after the check interval.
+ */
+public class SyncWorker implements Runnable {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(SyncWorker.class);
+
+    private final SyncHandler handler;
+
+    private final long checkDelay;
+
+    private final long fsEventDelay;
+
+    private final Lock waitLock = new ReentrantLock();
+
+    private final Condition waitCondition = waitLock.newCondition();
+
+    private Session session;
+
+    private Thread thread;
+
+    private boolean running;
+
+    /**
+     * flags if JCR changes were registered since the last sync cycle
+     */
+    private boolean jcrChanged;
+
+    /**
+     * flags if file events were received since the last sync cycle
+     */
+    private boolean fsChanged;
+
+    private long lastFsChange;
+
+    /**
+     * Creates a new worker for the given sync root.
+     *
+     * @param fileRoot the sync root
+     * @param watch {@code true} to observe the sync root using file events
+     * @param checkDelay the check interval in milliseconds
+     * @param fsEventDelay the time without file events before a cycle is started in milliseconds
+     */
+    public SyncWorker(File fileRoot, boolean watch, long checkDelay, long fsEventDelay) {
+        this.checkDelay = checkDelay;
+        this.fsEventDelay = fsEventDelay;
+        Runnable fsChangeListener = null;
+        if (watch) {
+            fsChangeListener = new Runnable() {
+                public void run() {
+                    onFsChange();
+                }
+            };
+        }
+        handler = new SyncHandler(fileRoot, fsChangeListener);
+    }
+
+    public SyncHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Starts the worker thread using the given session. The session is logged out when the worker is stopped.
+     * @param session the session to sync with
+     */
+    public void start(Session session) {
+        waitLock.lock();
+        try {
+            this.session = session;
+            running = true;
+        } finally {
+            waitLock.unlock();
+        }
+        thread = new Thread(this, "Vault Sync Thread " + handler.getFileRoot().getPath());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the worker thread and the file observation.
+     */
+    public void stop() {
+        waitLock.lock();
+        try {
+            running = false;
+            waitCondition.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                log.warn("error while waiting for thread to terminate", e);
+            }
+            thread = null;
+        }
+        if (session != null) {
+            session.logout();
+            session = null;
+        }
+        handler.close();
+    }
+
+    /**
+     * Registers the changed JCR paths and schedules a sync cycle.
+     * @param paths the changed paths
+     */
+    public void registerPendingJcrChanges(Collection<String> paths) {
+        waitLock.lock();
+        try {
+            for (String path: paths) {
+                handler.registerPendingJcrChange(path);
+            }
+            jcrChanged = true;
+            waitCondition.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    public void run() {
+        waitLock.lock();
+        try {
+            while (running) {
+                try {
+                    handler.prepareForSync();
+                    waitLock.unlock();
+                    try {
+                        handler.sync(session);
+                    } catch (RepositoryException e) {
+                        log.warn("Error during sync", e);
+                    } catch (IOException e) {
+                        log.warn("Error during sync", e);
+                    }
+                } finally {
+                    waitLock.lock();
+                }
+                try {
+                    if (!jcrChanged && !fsChanged) {
+                        waitCondition.await(checkDelay, TimeUnit.MILLISECONDS);
+                    }
+                    jcrChanged = false;
+                    awaitFsQuiet();
+                } catch (InterruptedException e) {
+                    log.warn("interrupted while waiting.");
+                }
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Delays the next sync cycle until no file events were received for the event delay, so that a burst of
+     * changes is synced at once. The cycle is delayed at most for the check interval.
+     */
+    private void awaitFsQuiet() throws InterruptedException {
+        // assert locked
+        if (!fsChanged) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + checkDelay;
+        long now = System.currentTimeMillis();
+        while (running && now < deadline && now < lastFsChange + fsEventDelay) {
+            waitCondition.await(Math.min(deadline, lastFsChange + fsEventDelay) - now, TimeUnit.MILLISECONDS);
+            now = System.currentTimeMillis();
+        }
+        fsChanged = false;
+    }
+
+    private void onFsChange() {
+        waitLock.lock();
+        try {
+            fsChanged = true;
+            lastFsChange = System.currentTimeMillis();
+            waitCondition.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return handler.toString();
+    }
+}
@@ -17,16 +17,14 @@
 package org.apache.jackrabbit.vault.sync.impl;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -40,6 +38,9 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.jackrabbit.util.Text;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.jackrabbit.vault.util.Tree;
 import org.apache.sling.commons.osgi.OsgiUtil;
 import org.apache.sling.jcr.api.SlingRepository;
 import org.slf4j.Logger;
@@ -47,9 +48,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@code VaultSyncServiceImpl}...
+ *
+ * Each sync root is synced by its own {@link SyncWorker}. The JCR events are received by a single listener and
+ * routed to the workers by the roots of their filters.
  */
 @Component(label = "Vault Sync Service", metatype = true, immediate = true)
-public class VaultSyncServiceImpl implements EventListener, Runnable {
+public class VaultSyncServiceImpl implements EventListener {
 
     /**
      * default logger
@@ -64,41 +68,60 @@ public class VaultSyncServiceImpl implements EventListener, Runnable {
     @Property(label = "FS check interval (seconds)", intValue = 5)
     public static final String SYNC_FS_CHECK_INTERVAL = "vault.sync.fscheckinterval";
 
+    @Property(label = "Use file events", boolValue = true,
+            description = "Observes the sync directories using native file events instead of scanning them.")
+    public static final String SYNC_FS_WATCH = "vault.sync.fswatch";
+
+    @Property(label = "File event delay (milliseconds)", intValue = 200,
+            description = "Time without further file events before a sync cycle is started.")
+    public static final String SYNC_FS_EVENT_DELAY = "vault.sync.fseventdelay";
+
     @Property(label = "Enabled", boolValue = false)
     public static final String SYNC_ENABLED = "vault.sync.enabled";
 
     @Reference
     private SlingRepository repository;
 
+    /**
+     * session of the observation listener
+     */
     private Session session;
 
-    private SyncHandler[] syncHandlers = new SyncHandler[0];
+    private volatile SyncWorker[] syncWorkers = new SyncWorker[0];
 
     private boolean enabled;
 
-    private long checkDelay;
-
-    private Thread fsCheckThread;
-
-    private final Lock waitLock = new ReentrantLock();
-
-    private final Condition waitCondition = waitLock.newCondition();
+    /**
+     * routes of the JCR events, replaced as a whole when the workers or their filters change
+     */
+    private volatile Routes routes;
 
     @Activate
     protected void activate(Map<String, Object> props) throws RepositoryException {
-        List<SyncHandler> newSyncSpecs = new LinkedList<SyncHandler>();
+        enabled = OsgiUtil.toBoolean(props.get(SYNC_ENABLED), false);
+        long checkDelay = OsgiUtil.toLong(props.get(SYNC_FS_CHECK_INTERVAL), 5) * 1000;
+        long fsEventDelay = OsgiUtil.toLong(props.get(SYNC_FS_EVENT_DELAY), 200);
+        boolean watch = enabled && OsgiUtil.toBoolean(props.get(SYNC_FS_WATCH), true);
+
+        List<SyncWorker> newSyncWorkers = new LinkedList<SyncWorker>();
         String[] syncRoots = OsgiUtil.toStringArray(props.get(SYNC_SPECS), DEFAULT_SYNC_SPECS);
         for (String def : syncRoots) {
-            SyncHandler spec = new SyncHandler(new File(def));
-            newSyncSpecs.add(spec);
-            log.info("Added sync specification: {}", spec);
+            SyncWorker worker = new SyncWorker(new File(def), watch, checkDelay, fsEventDelay);
+            newSyncWorkers.add(worker);
+            log.info("Added sync specification: {} (file events: {})", worker, worker.getHandler().isWatching());
         }
-        syncHandlers = newSyncSpecs.toArray(new SyncHandler[newSyncSpecs.size()]);
-        enabled = OsgiUtil.toBoolean(props.get(SYNC_ENABLED), false);
-        checkDelay = OsgiUtil.toLong(props.get(SYNC_FS_CHECK_INTERVAL), 5) * 1000;
+        syncWorkers = newSyncWorkers.toArray(new SyncWorker[newSyncWorkers.size()]);
 
         log.info("Vault Sync service is {}", enabled ? "enabled" : "disabled");
         if (enabled) {
+            // each sync root syncs with its own session. the changes of the sync sessions are marked, so that
+            // they are not synced back.
+            for (SyncWorker worker : syncWorkers) {
+                Session syncSession = repository.loginAdministrative(null);
+                syncSession.getWorkspace().getObservationManager().setUserData(SyncConstants.OBSERVATION_USER_DATA);
+                worker.start(syncSession);
+            }
+
             // setup session
             session = repository.loginAdministrative(null);
 
@@ -112,66 +135,19 @@ public class VaultSyncServiceImpl implements EventListener, Runnable {
                     null /* nodeTypeName */,
                     true /* noLocal */
             );
-            fsCheckThread = new Thread(this, "Vault Sync Thread");
-            fsCheckThread.setDaemon(true);
-            fsCheckThread.start();
         }
 
     }
 
     @Deactivate
     protected void deactivate() {
-        waitLock.lock();
-        try {
-            if (session != null) {
-                session.logout();
-                session = null;
-            }
-            enabled = false;
-            waitCondition.signalAll();
-        } finally {
-            waitLock.unlock();
+        if (session != null) {
+            session.logout();
+            session = null;
         }
-        if (fsCheckThread != null) {
-            try {
-                fsCheckThread.join();
-            } catch (InterruptedException e) {
-                log.warn("error while waiting for thread to terminate", e);
-            }
-            fsCheckThread = null;
-        }
-    }
-
-    public void run() {
-        waitLock.lock();
-        try {
-            while (enabled) {
-                SyncHandler[] specs = syncHandlers;
-                try {
-                    for (SyncHandler spec : specs) {
-                        spec.prepareForSync();
-                    }
-                    waitLock.unlock();
-                    for (SyncHandler spec : specs) {
-                        try {
-                            spec.sync(session);
-                        } catch (RepositoryException e) {
-                            log.warn("Error during sync", e);
-                        } catch (IOException e) {
-                            log.warn("Error during sync", e);
-                        }
-                    }
-                } finally {
-                    waitLock.lock();
-                }
-                try {
-                    waitCondition.await(checkDelay, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    log.warn("interrupted while waiting.");
-                }
-            }
-        } finally {
-            waitLock.unlock();
+        enabled = false;
+        for (SyncWorker worker : syncWorkers) {
+            worker.stop();
         }
     }
 
@@ -181,6 +157,10 @@ public class VaultSyncServiceImpl implements EventListener, Runnable {
             Set<String> deleted = new HashSet<String>();
             while (events.hasNext()) {
                 Event evt = events.nextEvent();
+                if (SyncConstants.OBSERVATION_USER_DATA.equals(evt.getUserData())) {
+                    // change of a sync session
+                    continue;
+                }
                 String path = evt.getPath();
                 if (evt.getType() == Event.PROPERTY_ADDED
                         || evt.getType() == Event.PROPERTY_CHANGED
@@ -205,29 +185,77 @@ public class VaultSyncServiceImpl implements EventListener, Runnable {
                     modified.add(path);
                 }
             }
-            waitLock.lock();
-            try {
-                for (String path: modified) {
-                    SyncHandler spec = getSyncHandler(path);
-                    if (spec != null) {
-                        spec.registerPendingJcrChange(path);
+            // coalesce the changes per sync root
+            Map<SyncWorker, List<String>> changes = new LinkedHashMap<SyncWorker, List<String>>();
+            for (String path: modified) {
+                SyncWorker worker = getSyncWorker(path);
+                if (worker != null) {
+                    List<String> paths = changes.get(worker);
+                    if (paths == null) {
+                        paths = new ArrayList<String>();
+                        changes.put(worker, paths);
                     }
+                    paths.add(path);
                 }
-                waitCondition.signalAll();
-            } finally {
-                waitLock.unlock();
+            }
+            for (Map.Entry<SyncWorker, List<String>> e: changes.entrySet()) {
+                e.getKey().registerPendingJcrChanges(e.getValue());
             }
         } catch (RepositoryException e) {
             log.warn("Error while processing events", e);
         }
     }
 
-    private SyncHandler getSyncHandler(String path) {
-        for (SyncHandler spec : syncHandlers) {
-            if (spec.covers(path)) {
-                return spec;
+    /**
+     * Returns the worker of the first sync root that covers the given path.
+     */
+    private SyncWorker getSyncWorker(String path) {
+        SyncWorker[] workers = syncWorkers;
+        WorkspaceFilter[] filters = new WorkspaceFilter[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            filters[i] = workers[i].getHandler().getFilter();
+        }
+        Routes r = routes;
+        if (r == null || r.workers != workers || !Arrays.equals(filters, r.filters)) {
+            // the filters are reloaded when modified. concurrent rebuilds produce equal routes.
+            r = new Routes(workers, filters);
+            routes = r;
+        }
+        Tree.Node<Integer> node = r.tree.getNode("/");
+        Integer idx = node.getElem();
+        for (String name: Text.explode(path, '/')) {
+            node = node.getChildren().get(name);
+            if (node == null) {
+                break;
+            }
+            if (node.getElem() != null && (idx == null || node.getElem() < idx)) {
+                idx = node.getElem();
+            }
+        }
+        return idx == null ? null : workers[idx];
+    }
+
+    /**
+     * Index of the first sync root by filter root path. Immutable once built.
+     */
+    private static final class Routes {
+
+        private final SyncWorker[] workers;
+
+        private final WorkspaceFilter[] filters;
+
+        private final Tree<Integer> tree = new Tree<Integer>();
+
+        private Routes(SyncWorker[] workers, WorkspaceFilter[] filters) {
+            this.workers = workers;
+            this.filters = filters;
+            for (int i = filters.length - 1; i >= 0; i--) {
+                if (filters[i] != null) {
+                    for (PathFilterSet set: filters[i].getFilterSets()) {
+                        tree.put(set.getRoot(), i);
+                    }
+                }
             }
         }
-        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.sync.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.jci.monitor.FilesystemAlterationListener;
+import org.apache.commons.jci.monitor.FilesystemAlterationObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code WatchServiceObserver} is a filesystem alteration observer that uses the native file events of a
+ * {@link WatchService} instead of comparing the tree with a snapshot on every check.
+ *
+ * All directories below the root are registered with the watch service. A background thread waits for the
+ * events and informs the change listener, so that the caller can schedule a check. {@link #checkAndNotify()}
+ * only inspects the entries that were reported since the last check and notifies the listeners accordingly.
+ * The snapshot of the tree is only compared as a whole if events were lost, or if a directory could not be
+ * registered, in which case the observer falls back to scanning the tree on every check.
+ */
+public class WatchServiceObserver implements FilesystemAlterationObserver, Closeable, Runnable {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(WatchServiceObserver.class);
+
+    /**
+     * marks the directories in the snapshot
+     */
+    private static final Long DIRECTORY = Long.MIN_VALUE;
+
+    private final File root;
+
+    private final FileFilter filter;
+
+    private final Runnable changeListener;
+
+    private final WatchService watchService;
+
+    private final Map<File, Directory> directories = new HashMap<File, Directory>();
+
+    private final Map<WatchKey, Directory> keys = new HashMap<WatchKey, Directory>();
+
+    /**
+     * keys that were signalled since the last check
+     */
+    private final Set<WatchKey> signalled = new LinkedHashSet<WatchKey>();
+
+    private final Thread thread;
+
+    private FilesystemAlterationListener[] listeners = new FilesystemAlterationListener[0];
+
+    /**
+     * flags if the tree needs to be scanned on every check
+     */
+    private boolean poll;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new observer and registers the tree below the root directory.
+     *
+     * @param root the root directory
+     * @param filter filter for the directories to watch or {@code null} to watch all
+     * @param changeListener is run when new events are available or {@code null}
+     * @throws IOException if the watch service is not available
+     */
+    public WatchServiceObserver(File root, FileFilter filter, Runnable changeListener) throws IOException {
+        this.root = root;
+        this.filter = filter;
+        this.changeListener = changeListener;
+        watchService = root.toPath().getFileSystem().newWatchService();
+        addDirectory(root, false);
+        thread = new Thread(this, "Vault Sync Watcher " + root.getPath());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public File getRootDirectory() {
+        return root;
+    }
+
+    /**
+     * Checks if the tree needs to be scanned on every check because native events are not available for all
+     * directories.
+     * @return {@code true} if polling
+     */
+    public synchronized boolean isPolling() {
+        return poll;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void addListener(FilesystemAlterationListener listener) {
+        List<FilesystemAlterationListener> list = new ArrayList<FilesystemAlterationListener>(Arrays.asList(listeners));
+        list.add(listener);
+        listeners = list.toArray(new FilesystemAlterationListener[list.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void removeListener(FilesystemAlterationListener listener) {
+        List<FilesystemAlterationListener> list = new ArrayList<FilesystemAlterationListener>(Arrays.asList(listeners));
+        list.remove(listener);
+        listeners = list.toArray(new FilesystemAlterationListener[list.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public FilesystemAlterationListener[] getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Waits for events and informs the change listener.
+     */
+    public void run() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                synchronized (signalled) {
+                    signalled.add(key);
+                }
+                if (changeListener != null) {
+                    changeListener.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Watcher for {} interrupted.", root.getPath());
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Checks the entries that were reported since the last check, or the entire tree if events were lost, and
+     * notifies the listeners about the changes.
+     */
+    public synchronized void checkAndNotify() {
+        if (closed) {
+            return;
+        }
+        List<WatchKey> ready;
+        synchronized (signalled) {
+            ready = new ArrayList<WatchKey>(signalled);
+            signalled.clear();
+        }
+        // also include the keys that are not picked up by the watcher thread, yet
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            ready.add(key);
+        }
+
+        // coalesce the events per directory entry
+        boolean overflow = false;
+        int numEvents = 0;
+        Map<Directory, Set<String>> changes = new LinkedHashMap<Directory, Set<String>>();
+        for (WatchKey k: ready) {
+            Directory dir = keys.get(k);
+            for (WatchEvent<?> event: k.pollEvents()) {
+                numEvents++;
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else if (dir != null) {
+                    Set<String> names = changes.get(dir);
+                    if (names == null) {
+                        names = new LinkedHashSet<String>();
+                        changes.put(dir, names);
+                    }
+                    names.add(((Path) event.context()).toString());
+                }
+            }
+            // invalid keys of deleted directories are cancelled when the parent is checked
+            k.reset();
+        }
+        if (!poll && !overflow && changes.isEmpty()) {
+            return;
+        }
+        log.debug("Processing {} file events in {}", numEvents, root.getPath());
+
+        FilesystemAlterationListener[] ls = listeners;
+        for (FilesystemAlterationListener l: ls) {
+            l.onStart(this);
+        }
+        Directory rootDir = directories.get(root);
+        if (rootDir != null && (poll || overflow)) {
+            if (overflow) {
+                log.info("File events were lost in {}. Scanning the tree.", root.getPath());
+            }
+            scan(rootDir, true, true);
+        } else {
+            for (Map.Entry<Directory, Set<String>> e: changes.entrySet()) {
+                Directory dir = e.getKey();
+                // skip directories that were removed in the meantime
+                if (directories.get(dir.file) == dir) {
+                    for (String name: e.getValue()) {
+                        check(dir, name, true, true);
+                    }
+                }
+            }
+        }
+        for (FilesystemAlterationListener l: ls) {
+            l.onStop(this);
+        }
+    }
+
+    /**
+     * Stops watching the tree.
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void close() throws IOException {
+        closed = true;
+        watchService.close();
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                log.warn("interrupted while waiting for the watcher to terminate.");
+            }
+        }
+    }
+
+    private Directory addDirectory(File file, boolean notify) {
+        Directory dir = new Directory(file);
+        directories.put(file, dir);
+        if (!poll) {
+            try {
+                dir.key = file.toPath().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(dir.key, dir);
+            } catch (IOException e) {
+                log.warn("Unable to watch {}. Falling back to scanning the tree: {}", file.getPath(), e.toString());
+                poll = true;
+            }
+        }
+        // scan after the registration so that no entries are missed
+        scan(dir, notify, false);
+        return dir;
+    }
+
+    private void removeDirectory(File file) {
+        Directory dir = directories.remove(file);
+        if (dir != null) {
+            if (dir.key != null) {
+                dir.key.cancel();
+                keys.remove(dir.key);
+            }
+            for (Map.Entry<String, Long> e: dir.children.entrySet()) {
+                File child = new File(file, e.getKey());
+                if (e.getValue().equals(DIRECTORY)) {
+                    removeDirectory(child);
+                } else {
+                    for (FilesystemAlterationListener l: listeners) {
+                        l.onFileDelete(child);
+                    }
+                }
+            }
+        }
+        for (FilesystemAlterationListener l: listeners) {
+            l.onDirectoryDelete(file);
+        }
+    }
+
+    /**
+     * Compares the entries of the directory with the snapshot.
+     */
+    private void scan(Directory dir, boolean notify, boolean recursive) {
+        String[] names = dir.file.list();
+        Set<String> current = names == null
+                ? new HashSet<String>()
+                : new HashSet<String>(Arrays.asList(names));
+        for (String name: new ArrayList<String>(dir.children.keySet())) {
+            if (!current.contains(name)) {
+                check(dir, name, notify, false);
+            }
+        }
+        for (String name: current) {
+            check(dir, name, notify, false);
+        }
+        if (recursive) {
+            for (Map.Entry<String, Long> e: dir.children.entrySet()) {
+                if (e.getValue().equals(DIRECTORY)) {
+                    Directory child = directories.get(new File(dir.file, e.getKey()));
+                    if (child != null) {
+                        scan(child, notify, true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares a directory entry with the snapshot.
+     * @param dir the parent directory
+     * @param name the name of the entry
+     * @param notify {@code true} to notify the listeners
+     * @param event {@code true} if an event was reported for the entry, in which case an existing file is
+     *              considered modified even if the modification time did not change
+     */
+    private void check(Directory dir, String name, boolean notify, boolean event) {
+        File file = new File(dir.file, name);
+        Long prev = dir.children.get(name);
+        boolean isDir = file.isDirectory();
+        boolean exists = isDir || file.exists();
+        if (prev != null && (!exists || isDir != prev.equals(DIRECTORY))) {
+            dir.children.remove(name);
+            if (prev.equals(DIRECTORY)) {
+                removeDirectory(file);
+            } else {
+                for (FilesystemAlterationListener l: listeners) {
+                    l.onFileDelete(file);
+                }
+            }
+            prev = null;
+        }
+        if (!exists) {
+            return;
+        }
+        if (isDir) {
+            if (prev == null) {
+                dir.children.put(name, DIRECTORY);
+                if (notify) {
+                    for (FilesystemAlterationListener l: listeners) {
+                        l.onDirectoryCreate(file);
+                    }
+                }
+                if (filter == null || filter.accept(file)) {
+                    addDirectory(file, notify);
+                }
+            }
+        } else {
+            long lastModified = file.lastModified();
+            dir.children.put(name, lastModified);
+            if (notify) {
+                if (prev == null) {
+                    for (FilesystemAlterationListener l: listeners) {
+                        l.onFileCreate(file);
+                    }
+                } else if (event || prev != lastModified) {
+                    for (FilesystemAlterationListener l: listeners) {
+                        l.onFileChange(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshot of a watched directory.
+     */
+    private static final class Directory {
+
+        private final File file;
+
+        /**
+         * last modification time of the files or {@link #DIRECTORY} by name
+         */
+        private final Map<String, Long> children = new HashMap<String, Long>();
+
+        private WatchKey key;
+
+        private Directory(File file) {
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.vlt;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.vault.util.MD5;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code FileDigester} calculates the md5 digests of the working files.
+ *
+ * The digests can be calculated ahead of time by a pool of worker threads, see {@link #prefetch(File)}, so that
+ * the status of a directory does not wait for each file to be read in turn. The calculated digests are cached by
+ * path, size, modification time and file key (the inode on unix systems), so that a file is read at most once
+ * per command, unless it changes.
+ */
+public class FileDigester {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileDigester.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_CACHE_SIZE = 10000;
+
+    private final int numThreads;
+
+    private final Map<Key, MD5> cache = new LinkedHashMap<Key, MD5>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, MD5> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    private final Map<File, Future<MD5>> pending = new ConcurrentHashMap<File, Future<MD5>>();
+
+    private ExecutorService executor;
+
+    /**
+     * Creates a new digester.
+     * @param numThreads number of worker threads or {@code 0} to calculate the digests on demand only
+     */
+    public FileDigester(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Schedules the calculation of the digest of the given file, unless it is cached already.
+     * @param file the file
+     */
+    public void prefetch(final File file) {
+        if (numThreads <= 0 || pending.containsKey(file)) {
+            return;
+        }
+        try {
+            if (getCached(Key.create(file)) != null) {
+                return;
+            }
+        } catch (IOException e) {
+            // let the caller deal with it
+            return;
+        }
+        pending.put(file, getExecutor().submit(new Callable<MD5>() {
+            public MD5 call() throws Exception {
+                return compute(file);
+            }
+        }));
+    }
+
+    /**
+     * Returns the digest of the given file.
+     * @param file the file
+     * @param force {@code true} to read the file even if a digest is cached
+     * @return the digest
+     * @throws IOException if an I/O error occurs
+     */
+    public MD5 digest(File file, boolean force) throws IOException {
+        Future<MD5> future = pending.remove(file);
+        if (!force) {
+            if (future != null) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted while calculating the digest of " + file.getPath());
+                } catch (ExecutionException e) {
+                    log.debug("Error while calculating the digest of {}: {}", file.getPath(), e.getCause().toString());
+                }
+            }
+            // the file might have changed since it was read by the worker
+            MD5 md5 = getCached(Key.create(file));
+            if (md5 != null) {
+                return md5;
+            }
+        }
+        return compute(file);
+    }
+
+    private MD5 compute(File file) throws IOException {
+        Key key = Key.create(file);
+        MD5 md5 = digest(file);
+        // only cache the digest if the file did not change while reading it
+        if (key.equals(Key.create(file))) {
+            synchronized (cache) {
+                cache.put(key, md5);
+            }
+        }
+        return md5;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+    }
+
+    private MD5 getCached(Key key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "vlt-digest-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Calculates the digest of the given file.
+     * @param file the file
+     * @return the digest
+     * @throws IOException if an I/O error occurs
+     */
+    public static MD5 digest(File file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("md5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e.toString());
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            in.close();
+        }
+        return new MD5(md.digest());
+    }
+
+    /**
+     * Identifies the state of a file.
+     */
+    private static final class Key {
+
+        private final String path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final Object fileKey;
+
+        private Key(String path, long size, long lastModified, Object fileKey) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        private static Key create(File file) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new Key(file.getAbsolutePath(), attrs.size(), attrs.lastModifiedTime().toMillis(),
+                    attrs.fileKey());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return size == key.size
+                    && lastModified == key.lastModified
+                    && path.equals(key.path)
+                    && (fileKey == null ? key.fileKey == null : fileKey.equals(key.fileKey));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (size ^ (size >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
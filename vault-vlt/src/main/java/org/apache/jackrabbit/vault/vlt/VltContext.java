@@ -29,6 +29,7 @@ import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.jackrabbit.vault.fs.Mounter;
 import org.apache.jackrabbit.vault.fs.api.ImportMode;
 import org.apache.jackrabbit.vault.fs.api.PathFilter;
@@ -46,6 +47,8 @@ import org.apache.jackrabbit.vault.util.RepositoryProvider;
 import org.apache.jackrabbit.vault.vlt.actions.Action;
 import org.apache.jackrabbit.vault.vlt.meta.Ignored;
 import org.apache.jackrabbit.vault.vlt.meta.MetaDirectory;
+import org.apache.jackrabbit.vault.vlt.meta.xml.index.EntriesIndex;
+import org.apache.jackrabbit.vault.vlt.meta.xml.index.IndexedMetaDir;
 import org.apache.jackrabbit.vault.vlt.meta.xml.zip.ZipMetaDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +59,11 @@ import org.slf4j.LoggerFactory;
  */
 public class VltContext {
 
+    /**
+     * name of the file in the working copy root that holds the entries of all directories
+     */
+    public static final String INDEX_FILE_NAME = ".vlt-index";
+
     protected static Logger log = LoggerFactory.getLogger(VltContext.class);
 
     private final File cwd;
@@ -87,6 +95,12 @@ public class VltContext {
 
     private PathFilter globalIgnored;
 
+    private boolean useIndex;
+
+    private EntriesIndex index;
+
+    private FileDigester fileDigester;
+
     public VltContext(File cwd, File localFile,
             RepositoryProvider repProvider,
             CredentialsStore credsProvider)
@@ -145,6 +159,89 @@ public class VltContext {
         }
     }
 
+    /**
+     * Returns the meta directory of the given directory. If the working copy uses an index, the entries are
+     * kept in the index, otherwise in the meta directory itself.
+     *
+     * @param base the meta directory
+     * @return the meta directory
+     * @throws VltException if an error occurs
+     */
+    public MetaDirectory getMetaDirectory(File base) throws VltException {
+        try {
+            EntriesIndex idx = getIndex();
+            if (idx != null) {
+                String root = exportRoot.getJcrRoot().getAbsolutePath();
+                String path = FilenameUtils.normalizeNoEndSeparator(base.getParentFile().getAbsolutePath());
+                if (path != null && (path.equals(root) || path.startsWith(root + File.separator))) {
+                    String key = path.substring(root.length()).replace(File.separatorChar, '/');
+                    if (key.length() == 0) {
+                        key = "/";
+                    }
+                    return new IndexedMetaDir(idx, key, base);
+                }
+            }
+            return new ZipMetaDir(base);
+        } catch (IOException e) {
+            throw new VltException("Error creating meta directory.", e);
+        }
+    }
+
+    /**
+     * Checks if the entries of the working copy are kept in a single index.
+     * @return {@code true} if the index is used
+     */
+    public boolean isUseIndex() {
+        return useIndex || new File(exportRoot.getRoot(), INDEX_FILE_NAME).exists();
+    }
+
+    /**
+     * Defines if the entries of the working copy are kept in a single index instead of the meta directories. An
+     * existing index is used regardless of this flag.
+     * @param useIndex {@code true} to use the index
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    private EntriesIndex getIndex() throws IOException {
+        if (index == null && isUseIndex()) {
+            index = EntriesIndex.open(new File(exportRoot.getRoot(), INDEX_FILE_NAME));
+        }
+        return index;
+    }
+
+    private void closeIndex() {
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the entries index.", e);
+            }
+            index = null;
+        }
+    }
+
+    /**
+     * Returns the digester that calculates the md5 of the working files. The digester uses a worker per
+     * available processor and caches the digests until the executed action completes.
+     *
+     * @return the file digester
+     */
+    public FileDigester getFileDigester() {
+        if (fileDigester == null) {
+            fileDigester = new FileDigester(Runtime.getRuntime().availableProcessors());
+        }
+        return fileDigester;
+    }
+
+    private void closeFileDigester() {
+        if (fileDigester != null) {
+            fileDigester.close();
+            fileDigester = null;
+        }
+    }
+
     public String getFsRoot() {
         return fsRoot;
     }
@@ -294,6 +391,8 @@ public class VltContext {
             }
         }
         fileSystems.clear();
+        closeIndex();
+        closeFileDigester();
     }
 
     public boolean execute(Action action) throws VltException {
@@ -306,6 +405,9 @@ public class VltContext {
             } else {
                 throw e;
             }
+        } finally {
+            closeIndex();
+            closeFileDigester();
         }
         return true;
     }
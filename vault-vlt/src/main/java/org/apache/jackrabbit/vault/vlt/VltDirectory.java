@@ -18,6 +18,7 @@ package org.apache.jackrabbit.vault.vlt;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,6 +38,7 @@ import org.apache.jackrabbit.vault.vlt.actions.Action;
 import org.apache.jackrabbit.vault.vlt.meta.MetaDirectory;
 import org.apache.jackrabbit.vault.vlt.meta.VltEntries;
 import org.apache.jackrabbit.vault.vlt.meta.VltEntry;
+import org.apache.jackrabbit.vault.vlt.meta.VltEntryInfo;
 
 /**
  * {@code VltDirectory}...
@@ -70,7 +72,7 @@ public class VltDirectory {
         if (dir.getName().equals(META_DIR_NAME)) {
             throw ctx.error(dir.getPath(), "meta directory not controllable.");
         }
-        metaDir = VltContext.createMetaDirectory(new File(dir, META_DIR_NAME));
+        metaDir = ctx.getMetaDirectory(new File(dir, META_DIR_NAME));
         //entriesFile = new File(metaDir, ENTRIES_FILE_NAME);
 
         init();
@@ -81,8 +83,18 @@ public class VltDirectory {
     }
 
     public String getAggregatePath() throws VltException {
-        VltDirectory parent = getParent();
-        VltEntries es = parent.getEntries();
+        // only read the entries of the parent instead of initializing the entire directory
+        MetaDirectory parentMeta = ctx.getMetaDirectory(new File(dir.getParentFile(), META_DIR_NAME));
+        VltEntries es;
+        try {
+            es = parentMeta.getEntries();
+        } finally {
+            try {
+                parentMeta.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
         if (es != null) {
             VltEntry e = es.getEntry(dir.getName());
             if (e != null) {
@@ -203,6 +215,7 @@ public class VltDirectory {
         if (remoteDir == null) {
             throw ctx.error(getPath(), "Remote directory does not exist.");
         }
+        prefetchDigests(names);
         if (names.isEmpty()) {
             // add all files in this directory
             for (VltFile file : getFiles()) {
@@ -341,6 +354,43 @@ public class VltDirectory {
         }
     }
 
+    /**
+     * Schedules the calculation of the digests of the given files, or of all files if empty, that were modified
+     * according to their entries. The digests are then calculated in parallel while the files are processed.
+     *
+     * @param names the names of the files
+     */
+    private void prefetchDigests(Collection<String> names) {
+        if (files == null) {
+            return;
+        }
+        Collection<VltFile> fs;
+        if (names.isEmpty()) {
+            fs = getFiles();
+        } else {
+            fs = new ArrayList<VltFile>(names.size());
+            for (String name: names) {
+                VltFile file = files.getFile(name);
+                if (file != null) {
+                    fs.add(file);
+                }
+            }
+        }
+        FileDigester digester = ctx.getFileDigester();
+        for (VltFile file: fs) {
+            VltEntry e = file.getEntry();
+            VltEntryInfo work = e == null ? null : e.work();
+            if (work != null && e.getState() == VltEntry.State.CLEAN) {
+                File f = file.getFile();
+                long lastModified = f.lastModified();
+                if (lastModified != 0 && (lastModified != work.getDate() || f.length() != work.getSize())
+                        && f.isFile()) {
+                    digester.prefetch(f);
+                }
+            }
+        }
+    }
+
     public void apply(Action action, String name, boolean nonRecursive)
             throws VltException {
         apply(action, Arrays.asList(name), nonRecursive);
@@ -351,6 +401,7 @@ public class VltDirectory {
         if (!action.run(this, null)) {
             return;
         }
+        prefetchDigests(names);
         if (names.isEmpty()) {
             // add all files in this directory
             for (VltFile file : getFiles()) {
@@ -411,6 +462,7 @@ public class VltDirectory {
         if (!action.run(this, remoteDir)) {
             return;
         }
+        prefetchDigests(names);
         if (names.isEmpty()) {
             // get the status of remote files
             Set<String> processed = new HashSet<String>();
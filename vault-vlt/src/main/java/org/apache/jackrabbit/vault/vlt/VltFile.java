@@ -172,7 +172,7 @@ public class VltFile implements DocumentSource {
                             assert base != null;
 
                             try {
-                                work.update(file, false);
+                                work.update(file, false, parent.getContext().getFileDigester());
                             } catch (IOException e) {
                                 throw exception("Error while calculating status.", e);
                             }
@@ -22,6 +22,7 @@ import java.io.IOException;
 
 import org.apache.jackrabbit.vault.fs.api.VaultFile;
 import org.apache.jackrabbit.vault.util.MD5;
+import org.apache.jackrabbit.vault.vlt.FileDigester;
 
 /**
  * {@code Entry}...
@@ -62,6 +63,15 @@ public interface VltEntryInfo {
 
     void update(File file, boolean force) throws IOException;
 
+    /**
+     * Updates this info with the state of the given file, using the given digester to calculate the md5.
+     * @param file the file
+     * @param force {@code true} to update the info even if the file seems unchanged
+     * @param digester the digester
+     * @throws IOException if an I/O error occurs
+     */
+    void update(File file, boolean force, FileDigester digester) throws IOException;
+
     void update(MetaFile file, boolean force) throws IOException;
 
     boolean isDirectory();
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.vault.vlt.meta.xml;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -161,6 +163,35 @@ public class XmlEntries implements VltEntries {
         dirty = false;
     }
 
+    /**
+     * Reads entries that were written with {@link #write(DataOutput)}.
+     * @param in the input
+     * @return the entries
+     * @throws IOException if an I/O error occurs
+     */
+    public static XmlEntries read(DataInput in) throws IOException {
+        XmlEntries entries = new XmlEntries(in.readUTF());
+        for (int i = in.readInt(); i > 0; i--) {
+            XmlEntry entry = XmlEntry.read(in);
+            entries.entries.put(entry.getName(), entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the entries in a compact binary form.
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(path);
+        out.writeInt(entries.size());
+        for (VltEntry e: entries.values()) {
+            ((XmlEntry) e).write(out);
+        }
+        dirty = false;
+    }
+
     public void update(VltFile file) {
         VltEntry e = file.getEntry();
         if (e == null) {
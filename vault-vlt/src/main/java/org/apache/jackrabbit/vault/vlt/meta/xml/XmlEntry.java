@@ -17,6 +17,8 @@
 
 package org.apache.jackrabbit.vault.vlt.meta.xml;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.util.EnumMap;
@@ -262,6 +264,17 @@ public class XmlEntry implements VltEntry {
         dirty = false;
     }
 
+    protected void write(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        XmlEntryInfo.writeString(out, repoRelPath);
+        XmlEntryInfo.writeString(out, aggregatePath);
+        out.writeByte(infos.size());
+        for (VltEntryInfo info: infos.values()) {
+            ((XmlEntryInfo) info).write(out);
+        }
+        dirty = false;
+    }
+
     public boolean isDirty() {
         if (dirty) {
             return true;
@@ -306,4 +319,16 @@ public class XmlEntry implements VltEntry {
         entry.dirty = false;
         return entry;
     }
+
+    protected static XmlEntry read(DataInput in) throws IOException {
+        String name = in.readUTF();
+        String path = XmlEntryInfo.readString(in);
+        String ap = XmlEntryInfo.readString(in);
+        XmlEntry entry = new XmlEntry(name, ap, path);
+        for (int i = in.readByte(); i > 0; i--) {
+            entry.put(XmlEntryInfo.read(in));
+        }
+        entry.dirty = false;
+        return entry;
+    }
 }
\ No newline at end of file
@@ -17,6 +17,8 @@
 
 package org.apache.jackrabbit.vault.vlt.meta.xml;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
@@ -24,6 +26,7 @@ import java.util.Calendar;
 import org.apache.jackrabbit.util.ISO8601;
 import org.apache.jackrabbit.vault.fs.api.VaultFile;
 import org.apache.jackrabbit.vault.util.MD5;
+import org.apache.jackrabbit.vault.vlt.FileDigester;
 import org.apache.jackrabbit.vault.vlt.VltException;
 import org.apache.jackrabbit.vault.vlt.meta.MetaFile;
 import org.apache.jackrabbit.vault.vlt.meta.VltEntryInfo;
@@ -168,6 +171,10 @@ public class XmlEntryInfo implements VltEntryInfo {
     }
 
     public void update(File file, boolean force) throws IOException {
+        update(file, force, null);
+    }
+
+    public void update(File file, boolean force, FileDigester digester) throws IOException {
         if (file.isDirectory()) {
             dirty = size != 0 && md5 != null && contentType != null;
             if (dirty) {
@@ -179,7 +186,7 @@ public class XmlEntryInfo implements VltEntryInfo {
         } else {
             if (force || file.lastModified() != date || file.length() != size) {
                 size = file.length();
-                md5 = MD5.digest(file);
+                md5 = digester == null ? MD5.digest(file) : digester.digest(file, force);
                 date = file.lastModified();
                 dirty = true;
             }
@@ -237,6 +244,47 @@ public class XmlEntryInfo implements VltEntryInfo {
         }
     }
 
+    protected void write(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        writeString(out, name);
+        out.writeLong(date);
+        out.writeBoolean(md5 != null);
+        if (md5 != null) {
+            out.writeLong(md5.getMsb());
+            out.writeLong(md5.getLsb());
+        }
+        writeString(out, contentType);
+        out.writeLong(size);
+        dirty = false;
+    }
+
+    protected static XmlEntryInfo read(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= Type.values().length) {
+            throw new IOException("unknown entry type " + ordinal);
+        }
+        XmlEntryInfo entry = new XmlEntryInfo(Type.values()[ordinal]);
+        entry.name = readString(in);
+        entry.date = in.readLong();
+        if (in.readBoolean()) {
+            entry.md5 = new MD5(in.readLong(), in.readLong());
+        }
+        entry.contentType = readString(in);
+        entry.size = in.readLong();
+        return entry;
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     protected static VltEntryInfo load(Element elem)
             throws VltException {
         Type type;
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.vlt.meta.xml.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jackrabbit.vault.vlt.meta.xml.XmlEntries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code EntriesIndex} holds the entries of all controlled directories of a working copy in a single file.
+ *
+ * The file consists of a header followed by records. Each record contains the path of a directory and either its
+ * entries or a removal marker. Changes are appended to the file, so the last record of a directory wins. When the
+ * index is opened, the file is memory mapped and scanned for the record offsets; the entries of a directory are
+ * only decoded when they are requested. Records that were superseded are dropped when the index is closed and
+ * they make up more than half of the file.
+ */
+public class EntriesIndex implements Closeable {
+
+    /**
+     * default logger
+     */
+    private static final Logger log = LoggerFactory.getLogger(EntriesIndex.class);
+
+    private static final int MAGIC = 0x56494458; // VIDX
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * size of the record header: payload length and checksum
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte TYPE_ENTRIES = 1;
+
+    private static final byte TYPE_REMOVED = 2;
+
+    /**
+     * files smaller than this are not compacted
+     */
+    private static final long MIN_COMPACT_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    /**
+     * the content of the file when it was opened
+     */
+    private final MappedByteBuffer mapped;
+
+    /**
+     * number of valid bytes in the mapped buffer
+     */
+    private long mappedSize;
+
+    /**
+     * offsets of the current records by directory path
+     */
+    private final Map<String, Long> offsets = new TreeMap<String, Long>();
+
+    private long size;
+
+    /**
+     * number of bytes of superseded records
+     */
+    private long garbage;
+
+    private EntriesIndex(File file, RandomAccessFile raf) throws IOException {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        size = channel.size();
+        if (size < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            size = HEADER_SIZE;
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        mappedSize = size;
+        scan();
+    }
+
+    /**
+     * Opens the index at the given file. The file is created if it does not exist or is empty.
+     * @param file the index file
+     * @return the index
+     * @throws IOException if an I/O error occurs or if the file is not a valid index
+     */
+    public static EntriesIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            return new EntriesIndex(file, raf);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(raf);
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the record offsets. An incomplete or corrupt record at the end of the file, e.g. of an interrupted
+     * update, is discarded.
+     */
+    private void scan() throws IOException {
+        ByteBuffer buf = mapped.duplicate();
+        if (buf.getInt() != MAGIC) {
+            throw new IOException(file.getPath() + " is not a working copy index.");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException(file.getPath() + " has an unsupported version: " + version);
+        }
+        long offset = HEADER_SIZE;
+        while (offset < size) {
+            Record r = readRecord(offset);
+            if (r == null) {
+                log.warn("Discarding incomplete records at the end of {}", file.getPath());
+                channel.truncate(offset);
+                size = offset;
+                mappedSize = offset;
+                break;
+            }
+            Long prev = r.type == TYPE_ENTRIES ? offsets.put(r.path, offset) : offsets.remove(r.path);
+            if (prev != null) {
+                garbage += recordSize(prev);
+            }
+            if (r.type == TYPE_REMOVED) {
+                garbage += r.size;
+            }
+            offset += r.size;
+        }
+    }
+
+    /**
+     * Checks if the index contains the entries of the given directory.
+     * @param path the path of the directory relative to the working copy root
+     * @return {@code true} if the entries are indexed
+     */
+    public synchronized boolean contains(String path) {
+        return offsets.containsKey(path);
+    }
+
+    /**
+     * Returns the entries of the given directory.
+     * @param path the path of the directory relative to the working copy root
+     * @return a new instance of the entries or {@code null} if not indexed
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized XmlEntries get(String path) throws IOException {
+        Long offset = offsets.get(path);
+        if (offset == null) {
+            return null;
+        }
+        Record r = readRecord(offset);
+        if (r == null) {
+            throw new IOException("Corrupt record for " + path + " in " + file.getPath());
+        }
+        return XmlEntries.read(r.in);
+    }
+
+    /**
+     * Appends the entries of the given directory to the index.
+     * @param path the path of the directory relative to the working copy root
+     * @param entries the entries
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void put(String path, XmlEntries entries) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(TYPE_ENTRIES);
+        out.writeUTF(path);
+        entries.write(out);
+        out.flush();
+        append(path, payload.toByteArray(), true);
+    }
+
+    /**
+     * Removes the entries of the given directory from the index.
+     * @param path the path of the directory relative to the working copy root
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void remove(String path) throws IOException {
+        if (!offsets.containsKey(path)) {
+            return;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(TYPE_REMOVED);
+        out.writeUTF(path);
+        out.flush();
+        append(path, payload.toByteArray(), false);
+    }
+
+    private void append(String path, byte[] payload, boolean put) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long offset = size;
+        while (buf.hasRemaining()) {
+            channel.write(buf, offset + buf.position());
+        }
+        size += RECORD_HEADER_SIZE + payload.length;
+        Long prev = put ? offsets.put(path, offset) : offsets.remove(path);
+        if (prev != null) {
+            garbage += recordSize(prev);
+        }
+        if (!put) {
+            garbage += RECORD_HEADER_SIZE + payload.length;
+        }
+    }
+
+    private long recordSize(long offset) throws IOException {
+        return RECORD_HEADER_SIZE + read(offset, 4).getInt();
+    }
+
+    /**
+     * Reads the record at the given offset.
+     * @return the record or {@code null} if it is incomplete or corrupt
+     */
+    private Record readRecord(long offset) throws IOException {
+        if (offset + RECORD_HEADER_SIZE > size) {
+            return null;
+        }
+        ByteBuffer header = read(offset, RECORD_HEADER_SIZE);
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length <= 0 || offset + RECORD_HEADER_SIZE + length > size) {
+            return null;
+        }
+        ByteBuffer payload = read(offset + RECORD_HEADER_SIZE, length);
+        CRC32 crc = new CRC32();
+        if (payload.hasArray()) {
+            crc.update(payload.array(), payload.arrayOffset() + payload.position(), length);
+        } else {
+            byte[] bytes = new byte[length];
+            payload.duplicate().get(bytes);
+            crc.update(bytes);
+        }
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(payload));
+        Record r = new Record();
+        r.type = in.readByte();
+        r.path = in.readUTF();
+        r.size = RECORD_HEADER_SIZE + length;
+        r.in = in;
+        return r;
+    }
+
+    /**
+     * Returns the bytes at the given position. The bytes that were present when the index was opened are taken
+     * from the mapped buffer, appended records are read from the file.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if (offset + length <= mappedSize) {
+            ByteBuffer buf = mapped.duplicate();
+            buf.position((int) offset).limit((int) offset + length);
+            return buf.slice();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0) {
+                throw new IOException("Unexpected end of " + file.getPath());
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Closes the index and drops the superseded records if they make up more than half of the file.
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void close() throws IOException {
+        File compacted = null;
+        if (size > MIN_COMPACT_SIZE && garbage * 2 > size) {
+            compacted = compact();
+        }
+        channel.close();
+        raf.close();
+        if (compacted != null) {
+            // the mapping of the old file might prevent the replacement on some platforms
+            if (!file.delete() || !compacted.renameTo(file)) {
+                log.warn("Unable to replace {} with the compacted index.", file.getPath());
+                FileUtils.deleteQuietly(compacted);
+            }
+        }
+    }
+
+    private File compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel dst = out.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            dst.write(header);
+            for (Long offset: offsets.values()) {
+                ByteBuffer record = read(offset, (int) recordSize(offset));
+                while (record.hasRemaining()) {
+                    dst.write(record);
+                }
+            }
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            FileUtils.deleteQuietly(tmp);
+            throw e;
+        }
+        out.close();
+        return tmp;
+    }
+
+    private static class Record {
+
+        private byte type;
+
+        private String path;
+
+        private long size;
+
+        private DataInputStream in;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buf;
+
+        private ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+    }
+}
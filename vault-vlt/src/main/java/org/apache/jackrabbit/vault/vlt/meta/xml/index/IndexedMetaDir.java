@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.vault.vlt.meta.xml.index;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jackrabbit.vault.vlt.VltException;
+import org.apache.jackrabbit.vault.vlt.meta.MetaDirectory;
+import org.apache.jackrabbit.vault.vlt.meta.MetaFile;
+import org.apache.jackrabbit.vault.vlt.meta.VltEntries;
+import org.apache.jackrabbit.vault.vlt.meta.xml.XmlEntries;
+import org.apache.jackrabbit.vault.vlt.meta.xml.zip.ZipMetaDir;
+
+/**
+ * {@code IndexedMetaDir} is a meta directory that keeps its entries in the {@link EntriesIndex} of the working copy.
+ * The base and temporary files and the repository url remain in the meta directory of the directory itself.
+ *
+ * The entries of a directory that is not indexed yet are read from its meta directory and added to the index. From
+ * then on the index is authoritative and the entries of the meta directory are no longer updated.
+ */
+public class IndexedMetaDir implements MetaDirectory {
+
+    private final EntriesIndex index;
+
+    private final String key;
+
+    private final ZipMetaDir metaDir;
+
+    private XmlEntries entries;
+
+    /**
+     * Creates a new meta directory.
+     * @param index the index of the working copy
+     * @param key the path of the directory relative to the working copy root
+     * @param file the meta directory of the directory
+     * @throws IOException if an I/O error occurs
+     */
+    public IndexedMetaDir(EntriesIndex index, String key, File file) throws IOException {
+        this.index = index;
+        this.key = key;
+        metaDir = new ZipMetaDir(file);
+    }
+
+    public File getFile() {
+        return metaDir.getFile();
+    }
+
+    public boolean exists() {
+        return index.contains(key) || metaDir.exists();
+    }
+
+    public void create(String path) throws IOException {
+        if (!exists()) {
+            entries = new XmlEntries(path, true);
+            sync();
+        }
+    }
+
+    public void delete() throws IOException {
+        entries = null;
+        index.remove(key);
+        metaDir.delete();
+    }
+
+    public void sync() throws IOException {
+        // update the index first, so that the meta directory does not save the entries again
+        if (entries != null && entries.isDirty()) {
+            index.put(key, entries);
+        }
+        metaDir.sync();
+    }
+
+    public void close() throws IOException {
+        sync();
+        metaDir.close();
+    }
+
+    public String getRepositoryUrl() throws IOException {
+        return metaDir.getRepositoryUrl();
+    }
+
+    public void setRepositoryUrl(String url) throws IOException {
+        metaDir.setRepositoryUrl(url);
+    }
+
+    public VltEntries getEntries() throws VltException {
+        try {
+            if (entries == null) {
+                entries = index.get(key);
+                if (entries == null) {
+                    entries = (XmlEntries) metaDir.getEntries();
+                    if (entries != null) {
+                        index.put(key, entries);
+                    }
+                }
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new VltException("Error while reading entries.", e);
+        }
+    }
+
+    public MetaFile getFile(String name) throws IOException {
+        return metaDir.getFile(name);
+    }
+
+    public MetaFile getFile(String name, boolean create) throws IOException {
+        return metaDir.getFile(name, create);
+    }
+
+    public MetaFile getTmpFile(String name, boolean create) throws IOException {
+        return metaDir.getTmpFile(name, create);
+    }
+
+    public MetaFile getBaseFile(String name, boolean create) throws IOException {
+        return metaDir.getBaseFile(name, create);
+    }
+
+    public boolean hasFile(String name) throws IOException {
+        return metaDir.hasFile(name);
+    }
+}
@@ -14,23 +14,30 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.jackrabbit.vault.vlt.meta.xml.zip;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.Deflater;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -40,6 +47,14 @@ import org.slf4j.LoggerFactory;
 /**
  * Implements an updateable zip file. Please note that the java 1.5 ZipFile
  * showed some issues when creating many files.
+ *
+ * Updates are journaled: on {@link #sync()} the new entries are appended to the
+ * file, followed by a new central directory that references the current entries.
+ * The replaced entries and the previous central directory remain in the file as
+ * garbage, until they make up more than half of it and the file is compacted.
+ * The entries are therefore always accessed via the central directory. An
+ * interrupted update is discarded by falling back to the previous central
+ * directory.
  */
 public class UpdateableZipFile {
 
@@ -48,6 +63,37 @@ public class UpdateableZipFile {
      */
     private static final Logger log = LoggerFactory.getLogger(UpdateableZipFile.class);
 
+    private static final int LOC_SIG = 0x04034b50;
+
+    private static final int CEN_SIG = 0x02014b50;
+
+    private static final int EOCD_SIG = 0x06054b50;
+
+    private static final int LOC_LEN = 30;
+
+    private static final int CEN_LEN = 46;
+
+    private static final int EOCD_LEN = 22;
+
+    /**
+     * size of a data descriptor including the optional signature
+     */
+    private static final int DATA_DESCRIPTOR_LEN = 16;
+
+    private static final int MAX_COMMENT_LEN = 0xffff;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+
+    private static final int FLAG_UTF8 = 0x800;
+
+    private static final long MAX_SIZE = 0xffffffffL;
+
+    /**
+     * files smaller than this are not compacted
+     */
+    private static final long MIN_COMPACT_SIZE = 64 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("utf-8");
 
     private final File file;
 
@@ -57,6 +103,15 @@ public class UpdateableZipFile {
 
     private Map<String, String> toMove = new HashMap<String, String>();
 
+    /**
+     * the central directory of the file as of {@link #dirLength} and {@link #dirModified}
+     */
+    private Directory directory;
+
+    private long dirLength;
+
+    private long dirModified;
+
     public UpdateableZipFile(File file) throws IOException {
         this.file = file;
     }
@@ -77,8 +132,10 @@ public class UpdateableZipFile {
         if (file.exists()) {
             file.delete();
         }
+        directory = null;
         toDelete.clear();
         toUpdate.clear();
+        toMove.clear();
     }
 
     public ZipEntry getEntry(String name) {
@@ -86,22 +143,17 @@ public class UpdateableZipFile {
             return null;
         }
         try {
-            InputStream in = FileUtils.openInputStream(file);
-            ZipInputStream zin = new ZipInputStream(in);
-            try {
-                ZipEntry entry = zin.getNextEntry();
-                while (entry != null) {
-                    if (entry.getName().equals(name)) {
-                        zin.closeEntry();
-                        break;
-                    }
-                    entry = zin.getNextEntry();
-                }
-                return entry;
-            } finally {
-                IOUtils.closeQuietly(zin);
-                IOUtils.closeQuietly(in);
+            Entry e = getDirectory().entries.get(name);
+            if (e == null) {
+                return null;
             }
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(e.method);
+            entry.setTime(dosToJavaTime(e.dosTime));
+            entry.setCrc(e.crc);
+            entry.setCompressedSize(e.compressedSize);
+            entry.setSize(e.size);
+            return entry;
         } catch (IOException e) {
             log.error("Error while retrieving zip entry {}: {}", name, e.toString());
             return null;
@@ -112,18 +164,24 @@ public class UpdateableZipFile {
         if (!file.exists()) {
             return null;
         }
-        InputStream in = FileUtils.openInputStream(file);
-        ZipInputStream zin = new ZipInputStream(in);
-        ZipEntry entry = zin.getNextEntry();
-        while (entry != null) {
-            if (entry.getName().equals(name)) {
-                return zin;
+        Entry e = getDirectory().entries.get(name);
+        if (e == null) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            InputStream in = new EntryInputStream(raf, getDataOffset(raf, e), e.compressedSize);
+            if (e.method == ZipEntry.STORED) {
+                return in;
+            } else if (e.method == ZipEntry.DEFLATED) {
+                return new EntryInflaterInputStream(in);
+            } else {
+                throw new ZipException("Unsupported compression method " + e.method + ": " + name);
             }
-            entry = zin.getNextEntry();
+        } catch (IOException ex) {
+            IOUtils.closeQuietly(raf);
+            throw ex;
         }
-        IOUtils.closeQuietly(zin);
-        IOUtils.closeQuietly(in);
-        return null;
     }
 
     public void delete(String name) {
@@ -147,59 +205,515 @@ public class UpdateableZipFile {
         if (toDelete.isEmpty() && toUpdate.isEmpty() && toMove.isEmpty()) {
             return;
         }
-        // create tmp file
-        File newZip = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
-        ZipOutputStream out = new ZipOutputStream(
-                new BufferedOutputStream(new FileOutputStream(newZip)));
-        out.setLevel(Deflater.NO_COMPRESSION);
-
-        // add new files on top
-        for (Map.Entry<String, InputStream> update: toUpdate.entrySet()) {
-            ZipEntry entry = new ZipEntry(update.getKey());
-            out.putNextEntry(entry);
-            InputStream in = update.getValue();
-            copy(in, out);
-            IOUtils.closeQuietly(in);
-        }
-        // process existing zip entries
-        if (file.exists()) {
-            InputStream in = FileUtils.openInputStream(file);
-            ZipInputStream zin = new ZipInputStream(in);
-            ZipEntry entry = zin.getNextEntry();
-            while (entry != null) {
-                if (!toUpdate.containsKey(entry.getName()) && !toDelete.contains(entry.getName())) {
-                    ZipEntry newEntry = entry;
-                    if (toMove.containsKey(entry.getName())) {
-                        newEntry = new ZipEntry(toMove.get(entry.getName()));
-                        newEntry.setTime(entry.getTime());
-                        //newEntry.setSize(entry.getSize());
-                    }
-                    out.putNextEntry(newEntry);
-                    copy(zin, out);
+        Directory dir = file.exists() ? getDirectory() : new Directory();
+        Map<String, Entry> entries = new LinkedHashMap<String, Entry>(dir.entries);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        long end;
+        try {
+            // the new entries overwrite an incomplete update, if any
+            long pos = dir.end;
+            for (String name: toDelete) {
+                entries.remove(name);
+            }
+            for (Map.Entry<String, String> move: toMove.entrySet()) {
+                Entry e = dir.entries.get(move.getKey());
+                if (e != null && !toUpdate.containsKey(e.name) && !toDelete.contains(e.name)) {
+                    entries.remove(e.name);
+                    Entry moved = copy(raf, e, move.getValue(), raf, pos);
+                    pos += moved.getLocalLength();
+                    entries.put(moved.name, moved);
+                }
+            }
+            for (Map.Entry<String, InputStream> update: toUpdate.entrySet()) {
+                InputStream in = update.getValue();
+                try {
+                    Entry e = write(raf, update.getKey(), in, pos);
+                    pos += e.getLocalLength();
+                    entries.remove(e.name);
+                    entries.put(e.name, e);
+                } finally {
+                    IOUtils.closeQuietly(in);
                 }
-                entry = zin.getNextEntry();
             }
-            IOUtils.closeQuietly(zin);
-            IOUtils.closeQuietly(in);
+            end = writeDirectory(raf, entries, pos);
+            raf.setLength(end);
+        } catch (IOException e) {
+            // drop the incomplete update
+            raf.setLength(dir.end);
+            throw e;
+        } finally {
+            raf.close();
         }
-        out.close();
         toDelete.clear();
         toUpdate.clear();
-        
+        toMove.clear();
+        directory = null;
+
+        long live = EOCD_LEN;
+        for (Entry e: entries.values()) {
+            live += e.getLocalLength() + e.getCentralLength();
+        }
+        if (end > MIN_COMPACT_SIZE && (end - live) * 2 > end) {
+            compact(entries);
+        }
+    }
+
+    /**
+     * Rewrites the file with the current entries only.
+     */
+    private void compact(Map<String, Entry> entries) throws IOException {
+        log.debug("Compacting {}", file.getPath());
+        File newZip = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            RandomAccessFile src = new RandomAccessFile(file, "r");
+            RandomAccessFile dst = new RandomAccessFile(newZip, "rw");
+            try {
+                Map<String, Entry> copied = new LinkedHashMap<String, Entry>();
+                long pos = 0;
+                for (Entry e: entries.values()) {
+                    Entry c = copy(src, e, e.name, dst, pos);
+                    pos += c.getLocalLength();
+                    copied.put(c.name, c);
+                }
+                writeDirectory(dst, copied, pos);
+            } finally {
+                IOUtils.closeQuietly(src);
+                dst.close();
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(newZip);
+            throw e;
+        }
+
         // rotate files
         FileUtils.deleteQuietly(file);
         FileUtils.moveFile(newZip, file);
     }
 
-    protected static void copy(InputStream in, ZipOutputStream out) throws IOException {
+    public void close() throws IOException {
+        sync();
+    }
+
+    private Directory getDirectory() throws IOException {
+        long length = file.length();
+        long modified = file.lastModified();
+        if (directory == null || dirLength != length || dirModified != modified) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                directory = readDirectory(raf);
+            } finally {
+                raf.close();
+            }
+            dirLength = length;
+            dirModified = modified;
+        }
+        return directory;
+    }
+
+    /**
+     * Reads the last complete central directory of the file. The end record is searched backwards from the end
+     * of the file. Since updates are appended after the previous central directory, the end record of the last
+     * complete update is found even if an interrupted update appended more than the maximal comment length.
+     */
+    private Directory readDirectory(RandomAccessFile raf) throws IOException {
+        long size = raf.length();
+        Directory dir = new Directory();
+        if (size == 0) {
+            return dir;
+        }
+        long limit = size;
+        while (limit >= EOCD_LEN) {
+            long start = Math.max(0, limit - EOCD_LEN - MAX_COMMENT_LEN);
+            int len = (int) (limit - start);
+            ByteBuffer buf = read(raf, start, len);
+            for (int i = len - EOCD_LEN; i >= 0; i--) {
+                if (buf.getInt(i) != EOCD_SIG) {
+                    continue;
+                }
+                long eocdPos = start + i;
+                int numEntries = buf.getShort(i + 10) & 0xffff;
+                long cenSize = buf.getInt(i + 12) & MAX_SIZE;
+                long cenOffset = buf.getInt(i + 16) & MAX_SIZE;
+                int commentLen = buf.getShort(i + 20) & 0xffff;
+                // the central directory immediately precedes its end record
+                if (cenOffset + cenSize != eocdPos || eocdPos + EOCD_LEN + commentLen > size) {
+                    continue;
+                }
+                ByteBuffer cen = read(raf, cenOffset, (int) cenSize);
+                if (readEntries(cen, numEntries, dir.entries)) {
+                    dir.end = eocdPos + EOCD_LEN + commentLen;
+                    if (dir.end < size) {
+                        log.warn("Discarding incomplete update of {}", file.getPath());
+                    }
+                    return dir;
+                }
+                dir.entries.clear();
+            }
+            if (start == 0) {
+                break;
+            }
+            // overlap the windows so that records across the boundary are found
+            limit = start + EOCD_LEN - 1;
+        }
+        throw new ZipException("No valid central directory found in " + file.getPath());
+    }
+
+    private static boolean readEntries(ByteBuffer cen, int numEntries, Map<String, Entry> entries) {
+        int pos = 0;
+        int size = cen.limit();
+        while (pos + CEN_LEN <= size) {
+            if (cen.getInt(pos) != CEN_SIG) {
+                return false;
+            }
+            Entry e = new Entry();
+            e.flags = cen.getShort(pos + 8) & 0xffff;
+            e.method = cen.getShort(pos + 10) & 0xffff;
+            e.dosTime = cen.getInt(pos + 12) & MAX_SIZE;
+            e.crc = cen.getInt(pos + 16) & MAX_SIZE;
+            e.compressedSize = cen.getInt(pos + 20) & MAX_SIZE;
+            e.size = cen.getInt(pos + 24) & MAX_SIZE;
+            int nameLen = cen.getShort(pos + 28) & 0xffff;
+            int extraLen = cen.getShort(pos + 30) & 0xffff;
+            int commentLen = cen.getShort(pos + 32) & 0xffff;
+            e.offset = cen.getInt(pos + 42) & MAX_SIZE;
+            if (pos + CEN_LEN + nameLen + extraLen + commentLen > size) {
+                return false;
+            }
+            e.nameBytes = new byte[nameLen];
+            cen.position(pos + CEN_LEN);
+            cen.get(e.nameBytes);
+            e.name = new String(e.nameBytes, UTF8);
+            entries.put(e.name, e);
+            pos += CEN_LEN + nameLen + extraLen + commentLen;
+        }
+        return pos == size && entries.size() == numEntries;
+    }
+
+    private static long getDataOffset(RandomAccessFile raf, Entry e) throws IOException {
+        ByteBuffer loc = read(raf, e.offset, LOC_LEN);
+        if (loc.getInt(0) != LOC_SIG) {
+            throw new ZipException("Invalid local header for " + e.name);
+        }
+        return e.offset + LOC_LEN + (loc.getShort(26) & 0xffff) + (loc.getShort(28) & 0xffff);
+    }
+
+    /**
+     * Writes a stored entry with the data of the given stream at the given position.
+     */
+    private static Entry write(RandomAccessFile raf, String name, InputStream in, long pos) throws IOException {
+        Entry e = new Entry();
+        e.name = name;
+        e.nameBytes = name.getBytes(UTF8);
+        e.flags = FLAG_UTF8;
+        e.method = ZipEntry.STORED;
+        e.dosTime = javaToDosTime(System.currentTimeMillis());
+        e.offset = pos;
+
+        // write the data first and the local header once the checksum is known
+        raf.seek(pos + LOC_LEN + e.nameBytes.length);
+        CRC32 crc = new CRC32();
         byte[] buffer = new byte[8192];
+        long size = 0;
         int read;
         while ((read = in.read(buffer)) >= 0) {
-            out.write(buffer, 0, read);
+            raf.write(buffer, 0, read);
+            crc.update(buffer, 0, read);
+            size += read;
         }
+        if (size > MAX_SIZE) {
+            throw new ZipException("Entry too large: " + name);
+        }
+        e.crc = crc.getValue();
+        e.compressedSize = size;
+        e.size = size;
+        raf.seek(pos);
+        raf.write(e.getLocalHeader());
+        return e;
     }
 
-    public void close() throws IOException {
-        sync();
+    /**
+     * Copies the data of an entry to the given position without recompressing it.
+     */
+    private static Entry copy(RandomAccessFile src, Entry e, String name, RandomAccessFile dst, long pos)
+            throws IOException {
+        Entry c = new Entry();
+        c.name = name;
+        c.nameBytes = name.getBytes(UTF8);
+        c.flags = (e.flags & ~FLAG_DATA_DESCRIPTOR) | FLAG_UTF8;
+        c.method = e.method;
+        c.dosTime = e.dosTime;
+        c.crc = e.crc;
+        c.compressedSize = e.compressedSize;
+        c.size = e.size;
+        c.offset = pos;
+
+        // read the data before writing, as source and destination might be the same file
+        long dataOffset = getDataOffset(src, e);
+        byte[] buffer = new byte[8192];
+        long remaining = e.compressedSize;
+        long srcPos = dataOffset;
+        long dstPos = pos + LOC_LEN + c.nameBytes.length;
+        while (remaining > 0) {
+            int len = (int) Math.min(buffer.length, remaining);
+            src.seek(srcPos);
+            src.readFully(buffer, 0, len);
+            dst.seek(dstPos);
+            dst.write(buffer, 0, len);
+            srcPos += len;
+            dstPos += len;
+            remaining -= len;
+        }
+        dst.seek(pos);
+        dst.write(c.getLocalHeader());
+        return c;
+    }
+
+    /**
+     * Writes the central directory and its end record at the given position.
+     * @return the end of the file
+     */
+    private static long writeDirectory(RandomAccessFile raf, Map<String, Entry> entries, long pos)
+            throws IOException {
+        if (entries.size() > 0xffff || pos > MAX_SIZE) {
+            throw new ZipException("Too many or too large entries.");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Entry e: entries.values()) {
+            out.write(e.getCentralHeader());
+        }
+        int cenSize = out.size();
+        ByteBuffer eocd = ByteBuffer.allocate(EOCD_LEN).order(ByteOrder.LITTLE_ENDIAN);
+        eocd.putInt(EOCD_SIG)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) entries.size())
+                .putShort((short) entries.size())
+                .putInt(cenSize)
+                .putInt((int) pos)
+                .putShort((short) 0);
+        out.write(eocd.array());
+        raf.seek(pos);
+        raf.write(out.toByteArray());
+        return pos + out.size();
+    }
+
+    private static ByteBuffer read(RandomAccessFile raf, long pos, int len) throws IOException {
+        byte[] bytes = new byte[len];
+        raf.seek(pos);
+        raf.readFully(bytes);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long dosToJavaTime(long dtime) {
+        Calendar cal = new GregorianCalendar(
+                (int) (((dtime >> 25) & 0x7f) + 1980),
+                (int) (((dtime >> 21) & 0x0f) - 1),
+                (int) ((dtime >> 16) & 0x1f),
+                (int) ((dtime >> 11) & 0x1f),
+                (int) ((dtime >> 5) & 0x3f),
+                (int) ((dtime << 1) & 0x3e));
+        return cal.getTimeInMillis();
+    }
+
+    private static long javaToDosTime(long time) {
+        Calendar cal = new GregorianCalendar();
+        cal.setTimeInMillis(time);
+        int year = cal.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25
+                | (cal.get(Calendar.MONTH) + 1) << 21
+                | cal.get(Calendar.DAY_OF_MONTH) << 16
+                | cal.get(Calendar.HOUR_OF_DAY) << 11
+                | cal.get(Calendar.MINUTE) << 5
+                | cal.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * The entries referenced by a central directory.
+     */
+    private static final class Directory {
+
+        private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+        /**
+         * end of the central directory
+         */
+        private long end;
+    }
+
+    /**
+     * A central directory record.
+     */
+    private static final class Entry {
+
+        private String name;
+
+        private byte[] nameBytes;
+
+        private int flags;
+
+        private int method;
+
+        private long dosTime;
+
+        private long crc;
+
+        private long compressedSize;
+
+        private long size;
+
+        private long offset;
+
+        private int getVersion() {
+            return method == ZipEntry.DEFLATED ? 20 : 10;
+        }
+
+        /**
+         * Returns the length of the local entry. The extra fields of entries that were not written by this
+         * class are not taken into account.
+         */
+        private long getLocalLength() {
+            long length = LOC_LEN + nameBytes.length + compressedSize;
+            if ((flags & FLAG_DATA_DESCRIPTOR) != 0) {
+                length += DATA_DESCRIPTOR_LEN;
+            }
+            return length;
+        }
+
+        private long getCentralLength() {
+            return CEN_LEN + nameBytes.length;
+        }
+
+        private byte[] getLocalHeader() {
+            ByteBuffer buf = ByteBuffer.allocate(LOC_LEN + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(LOC_SIG)
+                    .putShort((short) getVersion())
+                    .putShort((short) flags)
+                    .putShort((short) method)
+                    .putInt((int) dosTime)
+                    .putInt((int) crc)
+                    .putInt((int) compressedSize)
+                    .putInt((int) size)
+                    .putShort((short) nameBytes.length)
+                    .putShort((short) 0)
+                    .put(nameBytes);
+            return buf.array();
+        }
+
+        private byte[] getCentralHeader() {
+            ByteBuffer buf = ByteBuffer.allocate(CEN_LEN + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(CEN_SIG)
+                    .putShort((short) getVersion())
+                    .putShort((short) getVersion())
+                    .putShort((short) flags)
+                    .putShort((short) method)
+                    .putInt((int) dosTime)
+                    .putInt((int) crc)
+                    .putInt((int) compressedSize)
+                    .putInt((int) size)
+                    .putShort((short) nameBytes.length)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putInt(0)
+                    .putInt((int) offset)
+                    .put(nameBytes);
+            return buf.array();
+        }
+    }
+
+    /**
+     * Reads the data of an entry and closes the file when closed.
+     */
+    private static final class EntryInputStream extends InputStream {
+
+        private final RandomAccessFile raf;
+
+        private long pos;
+
+        private final long end;
+
+        private EntryInputStream(RandomAccessFile raf, long pos, long len) {
+            this.raf = raf;
+            this.pos = pos;
+            this.end = pos + len;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= end) {
+                return -1;
+            }
+            len = (int) Math.min(len, end - pos);
+            raf.seek(pos);
+            int read = raf.read(b, off, len);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip file.");
+            }
+            pos += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            n = Math.min(n, end - pos);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, end - pos);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * Inflates the data of an entry and releases the inflater when closed.
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+
+        private EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of zip entry.");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len < 0) {
+                // the inflater might need an additional byte when used without the zlib header
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inf.end();
+            super.close();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.vlt;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.vault.util.MD5;
+
+import junit.framework.TestCase;
+
+/**
+ * {@code TestFileDigester}...
+ */
+public class TestFileDigester extends TestCase {
+
+    private File dir = new File("target/vlt-test-digester");
+
+    private FileDigester digester;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        digester = new FileDigester(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        digester.close();
+        super.tearDown();
+    }
+
+    private File createFile(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + name.hashCode());
+        }
+        File file = new File(dir, name);
+        FileUtils.writeByteArrayToFile(file, data);
+        return file;
+    }
+
+    public void testPrefetch() throws IOException {
+        File[] files = new File[20];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = createFile("file" + i, i * 10000);
+            digester.prefetch(files[i]);
+        }
+        for (File file: files) {
+            assertEquals(MD5.digest(file), digester.digest(file, false));
+        }
+    }
+
+    public void testModified() throws IOException {
+        File file = createFile("a", 1000);
+        long lastModified = file.lastModified();
+        assertEquals(MD5.digest(file), digester.digest(file, false));
+
+        // same size and modification time, but a different file
+        File other = createFile("b", 1000);
+        assertTrue(other.renameTo(file));
+        file.setLastModified(lastModified);
+        assertEquals(MD5.digest(file), digester.digest(file, false));
+        assertEquals(MD5.digest(file), digester.digest(file, true));
+
+        createFile("a", 2000);
+        digester.prefetch(file);
+        assertEquals(MD5.digest(file), digester.digest(file, false));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.vlt.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.jackrabbit.vault.vlt.VltException;
+import org.apache.jackrabbit.vault.vlt.meta.xml.index.EntriesIndex;
+import org.apache.jackrabbit.vault.vlt.meta.xml.index.IndexedMetaDir;
+import org.apache.jackrabbit.vault.vlt.meta.xml.zip.ZipMetaDir;
+
+/**
+ * {@code TestIndexedEntries}...
+ */
+public class TestIndexedEntries extends AbstractTestEntries {
+
+    private File indexFile = new File("target/vlt-test-entries.idx");
+
+    private EntriesIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file.delete();
+        indexFile.delete();
+        open();
+        dir.create("/a/b/c");
+        close();
+        dir = null;
+    }
+
+    protected void open() throws IOException, VltException {
+        index = EntriesIndex.open(indexFile);
+        dir = new IndexedMetaDir(index, "a/b/c", file);
+        entries = dir.getEntries();
+    }
+
+    @Override
+    protected void close() throws IOException {
+        super.close();
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        close();
+        super.tearDown();
+    }
+
+    public void testEntriesNotInMetaDir() throws VltException, IOException {
+        testAddEntry();
+        close();
+        ZipMetaDir zip = new ZipMetaDir(file);
+        try {
+            assertNull(zip.getEntries());
+        } finally {
+            zip.close();
+        }
+    }
+
+    public void testMigrate() throws VltException, IOException {
+        file.delete();
+        indexFile.delete();
+        ZipMetaDir zip = new ZipMetaDir(file);
+        zip.create("/a/b/c");
+        zip.getEntries().update("foo.png", "/bla", "foo.png");
+        zip.close();
+
+        open();
+        assertTrue(entries.hasEntry("foo.png"));
+        close();
+        // index is authoritative after the migration
+        file.delete();
+        open();
+        assertTrue(dir.exists());
+        assertTrue(entries.hasEntry("foo.png"));
+    }
+
+    public void testDelete() throws VltException, IOException {
+        testAddEntry();
+        dir.delete();
+        reopen();
+        assertFalse(dir.exists());
+        assertNull(entries);
+    }
+
+    public void testIncompleteRecord() throws VltException, IOException {
+        testAddEntry();
+        close();
+        long length = indexFile.length();
+        open();
+        entries.update("bar.png", "/bla", "bar.png");
+        close();
+        // simulate an interrupted update
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        open();
+        assertTrue(entries.hasEntry("foo.png"));
+        assertFalse(entries.hasEntry("bar.png"));
+        assertEquals(length, indexFile.length());
+    }
+
+    public void testCompact() throws VltException, IOException {
+        open();
+        for (int i = 0; i < 300; i++) {
+            entries.update("file" + i + ".txt", "/bla", "file" + i + ".txt");
+            dir.sync();
+        }
+        close();
+        assertTrue(indexFile.length() < 64 * 1024);
+        open();
+        assertEquals(300, entries.entries().size());
+    }
+}
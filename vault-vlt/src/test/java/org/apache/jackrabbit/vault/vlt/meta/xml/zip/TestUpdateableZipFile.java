@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.vault.vlt.meta.xml.zip;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * {@code TestUpdateableZipFile}...
+ */
+public class TestUpdateableZipFile extends TestCase {
+
+    private File file = new File("target/vlt-test-journal.zip");
+
+    private UpdateableZipFile zip;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file.getParentFile().mkdirs();
+        file.delete();
+        zip = new UpdateableZipFile(file);
+    }
+
+    private static byte[] data(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    private byte[] read(String name) throws IOException {
+        InputStream in = zip.getInputStream(name);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void assertValidZip(String ... names) throws IOException {
+        ZipFile zf = new ZipFile(file);
+        try {
+            assertEquals(names.length, zf.size());
+            for (String name: names) {
+                ZipEntry e = zf.getEntry(name);
+                assertNotNull(name, e);
+                InputStream in = zf.getInputStream(e);
+                try {
+                    assertTrue(Arrays.equals(read(name), IOUtils.toByteArray(in)));
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            zf.close();
+        }
+    }
+
+    public void testUpdateAppends() throws IOException {
+        zip.update("base/large.bin", data(100000, 1));
+        zip.update("entries.xml", data(100, 2));
+        zip.sync();
+        long length = file.length();
+
+        zip.update("entries.xml", data(120, 3));
+        zip.sync();
+        // only the entry and the central directory are appended
+        assertTrue(file.length() - length < 1000);
+        assertTrue(Arrays.equals(data(120, 3), read("entries.xml")));
+        assertTrue(Arrays.equals(data(100000, 1), read("base/large.bin")));
+        assertEquals(120, zip.getEntry("entries.xml").getSize());
+        assertValidZip("base/large.bin", "entries.xml");
+    }
+
+    public void testDeleteAndMove() throws IOException {
+        zip.update("a", data(10, 1));
+        zip.update("b", data(20, 2));
+        zip.update("c", data(30, 3));
+        zip.sync();
+        zip.delete("a");
+        zip.move("b", "c");
+        zip.sync();
+        assertNull(zip.getEntry("a"));
+        assertNull(zip.getEntry("b"));
+        assertTrue(Arrays.equals(data(20, 2), read("c")));
+        assertValidZip("c");
+    }
+
+    public void testCompact() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            zip.update("base/file.bin", data(10000, i));
+            zip.update("entries.xml", data(500, i));
+            zip.sync();
+            assertTrue(file.length() < 3 * 64 * 1024);
+        }
+        assertTrue(Arrays.equals(data(10000, 49), read("base/file.bin")));
+        assertTrue(Arrays.equals(data(500, 49), read("entries.xml")));
+        assertValidZip("base/file.bin", "entries.xml");
+    }
+
+    public void testIncompleteUpdate() throws IOException {
+        zip.update("entries.xml", data(100, 1));
+        zip.sync();
+        long length = file.length();
+        // simulate an interrupted update
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(length);
+            raf.write(data(500, 2));
+        } finally {
+            raf.close();
+        }
+        zip = new UpdateableZipFile(file);
+        assertTrue(Arrays.equals(data(100, 1), read("entries.xml")));
+        zip.update("tmp/x", data(10, 3));
+        zip.sync();
+        assertValidZip("entries.xml", "tmp/x");
+    }
+
+    public void testLargeIncompleteUpdate() throws IOException {
+        zip.update("entries.xml", data(100, 1));
+        zip.sync();
+        long length = file.length();
+        zip.update("base/large.bin", data(200000, 2));
+        zip.sync();
+        // simulate an update that was interrupted after more than 64k were appended
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length + 150000);
+        } finally {
+            raf.close();
+        }
+        zip = new UpdateableZipFile(file);
+        assertTrue(Arrays.equals(data(100, 1), read("entries.xml")));
+        assertNull(zip.getEntry("base/large.bin"));
+        zip.update("tmp/x", data(10, 3));
+        zip.sync();
+        assertValidZip("entries.xml", "tmp/x");
+    }
+
+    public void testLegacyZip() throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        out.setLevel(Deflater.NO_COMPRESSION);
+        out.putNextEntry(new ZipEntry("entries.xml"));
+        out.write(data(100, 1));
+        out.putNextEntry(new ZipEntry("base/a.txt"));
+        out.write(data(5000, 2));
+        out.close();
+
+        assertTrue(Arrays.equals(data(100, 1), read("entries.xml")));
+        assertEquals(5000, zip.getEntry("base/a.txt").getSize());
+        zip.update("entries.xml", data(200, 3));
+        zip.move("base/a.txt", "base/b.txt");
+        zip.sync();
+        assertTrue(Arrays.equals(data(200, 3), read("entries.xml")));
+        assertTrue(Arrays.equals(data(5000, 2), read("base/b.txt")));
+        assertValidZip("entries.xml", "base/b.txt");
+    }
+}